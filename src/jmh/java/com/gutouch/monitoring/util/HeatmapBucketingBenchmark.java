@@ -0,0 +1,90 @@
+package com.gutouch.monitoring.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Répartition d'un million de logs dans la heatmap (jour local x heure) :
+ * ZonedDateTime + clé "yyyy-MM-dd" + listes par heure, contre tableaux primitifs
+ * indexés via {@link ZoneOffsetTable}. La plage de 30 jours couvre un changement d'heure.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HeatmapBucketingBenchmark {
+
+    private static final ZoneId PARIS_ZONE = ZoneId.of("Europe/Paris");
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final int DAYS = 30;
+
+    @Param("1000000")
+    private int rows;
+
+    private long[] timestamps;
+    private double[] latencies;
+    private ZonedDateTime startDate;
+    private ZonedDateTime now;
+
+    @Setup
+    public void setUp() {
+        now = ZonedDateTime.of(2024, 11, 15, 12, 0, 0, 0, PARIS_ZONE);
+        startDate = now.minusDays(DAYS).withHour(0).withMinute(0).withSecond(0);
+
+        Random random = new Random(42);
+        long from = startDate.toInstant().toEpochMilli();
+        long span = now.toInstant().toEpochMilli() - from;
+        timestamps = new long[rows];
+        latencies = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            timestamps[i] = from + (long) (random.nextDouble() * span);
+            latencies[i] = 5.0 + random.nextInt(2_000);
+        }
+    }
+
+    @Benchmark
+    public void zonedDateTimeAndStringKeys(Blackhole blackhole) {
+        Map<String, Map<Integer, List<Double>>> byDay = new HashMap<>();
+        for (int i = 0; i < rows; i++) {
+            ZonedDateTime local = Instant.ofEpochMilli(timestamps[i]).atZone(PARIS_ZONE);
+            byDay.computeIfAbsent(local.format(DATE_FORMATTER), d -> new HashMap<>())
+                    .computeIfAbsent(local.getHour(), h -> new ArrayList<>())
+                    .add(latencies[i]);
+        }
+        blackhole.consume(byDay);
+    }
+
+    @Benchmark
+    public void offsetTableAndPrimitiveArrays(Blackhole blackhole) {
+        ZoneOffsetTable offsets = new ZoneOffsetTable(PARIS_ZONE, startDate.toInstant(), now.toInstant());
+        long firstDay = startDate.toLocalDate().toEpochDay();
+        int dayCount = (int) (now.toLocalDate().toEpochDay() - firstDay) + 1;
+        long[][] counts = new long[dayCount][24];
+        double[][] latencySums = new double[dayCount][24];
+
+        for (int i = 0; i < rows; i++) {
+            long epochMillis = timestamps[i];
+            long dayIndex = offsets.localEpochDay(epochMillis) - firstDay;
+            if (dayIndex < 0 || dayIndex >= dayCount) continue;
+
+            int hour = offsets.localHour(epochMillis);
+            counts[(int) dayIndex][hour]++;
+            latencySums[(int) dayIndex][hour] += latencies[i];
+        }
+        blackhole.consume(counts);
+        blackhole.consume(latencySums);
+    }
+}
@@ -0,0 +1,247 @@
+package com.gutouch.monitoring.aggregate;
+
+import com.gutouch.monitoring.dto.LogEntry;
+import com.gutouch.monitoring.sketch.LatencyHistogram;
+import com.gutouch.monitoring.sketch.StatusCodeHistogram;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Agrégat fusionnable d'un ensemble de logs (un jour, une heure, ...)
+ */
+public class LogAggregate {
+
+    // Bornes (ms) du sketch de latence, communes à tous les agrégats pour rester fusionnables.
+    // Les rollups stockent les buckets par indice : ne pas modifier ces bornes.
+    private static final double[] LATENCY_BOUNDS = {
+            1, 2, 5, 10, 15, 20, 30, 50, 75, 100, 150, 200, 300, 500, 750, 1000, 2000, 5000, 10000, 30000
+    };
+
+    private long requests;
+    private long successes;
+    private long timeouts;
+    private double latencySum;
+    private final LatencyHistogram latencies = new LatencyHistogram(LATENCY_BOUNDS);
+    private StatusCodeHistogram statusCodes; // alloué au premier status code
+
+    /**
+     * Ajouter une ligne de log
+     */
+    public void add(LogEntry log) {
+        requests++;
+        if (Boolean.TRUE.equals(log.getSuccess())) {
+            successes++;
+        }
+        if (Boolean.TRUE.equals(log.getTimeout())) {
+            timeouts++;
+        }
+        if (log.getResponseTimeMs() != null) {
+            latencySum += log.getResponseTimeMs();
+            latencies.record(log.getResponseTimeMs());
+        }
+        // Status absent compté en 0
+        statusCodes().record(log.getStatusCode() != null ? log.getStatusCode() : 0);
+    }
+
+    /**
+     * Ajouter des lignes lues colonne par colonne : compteurs ici, chaque latence par
+     * {@link #addLatency(double)} et chaque status par {@link #addStatusCode(int)}
+     */
+    public void addRows(long requests, long successes, long timeouts) {
+        this.requests += requests;
+        this.successes += successes;
+        this.timeouts += timeouts;
+    }
+
+    public void addLatency(double latencyMs) {
+        latencySum += latencyMs;
+        latencies.record(latencyMs);
+    }
+
+    /**
+     * Status d'une ligne (0 si absent)
+     */
+    public void addStatusCode(int statusCode) {
+        statusCodes().record(statusCode);
+    }
+
+    /**
+     * Ajouter des compteurs sans distribution (jauges metrics_log) : les percentiles
+     * et status codes ne reflètent alors plus la totalité des requêtes
+     */
+    public void addCounts(long requests, long successes, long timeouts, double latencySum) {
+        this.requests += requests;
+        this.successes += successes;
+        this.timeouts += timeouts;
+        this.latencySum += latencySum;
+    }
+
+    /**
+     * Fusionner un autre agrégat dans celui-ci
+     */
+    public void merge(LogAggregate other) {
+        requests += other.requests;
+        successes += other.successes;
+        timeouts += other.timeouts;
+        latencySum += other.latencySum;
+        latencies.merge(other.latencies);
+        if (other.statusCodes != null) {
+            statusCodes().merge(other.statusCodes);
+        }
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getSuccesses() {
+        return successes;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public double getLatencySumMs() {
+        return latencySum;
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return latencies;
+    }
+
+    /**
+     * Status codes observés (histogramme vide si aucun)
+     */
+    public StatusCodeHistogram getStatusCodes() {
+        return statusCodes != null ? statusCodes : new StatusCodeHistogram();
+    }
+
+    /**
+     * Erreurs : toute ligne qui n'est pas explicitement en succès
+     */
+    public long getErrors() {
+        return requests - successes;
+    }
+
+    /**
+     * Latence moyenne, les lignes sans latence comptant pour 0
+     */
+    public double getAvgLatencyMs() {
+        return requests > 0 ? latencySum / requests : 0.0;
+    }
+
+    public double getErrorRate() {
+        return requests > 0 ? (getErrors() * 100.0 / requests) : 0.0;
+    }
+
+    /**
+     * Percentile de latence (0-100) estimé depuis le sketch
+     */
+    public double getLatencyPercentile(double percentile) {
+        return latencies.percentile(percentile);
+    }
+
+    public double getSuccessRate() {
+        return requests > 0 ? (successes * 100.0 / requests) : 0.0;
+    }
+
+    /**
+     * Encodage en colonnes (valeurs texte) pour une ligne de rollup ; seuls les compteurs non nuls sont écrits
+     */
+    public Map<String, String> toColumns() {
+        Map<String, String> columns = new HashMap<>();
+        columns.put("requests", String.valueOf(requests));
+        columns.put("successes", String.valueOf(successes));
+        columns.put("timeouts", String.valueOf(timeouts));
+        columns.put("latency_sum", String.valueOf(latencySum));
+        for (int i = 0; i < latencies.getBucketCount(); i++) {
+            if (latencies.getCount(i) > 0) {
+                columns.put("lat_" + i, String.valueOf(latencies.getCount(i)));
+            }
+        }
+        if (statusCodes != null) {
+            statusCodes.forEach((code, count) -> columns.put("status_" + code, String.valueOf(count)));
+        }
+        return columns;
+    }
+
+    /**
+     * Ajouter une ligne de rollup encodée par {@link #toColumns()}
+     */
+    public void addColumns(Map<String, String> columns) {
+        for (Map.Entry<String, String> column : columns.entrySet()) {
+            String name = column.getKey();
+            String value = column.getValue();
+            try {
+                if (name.equals("requests")) {
+                    requests += Long.parseLong(value);
+                } else if (name.equals("successes")) {
+                    successes += Long.parseLong(value);
+                } else if (name.equals("timeouts")) {
+                    timeouts += Long.parseLong(value);
+                } else if (name.equals("latency_sum")) {
+                    latencySum += Double.parseDouble(value);
+                } else if (name.startsWith("lat_")) {
+                    int bucket = Integer.parseInt(name.substring(4));
+                    if (bucket < latencies.getBucketCount()) {
+                        latencies.addToBucket(bucket, Long.parseLong(value));
+                    }
+                } else if (name.startsWith("status_")) {
+                    statusCodes().record(Integer.parseInt(name.substring(7)), Long.parseLong(value));
+                }
+            } catch (NumberFormatException e) {
+                // Colonne illisible : ignorée
+            }
+        }
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(requests);
+        out.writeLong(successes);
+        out.writeLong(timeouts);
+        out.writeDouble(latencySum);
+        out.writeInt(latencies.getBucketCount());
+        for (int i = 0; i < latencies.getBucketCount(); i++) {
+            out.writeLong(latencies.getCount(i));
+        }
+        StatusCodeHistogram codes = getStatusCodes();
+        int[] present = codes.topCodes(Integer.MAX_VALUE);
+        out.writeInt(present.length);
+        for (int code : present) {
+            out.writeInt(code);
+            out.writeLong(codes.getCount(code));
+        }
+    }
+
+    public static LogAggregate readFrom(DataInput in) throws IOException {
+        LogAggregate aggregate = new LogAggregate();
+        aggregate.requests = in.readLong();
+        aggregate.successes = in.readLong();
+        aggregate.timeouts = in.readLong();
+        aggregate.latencySum = in.readDouble();
+        int buckets = in.readInt();
+        if (buckets != aggregate.latencies.getBucketCount()) {
+            throw new IOException("Unexpected latency bucket count: " + buckets);
+        }
+        for (int i = 0; i < buckets; i++) {
+            aggregate.latencies.addToBucket(i, in.readLong());
+        }
+        int codes = in.readInt();
+        for (int i = 0; i < codes; i++) {
+            aggregate.statusCodes().record(in.readInt(), in.readLong());
+        }
+        return aggregate;
+    }
+
+    private StatusCodeHistogram statusCodes() {
+        if (statusCodes == null) {
+            statusCodes = new StatusCodeHistogram();
+        }
+        return statusCodes;
+    }
+}
@@ -0,0 +1,40 @@
+package com.gutouch.monitoring.aggregate;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Source de données d'une métrique, de la moins coûteuse à la plus coûteuse
+ */
+public enum MetricSource {
+
+    /** Jauges par minute (compteurs, moyennes) : pas de distribution fusionnable */
+    METRICS_LOG("metrics_log"),
+    /** Rollups horaires : compteurs et distributions exacts, heures closes uniquement */
+    ROLLUP("rollup"),
+    /** Logs bruts : toute résolution, coût proportionnel au volume */
+    RAW_LOG("raw_log");
+
+    private final String label;
+
+    MetricSource(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Libellé d'un ensemble de sources ("rollup+metrics_log"), "none" si aucune lecture
+     */
+    public static String describe(Set<MetricSource> sources) {
+        if (sources == null || sources.isEmpty()) {
+            return "none";
+        }
+        return sources.stream()
+                .sorted()
+                .map(MetricSource::getLabel)
+                .collect(Collectors.joining("+"));
+    }
+}
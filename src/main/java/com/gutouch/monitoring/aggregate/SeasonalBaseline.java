@@ -0,0 +1,89 @@
+package com.gutouch.monitoring.aggregate;
+
+/**
+ * Baseline saisonnière incrémentale d'une métrique horaire.
+ *
+ * Tient une moyenne et une variance exponentielles (EWMA) par heure de la semaine (168),
+ * par heure du jour (24) et globale. L'estimation utilise le niveau le plus fin
+ * ayant assez d'observations : la saisonnalité hebdomadaire prend le relais de la
+ * journalière une fois quelques semaines vues.
+ */
+public class SeasonalBaseline {
+
+    private final double alpha;
+    private final int minSamples;
+
+    private final Ewma[] hourOfWeek = newSlots(168);
+    private final Ewma[] hourOfDay = newSlots(24);
+    private final Ewma global = new Ewma();
+
+    public SeasonalBaseline(double alpha, int minSamples) {
+        this.alpha = alpha;
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * Estimation attendue pour un créneau (0-167), null si pas encore assez d'historique
+     */
+    public Estimate estimate(int hourOfWeekSlot) {
+        Ewma weekly = hourOfWeek[hourOfWeekSlot];
+        if (weekly.samples >= minSamples) {
+            return weekly.toEstimate();
+        }
+        Ewma daily = hourOfDay[hourOfWeekSlot % 24];
+        if (daily.samples >= minSamples) {
+            return daily.toEstimate();
+        }
+        if (global.samples >= minSamples) {
+            return global.toEstimate();
+        }
+        return null;
+    }
+
+    /**
+     * Intégrer la valeur observée d'une heure close
+     */
+    public void update(int hourOfWeekSlot, double value) {
+        hourOfWeek[hourOfWeekSlot].update(value, alpha);
+        hourOfDay[hourOfWeekSlot % 24].update(value, alpha);
+        global.update(value, alpha);
+    }
+
+    private static Ewma[] newSlots(int count) {
+        Ewma[] slots = new Ewma[count];
+        for (int i = 0; i < count; i++) {
+            slots[i] = new Ewma();
+        }
+        return slots;
+    }
+
+    private static final class Ewma {
+        double mean;
+        double variance;
+        int samples;
+
+        void update(double value, double alpha) {
+            if (samples == 0) {
+                mean = value;
+                variance = 0.0;
+            } else {
+                // Les premières observations pèsent comme une moyenne simple
+                double weight = Math.max(alpha, 1.0 / (samples + 1));
+                double delta = value - mean;
+                mean += weight * delta;
+                variance = (1 - weight) * (variance + weight * delta * delta);
+            }
+            samples++;
+        }
+
+        Estimate toEstimate() {
+            return new Estimate(mean, Math.sqrt(variance), samples);
+        }
+    }
+
+    /**
+     * Valeur attendue et dispersion d'un créneau
+     */
+    public record Estimate(double mean, double stdDev, int samples) {
+    }
+}
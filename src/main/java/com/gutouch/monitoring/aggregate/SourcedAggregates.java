@@ -0,0 +1,25 @@
+package com.gutouch.monitoring.aggregate;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Agrégats par connector (clé "all" incluse) et sources lues pour les produire
+ */
+public record SourcedAggregates(Map<String, LogAggregate> byConnector, Set<MetricSource> sources) {
+
+    /**
+     * Agrégat d'un connector ("all" ou null pour tous), vide si absent
+     */
+    public LogAggregate get(String connector) {
+        LogAggregate aggregate = byConnector.get(connector == null || connector.isEmpty() ? "all" : connector);
+        return aggregate != null ? aggregate : new LogAggregate();
+    }
+
+    /**
+     * Sans jauges metrics_log : compteurs et distributions exacts
+     */
+    public boolean isExact() {
+        return !sources.contains(MetricSource.METRICS_LOG);
+    }
+}
@@ -0,0 +1,129 @@
+package com.gutouch.monitoring.buffer;
+
+import com.gutouch.monitoring.dto.LogEntry;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Index bitmap (Roaring) des champs catégoriels des logs d'un {@link OffHeapLogRing}.
+ *
+ * Un bitmap d'ordinaux par valeur : connector, type, status code et classe (2xx, 4xx...),
+ * success, timeout, IP client. Une combinaison de filtres devient une suite de AND sur les
+ * bitmaps, et son nombre de résultats une cardinalité, sans lire une seule ligne.
+ *
+ * Ordinaux sur 32 bits non signés. Non synchronisé, comme le tampon.
+ */
+public final class LogBitmapIndex {
+
+    private final Map<String, RoaringBitmap> connectors = new HashMap<>();
+    private final Map<String, RoaringBitmap> types = new HashMap<>();
+    private final Map<String, RoaringBitmap> statusCodes = new HashMap<>();
+    private final Map<String, RoaringBitmap> statusClasses = new HashMap<>();
+    private final Map<String, RoaringBitmap> clientIps = new HashMap<>();
+    private final Map<Boolean, RoaringBitmap> success = new HashMap<>();
+    private final Map<Boolean, RoaringBitmap> timeout = new HashMap<>();
+
+    public void add(long ordinal, LogEntry entry) {
+        int bit = (int) ordinal;
+        add(connectors, entry.getConnector(), bit);
+        add(types, entry.getType(), bit);
+        if (entry.getStatusCode() != null) {
+            String status = String.valueOf(entry.getStatusCode());
+            add(statusCodes, status, bit);
+            add(statusClasses, status.substring(0, 1), bit);
+        }
+        add(clientIps, entry.getClientIp(), bit);
+        add(success, entry.getSuccess(), bit);
+        add(timeout, entry.getTimeout(), bit);
+    }
+
+    /**
+     * Retirer les ordinaux évincés ; les valeurs qui n'ont plus de log disparaissent
+     */
+    public void removeBefore(long ordinal) {
+        removeBefore(connectors, ordinal);
+        removeBefore(types, ordinal);
+        removeBefore(statusCodes, ordinal);
+        removeBefore(statusClasses, ordinal);
+        removeBefore(clientIps, ordinal);
+        removeBefore(success, ordinal);
+        removeBefore(timeout, ordinal);
+    }
+
+    public void clear() {
+        connectors.clear();
+        types.clear();
+        statusCodes.clear();
+        statusClasses.clear();
+        clientIps.clear();
+        success.clear();
+        timeout.clear();
+    }
+
+    /**
+     * Ordinaux de [from, to) correspondant aux filtres (mêmes règles que la recherche de logs :
+     * null ou "all" ne filtre pas, un status "4xx" filtre la classe)
+     */
+    public RoaringBitmap select(long fromOrdinal, long toOrdinal, String connector, String type,
+                                String status, Boolean successFilter, Boolean timeoutFilter, String clientIp) {
+        RoaringBitmap result = RoaringBitmap.bitmapOfRange(fromOrdinal, toOrdinal);
+        if (connector != null && !connector.equals("all")) {
+            and(result, connectors.get(connector));
+        }
+        if (type != null && !type.equals("all")) {
+            and(result, types.get(type));
+        }
+        if (status != null && !status.isEmpty()) {
+            if (status.endsWith("xx")) {
+                and(result, statusClasses.get(status.substring(0, 1)));
+            } else {
+                and(result, statusCodes.get(status));
+            }
+        }
+        if (successFilter != null) {
+            and(result, success.get(successFilter));
+        }
+        if (timeoutFilter != null) {
+            and(result, timeout.get(timeoutFilter));
+        }
+        if (clientIp != null && !clientIp.isEmpty()) {
+            and(result, clientIps.get(clientIp));
+        }
+        return result;
+    }
+
+    /**
+     * Nombre d'ordinaux de la sélection dont success vaut cette valeur
+     */
+    public long countSuccess(RoaringBitmap selection, boolean value) {
+        RoaringBitmap bitmap = success.get(value);
+        return bitmap != null ? RoaringBitmap.andCardinality(selection, bitmap) : 0L;
+    }
+
+    private static void and(RoaringBitmap result, RoaringBitmap bitmap) {
+        if (bitmap == null) {
+            result.clear();
+        } else {
+            result.and(bitmap);
+        }
+    }
+
+    private static <K> void add(Map<K, RoaringBitmap> index, K value, int bit) {
+        if (value == null) return;
+        index.computeIfAbsent(value, v -> new RoaringBitmap()).add(bit);
+    }
+
+    private static <K> void removeBefore(Map<K, RoaringBitmap> index, long ordinal) {
+        Iterator<RoaringBitmap> bitmaps = index.values().iterator();
+        while (bitmaps.hasNext()) {
+            RoaringBitmap bitmap = bitmaps.next();
+            bitmap.remove(0L, ordinal);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove();
+            }
+        }
+    }
+}
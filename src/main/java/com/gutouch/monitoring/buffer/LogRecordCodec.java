@@ -0,0 +1,175 @@
+package com.gutouch.monitoring.buffer;
+
+import com.gutouch.monitoring.dto.LogEntry;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Encodage compact d'un {@link LogEntry} : [longueur int][timestamp long][flags][champs].
+ *
+ * Les booléens tiennent dans l'octet de flags, les champs absents ne coûtent rien (nombres)
+ * ou deux octets (chaînes). L'id n'est stocké que par son suffixe quand il suit le format
+ * de clé raw_log (timestamp#type#connector#uuid).
+ */
+final class LogRecordCodec {
+
+    static final int HEADER_SIZE = 4 + 8;
+
+    private static final int SUCCESS_PRESENT = 1;
+    private static final int SUCCESS_VALUE = 1 << 1;
+    private static final int TIMEOUT_PRESENT = 1 << 2;
+    private static final int TIMEOUT_VALUE = 1 << 3;
+    private static final int STATUS_PRESENT = 1 << 4;
+    private static final int LATENCY_PRESENT = 1 << 5;
+    private static final int ID_SUFFIX = 1 << 6;
+
+    private static final int NULL_STRING = 0xFFFF;
+    private static final int MAX_STRING_BYTES = 0xFFFE;
+
+    private LogRecordCodec() {
+    }
+
+    /**
+     * Encoder un log à partir de la position 0 du tampon
+     *
+     * @return la longueur de l'enregistrement
+     * @throws java.nio.BufferOverflowException si le tampon est trop petit
+     */
+    static int encode(LogEntry entry, ByteBuffer out) {
+        out.clear();
+        long timestamp = entry.getTimestamp() != null ? entry.getTimestamp().toEpochMilli() : 0L;
+        String keyPrefix = keyPrefix(timestamp, entry);
+        boolean idSuffix = entry.getId() != null && entry.getId().startsWith(keyPrefix);
+
+        int flags = 0;
+        if (entry.getSuccess() != null) {
+            flags |= SUCCESS_PRESENT | (entry.getSuccess() ? SUCCESS_VALUE : 0);
+        }
+        if (entry.getTimeout() != null) {
+            flags |= TIMEOUT_PRESENT | (entry.getTimeout() ? TIMEOUT_VALUE : 0);
+        }
+        if (entry.getStatusCode() != null) flags |= STATUS_PRESENT;
+        if (entry.getResponseTimeMs() != null) flags |= LATENCY_PRESENT;
+        if (idSuffix) flags |= ID_SUFFIX;
+
+        out.putInt(0); // longueur, écrite à la fin
+        out.putLong(timestamp);
+        out.put((byte) flags);
+        if (entry.getStatusCode() != null) out.putInt(entry.getStatusCode());
+        if (entry.getResponseTimeMs() != null) out.putDouble(entry.getResponseTimeMs());
+
+        putString(out, idSuffix ? entry.getId().substring(keyPrefix.length()) : entry.getId());
+        putString(out, entry.getType());
+        putString(out, entry.getConnector());
+        putString(out, entry.getMethod());
+        putString(out, entry.getPath());
+        putString(out, entry.getClientIp());
+        putString(out, entry.getServiceStatus());
+        putString(out, entry.getError());
+        putString(out, entry.getMessageId());
+        putString(out, entry.getEndToEndId());
+        putString(out, entry.getService());
+        putString(out, entry.getMessage());
+
+        int length = out.position();
+        out.putInt(0, length);
+        return length;
+    }
+
+    static int length(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset);
+    }
+
+    static long timestamp(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + 4);
+    }
+
+    /**
+     * Latence de l'enregistrement à cet offset, null si absente
+     */
+    static Double latency(ByteBuffer buffer, int offset) {
+        int flags = buffer.get(offset + HEADER_SIZE);
+        if ((flags & LATENCY_PRESENT) == 0) return null;
+
+        int position = offset + HEADER_SIZE + 1 + ((flags & STATUS_PRESENT) != 0 ? 4 : 0);
+        return buffer.getDouble(position);
+    }
+
+    /**
+     * Décoder l'enregistrement à cet offset (lectures absolues, sans modifier le tampon)
+     */
+    static LogEntry decode(ByteBuffer buffer, int offset) {
+        long timestamp = timestamp(buffer, offset);
+        int flags = buffer.get(offset + HEADER_SIZE);
+        int[] position = {offset + HEADER_SIZE + 1};
+
+        Integer statusCode = null;
+        if ((flags & STATUS_PRESENT) != 0) {
+            statusCode = buffer.getInt(position[0]);
+            position[0] += 4;
+        }
+        Double responseTimeMs = null;
+        if ((flags & LATENCY_PRESENT) != 0) {
+            responseTimeMs = buffer.getDouble(position[0]);
+            position[0] += 8;
+        }
+
+        String id = getString(buffer, position);
+        LogEntry entry = LogEntry.builder()
+                .timestamp(Instant.ofEpochMilli(timestamp))
+                .type(getString(buffer, position))
+                .connector(getString(buffer, position))
+                .method(getString(buffer, position))
+                .path(getString(buffer, position))
+                .clientIp(getString(buffer, position))
+                .serviceStatus(getString(buffer, position))
+                .error(getString(buffer, position))
+                .messageId(getString(buffer, position))
+                .endToEndId(getString(buffer, position))
+                .service(getString(buffer, position))
+                .message(getString(buffer, position))
+                .statusCode(statusCode)
+                .responseTimeMs(responseTimeMs)
+                .success((flags & SUCCESS_PRESENT) != 0 ? (flags & SUCCESS_VALUE) != 0 : null)
+                .timeout((flags & TIMEOUT_PRESENT) != 0 ? (flags & TIMEOUT_VALUE) != 0 : null)
+                .build();
+        entry.setId((flags & ID_SUFFIX) != 0 ? keyPrefix(timestamp, entry) + id : id);
+        return entry;
+    }
+
+    private static String keyPrefix(long timestamp, LogEntry entry) {
+        return String.format("%013d#%s#%s#", timestamp,
+                entry.getType() != null ? entry.getType() : "",
+                entry.getConnector() != null ? entry.getConnector() : "");
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort((short) NULL_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        // Chaînes démesurées (stack traces) tronquées, sans couper un caractère multi-octets
+        int length = Math.min(bytes.length, MAX_STRING_BYTES);
+        if (length < bytes.length) {
+            while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+                length--;
+            }
+        }
+        out.putShort((short) length);
+        out.put(bytes, 0, length);
+    }
+
+    private static String getString(ByteBuffer buffer, int[] position) {
+        int length = Short.toUnsignedInt(buffer.getShort(position[0]));
+        position[0] += 2;
+        if (length == NULL_STRING) return null;
+
+        byte[] bytes = new byte[length];
+        buffer.get(position[0], bytes);
+        position[0] += length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,162 @@
+package com.gutouch.monitoring.buffer;
+
+import com.gutouch.monitoring.dto.LogEntry;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Index inversé de trigrammes des champs texte recherchés (path, IP client, messageId,
+ * error, message), en minuscules, sur les ordinaux d'un {@link OffHeapLogRing}.
+ *
+ * Une recherche de sous-chaîne intersecte les listes de ses trigrammes (plus rares d'abord) ;
+ * les candidats restent à vérifier par l'appelant (trigrammes de champs différents).
+ * Un champ trop long n'est pas indexé : sa ligne reste candidate pour toute recherche.
+ *
+ * Listes tenues par bloc de 2^16 ordinaux : l'éviction retire les blocs entiers dépassés
+ * sans parcourir les listes ; le bloc le plus ancien peut garder des ordinaux évincés,
+ * que l'appelant écarte en restreignant les candidats à la plage du tampon.
+ *
+ * Ordinaux sur 32 bits non signés. Non synchronisé, comme le tampon.
+ */
+public final class LogTrigramIndex {
+
+    private static final int MAX_INDEXED_CHARS = 256;
+    private static final int BLOCK_BITS = 16;
+
+    // Blocs par ordinaux croissants
+    private final ArrayDeque<Block> blocks = new ArrayDeque<>();
+    private final RoaringBitmap unindexed = new RoaringBitmap();
+    private long[] scratch = new long[256];
+
+    public void add(long ordinal, LogEntry entry) {
+        int bit = (int) ordinal;
+        int count = 0;
+        boolean complete = true;
+        for (String value : new String[]{entry.getPath(), entry.getClientIp(), entry.getMessageId(),
+                entry.getError(), entry.getMessage()}) {
+            if (value == null || value.length() < 3) continue;
+            if (value.length() > MAX_INDEXED_CHARS) {
+                complete = false;
+                continue;
+            }
+            String text = value.toLowerCase(Locale.ROOT);
+            if (count + text.length() > scratch.length) {
+                scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, count + text.length()));
+            }
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                scratch[count++] = trigram(text, i);
+            }
+        }
+        if (!complete) {
+            unindexed.add(bit);
+        }
+
+        // Ordinaux croissants : un nouveau bloc dès que le dernier est dépassé
+        long first = ordinal >>> BLOCK_BITS << BLOCK_BITS;
+        Block block = blocks.peekLast();
+        if (block == null || block.first != first) {
+            block = new Block(first);
+            blocks.addLast(block);
+        }
+
+        // Une entrée par trigramme distinct de la ligne
+        Arrays.sort(scratch, 0, count);
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && scratch[i] == scratch[i - 1]) continue;
+            block.postings.computeIfAbsent(scratch[i], t -> new RoaringBitmap()).add(bit);
+        }
+    }
+
+    /**
+     * Ordinaux pouvant contenir cette sous-chaîne (insensible à la casse) ;
+     * null si elle est trop courte pour élaguer
+     */
+    public RoaringBitmap candidates(String query) {
+        String text = query.toLowerCase(Locale.ROOT);
+        if (text.length() < 3) return null;
+
+        long[] trigrams = new long[text.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = trigram(text, i);
+        }
+        RoaringBitmap result = new RoaringBitmap();
+        for (Block block : blocks) {
+            RoaringBitmap matching = block.candidates(trigrams);
+            if (matching != null) {
+                result.or(matching);
+            }
+        }
+        result.or(unindexed);
+        return result;
+    }
+
+    /**
+     * Retirer les ordinaux évincés : blocs entièrement dépassés seulement
+     */
+    public void removeBefore(long ordinal) {
+        while (!blocks.isEmpty() && blocks.peekFirst().first + (1L << BLOCK_BITS) <= ordinal) {
+            blocks.pollFirst();
+        }
+        unindexed.remove(0L, ordinal);
+    }
+
+    public void clear() {
+        blocks.clear();
+        unindexed.clear();
+    }
+
+    /**
+     * Nombre de listes, un trigramme comptant une fois par bloc où il apparaît
+     */
+    public int trigramCount() {
+        int count = 0;
+        for (Block block : blocks) {
+            count += block.postings.size();
+        }
+        return count;
+    }
+
+    private static long trigram(String text, int index) {
+        return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+    }
+
+    /**
+     * Listes de trigrammes des ordinaux de [first, first + 2^16)
+     */
+    private static final class Block {
+
+        private final long first;
+        private final Map<Long, RoaringBitmap> postings = new HashMap<>();
+
+        Block(long first) {
+            this.first = first;
+        }
+
+        /**
+         * Intersection des listes de ces trigrammes (plus rares d'abord) ; null si l'un manque
+         */
+        RoaringBitmap candidates(long[] trigrams) {
+            List<RoaringBitmap> lists = new ArrayList<>(trigrams.length);
+            for (long trigram : trigrams) {
+                RoaringBitmap posting = postings.get(trigram);
+                if (posting == null) return null;
+                lists.add(posting);
+            }
+
+            lists.sort(Comparator.comparingLong(RoaringBitmap::getLongCardinality));
+            RoaringBitmap result = lists.get(0).clone();
+            for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+                result.and(lists.get(i));
+            }
+            return result;
+        }
+    }
+}
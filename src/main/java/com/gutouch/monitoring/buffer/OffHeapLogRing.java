@@ -0,0 +1,253 @@
+package com.gutouch.monitoring.buffer;
+
+import com.gutouch.monitoring.dto.LogEntry;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Tampon circulaire hors tas de logs encodés (cf. {@link LogRecordCodec}).
+ *
+ * Les enregistrements sont ajoutés par timestamp croissant dans un ByteBuffer direct de
+ * taille fixe ; quand la place manque, les plus anciens sont évincés. Un enregistrement
+ * n'est jamais coupé : s'il ne tient pas en fin de tampon, l'écriture reprend au début
+ * derrière un marqueur. Les logs ne pèsent ainsi rien sur le GC.
+ *
+ * Chaque log reçoit un ordinal croissant (accès direct par ordinal, recherche dichotomique
+ * par timestamp) ; les ordinaux des logs évincés ne sont jamais réutilisés avant {@link #rebase()}.
+ *
+ * Non synchronisé : un seul écrivain, lecteurs concurrents exclus des écritures par l'appelant.
+ */
+public final class OffHeapLogRing {
+
+    private static final int WRAP_MARKER = -1;
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+    // Enregistrements dans [head, tail), ou [head, marqueur) puis [0, tail) si wrapped
+    private int head;
+    private int tail;
+    private boolean wrapped;
+    private int count;
+    private long evictedUntil = Long.MIN_VALUE;
+
+    // Position de chaque enregistrement, par ordinal depuis firstOrdinal (tableau circulaire)
+    private int[] positions = new int[1024];
+    private int positionsHead;
+    private long firstOrdinal;
+
+    public OffHeapLogRing(int capacityBytes) {
+        this.buffer = ByteBuffer.allocateDirect(capacityBytes);
+        this.capacity = capacityBytes;
+    }
+
+    /**
+     * Ajouter un log (timestamp supérieur ou égal aux précédents), en évinçant les plus anciens
+     *
+     * @return l'ordinal du log, -1 s'il est plus grand que le tampon (tout ce qui précède est évincé)
+     */
+    public long append(LogEntry entry) {
+        int length = encode(entry);
+        if (length > capacity) {
+            evictBefore(Long.MAX_VALUE);
+            evictedUntil = Math.max(evictedUntil, LogRecordCodec.timestamp(scratch, 0));
+            return -1L;
+        }
+
+        reserve(length);
+        buffer.put(tail, scratch, 0, length);
+        if (count == positions.length) {
+            int[] grown = new int[positions.length * 2];
+            for (int i = 0; i < count; i++) {
+                grown[i] = positions[(positionsHead + i) % positions.length];
+            }
+            positions = grown;
+            positionsHead = 0;
+        }
+        positions[(positionsHead + count) % positions.length] = tail;
+        tail += length;
+        count++;
+        return firstOrdinal + count - 1;
+    }
+
+    /**
+     * Ordinal du plus ancien log présent
+     */
+    public long firstOrdinal() {
+        return firstOrdinal;
+    }
+
+    /**
+     * Ordinal du prochain log ajouté
+     */
+    public long nextOrdinal() {
+        return firstOrdinal + count;
+    }
+
+    /**
+     * Log d'un ordinal présent
+     */
+    public LogEntry get(long ordinal) {
+        return LogRecordCodec.decode(buffer, position(ordinal));
+    }
+
+    public long timestamp(long ordinal) {
+        return LogRecordCodec.timestamp(buffer, position(ordinal));
+    }
+
+    /**
+     * Latence d'un ordinal présent, sans décoder le reste de l'enregistrement
+     */
+    public Double latency(long ordinal) {
+        return LogRecordCodec.latency(buffer, position(ordinal));
+    }
+
+    /**
+     * Premier ordinal de timestamp supérieur ou égal (nextOrdinal si aucun)
+     */
+    public long lowerBound(long timestampMillis) {
+        long low = firstOrdinal;
+        long high = nextOrdinal();
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (timestamp(middle) < timestampMillis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Repartir de l'ordinal 0 ; le tampon doit être vide
+     */
+    public void rebase() {
+        if (count != 0) {
+            throw new IllegalStateException("Ring is not empty");
+        }
+        firstOrdinal = 0L;
+    }
+
+    /**
+     * Évincer les logs de timestamp antérieur à cette borne
+     */
+    public void evictBefore(long timestampMillis) {
+        while (count > 0 && LogRecordCodec.timestamp(buffer, head) < timestampMillis) {
+            evictHead();
+        }
+    }
+
+    /**
+     * Parcourir les logs de [début, fin) par timestamp croissant
+     */
+    public void forEach(long startMillis, long endMillis, Consumer<LogEntry> consumer) {
+        int position = head;
+        for (int i = 0; i < count; i++) {
+            if (atWrap(position)) {
+                position = 0;
+            }
+            long timestamp = LogRecordCodec.timestamp(buffer, position);
+            if (timestamp >= endMillis) break;
+            if (timestamp >= startMillis) {
+                consumer.accept(LogRecordCodec.decode(buffer, position));
+            }
+            position += LogRecordCodec.length(buffer, position);
+        }
+    }
+
+    public void clear() {
+        firstOrdinal += count;
+        head = 0;
+        tail = 0;
+        wrapped = false;
+        count = 0;
+        positionsHead = 0;
+        evictedUntil = Long.MIN_VALUE;
+    }
+
+    /**
+     * Timestamp le plus récent parmi les logs évincés, Long.MIN_VALUE si aucun
+     */
+    public long getEvictedUntil() {
+        return evictedUntil;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long usedBytes() {
+        if (count == 0) return 0L;
+        return wrapped ? (capacity - head) + tail : tail - head;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    private int encode(LogEntry entry) {
+        while (true) {
+            try {
+                return LogRecordCodec.encode(entry, scratch);
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Libérer une plage contiguë de cette longueur en tail
+     */
+    private void reserve(int length) {
+        while (true) {
+            if (count == 0) {
+                head = 0;
+                tail = 0;
+                wrapped = false;
+            }
+            if (!wrapped) {
+                if (capacity - tail >= length) return;
+                // Fin de tampon trop courte : reprendre au début
+                if (capacity - tail >= 4) {
+                    buffer.putInt(tail, WRAP_MARKER);
+                }
+                tail = 0;
+                wrapped = true;
+            } else {
+                if (head - tail >= length) return;
+                evictHead();
+            }
+        }
+    }
+
+    private void evictHead() {
+        evictedUntil = Math.max(evictedUntil, LogRecordCodec.timestamp(buffer, head));
+        head += LogRecordCodec.length(buffer, head);
+        count--;
+        firstOrdinal++;
+        positionsHead = (positionsHead + 1) % positions.length;
+        if (count == 0) {
+            head = 0;
+            tail = 0;
+            wrapped = false;
+        } else if (wrapped && atWrap(head)) {
+            head = 0;
+            wrapped = false;
+        }
+    }
+
+    private int position(long ordinal) {
+        if (ordinal < firstOrdinal || ordinal >= nextOrdinal()) {
+            throw new IndexOutOfBoundsException("Ordinal " + ordinal + " evicted or not yet appended");
+        }
+        return positions[(int) ((positionsHead + (ordinal - firstOrdinal)) % positions.length)];
+    }
+
+    private boolean atWrap(int position) {
+        return capacity - position < 4 || buffer.getInt(position) == WRAP_MARKER;
+    }
+}
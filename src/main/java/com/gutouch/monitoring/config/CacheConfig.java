@@ -0,0 +1,96 @@
+package com.gutouch.monitoring.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gutouch.monitoring.util.SizeEstimator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.CompositeCacheManager;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches applicatifs : une spec Caffeine par région.
+ *
+ * Une spec avec maximumWeight est pesée en octets estimés ({@link SizeEstimator}) ;
+ * une spec avec refreshAfterWrite est servie en stale-while-revalidate, et aucune région
+ * ne stocke de résultat dégradé ({@link StaleServingCaffeineCache}). Les régions
+ * non configurées utilisent la spec par défaut. Avec recordStats, les statistiques sont
+ * exportées par actuator (cache.gets, cache.puts, cache.evictions, ...).
+ */
+@Configuration
+@ConfigurationProperties(prefix = "cache")
+@Slf4j
+public class CacheConfig {
+
+    private String defaultSpec = "maximumSize=1000,expireAfterWrite=5m,recordStats";
+    private Map<String, String> specs = new LinkedHashMap<>();
+
+    // Getters et Setters
+    public String getDefaultSpec() {
+        return defaultSpec;
+    }
+
+    public void setDefaultSpec(String defaultSpec) {
+        this.defaultSpec = defaultSpec;
+    }
+
+    public Map<String, String> getSpecs() {
+        return specs;
+    }
+
+    public void setSpecs(Map<String, String> specs) {
+        this.specs = specs;
+    }
+
+    @Bean
+    public CacheManager cacheManager() {
+        List<Cache> caches = new ArrayList<>();
+        specs.forEach((name, spec) -> {
+            caches.add(buildCache(name, spec));
+            log.info("Cache region {}: {}", name, spec);
+        });
+
+        SimpleCacheManager regions = new SimpleCacheManager();
+        regions.setCaches(caches);
+        regions.afterPropertiesSet();
+
+        // Régions non configurées : créées à la demande avec la spec par défaut, même comportement
+        Map<String, Cache> defaults = new ConcurrentHashMap<>();
+        CacheManager fallback = new CacheManager() {
+            @Override
+            public Cache getCache(String name) {
+                return defaults.computeIfAbsent(name, n -> {
+                    log.info("Cache region {} (default): {}", n, defaultSpec);
+                    return buildCache(n, defaultSpec);
+                });
+            }
+
+            @Override
+            public Collection<String> getCacheNames() {
+                return Collections.unmodifiableSet(defaults.keySet());
+            }
+        };
+
+        return new CompositeCacheManager(regions, fallback);
+    }
+
+    private static Cache buildCache(String name, String spec) {
+        Caffeine<Object, Object> builder = Caffeine.from(spec);
+        if (spec.contains("maximumWeight")) {
+            builder.weigher((key, value) ->
+                    (int) Math.min(Integer.MAX_VALUE, SizeEstimator.estimate(key) + SizeEstimator.estimate(value)));
+        }
+        return StaleServingCaffeineCache.build(name, builder, spec.contains("refreshAfterWrite"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.gutouch.monitoring.config;
+
+/**
+ * Fraîcheur des données servies sur le thread courant.
+ *
+ * Un service qui avale une erreur de lecture marque son résultat comme dégradé : les caches
+ * ne le stockent pas et gardent la dernière valeur correcte. Pour une requête HTTP, l'âge
+ * et l'état des entrées servies sont relevés puis exposés en en-têtes de réponse.
+ */
+public final class CacheFreshness {
+
+    private static final ThreadLocal<Boolean> DEGRADED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    private static final ThreadLocal<Served> SERVED = new ThreadLocal<>();
+
+    private CacheFreshness() {
+    }
+
+    /**
+     * Entrées de cache servies pendant la requête : âge maximal et présence d'une entrée périmée
+     */
+    public record Served(long maxAgeMillis, boolean stale) {
+    }
+
+    /**
+     * Marquer le résultat en cours comme incomplet (erreur de lecture avalée)
+     */
+    public static void markDegraded() {
+        DEGRADED.set(Boolean.TRUE);
+    }
+
+    public static boolean isDegraded() {
+        return DEGRADED.get();
+    }
+
+    /**
+     * Isoler un calcul : renvoie le marqueur précédent et le remet à zéro
+     */
+    public static boolean beginLoad() {
+        boolean previous = DEGRADED.get();
+        DEGRADED.set(Boolean.FALSE);
+        return previous;
+    }
+
+    /**
+     * Fin d'un calcul isolé : restaure le marqueur précédent, renvoie vrai si le calcul était dégradé
+     */
+    public static boolean endLoad(boolean previous) {
+        boolean degraded = DEGRADED.get();
+        DEGRADED.set(previous);
+        return degraded;
+    }
+
+    /**
+     * Relever une entrée servie depuis un cache
+     */
+    public static void recordServed(long ageMillis, boolean stale) {
+        Served served = SERVED.get();
+        if (served == null) {
+            SERVED.set(new Served(ageMillis, stale));
+        } else {
+            SERVED.set(new Served(Math.max(served.maxAgeMillis(), ageMillis), served.stale() || stale));
+        }
+    }
+
+    /**
+     * Entrées servies depuis le début de la requête, null si aucune
+     */
+    public static Served served() {
+        return SERVED.get();
+    }
+
+    /**
+     * Réinitialiser l'état du thread (début et fin de requête)
+     */
+    public static void reset() {
+        DEGRADED.remove();
+        SERVED.remove();
+    }
+}
@@ -0,0 +1,44 @@
+package com.gutouch.monitoring.config;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * En-têtes de fraîcheur des réponses :
+ * - Age : âge (secondes) de la plus ancienne entrée de cache servie ;
+ * - X-Cache-Stale : une entrée servie attendait son recalcul (en cours ou en échec) ;
+ * - X-Data-Degraded : une partie des données n'a pas pu être lue.
+ */
+@ControllerAdvice
+public class CacheFreshnessAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String STALE_HEADER = "X-Cache-Stale";
+    public static final String DEGRADED_HEADER = "X-Data-Degraded";
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        HttpHeaders headers = response.getHeaders();
+        CacheFreshness.Served served = CacheFreshness.served();
+        if (served != null) {
+            headers.set(HttpHeaders.AGE, String.valueOf(served.maxAgeMillis() / 1000));
+            headers.set(STALE_HEADER, String.valueOf(served.stale()));
+        }
+        if (CacheFreshness.isDegraded()) {
+            headers.set(DEGRADED_HEADER, "true");
+        }
+        return body;
+    }
+}
@@ -0,0 +1,28 @@
+package com.gutouch.monitoring.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Réinitialiser l'état de fraîcheur du thread autour de chaque requête
+ */
+@Component
+public class CacheFreshnessFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        CacheFreshness.reset();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            CacheFreshness.reset();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.gutouch.monitoring.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -59,6 +60,7 @@ public class CorsConfig {
                         .allowedOrigins(allowedOrigins.toArray(new String[0]))
                         .allowedMethods(allowedMethods.toArray(new String[0]))
                         .allowedHeaders("*")
+                        .exposedHeaders(HttpHeaders.AGE, CacheFreshnessAdvice.STALE_HEADER, CacheFreshnessAdvice.DEGRADED_HEADER)
                         // .allowCredentials(true)  // Commentez ou supprimez cette ligne
                         .maxAge(maxAge);
             }
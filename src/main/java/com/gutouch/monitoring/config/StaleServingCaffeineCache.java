@@ -0,0 +1,261 @@
+package com.gutouch.monitoring.config;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Policy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.NullValue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Cache Caffeine qui ne remplace jamais une valeur correcte par un résultat dégradé.
+ *
+ * - Un résultat marqué dégradé ({@link CacheFreshness#markDegraded()}) est renvoyé à
+ *   l'appelant sans être stocké.
+ * - Avec refreshAfterWrite (méthodes {@code @Cacheable(sync = true)}) : le loader de chaque
+ *   clé est mémorisé ; une entrée plus vieille que refreshAfterWrite est servie telle quelle
+ *   et recalculée en arrière-plan (stale-while-revalidate). Si le recalcul échoue ou est
+ *   dégradé, la dernière valeur correcte reste servie jusqu'à expireAfterWrite (stale-on-error),
+ *   et la clé n'est pas recalculée avant un nouvel intervalle de refresh.
+ * - L'âge de chaque entrée servie est relevé pour les en-têtes de réponse ; une entrée
+ *   restaurée d'un snapshot garde l'âge qu'elle avait à l'écriture du snapshot, pour le
+ *   refresh comme pour l'expiration.
+ */
+@Slf4j
+public class StaleServingCaffeineCache extends CaffeineCache {
+
+    private final Map<Object, Callable<?>> loaders;
+    private final Map<Object, Long> restoredAges;
+    private final boolean refreshing;
+
+    private StaleServingCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache,
+                                      Map<Object, Callable<?>> loaders, Map<Object, Long> restoredAges,
+                                      boolean refreshing) {
+        super(name, cache, true);
+        this.loaders = loaders;
+        this.restoredAges = restoredAges;
+        this.refreshing = refreshing;
+    }
+
+    /**
+     * Entrée lue pour un snapshot : valeur non nulle et âge (ms)
+     */
+    public record Entry(Object key, Object value, long ageMillis) {
+    }
+
+    /**
+     * Construire le cache ; refreshing si la spec contient refreshAfterWrite
+     */
+    public static StaleServingCaffeineCache build(String name, Caffeine<Object, Object> builder, boolean refreshing) {
+        Map<Object, Callable<?>> loaders = new ConcurrentHashMap<>();
+        Map<Object, Long> restoredAges = new ConcurrentHashMap<>();
+        // Après un recalcul abandonné, pas de nouvel essai pour la clé avant un intervalle de refresh
+        Map<Object, Long> retryAt = new ConcurrentHashMap<>();
+        builder.evictionListener((key, value, cause) -> {
+            loaders.remove(key);
+            restoredAges.remove(key);
+            retryAt.remove(key);
+        });
+        if (!refreshing) {
+            return new StaleServingCaffeineCache(name, builder.build(), loaders, restoredAges, false);
+        }
+
+        long[] backoffNanos = new long[1];
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> cache = builder
+                .build(new CacheLoader<>() {
+                    @Override
+                    public Object load(Object key) {
+                        // Lecture hors sync : pas de valeur, l'aspect de cache calcule et insère
+                        return null;
+                    }
+
+                    @Override
+                    public CompletableFuture<Object> asyncReload(Object key, Object oldValue, Executor executor) {
+                        // Recalcul abandonné : future annulée, que Caffeine ignore sans journaliser
+                        // (la valeur en place est gardée sans être rajeunie)
+                        CompletableFuture<Object> future = new CompletableFuture<>();
+                        Callable<?> loader = loaders.get(key);
+                        Long retry = retryAt.get(key);
+                        if (loader == null || (retry != null && System.nanoTime() - retry < 0)) {
+                            future.cancel(false);
+                            return future;
+                        }
+
+                        executor.execute(() -> {
+                            boolean previous = CacheFreshness.beginLoad();
+                            Object value = null;
+                            boolean failed = false;
+                            boolean degraded;
+                            try {
+                                value = loader.call();
+                            } catch (Exception e) {
+                                failed = true;
+                                log.warn("Refresh of {}[{}] failed, keeping the last good value: {}", name, key, e.toString());
+                            } finally {
+                                degraded = CacheFreshness.endLoad(previous);
+                            }
+                            if (failed || degraded) {
+                                retryAt.put(key, System.nanoTime() + backoffNanos[0]);
+                                future.cancel(false);
+                                return;
+                            }
+                            retryAt.remove(key);
+                            restoredAges.remove(key);
+                            future.complete(value != null ? value : NullValue.INSTANCE);
+                        });
+                        return future;
+                    }
+                });
+        backoffNanos[0] = cache.policy().refreshAfterWrite()
+                .map(refresh -> refresh.getRefreshesAfter().toNanos())
+                .orElse(0L);
+        return new StaleServingCaffeineCache(name, cache, loaders, restoredAges, true);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        if (refreshing) {
+            loaders.put(key, valueLoader);
+        }
+        expireIfRestoredTooOld(key);
+
+        Object[] unstored = new Object[1];
+        Object stored = getNativeCache().get(key, k -> {
+            boolean previous = CacheFreshness.beginLoad();
+            Object value;
+            boolean degraded;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            } finally {
+                degraded = CacheFreshness.endLoad(previous);
+            }
+            if (degraded) {
+                unstored[0] = value;
+                return null;
+            }
+            restoredAges.remove(key);
+            return toStoreValue(value);
+        });
+
+        if (stored == null) {
+            // Résultat dégradé : propagé à l'appelant, qui ne doit pas le stocker non plus
+            loaders.remove(key);
+            CacheFreshness.markDegraded();
+            return (T) unstored[0];
+        }
+        recordServed(key);
+        return (T) fromStoreValue(stored);
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        expireIfRestoredTooOld(key);
+        Object value = getNativeCache().getIfPresent(key);
+        if (value != null) {
+            recordServed(key);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        // Chemin hors sync : le marqueur couvre tout le thread, ne rien stocker en cas de doute
+        if (CacheFreshness.isDegraded()) return;
+        super.put(key, value);
+        restoredAges.remove(key);
+    }
+
+    @Override
+    public void evict(Object key) {
+        super.evict(key);
+        loaders.remove(key);
+        restoredAges.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        loaders.clear();
+        restoredAges.clear();
+    }
+
+    /**
+     * Entrées présentes (valeurs nulles exclues), pour un snapshot
+     */
+    public List<Entry> entries() {
+        List<Entry> entries = new ArrayList<>();
+        getNativeCache().asMap().forEach((key, value) -> {
+            if (value instanceof NullValue) return;
+            entries.add(new Entry(key, value, ageMillis(key).orElse(0L)));
+        });
+        return entries;
+    }
+
+    /**
+     * Réinsérer une entrée de snapshot avec son âge d'origine ; une entrée déjà présente est gardée,
+     * une entrée qui aurait déjà expiré (expireAfterWrite) est ignorée
+     */
+    public void restore(Object key, Object value, long ageMillis) {
+        if (ageMillis >= expireAfterWriteMillis()) return;
+
+        // Âge enregistré avant l'insertion : un lecteur concurrent ne voit jamais l'entrée rajeunie
+        restoredAges.put(key, ageMillis);
+        if (getNativeCache().asMap().putIfAbsent(key, value) != null) {
+            restoredAges.remove(key, ageMillis);
+        }
+    }
+
+    /**
+     * Caffeine date une entrée restaurée de sa restauration : l'expirer d'après son âge d'origine
+     */
+    private void expireIfRestoredTooOld(Object key) {
+        if (!restoredAges.containsKey(key)) return;
+
+        Optional<Long> age = ageMillis(key);
+        if (age.isPresent() && age.get() >= expireAfterWriteMillis()) {
+            getNativeCache().invalidate(key);
+            restoredAges.remove(key);
+        }
+    }
+
+    private long expireAfterWriteMillis() {
+        return getNativeCache().policy().expireAfterWrite()
+                .map(expiration -> expiration.getExpiresAfter().toMillis())
+                .orElse(Long.MAX_VALUE);
+    }
+
+    private Optional<Long> ageMillis(Object key) {
+        Policy<Object, Object> policy = getNativeCache().policy();
+        Optional<Duration> age = policy.refreshAfterWrite().isPresent()
+                ? policy.refreshAfterWrite().get().ageOf(key)
+                : policy.expireAfterWrite().flatMap(expiration -> expiration.ageOf(key));
+        return age.map(a -> a.toMillis() + restoredAges.getOrDefault(key, 0L));
+    }
+
+    private void recordServed(Object key) {
+        Optional<Long> age = ageMillis(key);
+        if (age.isEmpty()) return;
+
+        Optional<Policy.FixedRefresh<Object, Object>> refresh = getNativeCache().policy().refreshAfterWrite();
+        boolean stale = refresh.isPresent() && age.get() > refresh.get().getRefreshesAfter().toMillis();
+        // Entrée restaurée déjà périmée : Caffeine ne connaît que l'âge depuis la restauration
+        if (stale && restoredAges.containsKey(key) && getNativeCache() instanceof LoadingCache<Object, Object> loading) {
+            loading.refresh(key);
+        }
+        CacheFreshness.recordServed(age.get(), stale);
+    }
+}
@@ -0,0 +1,23 @@
+package com.gutouch.monitoring.config;
+
+import com.gutouch.monitoring.service.WarmUpService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Readiness : hors service tant que le premier préchauffage n'est pas terminé
+ */
+@Component
+@RequiredArgsConstructor
+public class WarmUpHealthIndicator implements HealthIndicator {
+
+    private final WarmUpService warmUpService;
+
+    @Override
+    public Health health() {
+        Health.Builder builder = warmUpService.isReady() ? Health.up() : Health.outOfService();
+        return builder.withDetail("plan", warmUpService.plan().size()).build();
+    }
+}
@@ -0,0 +1,50 @@
+package com.gutouch.monitoring.config;
+
+import com.gutouch.monitoring.service.WarmUpService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+
+/**
+ * Relever les requêtes GET réussies servies par un cache pour le plan de préchauffage
+ * (hors requêtes de préchauffage) : les rejouer sur un endpoint non caché ne chaufferait rien.
+ * Le chemin est relevé sans le context-path, que le préchauffage ajoute lui-même.
+ */
+@Component
+@RequiredArgsConstructor
+public class WarmUpRecordingFilter extends OncePerRequestFilter {
+
+    private static final UrlPathHelper PATH_HELPER = new UrlPathHelper();
+
+    static {
+        // Chemin rejoué tel que reçu
+        PATH_HELPER.setUrlDecode(false);
+    }
+
+    private final WarmUpService warmUpService;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        filterChain.doFilter(request, response);
+
+        // Flux (SSE) exclus : le rejouer bloquerait le préchauffage.
+        // En-tête Age posé par CacheFreshnessAdvice dès qu'une entrée de cache a été servie
+        if ("GET".equals(request.getMethod())
+                && !request.isAsyncStarted()
+                && request.getHeader(WarmUpService.WARM_UP_HEADER) == null
+                && response.getStatus() >= 200 && response.getStatus() < 300
+                && response.getHeader(HttpHeaders.AGE) != null) {
+            String query = request.getQueryString();
+            warmUpService.record(PATH_HELPER.getPathWithinApplication(request) + (query != null ? "?" + query : ""));
+        }
+    }
+}
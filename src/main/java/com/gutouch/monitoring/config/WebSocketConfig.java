@@ -0,0 +1,23 @@
+package com.gutouch.monitoring.config;
+
+import com.gutouch.monitoring.controller.LogTailWebSocketHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final LogTailWebSocketHandler logTailWebSocketHandler;
+    private final CorsConfig corsConfig;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(logTailWebSocketHandler, "/ws/logs/tail")
+                .setAllowedOrigins(corsConfig.getAllowedOrigins().toArray(new String[0]));
+    }
+}
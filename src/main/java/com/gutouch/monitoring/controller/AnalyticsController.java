@@ -31,11 +31,18 @@ public class AnalyticsController {
     @Operation(summary = "Comparer deux périodes", 
                description = "Compare les métriques entre deux périodes temporelles")
     public ResponseEntity<PeriodComparisonDTO> comparePeriods(
-            @RequestParam @Parameter(description = "Période 1 (current, lastWeek, lastMonth)") String period1,
-            @RequestParam @Parameter(description = "Période 2 (previous, twoWeeksAgo, twoMonthsAgo)") String period2,
+            @RequestParam @Parameter(description = "Période 1 (current, lastWeek, thisMonth, lastMonth ou début/fin, ex. 2025-10-01/2025-10-15)") String period1,
+            @RequestParam @Parameter(description = "Période 2 (previous, lastWeek, lastMonth ou début/fin)") String period2,
             @RequestParam(required = false) @Parameter(description = "Filtrer par connector") String connector
     ) {
         log.info("Comparison request: period1={}, period2={}, connector={}", period1, period2, connector);
+        try {
+            analyticsService.validatePeriod(period1);
+            analyticsService.validatePeriod(period2);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected comparison request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
         PeriodComparisonDTO comparison = analyticsService.comparePeriods(period1, period2, connector);
         return ResponseEntity.ok(comparison);
     }
@@ -58,10 +65,11 @@ public class AnalyticsController {
     public ResponseEntity<List<TopClientDTO>> getTopClients(
             @RequestParam(defaultValue = "10") @Parameter(description = "Nombre de clients") int limit,
             @RequestParam(defaultValue = "7d") @Parameter(description = "Période (1d, 7d, 30d)") String timeRange,
-            @RequestParam(required = false) @Parameter(description = "Filtrer par connector") String connector
+            @RequestParam(required = false) @Parameter(description = "Filtrer par connector") String connector,
+            @RequestParam(defaultValue = "false") @Parameter(description = "Inclure la marge d'erreur des compteurs") boolean withErrorBounds
     ) {
         log.info("Top clients request: limit={}, timeRange={}, connector={}", limit, timeRange, connector);
-        List<TopClientDTO> topClients = analyticsService.getTopClients(limit, timeRange, connector);
+        List<TopClientDTO> topClients = analyticsService.getTopClients(limit, timeRange, connector, withErrorBounds);
         return ResponseEntity.ok(topClients);
     }
 
@@ -80,7 +88,7 @@ public class AnalyticsController {
 
     @GetMapping("/connector-breakdown")
     @Operation(summary = "Répartition par connector", 
-               description = "Retourne la répartition des métriques entre pi-gateway et pi-connector")
+               description = "Retourne la répartition des métriques entre tous les connectors")
     public ResponseEntity<ConnectorBreakdownDTO> getConnectorBreakdown(
             @RequestParam(defaultValue = "24h") @Parameter(description = "Période (1h, 6h, 24h, 7d, 30d)") String timeRange
     ) {
@@ -101,6 +109,13 @@ public class AnalyticsController {
         return ResponseEntity.ok(anomalies);
     }
 
+    @GetMapping("/anomalies/status")
+    @Operation(summary = "État des baselines d'anomalies", 
+               description = "Indique si les baselines sont encore en apprentissage et l'historique réellement appris")
+    public ResponseEntity<AnomalyBaselineStatusDTO> getAnomalyBaselineStatus() {
+        return ResponseEntity.ok(analyticsService.getAnomalyBaselineStatus());
+    }
+
     @GetMapping("/top-endpoints")
     @Operation(summary = "Top endpoints", 
                description = "Endpoints les plus lents ou avec le plus d'erreurs")
@@ -108,11 +123,12 @@ public class AnalyticsController {
             @RequestParam(defaultValue = "slowest") @Parameter(description = "Type: slowest, errors") String type,
             @RequestParam(defaultValue = "10") @Parameter(description = "Nombre d'endpoints") int limit,
             @RequestParam(defaultValue = "24h") @Parameter(description = "Période") String timeRange,
-            @RequestParam(required = false) @Parameter(description = "Filtrer par connector") String connector
+            @RequestParam(required = false) @Parameter(description = "Filtrer par connector") String connector,
+            @RequestParam(defaultValue = "false") @Parameter(description = "Inclure la marge d'erreur des compteurs") boolean withErrorBounds
     ) {
         log.info("Top endpoints request: type={}, limit={}, timeRange={}, connector={}", 
                 type, limit, timeRange, connector);
-        TopEndpointsDTO topEndpoints = analyticsService.getTopEndpoints(type, limit, timeRange, connector);
+        TopEndpointsDTO topEndpoints = analyticsService.getTopEndpoints(type, limit, timeRange, connector, withErrorBounds);
         return ResponseEntity.ok(topEndpoints);
     }
 
@@ -27,7 +27,7 @@ public class LogController {
     @GetMapping("/search")
     @Operation(summary = "Rechercher des logs", description = "Recherche avancée avec filtres multiples")
     public ResponseEntity<LogSearchResponseDTO> searchLogs(
-            @Parameter(description = "Recherche par mot-clé (path, IP, messageId)")
+            @Parameter(description = "Recherche par mot-clé (path, IP, messageId, error, message)")
             @RequestParam(required = false) String query,
             
             @Parameter(description = "Filtrer par connector (pi-gateway, pi-connector, all)")
@@ -41,6 +41,9 @@ public class LogController {
             
             @Parameter(description = "Filtrer par success (true/false)")
             @RequestParam(required = false) Boolean success,
+
+            @Parameter(description = "Filtrer par timeout (true/false)")
+            @RequestParam(required = false) Boolean timeout,
             
             @Parameter(description = "Latence minimale en ms")
             @RequestParam(required = false) Integer minLatency,
@@ -81,6 +84,7 @@ public class LogController {
                     .type(type)
                     .status(status)
                     .success(success)
+                    .timeout(timeout)
                     .minLatency(minLatency)
                     .maxLatency(maxLatency)
                     .clientIp(clientIP)
@@ -0,0 +1,242 @@
+package com.gutouch.monitoring.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gutouch.monitoring.dto.LogEntry;
+import com.gutouch.monitoring.dto.LogSearchParams;
+import com.gutouch.monitoring.dto.LogTailMessage;
+import com.gutouch.monitoring.service.LogService;
+import com.gutouch.monitoring.service.LogTailFollower;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Live tail des logs (WebSocket /ws/logs/tail).
+ *
+ * Filtres en query string à la connexion (connector, type, status, success, timeout,
+ * minLatency, maxLatency, clientIp, query), remplaçables par un message JSON de mêmes champs.
+ * Les lignes viennent du lecteur partagé {@link LogTailFollower} ; chaque lot est filtré
+ * par abonné et placé dans sa file, vidée par un pool d'envoi dédié : le lecteur n'attend
+ * jamais un client. La file est bornée à max-rows-per-message lignes ; un client lent reçoit
+ * en un message les lignes accumulées, les plus anciennes abandonnées (compteur dropped).
+ * Son tampon d'envoi est borné aussi : les messages en attente les plus anciens sont abandonnés.
+ */
+@Component
+@Slf4j
+public class LogTailWebSocketHandler extends TextWebSocketHandler {
+
+    private final LogTailFollower logTailFollower;
+    private final LogService logService;
+    private final ObjectMapper objectMapper;
+    private final LogTailFollower.Listener listener = this::dispatch;
+
+    @Value("${analytics.log-tail.max-rows-per-message:500}")
+    private int maxRowsPerMessage;
+
+    @Value("${analytics.log-tail.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${analytics.log-tail.buffer-size-limit:1048576}")
+    private int bufferSizeLimit;
+
+    @Value("${analytics.log-tail.send-threads:4}")
+    private int sendThreads;
+
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private ExecutorService sender;
+
+    public LogTailWebSocketHandler(LogTailFollower logTailFollower, LogService logService, ObjectMapper objectMapper) {
+        this.logTailFollower = logTailFollower;
+        this.logService = logService;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        sender = Executors.newFixedThreadPool(sendThreads, r -> {
+            Thread thread = new Thread(r, "log-tail-send-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        MultiValueMap<String, String> query = session.getUri() != null
+                ? UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams()
+                : null;
+        LogSearchParams filters = LogSearchParams.builder()
+                .connector(param(query, "connector"))
+                .type(param(query, "type"))
+                .status(param(query, "status"))
+                .success(param(query, "success") != null ? Boolean.valueOf(param(query, "success")) : null)
+                .timeout(param(query, "timeout") != null ? Boolean.valueOf(param(query, "timeout")) : null)
+                .minLatency(parseInteger(param(query, "minLatency")))
+                .maxLatency(parseInteger(param(query, "maxLatency")))
+                .clientIp(param(query, "clientIp"))
+                .query(param(query, "query"))
+                .build();
+
+        WebSocketSession decorated = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, bufferSizeLimit,
+                ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP);
+        synchronized (subscribers) {
+            subscribers.put(session.getId(), new Subscriber(decorated, filters));
+            logTailFollower.addListener(listener);
+        }
+        log.info("Log tail subscriber {} connected with filters {}", session.getId(), filters);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        Subscriber subscriber = subscribers.get(session.getId());
+        if (subscriber == null) return;
+
+        try {
+            subscriber.filters = objectMapper.readValue(message.getPayload(), LogSearchParams.class);
+        } catch (Exception e) {
+            log.warn("Ignoring invalid log tail filters from {}: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        synchronized (subscribers) {
+            subscribers.remove(session.getId());
+            if (subscribers.isEmpty()) {
+                logTailFollower.removeListener(listener);
+            }
+        }
+    }
+
+    private void dispatch(List<LogEntry> logs) {
+        for (Subscriber subscriber : subscribers.values()) {
+            LogSearchParams filters = subscriber.filters;
+            List<LogEntry> matching = logs.stream()
+                    .filter(l -> logService.matches(l, filters))
+                    .collect(Collectors.toList());
+            if (matching.isEmpty()) continue;
+
+            subscriber.offer(matching, maxRowsPerMessage);
+            // Au plus un vidage en cours par abonné
+            if (subscriber.draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(() -> drain(subscriber));
+                } catch (RejectedExecutionException e) {
+                    // Arrêt en cours
+                    subscriber.draining.set(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Envoyer les lignes en attente d'un abonné, un message par lot accumulé, jusqu'à file vide
+     */
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            LogTailMessage message = subscriber.poll();
+            if (message == null) {
+                subscriber.draining.set(false);
+                // Lignes arrivées entre le dernier poll et la libération : reprendre le vidage
+                if (subscriber.isEmpty() || !subscriber.draining.compareAndSet(false, true)) return;
+                continue;
+            }
+            try {
+                subscriber.session.sendMessage(new TextMessage(objectMapper.writeValueAsString(message)));
+            } catch (Exception e) {
+                log.debug("Failed to send log tail message to {}", subscriber.session.getId(), e);
+            }
+        }
+    }
+
+    private static String param(MultiValueMap<String, String> query, String name) {
+        if (query == null) return null;
+        String value = query.getFirst(name);
+        return value != null && !value.isEmpty() ? value : null;
+    }
+
+    private static Integer parseInteger(String value) {
+        if (value == null) return null;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Session (tampon d'envoi borné), filtres courants et file bornée des lignes à envoyer d'un abonné
+     */
+    private static final class Subscriber {
+
+        private final WebSocketSession session;
+        private volatile LogSearchParams filters;
+        private final ArrayDeque<LogEntry> pending = new ArrayDeque<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private int dropped;
+
+        Subscriber(WebSocketSession session, LogSearchParams filters) {
+            this.session = session;
+            this.filters = filters;
+        }
+
+        /**
+         * Ajouter des lignes ; au-delà de maxRows, les plus anciennes sont abandonnées
+         */
+        synchronized void offer(List<LogEntry> logs, int maxRows) {
+            pending.addAll(logs);
+            while (pending.size() > maxRows) {
+                pending.pollFirst();
+                dropped++;
+            }
+        }
+
+        /**
+         * Message des lignes en attente (null si aucune), file vidée
+         */
+        synchronized LogTailMessage poll() {
+            if (pending.isEmpty()) return null;
+
+            LogTailMessage message = LogTailMessage.builder()
+                    .timestamp(Instant.now())
+                    .logs(new ArrayList<>(pending))
+                    .dropped(dropped)
+                    .build();
+            pending.clear();
+            dropped = 0;
+            return message;
+        }
+
+        synchronized boolean isEmpty() {
+            return pending.isEmpty();
+        }
+    }
+}
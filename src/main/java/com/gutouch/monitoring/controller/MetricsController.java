@@ -1,15 +1,19 @@
 package com.gutouch.monitoring.controller;
 
 import com.gutouch.monitoring.dto.ConnectorDetailsDTO;
+import com.gutouch.monitoring.dto.DistinctCountsDTO;
 import com.gutouch.monitoring.dto.OverviewMetricsDTO;
 import com.gutouch.monitoring.service.MetricsService;
+import com.gutouch.monitoring.service.OverviewStreamService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/metrics")
@@ -20,18 +24,21 @@ import org.springframework.web.bind.annotation.*;
 public class MetricsController {
 
     private final MetricsService metricsService;
+    private final OverviewStreamService overviewStreamService;
 
     @GetMapping("/overview")
     @Operation(summary = "Récupérer les métriques d'overview", 
                description = "Retourne une vue globale des métriques pour tous les connecteurs")
     public ResponseEntity<OverviewMetricsDTO> getOverviewMetrics(
             @Parameter(description = "Plage temporelle (1h, 6h, 24h, 7d, 30d)")
-            @RequestParam(defaultValue = "1h") String timeRange) {
+            @RequestParam(defaultValue = "1h") String timeRange,
+            @Parameter(description = "Nombre max de points de timeline (sous-échantillonnage LTTB, 0 = tous)")
+            @RequestParam(defaultValue = "1000") int maxPoints) {
         
-        log.info("GET /api/metrics/overview - timeRange: {}", timeRange);
+        log.info("GET /api/metrics/overview - timeRange: {}, maxPoints: {}", timeRange, maxPoints);
         
         try {
-            OverviewMetricsDTO metrics = metricsService.getOverviewMetrics(timeRange);
+            OverviewMetricsDTO metrics = metricsService.getOverviewMetrics(timeRange, maxPoints);
             return ResponseEntity.ok(metrics);
         } catch (Exception e) {
             log.error("Error fetching overview metrics", e);
@@ -39,6 +46,20 @@ public class MetricsController {
         }
     }
 
+    @GetMapping(value = "/overview/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Suivre l'overview en temps réel (SSE)",
+               description = "Pousse un événement 'overview' à chaque changement ; un seul calcul par plage temporelle pour tous les abonnés")
+    public SseEmitter streamOverviewMetrics(
+            @Parameter(description = "Plage temporelle (1h, 6h, 24h, 7d, 30d)")
+            @RequestParam(defaultValue = "1h") String timeRange,
+            @Parameter(description = "Nombre max de points de timeline (sous-échantillonnage LTTB, 0 = tous)")
+            @RequestParam(defaultValue = "1000") int maxPoints) {
+        
+        log.info("GET /api/metrics/overview/stream - timeRange: {}, maxPoints: {}", timeRange, maxPoints);
+        
+        return overviewStreamService.subscribe(timeRange, maxPoints);
+    }
+
     @GetMapping("/connector/{connectorName}")
     @Operation(summary = "Récupérer les détails d'un connector",
                description = "Retourne toutes les métriques détaillées pour un connector spécifique")
@@ -58,4 +79,24 @@ public class MetricsController {
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    @GetMapping("/distinct")
+    @Operation(summary = "Compter les clients et endpoints distincts",
+               description = "Retourne le nombre estimé (HyperLogLog) de clients et d'endpoints distincts sur la période")
+    public ResponseEntity<DistinctCountsDTO> getDistinctCounts(
+            @Parameter(description = "Nom du connector (pi-gateway, pi-connector, all)")
+            @RequestParam(defaultValue = "all") String connector,
+            @Parameter(description = "Plage temporelle (1h, 6h, 24h, 7d, 30d)")
+            @RequestParam(defaultValue = "24h") String timeRange) {
+        
+        log.info("GET /api/metrics/distinct - connector: {}, timeRange: {}", connector, timeRange);
+        
+        try {
+            DistinctCountsDTO counts = metricsService.getDistinctCounts(connector, timeRange);
+            return ResponseEntity.ok(counts);
+        } catch (Exception e) {
+            log.error("Error fetching distinct counts for: {}", connector, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.gutouch.monitoring.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * DTO pour l'état d'apprentissage des baselines de détection d'anomalies
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnomalyBaselineStatusDTO {
+    private Boolean warmingUp;          // apprentissage initial en cours : anomalies pas encore fiables
+    private Instant baselineStart;      // première heure avec du trafic intégrée aux baselines
+    private Instant lastProcessedHour;
+    private Double baselineDays;        // historique réellement appris
+    private Integer warmupDays;         // historique configuré
+}
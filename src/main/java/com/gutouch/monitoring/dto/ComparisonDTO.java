@@ -18,7 +18,7 @@ import java.util.Map;
 @NoArgsConstructor
 @AllArgsConstructor
 public class ComparisonDTO {
-    private String winner;          // "pi-gateway" or "pi-connector"
+    private String winner;          // meilleur connector (taux de succès, puis latence)
     private String reason;
-    private Map<String, Double> differences;  // metric -> % difference
+    private Map<String, Double> differences;  // metric -> % difference (winner vs second)
 }
\ No newline at end of file
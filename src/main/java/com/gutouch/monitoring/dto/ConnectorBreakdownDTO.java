@@ -22,7 +22,9 @@ import java.util.Map;
 @NoArgsConstructor
 @AllArgsConstructor
 public class ConnectorBreakdownDTO {
+    private List<ConnectorMetricsDTO> connectors;
     private ConnectorMetricsDTO piGateway;
     private ConnectorMetricsDTO piConnector;
     private ComparisonDTO comparison;
+    private String dataSource;
 }
\ No newline at end of file
@@ -31,4 +31,7 @@ public class ConnectorDetailsDTO {
     private Map<String, Long> statusBreakdown;
     private List<EndpointMetrics> topSlowEndpoints;
     private List<EndpointError> topErrorEndpoints;
+    private Long uniqueClients;
+    private Long uniqueEndpoints;
+    private String dataSource;
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.gutouch.monitoring.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * DTO pour les comptes distincts (clients, endpoints) d'un connector
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DistinctCountsDTO {
+    private String connector;
+    private Instant startTime;
+    private Instant endTime;
+    private Long uniqueClients;
+    private Long uniqueEndpoints;
+    private Double relativeError;   // erreur relative standard des estimations HyperLogLog
+    private Boolean partial;        // heures closes pas encore calculées (démarrage)
+}
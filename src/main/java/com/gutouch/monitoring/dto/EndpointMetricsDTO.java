@@ -25,4 +25,5 @@ public class EndpointMetricsDTO {
     private double errorRate;
     private double p95LatencyMs;
     private double p99LatencyMs;
+    private Long requestsErrorBound;    // marge max du compteur de classement (si withErrorBounds)
 }
\ No newline at end of file
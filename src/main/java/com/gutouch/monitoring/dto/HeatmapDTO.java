@@ -22,4 +22,5 @@ import java.util.Map;
 public class HeatmapDTO {
     private List<DayHeatmapDTO> days;
     private List<String> insights;
+    private String dataSource;
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.gutouch.monitoring.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -34,4 +35,7 @@ public class LogEntry {
     private String messageId;
     private String endToEndId;
     private String service;
+    // Contenu du message : recherché mais pas renvoyé dans les listes (voir LogDetailDTO)
+    @JsonIgnore
+    private String message;
 }
\ No newline at end of file
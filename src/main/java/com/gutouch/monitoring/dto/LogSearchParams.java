@@ -26,6 +26,7 @@ public class LogSearchParams {
     private String type;
     private String status;
     private Boolean success;
+    private Boolean timeout;
     private Integer minLatency;
     private Integer maxLatency;
     private String clientIp;
@@ -16,10 +16,15 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 public class LogSearchResponseDTO {
+    // Logs correspondants consultables (pages)
     private Long total;
     private Integer page;
     private Integer limit;
     private Integer pages;
     private List<LogEntry> logs;
     private LogSummary summary;
+    // Logs correspondants sur toute la plage, au-delà de la lecture tronquée
+    private Long estimatedTotal;
+    // estimatedTotal estimé (catalogue de statistiques) plutôt que compté
+    private Boolean estimated;
 }
\ No newline at end of file
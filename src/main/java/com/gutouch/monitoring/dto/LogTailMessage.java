@@ -0,0 +1,23 @@
+package com.gutouch.monitoring.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Message de live tail : nouvelles lignes correspondant aux filtres de l'abonné
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LogTailMessage {
+    private Instant timestamp;
+    private List<LogEntry> logs;
+    // Lignes correspondantes non envoyées (lot tronqué pour un client lent)
+    private Integer dropped;
+}
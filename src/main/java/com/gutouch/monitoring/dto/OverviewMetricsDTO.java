@@ -22,4 +22,5 @@ public class OverviewMetricsDTO {
     private List<ServiceStatus> services;
     private TotalMetrics totals;
     private List<TimelinePoint> timeline;
+    private String dataSource; // metrics_log, rollup, raw_log ou combinaison ("rollup+metrics_log")
 }
\ No newline at end of file
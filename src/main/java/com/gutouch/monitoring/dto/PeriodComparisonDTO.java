@@ -22,4 +22,5 @@ public class PeriodComparisonDTO {
     private PeriodMetricsDTO period1;
     private PeriodMetricsDTO period2;
     private MetricChangesDTO changes;
+    private String dataSource;
 }
\ No newline at end of file
@@ -23,8 +23,10 @@ public class PeriodMetricsDTO {
     private String name;
     private long requests;
     private double avgLatencyMs;
+    private double p95LatencyMs;
     private double errorRate;
     private double successRate;
     private ZonedDateTime startDate;
     private ZonedDateTime endDate;
+    private String dataSource;
 }
\ No newline at end of file
@@ -26,4 +26,6 @@ public class ServiceStatus {
     private Double avgLatencyMs;
     private Double successRate;
     private Double errorRate;
+    private Long uniqueClients;
+    private Long uniqueEndpoints;
 }
\ No newline at end of file
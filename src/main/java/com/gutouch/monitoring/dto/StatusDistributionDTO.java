@@ -22,4 +22,5 @@ import java.util.Map;
 public class StatusDistributionDTO {
     private Map<String, StatusCategoryDTO> categories;  // "2xx", "3xx", "4xx", "5xx"
     private List<StatusCodeDetailDTO> topCodes;         // Top 5 status codes
+    private String dataSource;
 }
\ No newline at end of file
@@ -26,4 +26,5 @@ public class TimelinePoint {
     private Instant timestamp;
     private Integer piGatewayRequests;
     private Integer piConnectorRequests;
+    private Map<String, Integer> requestsByConnector;
 }
\ No newline at end of file
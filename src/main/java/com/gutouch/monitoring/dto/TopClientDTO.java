@@ -29,4 +29,5 @@ public class TopClientDTO {
     private double errorRate;
     private double avgLatencyMs;
     private String connector;       // si filtré, sinon "all"
+    private Long requestsErrorBound; // marge max du compteur de classement (si withErrorBounds)
 }
@@ -21,4 +21,5 @@ import java.util.Map;
 public class TopEndpointsDTO {
     private String type;            // "slowest" or "errors"
     private List<EndpointMetricsDTO> endpoints;
+    private String dataSource;
 }
\ No newline at end of file
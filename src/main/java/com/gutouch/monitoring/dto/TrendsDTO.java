@@ -27,4 +27,5 @@ public class TrendsDTO {
     private List<TrendDataPointDTO> data;
     private List<AnomalyDTO> anomalies;
     private TrendInsightsDTO insights;
+    private String dataSource;
 }
\ No newline at end of file
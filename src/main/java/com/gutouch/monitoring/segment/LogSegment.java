@@ -0,0 +1,459 @@
+package com.gutouch.monitoring.segment;
+
+import com.gutouch.monitoring.dto.LogEntry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Segment colonne immuable d'une heure close de raw_log, lu par mmap.
+ *
+ * Une colonne par champ, lignes par clé croissante : timestamps (offset dans l'heure,
+ * int), colonnes dictionnaire (type, connector, method, path, IP, service_status, service,
+ * error), status (int), latence (double), flags (booléens), chaînes variables (suffixe d'id,
+ * messageId, endToEndId, message). Le pied porte les zone maps min/max (timestamp, status, latence)
+ * et la position de chaque colonne.
+ *
+ * Une plage horaire se résout par recherche dichotomique sur les timestamps, un connector
+ * absent du dictionnaire écarte le segment sans le parcourir, et le filtre connector se fait
+ * sur les codes ; les chaînes répétées sont partagées depuis le dictionnaire. Les agrégats
+ * lisent seulement les colonnes utiles : compteurs, latences et status par (connector, type)
+ * sans décoder les lignes, ou lignes sans les chaînes variables.
+ */
+public final class LogSegment {
+
+    static final int MAGIC = 0x53454731; // "SEG1"
+    static final int VERSION = 2;
+    static final long HOUR_MS = 3_600_000L;
+    static final int NULL_INT = Integer.MIN_VALUE;
+
+    // Colonnes dictionnaire
+    static final int TYPE = 0;
+    static final int CONNECTOR = 1;
+    static final int METHOD = 2;
+    static final int PATH = 3;
+    static final int CLIENT_IP = 4;
+    static final int SERVICE_STATUS = 5;
+    static final int SERVICE = 6;
+    static final int ERROR = 7;
+    static final int DICTIONARY_COLUMNS = 8;
+
+    // Colonnes de chaînes variables
+    static final int ID = 0;
+    static final int MESSAGE_ID = 1;
+    static final int END_TO_END_ID = 2;
+    static final int MESSAGE = 3;
+    static final int VAR_COLUMNS = 4;
+
+    // Répertoire du pied
+    static final int TIMESTAMP_COLUMN = 0;
+    static final int FIRST_DICTIONARY_COLUMN = 1;
+    static final int STATUS_COLUMN = FIRST_DICTIONARY_COLUMN + DICTIONARY_COLUMNS;
+    static final int LATENCY_COLUMN = STATUS_COLUMN + 1;
+    static final int FLAGS_COLUMN = LATENCY_COLUMN + 1;
+    static final int FIRST_VAR_COLUMN = FLAGS_COLUMN + 1;
+    static final int COLUMN_COUNT = FIRST_VAR_COLUMN + VAR_COLUMNS;
+
+    static final int SUCCESS_PRESENT = 1;
+    static final int SUCCESS_VALUE = 1 << 1;
+    static final int TIMEOUT_PRESENT = 1 << 2;
+    static final int TIMEOUT_VALUE = 1 << 3;
+    static final int ID_SUFFIX = 1 << 4;
+
+    private static final int FOOTER_SIZE = 4 + 8 + 4 + 8 + 8 + 4 + 4 + 8 + 8 + 4 + 8 * COLUMN_COUNT;
+
+    private final MappedByteBuffer buffer;
+    private final long hourStart;
+    private final int rows;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final int minStatus;
+    private final int maxStatus;
+    private final double minLatency;
+    private final double maxLatency;
+
+    private final int timestamps;
+    private final String[][] dictionaryValues = new String[DICTIONARY_COLUMNS][];
+    private final int[] codeWidths = new int[DICTIONARY_COLUMNS];
+    private final int[] codes = new int[DICTIONARY_COLUMNS];
+    private final int statusCodes;
+    private final int latencies;
+    private final int flags;
+    private final int[] varOffsets = new int[VAR_COLUMNS];
+    private final int[] varNulls = new int[VAR_COLUMNS];
+    private final int[] varBytes = new int[VAR_COLUMNS];
+
+    private LogSegment(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        int end = buffer.capacity();
+        if (end < FOOTER_SIZE + 12 || buffer.getInt(end - 4) != MAGIC) {
+            throw new IOException("Not a log segment");
+        }
+        int footer = (int) buffer.getLong(end - 12);
+        if (buffer.getInt(footer) != VERSION) {
+            throw new IOException("Unsupported log segment version " + buffer.getInt(footer));
+        }
+
+        ByteBuffer in = buffer.duplicate().position(footer + 4);
+        hourStart = in.getLong();
+        rows = in.getInt();
+        minTimestamp = in.getLong();
+        maxTimestamp = in.getLong();
+        minStatus = in.getInt();
+        maxStatus = in.getInt();
+        minLatency = in.getDouble();
+        maxLatency = in.getDouble();
+        if (in.getInt() != COLUMN_COUNT) {
+            throw new IOException("Unexpected log segment column count");
+        }
+        long[] offsets = new long[COLUMN_COUNT];
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            offsets[i] = in.getLong();
+        }
+
+        timestamps = (int) offsets[TIMESTAMP_COLUMN];
+        for (int c = 0; c < DICTIONARY_COLUMNS; c++) {
+            int position = (int) offsets[FIRST_DICTIONARY_COLUMN + c];
+            String[] values = new String[buffer.getInt(position)];
+            codeWidths[c] = buffer.getInt(position + 4);
+            position += 8;
+            for (int i = 1; i < values.length; i++) {
+                byte[] bytes = new byte[buffer.getInt(position)];
+                buffer.get(position + 4, bytes);
+                values[i] = new String(bytes, StandardCharsets.UTF_8);
+                position += 4 + bytes.length;
+            }
+            dictionaryValues[c] = values;
+            codes[c] = position;
+        }
+        statusCodes = (int) offsets[STATUS_COLUMN];
+        latencies = (int) offsets[LATENCY_COLUMN];
+        flags = (int) offsets[FLAGS_COLUMN];
+        for (int c = 0; c < VAR_COLUMNS; c++) {
+            varOffsets[c] = (int) offsets[FIRST_VAR_COLUMN + c];
+            varNulls[c] = varOffsets[c] + 4 * (rows + 1);
+            varBytes[c] = varNulls[c] + (rows + 7) / 8;
+        }
+    }
+
+    /**
+     * Ouvrir un segment en lecture seule ; le mapping reste valide après fermeture du fichier
+     */
+    public static LogSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new LogSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Parcourir les lignes de [début, fin) (d'un connector si non null), par clé croissante ;
+     * arrêt dès que le consumer renvoie false
+     *
+     * @return false si le consumer s'est arrêté
+     */
+    public boolean forEach(long startMillis, long endMillis, String connector, Predicate<LogEntry> consumer) {
+        // Zone map : plage sans recouvrement
+        if (rows == 0 || endMillis <= minTimestamp || startMillis > maxTimestamp) return true;
+
+        int connectorCode = -1;
+        if (connector != null) {
+            connectorCode = indexOf(CONNECTOR, connector);
+            // Absent du dictionnaire : aucune ligne du segment
+            if (connectorCode < 0) return true;
+        }
+
+        int from = lowerBound(startMillis);
+        int to = lowerBound(endMillis);
+        for (int row = from; row < to; row++) {
+            if (connectorCode >= 0 && code(CONNECTOR, row) != connectorCode) continue;
+            if (!consumer.test(read(row))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Comme {@link #forEach}, sans les chaînes variables (id, messageId, endToEndId, message
+     * restent null) : pour les agrégats, qui ne lisent que les colonnes fixes et dictionnaire
+     */
+    public boolean forEachProjected(long startMillis, long endMillis, String connector, Predicate<LogEntry> consumer) {
+        if (rows == 0 || endMillis <= minTimestamp || startMillis > maxTimestamp) return true;
+
+        int connectorCode = -1;
+        if (connector != null) {
+            connectorCode = indexOf(CONNECTOR, connector);
+            if (connectorCode < 0) return true;
+        }
+
+        int from = lowerBound(startMillis);
+        int to = lowerBound(endMillis);
+        for (int row = from; row < to; row++) {
+            if (connectorCode >= 0 && code(CONNECTOR, row) != connectorCode) continue;
+            if (!consumer.test(readProjected(row))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lignes, succès et timeouts de [début, fin) pour ce connector et ce type (null : tous),
+     * depuis la colonne de flags seulement
+     */
+    public Counts count(long startMillis, long endMillis, String connector, String type) {
+        int[] range = rowRange(startMillis, endMillis, connector, type);
+        if (range == null) return new Counts(0, 0, 0);
+
+        int matching = 0;
+        int successes = 0;
+        int timeouts = 0;
+        for (int row = range[0]; row < range[1]; row++) {
+            if (!matches(row, range[2], range[3])) continue;
+            int rowFlags = buffer.get(flags + row);
+            matching++;
+            if ((rowFlags & (SUCCESS_PRESENT | SUCCESS_VALUE)) == (SUCCESS_PRESENT | SUCCESS_VALUE)) successes++;
+            if ((rowFlags & (TIMEOUT_PRESENT | TIMEOUT_VALUE)) == (TIMEOUT_PRESENT | TIMEOUT_VALUE)) timeouts++;
+        }
+        return new Counts(matching, successes, timeouts);
+    }
+
+    public record Counts(int rows, int successes, int timeouts) {
+    }
+
+    /**
+     * Latences présentes de [début, fin) pour ce connector et ce type (null : tous),
+     * depuis la colonne de latence seulement
+     */
+    public void forEachLatency(long startMillis, long endMillis, String connector, String type, DoubleConsumer consumer) {
+        int[] range = rowRange(startMillis, endMillis, connector, type);
+        if (range == null) return;
+
+        for (int row = range[0]; row < range[1]; row++) {
+            if (!matches(row, range[2], range[3])) continue;
+            double latency = buffer.getDouble(latencies + 8 * row);
+            if (!Double.isNaN(latency)) {
+                consumer.accept(latency);
+            }
+        }
+    }
+
+    /**
+     * Status codes de [début, fin) pour ce connector et ce type (null : tous), 0 si absent,
+     * depuis la colonne de status seulement
+     */
+    public void forEachStatus(long startMillis, long endMillis, String connector, String type, IntConsumer consumer) {
+        int[] range = rowRange(startMillis, endMillis, connector, type);
+        if (range == null) return;
+
+        for (int row = range[0]; row < range[1]; row++) {
+            if (!matches(row, range[2], range[3])) continue;
+            int status = buffer.getInt(statusCodes + 4 * row);
+            consumer.accept(status != NULL_INT ? status : 0);
+        }
+    }
+
+    /**
+     * Valeurs distinctes de connector du segment
+     */
+    public List<String> connectors() {
+        return dictionary(CONNECTOR);
+    }
+
+    /**
+     * Valeurs distinctes de type du segment
+     */
+    public List<String> types() {
+        return dictionary(TYPE);
+    }
+
+    public long getHourStart() {
+        return hourStart;
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    public long sizeInBytes() {
+        return buffer.capacity();
+    }
+
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    /**
+     * Zone map des status codes, null si aucun status
+     */
+    public int[] statusRange() {
+        return minStatus <= maxStatus ? new int[]{minStatus, maxStatus} : null;
+    }
+
+    /**
+     * Zone map des latences, null si aucune latence
+     */
+    public double[] latencyRange() {
+        return minLatency <= maxLatency ? new double[]{minLatency, maxLatency} : null;
+    }
+
+    private LogEntry read(int row) {
+        long timestamp = hourStart + buffer.getInt(timestamps + 4 * row);
+        int status = buffer.getInt(statusCodes + 4 * row);
+        double latency = buffer.getDouble(latencies + 8 * row);
+        int rowFlags = buffer.get(flags + row);
+        String type = value(TYPE, row);
+        String connector = value(CONNECTOR, row);
+
+        String id = varValue(ID, row);
+        if ((rowFlags & ID_SUFFIX) != 0) {
+            id = keyPrefix(timestamp, type, connector) + id;
+        }
+
+        return LogEntry.builder()
+                .id(id)
+                .timestamp(Instant.ofEpochMilli(timestamp))
+                .type(type)
+                .connector(connector)
+                .method(value(METHOD, row))
+                .path(value(PATH, row))
+                .clientIp(value(CLIENT_IP, row))
+                .serviceStatus(value(SERVICE_STATUS, row))
+                .service(value(SERVICE, row))
+                .error(value(ERROR, row))
+                .statusCode(status != NULL_INT ? status : null)
+                .responseTimeMs(Double.isNaN(latency) ? null : latency)
+                .success((rowFlags & SUCCESS_PRESENT) != 0 ? (rowFlags & SUCCESS_VALUE) != 0 : null)
+                .timeout((rowFlags & TIMEOUT_PRESENT) != 0 ? (rowFlags & TIMEOUT_VALUE) != 0 : null)
+                .messageId(varValue(MESSAGE_ID, row))
+                .endToEndId(varValue(END_TO_END_ID, row))
+                .message(varValue(MESSAGE, row))
+                .build();
+    }
+
+    private LogEntry readProjected(int row) {
+        long timestamp = hourStart + buffer.getInt(timestamps + 4 * row);
+        int status = buffer.getInt(statusCodes + 4 * row);
+        double latency = buffer.getDouble(latencies + 8 * row);
+        int rowFlags = buffer.get(flags + row);
+
+        return LogEntry.builder()
+                .timestamp(Instant.ofEpochMilli(timestamp))
+                .type(value(TYPE, row))
+                .connector(value(CONNECTOR, row))
+                .method(value(METHOD, row))
+                .path(value(PATH, row))
+                .clientIp(value(CLIENT_IP, row))
+                .serviceStatus(value(SERVICE_STATUS, row))
+                .service(value(SERVICE, row))
+                .error(value(ERROR, row))
+                .statusCode(status != NULL_INT ? status : null)
+                .responseTimeMs(Double.isNaN(latency) ? null : latency)
+                .success((rowFlags & SUCCESS_PRESENT) != 0 ? (rowFlags & SUCCESS_VALUE) != 0 : null)
+                .timeout((rowFlags & TIMEOUT_PRESENT) != 0 ? (rowFlags & TIMEOUT_VALUE) != 0 : null)
+                .build();
+    }
+
+    /**
+     * Lignes [from, to) de la plage et codes connector / type du filtre (0 : tous) ;
+     * null si aucune ligne ne peut correspondre
+     */
+    private int[] rowRange(long startMillis, long endMillis, String connector, String type) {
+        if (rows == 0 || endMillis <= minTimestamp || startMillis > maxTimestamp) return null;
+
+        int connectorCode = 0;
+        if (connector != null) {
+            connectorCode = indexOf(CONNECTOR, connector);
+            if (connectorCode < 0) return null;
+        }
+        int typeCode = 0;
+        if (type != null) {
+            typeCode = indexOf(TYPE, type);
+            if (typeCode < 0) return null;
+        }
+        return new int[]{lowerBound(startMillis), lowerBound(endMillis), connectorCode, typeCode};
+    }
+
+    private boolean matches(int row, int connectorCode, int typeCode) {
+        return (connectorCode == 0 || code(CONNECTOR, row) == connectorCode)
+                && (typeCode == 0 || code(TYPE, row) == typeCode);
+    }
+
+    private List<String> dictionary(int column) {
+        String[] values = dictionaryValues[column];
+        return values.length > 1 ? Arrays.asList(values).subList(1, values.length) : new ArrayList<>();
+    }
+
+    /**
+     * Première ligne de timestamp supérieur ou égal (timestamps triés)
+     */
+    private int lowerBound(long timestampMillis) {
+        if (timestampMillis <= hourStart) return 0;
+        if (timestampMillis >= hourStart + HOUR_MS) return rows;
+        long offset = timestampMillis - hourStart;
+
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getInt(timestamps + 4 * middle) < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int indexOf(int column, String value) {
+        String[] values = dictionaryValues[column];
+        for (int i = 1; i < values.length; i++) {
+            if (values[i].equals(value)) return i;
+        }
+        return -1;
+    }
+
+    private int code(int column, int row) {
+        switch (codeWidths[column]) {
+            case 1: return Byte.toUnsignedInt(buffer.get(codes[column] + row));
+            case 2: return Short.toUnsignedInt(buffer.getShort(codes[column] + 2 * row));
+            default: return buffer.getInt(codes[column] + 4 * row);
+        }
+    }
+
+    private String value(int column, int row) {
+        return dictionaryValues[column][code(column, row)];
+    }
+
+    private String varValue(int column, int row) {
+        if ((buffer.get(varNulls[column] + row / 8) & (1 << (row % 8))) != 0) return null;
+
+        int start = buffer.getInt(varOffsets[column] + 4 * row);
+        int end = buffer.getInt(varOffsets[column] + 4 * (row + 1));
+        byte[] bytes = new byte[end - start];
+        buffer.get(varBytes[column] + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static int codeWidth(int dictionarySize) {
+        return dictionarySize <= 0xFF ? 1 : dictionarySize <= 0xFFFF ? 2 : 4;
+    }
+
+    static String keyPrefix(long timestamp, String type, String connector) {
+        return String.format("%013d#%s#%s#", timestamp,
+                type != null ? type : "",
+                connector != null ? connector : "");
+    }
+}
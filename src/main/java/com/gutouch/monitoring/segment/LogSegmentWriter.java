@@ -0,0 +1,260 @@
+package com.gutouch.monitoring.segment;
+
+import com.gutouch.monitoring.dto.LogEntry;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Construction d'un segment colonne d'une heure de raw_log (format décrit dans {@link LogSegment}).
+ *
+ * Les lignes sont ajoutées par clé croissante et accumulées directement en colonnes
+ * (codes de dictionnaire, tableaux primitifs) ; le fichier est écrit d'un bloc puis
+ * renommé, il n'est plus jamais modifié.
+ */
+public class LogSegmentWriter {
+
+    private final long hourStart;
+    private int rows;
+
+    private int[] timestamps = new int[1024];
+    private final Dictionary[] dictionaries = new Dictionary[LogSegment.DICTIONARY_COLUMNS];
+    private int[] statusCodes = new int[1024];
+    private double[] latencies = new double[1024];
+    private byte[] flags = new byte[1024];
+    private final VarColumn[] varColumns = new VarColumn[LogSegment.VAR_COLUMNS];
+
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+    private int minStatus = Integer.MAX_VALUE;
+    private int maxStatus = Integer.MIN_VALUE;
+    private double minLatency = Double.POSITIVE_INFINITY;
+    private double maxLatency = Double.NEGATIVE_INFINITY;
+
+    public LogSegmentWriter(long hourStart) {
+        this.hourStart = hourStart;
+        for (int i = 0; i < dictionaries.length; i++) {
+            dictionaries[i] = new Dictionary();
+        }
+        for (int i = 0; i < varColumns.length; i++) {
+            varColumns[i] = new VarColumn();
+        }
+    }
+
+    /**
+     * Ajouter une ligne de l'heure (clé supérieure aux précédentes) ; hors de l'heure, ignorée
+     */
+    public void add(LogEntry entry) {
+        if (entry.getTimestamp() == null) return;
+        long timestamp = entry.getTimestamp().toEpochMilli();
+        if (timestamp < hourStart || timestamp >= hourStart + LogSegment.HOUR_MS) return;
+
+        ensureCapacity(rows + 1);
+        timestamps[rows] = (int) (timestamp - hourStart);
+        minTimestamp = Math.min(minTimestamp, timestamp);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+
+        dictionaries[LogSegment.TYPE].add(entry.getType());
+        dictionaries[LogSegment.CONNECTOR].add(entry.getConnector());
+        dictionaries[LogSegment.METHOD].add(entry.getMethod());
+        dictionaries[LogSegment.PATH].add(entry.getPath());
+        dictionaries[LogSegment.CLIENT_IP].add(entry.getClientIp());
+        dictionaries[LogSegment.SERVICE_STATUS].add(entry.getServiceStatus());
+        dictionaries[LogSegment.SERVICE].add(entry.getService());
+        dictionaries[LogSegment.ERROR].add(entry.getError());
+
+        Integer statusCode = entry.getStatusCode();
+        statusCodes[rows] = statusCode != null ? statusCode : LogSegment.NULL_INT;
+        if (statusCode != null) {
+            minStatus = Math.min(minStatus, statusCode);
+            maxStatus = Math.max(maxStatus, statusCode);
+        }
+        Double latency = entry.getResponseTimeMs();
+        latencies[rows] = latency != null ? latency : Double.NaN;
+        if (latency != null) {
+            minLatency = Math.min(minLatency, latency);
+            maxLatency = Math.max(maxLatency, latency);
+        }
+
+        String keyPrefix = LogSegment.keyPrefix(timestamp, entry.getType(), entry.getConnector());
+        boolean idSuffix = entry.getId() != null && entry.getId().startsWith(keyPrefix);
+        int rowFlags = 0;
+        if (entry.getSuccess() != null) {
+            rowFlags |= LogSegment.SUCCESS_PRESENT | (entry.getSuccess() ? LogSegment.SUCCESS_VALUE : 0);
+        }
+        if (entry.getTimeout() != null) {
+            rowFlags |= LogSegment.TIMEOUT_PRESENT | (entry.getTimeout() ? LogSegment.TIMEOUT_VALUE : 0);
+        }
+        if (idSuffix) rowFlags |= LogSegment.ID_SUFFIX;
+        flags[rows] = (byte) rowFlags;
+
+        varColumns[LogSegment.ID].add(idSuffix ? entry.getId().substring(keyPrefix.length()) : entry.getId());
+        varColumns[LogSegment.MESSAGE_ID].add(entry.getMessageId());
+        varColumns[LogSegment.END_TO_END_ID].add(entry.getEndToEndId());
+        varColumns[LogSegment.MESSAGE].add(entry.getMessage());
+
+        rows++;
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * Écrire le segment (fichier temporaire puis renommage atomique)
+     */
+    public void writeTo(Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            long[] offsets = new long[LogSegment.COLUMN_COUNT];
+            long position = 0L;
+
+            // Colonnes alignées sur 8 octets pour des vues primitives directes
+            offsets[LogSegment.TIMESTAMP_COLUMN] = position;
+            for (int i = 0; i < rows; i++) out.writeInt(timestamps[i]);
+            position += pad(out, 4L * rows);
+
+            for (int c = 0; c < dictionaries.length; c++) {
+                offsets[LogSegment.FIRST_DICTIONARY_COLUMN + c] = position;
+                position += pad(out, dictionaries[c].writeTo(out));
+            }
+
+            offsets[LogSegment.STATUS_COLUMN] = position;
+            for (int i = 0; i < rows; i++) out.writeInt(statusCodes[i]);
+            position += pad(out, 4L * rows);
+
+            offsets[LogSegment.LATENCY_COLUMN] = position;
+            for (int i = 0; i < rows; i++) out.writeDouble(latencies[i]);
+            position += 8L * rows;
+
+            offsets[LogSegment.FLAGS_COLUMN] = position;
+            out.write(flags, 0, rows);
+            position += pad(out, rows);
+
+            for (int c = 0; c < varColumns.length; c++) {
+                offsets[LogSegment.FIRST_VAR_COLUMN + c] = position;
+                position += pad(out, varColumns[c].writeTo(out, rows));
+            }
+
+            // Pied : zone maps et répertoire des colonnes, puis sa position et le magic
+            long footer = position;
+            out.writeInt(LogSegment.VERSION);
+            out.writeLong(hourStart);
+            out.writeInt(rows);
+            out.writeLong(minTimestamp);
+            out.writeLong(maxTimestamp);
+            out.writeInt(minStatus);
+            out.writeInt(maxStatus);
+            out.writeDouble(minLatency);
+            out.writeDouble(maxLatency);
+            out.writeInt(LogSegment.COLUMN_COUNT);
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+            out.writeLong(footer);
+            out.writeInt(LogSegment.MAGIC);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= timestamps.length) return;
+        int length = Math.max(capacity, timestamps.length * 2);
+        timestamps = Arrays.copyOf(timestamps, length);
+        statusCodes = Arrays.copyOf(statusCodes, length);
+        latencies = Arrays.copyOf(latencies, length);
+        flags = Arrays.copyOf(flags, length);
+    }
+
+    private static long pad(DataOutputStream out, long written) throws IOException {
+        int padding = (int) ((8 - written % 8) % 8);
+        for (int i = 0; i < padding; i++) {
+            out.write(0);
+        }
+        return written + padding;
+    }
+
+    /**
+     * Colonne dictionnaire : valeurs distinctes (code 0 = null) puis un code par ligne,
+     * sur 1, 2 ou 4 octets selon la taille du dictionnaire
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private int[] rowCodes = new int[1024];
+        private int rows;
+
+        Dictionary() {
+            values.add(null);
+        }
+
+        void add(String value) {
+            int code = value == null ? 0 : codes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+            if (rows == rowCodes.length) {
+                rowCodes = Arrays.copyOf(rowCodes, rows * 2);
+            }
+            rowCodes[rows++] = code;
+        }
+
+        long writeTo(DataOutputStream out) throws IOException {
+            long written = 8L;
+            out.writeInt(values.size());
+            int width = LogSegment.codeWidth(values.size());
+            out.writeInt(width);
+            for (int i = 1; i < values.size(); i++) {
+                byte[] bytes = values.get(i).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                written += 4L + bytes.length;
+            }
+            for (int i = 0; i < rows; i++) {
+                int code = rowCodes[i];
+                if (width == 1) out.writeByte(code);
+                else if (width == 2) out.writeShort(code);
+                else out.writeInt(code);
+            }
+            return written + (long) width * rows;
+        }
+    }
+
+    /**
+     * Colonne de chaînes de longueur variable : offsets (rows + 1), bitmap des null, octets
+     */
+    private static final class VarColumn {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final BitSet nulls = new BitSet();
+        private int[] offsets = new int[1025];
+        private int rows;
+
+        void add(String value) {
+            if (value == null) {
+                nulls.set(rows);
+            } else {
+                bytes.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+            }
+            if (rows + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[++rows] = bytes.size();
+        }
+
+        long writeTo(DataOutputStream out, int rowCount) throws IOException {
+            for (int i = 0; i <= rowCount; i++) {
+                out.writeInt(offsets[i]);
+            }
+            byte[] bitmap = Arrays.copyOf(nulls.toByteArray(), (rowCount + 7) / 8);
+            out.write(bitmap);
+            bytes.writeTo(out);
+            return 4L * (rowCount + 1) + bitmap.length + bytes.size();
+        }
+    }
+}
@@ -1,14 +1,27 @@
 package com.gutouch.monitoring.service;
 
+import com.gutouch.monitoring.aggregate.LogAggregate;
+import com.gutouch.monitoring.aggregate.MetricSource;
+import com.gutouch.monitoring.aggregate.SourcedAggregates;
+import com.gutouch.monitoring.config.CacheFreshness;
 import com.gutouch.monitoring.dto.*;
+import com.gutouch.monitoring.sketch.MaxValueTopK;
+import com.gutouch.monitoring.sketch.SpaceSavingTopK;
+import com.gutouch.monitoring.sketch.StatusCodeHistogram;
+import com.gutouch.monitoring.sketch.TrafficStats;
+import com.gutouch.monitoring.service.MetricSourceRouter.Requirement;
+import com.gutouch.monitoring.util.ZoneOffsetTable;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.time.*;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -17,9 +30,21 @@ import java.util.stream.Collectors;
 public class AnalyticsService {
 
     private final BigtableService bigtableService;
+    private final DailyAggregateStore dailyAggregateStore;
+    private final AnomalyDetectionService anomalyDetectionService;
+    private final ConnectorRegistry connectorRegistry;
+    private final MetricSourceRouter metricSourceRouter;
+    private final SegmentStore segmentStore;
     private static final ZoneId PARIS_ZONE = ZoneId.of("Europe/Paris");
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
+    @Value("${analytics.heavy-hitters.capacity:1024}")
+    private int heavyHitterCapacity;
+
+    // Période de comparaison la plus longue : rétention des agrégats journaliers
+    @Value("${analytics.daily-store.retention-days:400}")
+    private int maxPeriodDays;
+
     // ============================================================================
     // PERIOD COMPARISON
     // ============================================================================
@@ -30,8 +55,9 @@ public class AnalyticsService {
         PeriodDates period1 = calculatePeriodDates(period1Str);
         PeriodDates period2 = calculatePeriodDates(period2Str);
 
-        PeriodMetricsDTO metrics1 = calculatePeriodMetrics(period1.start, period1.end, connector, period1Str);
-        PeriodMetricsDTO metrics2 = calculatePeriodMetrics(period2.start, period2.end, connector, period2Str);
+        Set<MetricSource> sources = EnumSet.noneOf(MetricSource.class);
+        PeriodMetricsDTO metrics1 = calculatePeriodMetrics(period1.start, period1.end, connector, period1Str, sources);
+        PeriodMetricsDTO metrics2 = calculatePeriodMetrics(period2.start, period2.end, connector, period2Str, sources);
 
         MetricChangesDTO changes = calculateChanges(metrics1, metrics2);
 
@@ -39,33 +65,51 @@ public class AnalyticsService {
                 .period1(metrics1)
                 .period2(metrics2)
                 .changes(changes)
+                .dataSource(MetricSource.describe(sources))
                 .build();
     }
 
-    private PeriodMetricsDTO calculatePeriodMetrics(ZonedDateTime start, ZonedDateTime end,
-                                                    String connector, String periodName) {
-        List<LogEntry> logs = queryLogsByTimeRange(start, end, connector);
+    /**
+     * Vérifier une période de comparaison ; IllegalArgumentException si une borne personnalisée
+     * est illisible, si la fin ne suit pas le début ou si la période dépasse la rétention journalière
+     */
+    public void validatePeriod(String period) {
+        PeriodDates dates;
+        try {
+            dates = calculatePeriodDates(period);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid period bound: " + period);
+        }
+        if (!dates.end.isAfter(dates.start)) {
+            throw new IllegalArgumentException("Period end must be after its start: " + period);
+        }
+        if (Duration.between(dates.start, dates.end).toDays() > maxPeriodDays) {
+            throw new IllegalArgumentException("Period longer than " + maxPeriodDays + " days: " + period);
+        }
+    }
 
-        long totalRequests = logs.size();
-        long successCount = logs.stream().filter(LogEntry::getSuccess).count();
-        long errorCount = totalRequests - successCount;
+    private PeriodMetricsDTO calculatePeriodMetrics(ZonedDateTime start, ZonedDateTime end, String connector,
+                                                    String periodName, Set<MetricSource> sources) {
+        // Jours complets pré-agrégés (partagés entre périodes et appels), fragments de jour calculés ;
+        // le p95 exige une distribution exacte
+        SourcedAggregates aggregates = dailyAggregateStore.getRange(start, end, Requirement.DISTRIBUTION);
+        LogAggregate aggregate = aggregates.get(connector);
+        sources.addAll(aggregates.sources());
 
-        double avgLatency = logs.stream()
-                .mapToDouble(l -> l.getResponseTimeMs() != null ? l.getResponseTimeMs() : 0.0)
-                .average()
-                .orElse(0.0);
-
-        double errorRate = totalRequests > 0 ? (errorCount * 100.0 / totalRequests) : 0.0;
+        long totalRequests = aggregate.getRequests();
+        double errorRate = aggregate.getErrorRate();
         double successRate = 100.0 - errorRate;
 
         return PeriodMetricsDTO.builder()
                 .name(periodName)
                 .requests(totalRequests)
-                .avgLatencyMs(avgLatency)
+                .avgLatencyMs(aggregate.getAvgLatencyMs())
+                .p95LatencyMs(aggregate.getLatencyPercentile(95))
                 .errorRate(errorRate)
                 .successRate(successRate)
                 .startDate(start)
                 .endDate(end)
+                .dataSource(MetricSource.describe(aggregates.sources()))
                 .build();
     }
 
@@ -87,69 +131,79 @@ public class AnalyticsService {
     // HEATMAP
     // ============================================================================
 
+    @Cacheable(value = "heatmap", key = "#days + '_' + #connector", sync = true)
     public HeatmapDTO getTrafficHeatmap(int days, String connector) {
         log.info("Getting heatmap for {} days, connector: {}", days, connector);
 
         ZonedDateTime now = ZonedDateTime.now(PARIS_ZONE);
         ZonedDateTime startDate = now.minusDays(days).withHour(0).withMinute(0).withSecond(0);
 
-        List<LogEntry> logs = queryLogsByTimeRange(startDate, now, connector);
-
-        // Grouper par jour et heure
-        Map<String, Map<Integer, List<LogEntry>>> dayHourMap = new HashMap<>();
+        // Compteurs par jour local et heure, indexés depuis le jour de startDate
+        ZoneOffsetTable offsets = new ZoneOffsetTable(PARIS_ZONE, startDate.toInstant(), now.toInstant());
+        long firstDay = startDate.toLocalDate().toEpochDay();
+        int dayCount = (int) (now.toLocalDate().toEpochDay() - firstDay) + 1;
+        long[][] counts = new long[dayCount][24];
+        double[][] latencySums = new double[dayCount][24];
+
+        // Agrégats par heure UTC (rollups si couverts) : les décalages de Paris sont des heures entières
+        String connectorKey = connector != null && !connector.isEmpty() ? connector : "all";
+        Map<Long, LogAggregate> byHour = new HashMap<>();
+        Set<MetricSource> sources = EnumSet.noneOf(MetricSource.class);
+        try {
+            sources = metricSourceRouter.aggregate(startDate.toInstant(), now.toInstant(), connector,
+                    Requirement.COUNTS, (hour, c, type) ->
+                            connectorKey.equals(c) ? byHour.computeIfAbsent(hour, h -> new LogAggregate()) : null);
+        } catch (Exception e) {
+            log.error("Error aggregating heatmap traffic", e);
+            CacheFreshness.markDegraded();
+        }
 
-        for (LogEntry log : logs) {
-            ZonedDateTime timestamp = log.getTimestamp().atZone(PARIS_ZONE);
-            String dayKey = timestamp.format(DATE_FORMATTER);
-            int hour = timestamp.getHour();
+        for (Map.Entry<Long, LogAggregate> entry : byHour.entrySet()) {
+            long epochMillis = entry.getKey();
+            long dayIndex = offsets.localEpochDay(epochMillis) - firstDay;
+            if (dayIndex < 0 || dayIndex >= dayCount) continue;
 
-            dayHourMap.computeIfAbsent(dayKey, k -> new HashMap<>())
-                    .computeIfAbsent(hour, k -> new ArrayList<>())
-                    .add(log);
+            int hour = offsets.localHour(epochMillis);
+            counts[(int) dayIndex][hour] += entry.getValue().getRequests();
+            latencySums[(int) dayIndex][hour] += entry.getValue().getLatencySumMs();
         }
 
         // Construire la heatmap
         List<DayHeatmapDTO> heatmapDays = new ArrayList<>();
 
         for (int i = days - 1; i >= 0; i--) {
-            ZonedDateTime day = now.minusDays(i);
-            String dayKey = day.format(DATE_FORMATTER);
+            LocalDate day = now.minusDays(i).toLocalDate();
+            int dayIndex = (int) (day.toEpochDay() - firstDay);
             String dayName = getDayName(day.getDayOfWeek().getValue());
 
             List<HourDataDTO> hours = new ArrayList<>();
 
             for (int hour = 0; hour < 24; hour++) {
-                List<LogEntry> hourLogs = dayHourMap.getOrDefault(dayKey, new HashMap<>())
-                        .getOrDefault(hour, new ArrayList<>());
-
-                long requests = hourLogs.size();
-                double avgLatency = hourLogs.stream()
-                        .mapToDouble(l -> l.getResponseTimeMs() != null ? l.getResponseTimeMs() : 0.0)
-                        .average()
-                        .orElse(0.0);
-
-                String level = getTrafficLevel(requests);
+                boolean inRange = dayIndex >= 0 && dayIndex < dayCount;
+                long requests = inRange ? counts[dayIndex][hour] : 0L;
+                double avgLatency = requests > 0 ? latencySums[dayIndex][hour] / requests : 0.0;
 
                 hours.add(HourDataDTO.builder()
                         .hour(hour)
                         .requests(requests)
-                        .level(level)
+                        .level(getTrafficLevel(requests))
                         .avgLatencyMs(avgLatency)
                         .build());
             }
 
             heatmapDays.add(DayHeatmapDTO.builder()
                     .day(dayName)
-                    .date(dayKey)
+                    .date(day.format(DATE_FORMATTER))
                     .hours(hours)
                     .build());
         }
 
-        List<String> insights = generateHeatmapInsights(dayHourMap);
+        List<String> insights = generateHeatmapInsights(counts, firstDay);
 
         return HeatmapDTO.builder()
                 .days(heatmapDays)
                 .insights(insights)
+                .dataSource(MetricSource.describe(sources))
                 .build();
     }
 
@@ -160,21 +214,25 @@ public class AnalyticsService {
         return "very_high";
     }
 
-    private List<String> generateHeatmapInsights(Map<String, Map<Integer, List<LogEntry>>> dayHourMap) {
+    private List<String> generateHeatmapInsights(long[][] counts, long firstDay) {
         List<String> insights = new ArrayList<>();
 
-        Map<Integer, Long> hourlyTotals = new HashMap<>();
-        for (Map<Integer, List<LogEntry>> dayData : dayHourMap.values()) {
-            for (Map.Entry<Integer, List<LogEntry>> entry : dayData.entrySet()) {
-                hourlyTotals.merge(entry.getKey(), (long) entry.getValue().size(), Long::sum);
+        long[] hourlyTotals = new long[24];
+        long grandTotal = 0;
+        for (long[] dayCounts : counts) {
+            for (int hour = 0; hour < 24; hour++) {
+                hourlyTotals[hour] += dayCounts[hour];
+                grandTotal += dayCounts[hour];
             }
         }
 
-        if (!hourlyTotals.isEmpty()) {
-            int peakHour = hourlyTotals.entrySet().stream()
-                    .max(Map.Entry.comparingByValue())
-                    .map(Map.Entry::getKey)
-                    .orElse(12);
+        if (grandTotal > 0) {
+            int peakHour = 0;
+            for (int hour = 1; hour < 24; hour++) {
+                if (hourlyTotals[hour] > hourlyTotals[peakHour]) {
+                    peakHour = hour;
+                }
+            }
 
             insights.add(String.format("🔥 Pic de trafic détecté vers %dh", peakHour));
         }
@@ -184,13 +242,14 @@ public class AnalyticsService {
         int weekdayCount = 0;
         int weekendCount = 0;
 
-        for (String dateStr : dayHourMap.keySet()) {
-            LocalDate date = LocalDate.parse(dateStr, DATE_FORMATTER);
-            int dayOfWeek = date.getDayOfWeek().getValue();
-            long dayTotal = dayHourMap.get(dateStr).values().stream()
-                    .mapToLong(List::size)
-                    .sum();
+        for (int dayIndex = 0; dayIndex < counts.length; dayIndex++) {
+            long dayTotal = 0;
+            for (long count : counts[dayIndex]) {
+                dayTotal += count;
+            }
+            if (dayTotal == 0) continue;
 
+            int dayOfWeek = LocalDate.ofEpochDay(firstDay + dayIndex).getDayOfWeek().getValue();
             if (dayOfWeek >= 6) {
                 weekendTotal += dayTotal;
                 weekendCount++;
@@ -218,42 +277,39 @@ public class AnalyticsService {
     // TOP CLIENTS
     // ============================================================================
 
-    public List<TopClientDTO> getTopClients(int limit, String timeRange, String connector) {
+    @Cacheable(value = "topClients", key = "#limit + '_' + #timeRange + '_' + #connector + '_' + #withErrorBounds",
+            sync = true)
+    public List<TopClientDTO> getTopClients(int limit, String timeRange, String connector, boolean withErrorBounds) {
         log.info("Getting top {} clients for {}, connector: {}", limit, timeRange, connector);
 
         TimeRangeDates dates = parseTimeRange(timeRange);
-        List<LogEntry> logs = queryLogsByTimeRange(dates.start, dates.end, connector);
-
-        Map<String, List<LogEntry>> clientMap = logs.stream()
-                .collect(Collectors.groupingBy(l -> l.getClientIp() != null ? l.getClientIp() : "unknown"));
 
-        List<TopClientDTO> topClients = clientMap.entrySet().stream()
-                .map(entry -> {
-                    String ip = entry.getKey();
-                    List<LogEntry> clientLogs = entry.getValue();
+        // Un seul passage en mémoire bornée : heavy hitters, et pour chaque client suivi ses
+        // requêtes, erreurs et latences depuis son entrée dans le suivi (au plus error manquées)
+        SpaceSavingTopK<String, TrafficStats> tracker =
+                new SpaceSavingTopK<>(heavyHitterCapacity, TrafficStats::new, TrafficStats::merge);
+        if (!forEachLogInRange(dates.start, dates.end, connector, l -> tracker.offer(clientKey(l)).record(l))) {
+            return new ArrayList<>();
+        }
 
-                    long requests = clientLogs.size();
-                    long errors = clientLogs.stream().filter(l -> !Boolean.TRUE.equals(l.getSuccess())).count();
-                    double errorRate = requests > 0 ? (errors * 100.0 / requests) : 0.0;
-                    double avgLatency = clientLogs.stream()
-                            .mapToDouble(l -> l.getResponseTimeMs() != null ? l.getResponseTimeMs() : 0.0)
-                            .average()
-                            .orElse(0.0);
+        return tracker.candidates(limit).stream()
+                .sorted(Comparator.comparingLong((SpaceSavingTopK.Entry<String, TrafficStats> e) ->
+                        e.aggregate().getRequests()).reversed())
+                .limit(limit)
+                .map(e -> {
+                    TrafficStats stats = e.aggregate();
 
                     return TopClientDTO.builder()
-                            .clientIp(ip)
-                            .requests(requests)
-                            .errors(errors)
-                            .errorRate(errorRate)
-                            .avgLatencyMs(avgLatency)
+                            .clientIp(e.key())
+                            .requests(stats.getRequests())
+                            .errors(stats.getErrors())
+                            .errorRate(stats.getErrorRate())
+                            .avgLatencyMs(stats.getAvgLatencyMs())
                             .connector(connector != null ? connector : "all")
+                            .requestsErrorBound(withErrorBounds ? e.error() : null)
                             .build();
                 })
-                .sorted(Comparator.comparingLong(TopClientDTO::getRequests).reversed())
-                .limit(limit)
                 .collect(Collectors.toList());
-
-        return topClients;
     }
 
     // ============================================================================
@@ -264,23 +320,19 @@ public class AnalyticsService {
         log.info("Getting trends for metric: {}, days: {}, connector: {}", metric, days, connector);
 
         ZonedDateTime now = ZonedDateTime.now(PARIS_ZONE);
-        ZonedDateTime startDate = now.minusDays(days);
-
-        List<LogEntry> logs = queryLogsByTimeRange(startDate, now, connector);
-
-        Map<String, List<LogEntry>> dailyMap = logs.stream()
-                .collect(Collectors.groupingBy(l ->
-                        l.getTimestamp().atZone(PARIS_ZONE).format(DATE_FORMATTER)
-                ));
 
+        // Jours clos lus depuis le store (calculés une seule fois), jour courant recalculé ;
+        // compteurs et moyennes uniquement : jamais de scan raw_log
         List<TrendDataPointDTO> dataPoints = new ArrayList<>();
+        Set<MetricSource> sources = EnumSet.noneOf(MetricSource.class);
 
         for (int i = days - 1; i >= 0; i--) {
             ZonedDateTime day = now.minusDays(i);
-            String dayKey = day.format(DATE_FORMATTER);
-            List<LogEntry> dayLogs = dailyMap.getOrDefault(dayKey, new ArrayList<>());
+            SourcedAggregates dayAggregates = dailyAggregateStore.getDay(day.toLocalDate(), Requirement.COUNTS);
+            LogAggregate dayAggregate = dayAggregates.get(connector);
+            sources.addAll(dayAggregates.sources());
 
-            double value = calculateMetricValue(metric, dayLogs);
+            double value = calculateMetricValue(metric, dayAggregate);
 
             dataPoints.add(TrendDataPointDTO.builder()
                     .timestamp(day)
@@ -297,21 +349,18 @@ public class AnalyticsService {
                 .data(dataPoints)
                 .anomalies(anomalies)
                 .insights(insights)
+                .dataSource(MetricSource.describe(sources))
                 .build();
     }
 
-    private double calculateMetricValue(String metric, List<LogEntry> logs) {
+    private double calculateMetricValue(String metric, LogAggregate aggregate) {
         switch (metric) {
             case "requests":
-                return logs.size();
+                return aggregate.getRequests();
             case "latency":
-                return logs.stream()
-                        .mapToDouble(l -> l.getResponseTimeMs() != null ? l.getResponseTimeMs() : 0.0)
-                        .average()
-                        .orElse(0.0);
+                return aggregate.getAvgLatencyMs();
             case "errorRate":
-                long errors = logs.stream().filter(l -> !Boolean.TRUE.equals(l.getSuccess())).count();
-                return logs.isEmpty() ? 0.0 : (errors * 100.0 / logs.size());
+                return aggregate.getErrorRate();
             default:
                 return 0.0;
         }
@@ -357,76 +406,96 @@ public class AnalyticsService {
 
         TimeRangeDates dates = parseTimeRange(timeRange);
 
-        ConnectorMetricsDTO gatewayMetrics = getConnectorMetrics(dates, "pi-gateway");
-        ConnectorMetricsDTO connectorMetrics = getConnectorMetrics(dates, "pi-connector");
+        // Une seule lecture pour tous les connectors : jours clos réutilisés, fragments scannés une fois
+        SourcedAggregates sourced = dailyAggregateStore.getRange(dates.start, dates.end, Requirement.COUNTS);
+        Map<String, LogAggregate> aggregates = sourced.byConnector();
 
-        long totalRequests = gatewayMetrics.getRequests() + connectorMetrics.getRequests();
+        Set<String> connectorNames = new LinkedHashSet<>(connectorRegistry.getConnectors());
+        aggregates.keySet().stream()
+                .filter(c -> !"all".equals(c))
+                .sorted()
+                .forEach(connectorNames::add);
 
-        gatewayMetrics.setRequestsPercentage(totalRequests > 0 ?
-                (gatewayMetrics.getRequests() * 100.0 / totalRequests) : 0.0);
-        connectorMetrics.setRequestsPercentage(totalRequests > 0 ?
-                (connectorMetrics.getRequests() * 100.0 / totalRequests) : 0.0);
+        List<ConnectorMetricsDTO> connectors = connectorNames.stream()
+                .map(c -> getConnectorMetrics(c, aggregates.get(c)))
+                .collect(Collectors.toList());
 
-        ComparisonDTO comparison = compareConnectors(gatewayMetrics, connectorMetrics);
+        long totalRequests = connectors.stream().mapToLong(ConnectorMetricsDTO::getRequests).sum();
+        for (ConnectorMetricsDTO metrics : connectors) {
+            metrics.setRequestsPercentage(totalRequests > 0 ?
+                    (metrics.getRequests() * 100.0 / totalRequests) : 0.0);
+        }
+
+        ComparisonDTO comparison = compareConnectors(connectors);
 
         return ConnectorBreakdownDTO.builder()
-                .piGateway(gatewayMetrics)
-                .piConnector(connectorMetrics)
+                .connectors(connectors)
+                .piGateway(findConnector(connectors, "pi-gateway"))
+                .piConnector(findConnector(connectors, "pi-connector"))
                 .comparison(comparison)
+                .dataSource(MetricSource.describe(sourced.sources()))
                 .build();
     }
 
-    private ConnectorMetricsDTO getConnectorMetrics(TimeRangeDates dates, String connector) {
-        List<LogEntry> logs = queryLogsByTimeRange(dates.start, dates.end, connector);
+    private ConnectorMetricsDTO getConnectorMetrics(String connector, LogAggregate aggregate) {
+        if (aggregate == null) {
+            aggregate = new LogAggregate();
+        }
 
-        long requests = logs.size();
-        long successCount = logs.stream().filter(l -> Boolean.TRUE.equals(l.getSuccess())).count();
-        double successRate = requests > 0 ? (successCount * 100.0 / requests) : 0.0;
+        double successRate = aggregate.getSuccessRate();
         double errorRate = 100.0 - successRate;
-        double avgLatency = logs.stream()
-                .mapToDouble(l -> l.getResponseTimeMs() != null ? l.getResponseTimeMs() : 0.0)
-                .average()
-                .orElse(0.0);
 
         return ConnectorMetricsDTO.builder()
                 .name(connector)
-                .requests(requests)
+                .requests(aggregate.getRequests())
                 .requestsPercentage(0.0)
-                .avgLatencyMs(avgLatency)
+                .avgLatencyMs(aggregate.getAvgLatencyMs())
                 .errorRate(errorRate)
                 .successRate(successRate)
                 .build();
     }
 
-    private ComparisonDTO compareConnectors(ConnectorMetricsDTO gateway, ConnectorMetricsDTO connector) {
+    private ConnectorMetricsDTO findConnector(List<ConnectorMetricsDTO> connectors, String name) {
+        return connectors.stream().filter(c -> name.equals(c.getName())).findFirst().orElse(null);
+    }
+
+    /**
+     * Désigner le meilleur connector (taux de succès, puis latence) et l'écart avec le suivant
+     */
+    private ComparisonDTO compareConnectors(List<ConnectorMetricsDTO> connectors) {
         Map<String, Double> differences = new HashMap<>();
+        if (connectors.isEmpty()) {
+            return ComparisonDTO.builder().differences(differences).build();
+        }
 
+        List<ConnectorMetricsDTO> ranked = connectors.stream()
+                .sorted(Comparator.comparingDouble(ConnectorMetricsDTO::getSuccessRate).reversed()
+                        .thenComparingDouble(ConnectorMetricsDTO::getAvgLatencyMs))
+                .collect(Collectors.toList());
+
+        ConnectorMetricsDTO winner = ranked.get(0);
+        if (ranked.size() == 1) {
+            return ComparisonDTO.builder()
+                    .winner(winner.getName())
+                    .reason("Seul connector actif")
+                    .differences(differences)
+                    .build();
+        }
+
+        ConnectorMetricsDTO runnerUp = ranked.get(1);
         differences.put("latency",
-                calculatePercentDifference(gateway.getAvgLatencyMs(), connector.getAvgLatencyMs()));
+                calculatePercentDifference(winner.getAvgLatencyMs(), runnerUp.getAvgLatencyMs()));
         differences.put("errorRate",
-                calculatePercentDifference(gateway.getErrorRate(), connector.getErrorRate()));
+                calculatePercentDifference(winner.getErrorRate(), runnerUp.getErrorRate()));
         differences.put("volume",
-                calculatePercentDifference(gateway.getRequests(), connector.getRequests()));
-
-        String winner;
-        String reason;
-
-        if (gateway.getSuccessRate() > connector.getSuccessRate()) {
-            winner = "pi-gateway";
-            reason = "Meilleur taux de succès";
-        } else if (connector.getSuccessRate() > gateway.getSuccessRate()) {
-            winner = "pi-connector";
-            reason = "Meilleur taux de succès";
-        } else if (gateway.getAvgLatencyMs() < connector.getAvgLatencyMs()) {
-            winner = "pi-gateway";
-            reason = "Latence plus faible";
-        } else {
-            winner = "pi-connector";
-            reason = "Latence plus faible";
-        }
+                calculatePercentDifference(winner.getRequests(), runnerUp.getRequests()));
+
+        String reason = winner.getSuccessRate() > runnerUp.getSuccessRate()
+                ? "Meilleur taux de succès"
+                : "Latence plus faible";
 
         return ComparisonDTO.builder()
-                .winner(winner)
+                .winner(winner.getName())
                 .reason(reason)
                 .differences(differences)
                 .build();
@@ -439,63 +508,12 @@ public class AnalyticsService {
     public List<AnomalyDTO> detectAnomalies(int days, String connector) {
         log.info("Detecting anomalies for {} days, connector: {}", days, connector);
 
-        ZonedDateTime now = ZonedDateTime.now(PARIS_ZONE);
-        ZonedDateTime startDate = now.minusDays(days);
-
-        List<LogEntry> logs = queryLogsByTimeRange(startDate, now, connector);
-
-        Map<ZonedDateTime, List<LogEntry>> hourlyMap = logs.stream()
-                .collect(Collectors.groupingBy(l ->
-                        l.getTimestamp().atZone(PARIS_ZONE).truncatedTo(ChronoUnit.HOURS)
-                ));
-
-        List<AnomalyDTO> anomalies = new ArrayList<>();
-
-        double avgErrorRate = calculateAverageErrorRate(hourlyMap);
-        double avgLatency = calculateAverageLatency(hourlyMap);
-
-        for (Map.Entry<ZonedDateTime, List<LogEntry>> entry : hourlyMap.entrySet()) {
-            ZonedDateTime hour = entry.getKey();
-            List<LogEntry> hourLogs = entry.getValue();
-
-            long errors = hourLogs.stream().filter(l -> !Boolean.TRUE.equals(l.getSuccess())).count();
-            double errorRate = hourLogs.isEmpty() ? 0.0 : (errors * 100.0 / hourLogs.size());
-            double latency = hourLogs.stream()
-                    .mapToDouble(l -> l.getResponseTimeMs() != null ? l.getResponseTimeMs() : 0.0)
-                    .average()
-                    .orElse(0.0);
-
-            if (errorRate > avgErrorRate * 2 && errorRate > 5.0) {
-                anomalies.add(AnomalyDTO.builder()
-                        .id(UUID.randomUUID().toString())
-                        .metric("error_rate")
-                        .value(errorRate)
-                        .threshold(avgErrorRate * 2)
-                        .severity(errorRate > 10.0 ? "critical" : "warning")
-                        .timestamp(hour)
-                        .description(String.format("Taux d'erreur élevé : %.1f%%", errorRate))
-                        .rootCause("Pic d'erreurs détecté, vérifier les logs")
-                        .connector(connector != null ? connector : "all")
-                        .build());
-            }
-
-            if (latency > avgLatency * 2 && latency > 100.0) {
-                anomalies.add(AnomalyDTO.builder()
-                        .id(UUID.randomUUID().toString())
-                        .metric("latency")
-                        .value(latency)
-                        .threshold(avgLatency * 2)
-                        .severity(latency > 200.0 ? "critical" : "warning")
-                        .timestamp(hour)
-                        .description(String.format("Latence élevée : %.1fms", latency))
-                        .rootCause("Augmentation du trafic ou problème de performance")
-                        .connector(connector != null ? connector : "all")
-                        .build());
-            }
-        }
+        // Réponse depuis l'état du détecteur continu (baselines saisonnières par heure close)
+        return anomalyDetectionService.getAnomalies(days, connector);
+    }
 
-        anomalies.sort(Comparator.comparing(AnomalyDTO::getTimestamp).reversed());
-        return anomalies;
+    public AnomalyBaselineStatusDTO getAnomalyBaselineStatus() {
+        return anomalyDetectionService.getBaselineStatus();
     }
 
     private List<AnomalyDTO> detectAnomaliesInTrend(String metric,
@@ -536,94 +554,126 @@ public class AnalyticsService {
     // TOP ENDPOINTS
     // ============================================================================
 
-    public TopEndpointsDTO getTopEndpoints(String type, int limit, String timeRange, String connector) {
+    @Cacheable(value = "topEndpoints",
+            key = "#type + '_' + #limit + '_' + #timeRange + '_' + #connector + '_' + #withErrorBounds", sync = true)
+    public TopEndpointsDTO getTopEndpoints(String type, int limit, String timeRange, String connector,
+                                           boolean withErrorBounds) {
         log.info("Getting top {} endpoints, type: {}, timeRange: {}, connector: {}",
                 limit, type, timeRange, connector);
 
         TimeRangeDates dates = parseTimeRange(timeRange);
-        List<LogEntry> logs = queryLogsByTimeRange(dates.start, dates.end, connector);
+        boolean slowest = type.equals("slowest");
+
+        // Un seul passage en mémoire bornée : endpoints de plus forte latence maximale ou heavy
+        // hitters des erreurs, et pour chaque endpoint suivi son trafic et sa distribution de
+        // latences depuis son entrée dans le suivi (comptes exacts sans éviction)
+        Map<String, TrafficStats> slowStats = new HashMap<>();
+        MaxValueTopK<String> slowTracker = new MaxValueTopK<>(heavyHitterCapacity, slowStats::remove);
+        SpaceSavingTopK<String, TrafficStats> errorTracker =
+                new SpaceSavingTopK<>(heavyHitterCapacity, TrafficStats::new, TrafficStats::merge);
+        boolean read = forEachLogInRange(dates.start, dates.end, connector, l -> {
+            String endpoint = endpointKey(l);
+            TrafficStats stats;
+            if (slowest) {
+                boolean tracked = slowTracker.offer(endpoint, l.getResponseTimeMs() != null ? l.getResponseTimeMs() : 0.0);
+                stats = tracked ? slowStats.computeIfAbsent(endpoint, e -> new TrafficStats()) : null;
+            } else if (!Boolean.TRUE.equals(l.getSuccess())) {
+                stats = errorTracker.offer(endpoint);
+            } else {
+                stats = errorTracker.aggregate(endpoint);
+            }
+            if (stats != null) {
+                stats.recordWithLatency(l);
+            }
+        });
+        if (!read) {
+            return emptyTopEndpoints(type);
+        }
 
-        Map<String, List<LogEntry>> endpointMap = logs.stream()
-                .collect(Collectors.groupingBy(l ->
-                        (l.getMethod() != null ? l.getMethod() : "GET") + " " +
-                                (l.getPath() != null ? l.getPath() : "/unknown")
-                ));
+        // Bornes des observations manquées par endpoint
+        Map<String, TrafficStats> statsByEndpoint = new HashMap<>();
+        Map<String, Long> errorBounds = new HashMap<>();
+        if (slowest) {
+            statsByEndpoint.putAll(slowStats);
+            slowStats.keySet().forEach(endpoint -> errorBounds.put(endpoint, slowTracker.missed()));
+        } else {
+            for (SpaceSavingTopK.Entry<String, TrafficStats> entry : errorTracker.candidates(limit)) {
+                statsByEndpoint.put(entry.key(), entry.aggregate());
+                errorBounds.put(entry.key(), entry.error());
+            }
+        }
 
-        List<EndpointMetricsDTO> endpoints = endpointMap.entrySet().stream()
-                .map(entry -> {
-                    String endpoint = entry.getKey();
-                    List<LogEntry> endpointLogs = entry.getValue();
+        List<EndpointMetricsDTO> endpoints = statsByEndpoint.entrySet().stream()
+                .sorted(slowest
+                        ? Comparator.comparingDouble((Map.Entry<String, TrafficStats> e) -> e.getValue().getAvgLatencyMs())
+                                .reversed()
+                        : Comparator.comparingLong((Map.Entry<String, TrafficStats> e) -> e.getValue().getErrors())
+                                .reversed())
+                .limit(limit)
+                .map(e -> {
+                    String endpoint = e.getKey();
+                    TrafficStats stats = e.getValue();
 
                     String[] parts = endpoint.split(" ", 2);
                     String method = parts[0];
                     String path = parts.length > 1 ? parts[1] : "";
 
-                    long requests = endpointLogs.size();
-                    long errors = endpointLogs.stream().filter(l -> !Boolean.TRUE.equals(l.getSuccess())).count();
-                    double errorRate = requests > 0 ? (errors * 100.0 / requests) : 0.0;
-
-                    List<Double> latencies = endpointLogs.stream()
-                            .map(l -> l.getResponseTimeMs() != null ? l.getResponseTimeMs() : 0.0)
-                            .sorted()
-                            .collect(Collectors.toList());
-
-                    double avgLatency = latencies.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-                    double p95 = getPercentile(latencies, 95);
-                    double p99 = getPercentile(latencies, 99);
-
                     return EndpointMetricsDTO.builder()
                             .path(path)
                             .method(method)
                             .connector(connector != null ? connector : "all")
-                            .requests(requests)
-                            .avgLatencyMs(avgLatency)
-                            .errors(errors)
-                            .errorRate(errorRate)
-                            .p95LatencyMs(p95)
-                            .p99LatencyMs(p99)
+                            .requests(stats.getRequests())
+                            .avgLatencyMs(stats.getAvgLatencyMs())
+                            .errors(stats.getErrors())
+                            .errorRate(stats.getErrorRate())
+                            .p95LatencyMs(stats.getLatencyPercentile(95))
+                            .p99LatencyMs(stats.getLatencyPercentile(99))
+                            .requestsErrorBound(withErrorBounds ? errorBounds.getOrDefault(endpoint, 0L) : null)
                             .build();
                 })
-                .sorted(type.equals("slowest")
-                        ? Comparator.comparingDouble(EndpointMetricsDTO::getAvgLatencyMs).reversed()
-                        : Comparator.comparingLong(EndpointMetricsDTO::getErrors).reversed())
-                .limit(limit)
                 .collect(Collectors.toList());
 
         return TopEndpointsDTO.builder()
                 .type(type)
                 .endpoints(endpoints)
+                .dataSource(MetricSource.RAW_LOG.getLabel())
+                .build();
+    }
+
+    private TopEndpointsDTO emptyTopEndpoints(String type) {
+        return TopEndpointsDTO.builder()
+                .type(type)
+                .endpoints(new ArrayList<>())
+                .dataSource(MetricSource.RAW_LOG.getLabel())
                 .build();
     }
 
+    private String endpointKey(LogEntry l) {
+        return (l.getMethod() != null ? l.getMethod() : "GET") + " " +
+                (l.getPath() != null ? l.getPath() : "/unknown");
+    }
+
+    private String clientKey(LogEntry l) {
+        return l.getClientIp() != null ? l.getClientIp() : "unknown";
+    }
+
     // ============================================================================
     // STATUS DISTRIBUTION
     // ============================================================================
 
+    @Cacheable(value = "statusDistribution", key = "#timeRange + '_' + #connector", sync = true)
     public Map<String, StatusDistributionDTO> getStatusDistribution(String timeRange, String connector) {
         log.info("Getting status distribution for {}, connector: {}", timeRange, connector);
 
         TimeRangeDates dates = parseTimeRange(timeRange);
-        List<LogEntry> logs = queryLogsByTimeRange(dates.start, dates.end, connector);
 
-        long total = logs.size();
+        // Status codes exacts : rollups pour les heures closes, raw_log pour le reste
+        SourcedAggregates aggregates = dailyAggregateStore.getRange(dates.start, dates.end, Requirement.DISTRIBUTION);
+        StatusCodeHistogram histogram = aggregates.get(connector).getStatusCodes();
 
-        Map<String, Long> categoryCounts = new HashMap<>();
-        categoryCounts.put("2xx", 0L);
-        categoryCounts.put("3xx", 0L);
-        categoryCounts.put("4xx", 0L);
-        categoryCounts.put("5xx", 0L);
-
-        Map<Integer, Long> statusCodeCounts = new HashMap<>();
-
-        for (LogEntry log : logs) {
-            int statusCode = log.getStatusCode() != null ? log.getStatusCode() : 0;
-            String category = (statusCode / 100) + "xx";
-
-            categoryCounts.merge(category, 1L, Long::sum);
-            statusCodeCounts.merge(statusCode, 1L, Long::sum);
-        }
+        long total = histogram.getTotal();
 
-        Map<String, StatusCategoryDTO> categories = categoryCounts.entrySet().stream()
+        Map<String, StatusCategoryDTO> categories = histogram.toCategoryMap("2xx", "3xx", "4xx", "5xx").entrySet().stream()
                 .collect(Collectors.toMap(
                         Map.Entry::getKey,
                         e -> StatusCategoryDTO.builder()
@@ -633,22 +683,23 @@ public class AnalyticsService {
                                 .build()
                 ));
 
-        List<StatusCodeDetailDTO> topCodes = statusCodeCounts.entrySet().stream()
-                .sorted(Map.Entry.<Integer, Long>comparingByValue().reversed())
-                .limit(5)
-                .map(e -> StatusCodeDetailDTO.builder()
-                        .statusCode(e.getKey())
-                        .count(e.getValue())
-                        .percentage(total > 0 ? (e.getValue() * 100.0 / total) : 0.0)
-                        .description(getStatusDescription(e.getKey()))
-                        .build())
-                .collect(Collectors.toList());
+        List<StatusCodeDetailDTO> topCodes = new ArrayList<>();
+        for (int statusCode : histogram.topCodes(5)) {
+            long count = histogram.getCount(statusCode);
+            topCodes.add(StatusCodeDetailDTO.builder()
+                    .statusCode(statusCode)
+                    .count(count)
+                    .percentage(total > 0 ? (count * 100.0 / total) : 0.0)
+                    .description(getStatusDescription(statusCode))
+                    .build());
+        }
 
         Map<String, StatusDistributionDTO> result = new HashMap<>();
         result.put(connector != null ? connector : "all",
                 StatusDistributionDTO.builder()
                         .categories(categories)
                         .topCodes(topCodes)
+                        .dataSource(MetricSource.describe(aggregates.sources()))
                         .build());
 
         return result;
@@ -658,20 +709,19 @@ public class AnalyticsService {
     // HELPER METHODS
     // ============================================================================
 
-    private List<LogEntry> queryLogsByTimeRange(ZonedDateTime start, ZonedDateTime end, String connector) {
-        log.debug("Querying logs from {} to {} for connector: {}", start, end, connector);
-
+    /**
+     * Parcourir les logs de la plage sans les matérialiser (segments pour les heures closes) ;
+     * false si la lecture a échoué (résultat dégradé, non mis en cache)
+     */
+    private boolean forEachLogInRange(ZonedDateTime start, ZonedDateTime end, String connector,
+                                      Consumer<LogEntry> consumer) {
         try {
-            return bigtableService.searchLogs(
-                    connector != null && !connector.equals("all") ? connector : "all",
-                    "all",
-                    start.toInstant(),
-                    end.toInstant(),
-                    100000 // Large limit pour analytics
-            );
+            segmentStore.forEachLog(connector != null ? connector : "all", start.toInstant(), end.toInstant(), consumer);
+            return true;
         } catch (Exception e) {
-            log.error("Error querying logs by time range", e);
-            return new ArrayList<>();
+            log.error("Error reading logs by time range", e);
+            CacheFreshness.markDegraded();
+            return false;
         }
     }
 
@@ -691,13 +741,6 @@ public class AnalyticsService {
         }
     }
 
-    private double getPercentile(List<Double> sortedValues, double percentile) {
-        if (sortedValues.isEmpty()) return 0.0;
-        int index = (int) Math.ceil(percentile / 100.0 * sortedValues.size()) - 1;
-        index = Math.max(0, Math.min(index, sortedValues.size() - 1));
-        return sortedValues.get(index);
-    }
-
     private double calculatePercentChange(double oldValue, double newValue) {
         if (oldValue == 0) return newValue > 0 ? 100.0 : 0.0;
         return ((newValue - oldValue) / oldValue) * 100.0;
@@ -709,24 +752,6 @@ public class AnalyticsService {
         return ((value1 - value2) / avg) * 100.0;
     }
 
-    private double calculateAverageErrorRate(Map<ZonedDateTime, List<LogEntry>> hourlyMap) {
-        return hourlyMap.values().stream()
-                .mapToDouble(logs -> {
-                    long errors = logs.stream().filter(l -> !Boolean.TRUE.equals(l.getSuccess())).count();
-                    return logs.isEmpty() ? 0.0 : (errors * 100.0 / logs.size());
-                })
-                .average()
-                .orElse(0.0);
-    }
-
-    private double calculateAverageLatency(Map<ZonedDateTime, List<LogEntry>> hourlyMap) {
-        return hourlyMap.values().stream()
-                .flatMap(List::stream)
-                .mapToDouble(l -> l.getResponseTimeMs() != null ? l.getResponseTimeMs() : 0.0)
-                .average()
-                .orElse(0.0);
-    }
-
     private String getDayName(int dayOfWeek) {
         String[] days = {"Lun", "Mar", "Mer", "Jeu", "Ven", "Sam", "Dim"};
         return days[dayOfWeek - 1];
@@ -749,6 +774,12 @@ public class AnalyticsService {
     private PeriodDates calculatePeriodDates(String period) {
         ZonedDateTime now = ZonedDateTime.now(PARIS_ZONE);
 
+        // Période personnalisée : "début/fin" en dates (fin incluse) ou en instants ISO 8601
+        if (period.contains("/")) {
+            String[] bounds = period.split("/", 2);
+            return new PeriodDates(parsePeriodBound(bounds[0], false), parsePeriodBound(bounds[1], true));
+        }
+
         switch (period) {
             case "current":
             case "thisWeek":
@@ -765,6 +796,15 @@ public class AnalyticsService {
         }
     }
 
+    private ZonedDateTime parsePeriodBound(String value, boolean isEnd) {
+        String trimmed = value.trim();
+        if (trimmed.length() == 10) {
+            LocalDate date = LocalDate.parse(trimmed);
+            return (isEnd ? date.plusDays(1) : date).atStartOfDay(PARIS_ZONE);
+        }
+        return Instant.parse(trimmed).atZone(PARIS_ZONE);
+    }
+
     private static class TimeRangeDates {
         ZonedDateTime start;
         ZonedDateTime end;
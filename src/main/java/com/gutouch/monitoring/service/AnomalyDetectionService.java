@@ -0,0 +1,244 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.aggregate.LogAggregate;
+import com.gutouch.monitoring.aggregate.SeasonalBaseline;
+import com.gutouch.monitoring.dto.AnomalyBaselineStatusDTO;
+import com.gutouch.monitoring.dto.AnomalyDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+/**
+ * Détection d'anomalies en continu sur les heures closes.
+ *
+ * Chaque heure close est agrégée une fois par connector, comparée à sa baseline
+ * saisonnière (heure de la semaine / du jour), puis intégrée à cette baseline.
+ * Les anomalies détectées sont conservées : l'API répond depuis cet état en O(heures)
+ * sans relire raw_log.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class AnomalyDetectionService {
+
+    private static final long HOUR_MS = 3_600_000L;
+    private static final ZoneId PARIS_ZONE = ZoneId.of("Europe/Paris");
+    private static final String ALL = "all";
+
+    private final MetricSourceRouter metricSourceRouter;
+
+    @Value("${analytics.anomalies.alpha:0.2}")
+    private double alpha;
+
+    @Value("${analytics.anomalies.min-samples:3}")
+    private int minSamples;
+
+    @Value("${analytics.anomalies.warning-z-score:3.0}")
+    private double warningZScore;
+
+    @Value("${analytics.anomalies.critical-z-score:5.0}")
+    private double criticalZScore;
+
+    @Value("${analytics.anomalies.min-requests:20}")
+    private long minRequests;
+
+    @Value("${analytics.anomalies.warmup-days:14}")
+    private int warmupDays;
+
+    @Value("${analytics.anomalies.retention-days:35}")
+    private int retentionDays;
+
+    private final Map<String, SeasonalBaseline> errorRateBaselines = new ConcurrentHashMap<>();
+    private final Map<String, SeasonalBaseline> latencyBaselines = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, List<AnomalyDTO>> anomaliesByHour = new ConcurrentSkipListMap<>();
+
+    private volatile long lastProcessedHour = -1L;
+    // Première heure avec du trafic, -1 tant qu'aucune
+    private volatile long firstObservedHour = -1L;
+    private volatile boolean warmingUp = true;
+
+    /**
+     * Anomalies des N derniers jours pour un connector ("all" ou null pour tous)
+     */
+    public List<AnomalyDTO> getAnomalies(int days, String connector) {
+        String key = connectorKey(connector);
+        long from = System.currentTimeMillis() - days * 24L * HOUR_MS;
+
+        return anomaliesByHour.tailMap(hourStart(from)).values().stream()
+                .flatMap(List::stream)
+                .filter(a -> key.equals(a.getConnector()))
+                .sorted(Comparator.comparing(AnomalyDTO::getTimestamp).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * État d'apprentissage : tant que warmingUp, ou si l'historique appris est plus court
+     * que warmup-days, les anomalies reposent sur des baselines incomplètes
+     */
+    public AnomalyBaselineStatusDTO getBaselineStatus() {
+        long first = firstObservedHour;
+        long last = lastProcessedHour;
+        return AnomalyBaselineStatusDTO.builder()
+                .warmingUp(warmingUp)
+                .baselineStart(first >= 0 ? Instant.ofEpochMilli(first) : null)
+                .lastProcessedHour(last >= 0 ? Instant.ofEpochMilli(last) : null)
+                .baselineDays(baselineDays(first, last))
+                .warmupDays(warmupDays)
+                .build();
+    }
+
+    /**
+     * Apprentissage initial des baselines sur l'historique récent
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        log.info("Warming up anomaly baselines over {} days", warmupDays);
+        processClosedHours();
+    }
+
+    /**
+     * Traiter les heures closes depuis la dernière exécution
+     */
+    @Scheduled(cron = "${analytics.anomalies.close-cron:0 2 * * * *}")
+    public void closeHours() {
+        processClosedHours();
+        anomaliesByHour.headMap(hourStart(System.currentTimeMillis()) - retentionDays * 24L * HOUR_MS).clear();
+    }
+
+    private synchronized void processClosedHours() {
+        long currentHour = hourStart(System.currentTimeMillis());
+        long hour = lastProcessedHour < 0
+                ? currentHour - warmupDays * 24L * HOUR_MS
+                : lastProcessedHour + HOUR_MS;
+
+        while (hour < currentHour) {
+            Map<String, LogAggregate> aggregates = aggregateHour(hour);
+            if (aggregates == null) {
+                // Réessayer cette heure au prochain passage
+                return;
+            }
+            if (firstObservedHour < 0 && !aggregates.isEmpty()) {
+                firstObservedHour = hour;
+            }
+            evaluate(hour, aggregates);
+            lastProcessedHour = hour;
+            hour += HOUR_MS;
+        }
+
+        if (warmingUp) {
+            warmingUp = false;
+            double learnedDays = baselineDays(firstObservedHour, lastProcessedHour);
+            if (learnedDays < warmupDays) {
+                log.warn("Anomaly baselines learned from {} days of history only ({} configured): "
+                        + "anomalies may be unreliable until enough history accumulates",
+                        String.format("%.1f", learnedDays), warmupDays);
+            } else {
+                log.info("Anomaly baselines warmed up over {} days", warmupDays);
+            }
+        }
+    }
+
+    private static double baselineDays(long firstHour, long lastHour) {
+        if (firstHour < 0 || lastHour < firstHour) return 0.0;
+        return (lastHour + HOUR_MS - firstHour) / (24.0 * HOUR_MS);
+    }
+
+    private Map<String, LogAggregate> aggregateHour(long hour) {
+        try {
+            // Compteurs et moyennes suffisent : rollups, sinon jauges metrics_log
+            return metricSourceRouter.aggregateByConnector(Instant.ofEpochMilli(hour), Instant.ofEpochMilli(hour + HOUR_MS),
+                    MetricSourceRouter.Requirement.COUNTS).byConnector();
+        } catch (Exception e) {
+            log.error("Error aggregating hour {} for anomaly detection", Instant.ofEpochMilli(hour), e);
+            return null;
+        }
+    }
+
+    private void evaluate(long hour, Map<String, LogAggregate> aggregates) {
+        ZonedDateTime timestamp = Instant.ofEpochMilli(hour).atZone(PARIS_ZONE);
+        int slot = (timestamp.getDayOfWeek().getValue() - 1) * 24 + timestamp.getHour();
+        List<AnomalyDTO> anomalies = new ArrayList<>();
+
+        for (Map.Entry<String, LogAggregate> entry : aggregates.entrySet()) {
+            String connector = entry.getKey();
+            LogAggregate aggregate = entry.getValue();
+            if (aggregate.getRequests() < minRequests) continue;
+
+            double errorRate = aggregate.getErrorRate();
+            SeasonalBaseline errorBaseline = errorRateBaselines.computeIfAbsent(connector, c -> newBaseline());
+            AnomalyDTO errorAnomaly = check(errorBaseline.estimate(slot), errorRate, 1.0, 5.0);
+            if (errorAnomaly != null) {
+                errorAnomaly.setMetric("error_rate");
+                errorAnomaly.setDescription(String.format("Taux d'erreur élevé : %.1f%%", errorRate));
+                errorAnomaly.setRootCause("Pic d'erreurs inhabituel pour ce créneau, vérifier les logs");
+                anomalies.add(complete(errorAnomaly, connector, timestamp));
+            }
+            errorBaseline.update(slot, errorRate);
+
+            double latency = aggregate.getAvgLatencyMs();
+            SeasonalBaseline latencyBaseline = latencyBaselines.computeIfAbsent(connector, c -> newBaseline());
+            AnomalyDTO latencyAnomaly = check(latencyBaseline.estimate(slot), latency, 5.0, 100.0);
+            if (latencyAnomaly != null) {
+                latencyAnomaly.setMetric("latency");
+                latencyAnomaly.setDescription(String.format("Latence élevée : %.1fms", latency));
+                latencyAnomaly.setRootCause("Augmentation du trafic ou problème de performance");
+                anomalies.add(complete(latencyAnomaly, connector, timestamp));
+            }
+            latencyBaseline.update(slot, latency);
+        }
+
+        if (!anomalies.isEmpty()) {
+            anomaliesByHour.put(hour, anomalies);
+        }
+    }
+
+    /**
+     * Comparer une valeur à la baseline (écart-type plancher, valeur minimale absolue)
+     */
+    private AnomalyDTO check(SeasonalBaseline.Estimate estimate, double value, double minStdDev, double minValue) {
+        if (estimate == null || value < minValue) return null;
+
+        double stdDev = Math.max(estimate.stdDev(), Math.max(minStdDev, estimate.mean() * 0.1));
+        double zScore = (value - estimate.mean()) / stdDev;
+        if (zScore < warningZScore) return null;
+
+        return AnomalyDTO.builder()
+                .value(value)
+                .threshold(estimate.mean() + warningZScore * stdDev)
+                .severity(zScore >= criticalZScore ? "critical" : "warning")
+                .build();
+    }
+
+    private AnomalyDTO complete(AnomalyDTO anomaly, String connector, ZonedDateTime timestamp) {
+        anomaly.setId(connector + "_" + anomaly.getMetric() + "_" + timestamp.toInstant().toEpochMilli());
+        anomaly.setConnector(connector);
+        anomaly.setTimestamp(timestamp);
+        return anomaly;
+    }
+
+    private SeasonalBaseline newBaseline() {
+        return new SeasonalBaseline(alpha, minSamples);
+    }
+
+    private static String connectorKey(String connector) {
+        return connector == null || connector.isEmpty() ? ALL : connector;
+    }
+
+    private static long hourStart(long epochMillis) {
+        return epochMillis - Math.floorMod(epochMillis, HOUR_MS);
+    }
+}
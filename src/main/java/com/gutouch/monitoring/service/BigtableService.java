@@ -1,11 +1,20 @@
 package com.gutouch.monitoring.service;
 
+import com.google.api.gax.batching.Batcher;
 import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminClient;
+import com.google.cloud.bigtable.admin.v2.models.CreateTableRequest;
+import com.google.cloud.bigtable.admin.v2.models.GCRules;
 import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.Filters;
 import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
 import com.google.cloud.bigtable.data.v2.models.Row;
 import com.google.cloud.bigtable.data.v2.models.RowCell;
+import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import com.google.cloud.bigtable.data.v2.models.RowMutationEntry;
 import com.google.protobuf.ByteString;
+import com.gutouch.monitoring.config.CacheFreshness;
 import com.gutouch.monitoring.dto.LogEntry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,6 +25,8 @@ import org.springframework.stereotype.Service;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -26,6 +37,13 @@ import java.util.stream.StreamSupport;
 public class BigtableService {
 
     private final BigtableDataClient bigtableClient;
+    private final LocalHotStore localHotStore;
+
+    @Value("${bigtable.project-id}")
+    private String projectId;
+
+    @Value("${bigtable.instance-id}")
+    private String instanceId;
 
     @Value("${bigtable.tables.metrics}")
     private String metricsTable;
@@ -36,6 +54,12 @@ public class BigtableService {
     @Value("${bigtable.tables.processing}")
     private String processingTable;
 
+    @Value("${bigtable.tables.rollups:hourly_rollup}")
+    private String rollupsTable;
+
+    @Value("${bigtable.column-families.rollups:r}")
+    private String rollupsCF;
+
     @Value("${bigtable.column-families.metrics}")
     private String metricsCF;
 
@@ -48,49 +72,125 @@ public class BigtableService {
     @Value("${bigtable.column-families.processing-message}")
     private String processingMessageCF;
 
+    private static final long METRICS_KEY_MARGIN_MS = 60_000L;
+    private static final Pattern TIMESTAMP_PREFIXED_KEY = Pattern.compile("\\d{13}#.*");
+
+    // Disposition des clés metrics_log, déterminée à la première lecture
+    private volatile Boolean metricsKeysTimestampPrefixed;
+
     /**
      * Récupérer les métriques agrégées d'un connector
      */
-    @Cacheable(value = "connectorMetrics", key = "#connector + '_' + #startTime + '_' + #endTime")
+    @Cacheable(value = "connectorMetrics", key = "#connector + '_' + #startTime + '_' + #endTime", sync = true)
     public List<Map<String, String>> getConnectorMetrics(String connector, Instant startTime, Instant endTime) {
         log.info("Fetching metrics for connector: {} from {} to {}", connector, startTime, endTime);
         
         List<Map<String, String>> metrics = new ArrayList<>();
         
         try {
-            // Construire la query avec regex pour filtrer par connector
-            String regex = String.format(".*#metrics#%s#.*", connector);
-            Query query = Query.create(metricsTable)
-                    .filter(com.google.cloud.bigtable.data.v2.models.Filters.FILTERS
-                            .key()
-                            .regex(regex))
-                    .limit(10000);
-
-            ServerStream<Row> rows = bigtableClient.readRows(query);
-            
-            for (Row row : rows) {
-                Map<String, String> metricMap = rowToMap(row, metricsCF);
-                
-                // Filtrer par timestamp si nécessaire
-                String timestampStr = metricMap.get("window_timestamp");
-                if (timestampStr != null) {
-                    long timestamp = Long.parseLong(timestampStr);
-                    Instant metricTime = Instant.ofEpochMilli(timestamp);
-                    
-                    if (metricTime.isAfter(startTime) && metricTime.isBefore(endTime)) {
-                        metrics.add(metricMap);
-                    }
-                }
-            }
-            
+            metrics = scanConnectorMetrics(connector, startTime, endTime);
             log.info("Retrieved {} metrics for {}", metrics.size(), connector);
         } catch (Exception e) {
             log.error("Error fetching metrics for connector: {}", connector, e);
+            CacheFreshness.markDegraded();
         }
         
         return metrics;
     }
 
+    /**
+     * Lire toutes les fenêtres metrics_log d'un connector dans ]début, fin[, sans cache ni limite :
+     * par plage de clés si elles sont horodatées, sinon sur toute la table.
+     * Les erreurs de lecture sont propagées.
+     */
+    public List<Map<String, String>> scanConnectorMetrics(String connector, Instant startTime, Instant endTime) {
+        Query query = Query.create(metricsTable)
+                .filter(Filters.FILTERS.key().regex(String.format(".*#metrics#%s#.*", connector)));
+        if (metricsKeysTimestampPrefixed()) {
+            // Marge d'une fenêtre : l'horodatage de clé peut différer de window_timestamp
+            query.range(String.format("%013d", Math.max(0L, startTime.toEpochMilli() - METRICS_KEY_MARGIN_MS)),
+                    String.format("%013d", endTime.toEpochMilli() + METRICS_KEY_MARGIN_MS));
+        }
+
+        List<Map<String, String>> metrics = new ArrayList<>();
+        for (Row row : bigtableClient.readRows(query)) {
+            Map<String, String> metricMap = rowToMap(row, metricsCF);
+            long timestamp = parseWindowTimestamp(metricMap);
+            if (timestamp > startTime.toEpochMilli() && timestamp < endTime.toEpochMilli()) {
+                metrics.add(metricMap);
+            }
+        }
+        return metrics;
+    }
+
+    private static long parseWindowTimestamp(Map<String, String> metric) {
+        String value = metric.get("window_timestamp");
+        if (value == null || value.isEmpty()) return -1L;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Lister les connectors présents dans metrics_log (clés seules, sans valeurs, sans limite).
+     * Avec des clés préfixées par le timestamp, seules les clés depuis {@code since} sont lues
+     * (null : toute la table) ; sinon toute la table.
+     */
+    public Set<String> listMetricsConnectors(Instant since) {
+        Query query = Query.create(metricsTable)
+                .filter(Filters.FILTERS.chain()
+                        .filter(Filters.FILTERS.key().regex(".*#metrics#.*"))
+                        .filter(Filters.FILTERS.limit().cellsPerRow(1))
+                        .filter(Filters.FILTERS.value().strip()));
+        if (since != null && metricsKeysTimestampPrefixed()) {
+            query.range(ByteStringRange.unbounded().startClosed(String.format("%013d", since.toEpochMilli())));
+        }
+
+        Set<String> connectors = new TreeSet<>();
+        for (Row row : bigtableClient.readRows(query)) {
+            String connector = metricsKeyConnector(row.getKey().toStringUtf8());
+            if (connector != null) {
+                connectors.add(connector);
+            }
+        }
+        return connectors;
+    }
+
+    /**
+     * Vrai si les clés metrics_log commencent par le timestamp de fenêtre (%013d, comme raw_log) :
+     * une plage de temps se lit alors par plage de clés. Déterminé une fois sur la première clé.
+     */
+    boolean metricsKeysTimestampPrefixed() {
+        Boolean prefixed = metricsKeysTimestampPrefixed;
+        if (prefixed == null) {
+            Query query = Query.create(metricsTable)
+                    .filter(Filters.FILTERS.chain()
+                            .filter(Filters.FILTERS.key().regex(".*#metrics#.*"))
+                            .filter(Filters.FILTERS.limit().cellsPerRow(1))
+                            .filter(Filters.FILTERS.value().strip()))
+                    .limit(1);
+            prefixed = Boolean.FALSE;
+            for (Row row : bigtableClient.readRows(query)) {
+                prefixed = TIMESTAMP_PREFIXED_KEY.matcher(row.getKey().toStringUtf8()).matches();
+            }
+            metricsKeysTimestampPrefixed = prefixed;
+            log.info("metrics_log row keys {} timestamp-prefixed", prefixed ? "are" : "are not");
+        }
+        return prefixed;
+    }
+
+    private static String metricsKeyConnector(String rowKey) {
+        String[] keyParts = rowKey.split("#");
+        for (int i = 0; i < keyParts.length - 1; i++) {
+            if ("metrics".equals(keyParts[i]) && !keyParts[i + 1].isEmpty()) {
+                return keyParts[i + 1];
+            }
+        }
+        return null;
+    }
+
     /**
      * Récupérer tous les logs bruts avec filtres
      */
@@ -108,16 +208,7 @@ public class BigtableService {
             String startKey = String.format("%013d", startTimestamp);
             String endKey = String.format("%013d", endTimestamp);
             
-            // Construire la query
-            Query query = Query.create(logsTable)
-                    .range(startKey, endKey)
-                    .limit(limit * 2); // *2 car on va filtrer après
-
-            ServerStream<Row> rows = bigtableClient.readRows(query);
-            
-            for (Row row : rows) {
-                LogEntry logEntry = rowToLogEntry(row);
-                
+            Predicate<LogEntry> collector = logEntry -> {
                 // Appliquer les filtres
                 boolean matches = true;
                 
@@ -131,7 +222,22 @@ public class BigtableService {
                 
                 if (matches) {
                     logs.add(logEntry);
-                    if (logs.size() >= limit) {
+                }
+                return logs.size() < limit;
+            };
+
+            // Début de plage servi par le store local s'il le couvre
+            String fromKey = scanLocalLogs(startTimestamp, endTimestamp, collector);
+            if (fromKey != null && fromKey.compareTo(endKey) < 0) {
+                // Construire la query
+                Query query = Query.create(logsTable)
+                        .range(fromKey, endKey)
+                        .limit(limit * 2); // *2 car on va filtrer après
+
+                ServerStream<Row> rows = bigtableClient.readRows(query);
+
+                for (Row row : rows) {
+                    if (!collector.test(rowToLogEntry(row))) {
                         break;
                     }
                 }
@@ -140,15 +246,141 @@ public class BigtableService {
             log.info("Retrieved {} logs", logs.size());
         } catch (Exception e) {
             log.error("Error searching logs", e);
+            CacheFreshness.markDegraded();
         }
         
         return logs;
     }
 
+    /**
+     * Parcourir tous les logs bruts d'une plage de temps, sans limite ni accumulation
+     */
+    public void forEachLog(Instant startTime, Instant endTime, Consumer<LogEntry> consumer) {
+        String startKey = scanLocalLogs(startTime.toEpochMilli(), endTime.toEpochMilli(), l -> {
+            consumer.accept(l);
+            return true;
+        });
+        String endKey = String.format("%013d", endTime.toEpochMilli());
+        if (startKey.compareTo(endKey) >= 0) return;
+
+        Query query = Query.create(logsTable)
+                .range(startKey, endKey);
+
+        ServerStream<Row> rows = bigtableClient.readRows(query);
+        for (Row row : rows) {
+            consumer.accept(rowToLogEntry(row));
+        }
+    }
+
+    /**
+     * Servir le début de [début, fin) depuis le store local quand il le couvre ; arrêt dès que
+     * le consumer renvoie false. Renvoie la clé à partir de laquelle lire Bigtable (la clé de
+     * début si rien n'a été servi), null si le consumer s'est arrêté.
+     */
+    private String scanLocalLogs(long startMillis, long endMillis, Predicate<LogEntry> consumer) {
+        String startKey = String.format("%013d", startMillis);
+        if (!localHotStore.covers(startMillis)) {
+            return startKey;
+        }
+
+        long localEnd = Math.max(startMillis, Math.min(endMillis, localHotStore.getCoveredUntil()));
+        String localEndKey = String.format("%013d", localEnd);
+        boolean[] stopped = {false};
+        localHotStore.scan(startKey, localEndKey, columns -> {
+            stopped[0] = !consumer.test(mapToLogEntry(columns));
+            return !stopped[0];
+        });
+        return stopped[0] ? null : localEndKey;
+    }
+
+    /**
+     * Logs bruts de clé strictement supérieure à la dernière clé lue et de timestamp antérieur
+     * à la fin, par clé croissante (suivi incrémental). Les erreurs de lecture sont propagées.
+     */
+    public List<LogEntry> readLogsAfter(String lastRowKey, Instant endTime, int limit) {
+        String endKey = String.format("%013d", endTime.toEpochMilli());
+        if (lastRowKey.compareTo(endKey) >= 0) {
+            return Collections.emptyList();
+        }
+
+        Query query = Query.create(logsTable)
+                .range(ByteStringRange.unbounded().startOpen(lastRowKey).endOpen(endKey))
+                .limit(limit);
+
+        List<LogEntry> logs = new ArrayList<>();
+        for (Row row : bigtableClient.readRows(query)) {
+            logs.add(rowToLogEntry(row));
+        }
+        return logs;
+    }
+
+    /**
+     * Parcourir les lignes de rollup d'une plage [début, fin) de clés horaires (colonnes texte)
+     */
+    public void forEachRollup(long startHour, long endHour, Consumer<Map<String, String>> consumer) {
+        Query query = Query.create(rollupsTable)
+                .range(String.format("%013d", startHour), String.format("%013d", endHour))
+                .filter(Filters.FILTERS.limit().cellsPerColumn(1));
+
+        for (Row row : bigtableClient.readRows(query)) {
+            consumer.accept(rowToMap(row, rollupsCF));
+        }
+    }
+
+    /**
+     * Écrire des lignes de rollup (clé -> colonnes) par mutations groupées.
+     * La version des cellules est fixée par l'appelant : réécrire une heure est idempotent.
+     */
+    public void writeRollups(Map<String, Map<String, String>> rows, long cellTimestampMicros) throws InterruptedException {
+        try (Batcher<RowMutationEntry, Void> batcher = bigtableClient.newBulkMutationBatcher(rollupsTable)) {
+            for (Map.Entry<String, Map<String, String>> row : rows.entrySet()) {
+                RowMutationEntry entry = RowMutationEntry.create(row.getKey());
+                row.getValue().forEach((column, value) ->
+                        entry.setCell(rollupsCF, column, cellTimestampMicros, value));
+                batcher.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Lire une ligne technique de la table de rollups (colonnes texte), vide si absente
+     */
+    public Map<String, String> readRollupRow(String rowKey) {
+        Row row = bigtableClient.readRow(rollupsTable, rowKey, Filters.FILTERS.limit().cellsPerColumn(1));
+        return row != null ? rowToMap(row, rollupsCF) : new HashMap<>();
+    }
+
+    public void writeRollupRow(String rowKey, Map<String, String> columns) {
+        RowMutation mutation = RowMutation.create(rollupsTable, rowKey);
+        columns.forEach((column, value) -> mutation.setCell(rollupsCF, column, value));
+        bigtableClient.mutateRow(mutation);
+    }
+
+    /**
+     * Créer la table de rollups (une famille, une version par cellule) si elle n'existe pas.
+     * Demande le rôle bigtable.admin ; renvoie false si la table est absente et n'a pu être créée.
+     */
+    public boolean ensureRollupTable() {
+        try (BigtableTableAdminClient admin = BigtableTableAdminClient.create(projectId, instanceId)) {
+            if (admin.exists(rollupsTable)) {
+                return true;
+            }
+            admin.createTable(CreateTableRequest.of(rollupsTable)
+                    .addFamily(rollupsCF, GCRules.GCRULES.maxVersions(1)));
+            log.info("Created rollup table {} (column family {})", rollupsTable, rollupsCF);
+            return true;
+        } catch (Exception e) {
+            log.warn("Cannot check or create rollup table {}: {}. Create it with: cbt -project {} -instance {} "
+                    + "createtable {} families={}:maxversions=1",
+                    rollupsTable, e.getMessage(), projectId, instanceId, rollupsTable, rollupsCF);
+            return false;
+        }
+    }
+
     /**
      * Récupérer les logs d'erreur
      */
-    @Cacheable(value = "errorLogs", key = "#connector + '_' + #limit")
+    @Cacheable(value = "errorLogs", key = "#connector + '_' + #limit", sync = true)
     public List<LogEntry> getErrorLogs(String connector, int limit) {
         log.info("Fetching error logs for connector: {}, limit: {}", connector, limit);
         
@@ -178,6 +410,7 @@ public class BigtableService {
             log.info("Retrieved {} error logs", errorLogs.size());
         } catch (Exception e) {
             log.error("Error fetching error logs", e);
+            CacheFreshness.markDegraded();
         }
         
         return errorLogs;
@@ -189,6 +422,11 @@ public class BigtableService {
     public Map<String, String> getLogById(String logId) {
         log.info("Fetching log by ID: {}", logId);
         
+        Map<String, String> local = localHotStore.get(logId);
+        if (local != null) {
+            return local;
+        }
+
         try {
             Row row = bigtableClient.readRow(logsTable, logId);
             if (row != null) {
@@ -244,6 +482,7 @@ public class BigtableService {
             log.info("Retrieved {} steps for messageId: {}", trace.size(), messageId);
         } catch (Exception e) {
             log.error("Error tracing by messageId: {}", messageId, e);
+            CacheFreshness.markDegraded();
         }
         
         return trace;
@@ -308,6 +547,7 @@ public class BigtableService {
             log.info("Retrieved {} steps for endToEndId: {}", trace.size(), endToEndId);
         } catch (Exception e) {
             log.error("Error tracing by endToEndId: {}", endToEndId, e);
+            CacheFreshness.markDegraded();
         }
         
         return trace;
@@ -370,10 +610,15 @@ public class BigtableService {
      * Convertir une Row BigTable en LogEntry
      */
     private LogEntry rowToLogEntry(Row row) {
-        Map<String, String> data = rowToMap(row, logsCF);
-        
+        return mapToLogEntry(rowToMap(row, logsCF));
+    }
+
+    /**
+     * Convertir les colonnes d'une ligne raw_log (avec "row_key") en LogEntry
+     */
+    private LogEntry mapToLogEntry(Map<String, String> data) {
         // Parser la row key : timestamp#type#connector#uuid
-        String rowKey = row.getKey().toStringUtf8();
+        String rowKey = data.get("row_key");
         String[] keyParts = rowKey.split("#");
         
         return LogEntry.builder()
@@ -392,6 +637,7 @@ public class BigtableService {
                 .error(data.get("error"))
                 .messageId(data.get("messageId"))
                 .endToEndId(data.get("endToEndId"))
+                .message(data.get("message"))
                 .build();
     }
 
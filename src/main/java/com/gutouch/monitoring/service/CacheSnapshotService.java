@@ -0,0 +1,212 @@
+package com.gutouch.monitoring.service;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.gutouch.monitoring.config.StaleServingCaffeineCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Snapshots disque des régions de cache, pour qu'une instance redémarrée serve ses
+ * premières requêtes depuis le cache.
+ *
+ * Format : en-tête (magic, version, date d'écriture) puis, par région, ses entrées
+ * (clé, âge, valeur JSON typée compressée). La restauration lit le fichier mappé en
+ * mémoire ; un snapshot d'un autre format ou plus vieux que max-age-ms est ignoré,
+ * de même que chaque entrée qui aurait dépassé cet âge.
+ */
+@Service
+@Slf4j
+public class CacheSnapshotService {
+
+    private static final int SNAPSHOT_MAGIC = 0x43534e31; // "CSN1"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final CacheManager cacheManager;
+    private final ObjectMapper snapshotMapper;
+
+    @Value("${cache.snapshot.path:data/cache-snapshot.bin}")
+    private String snapshotPath;
+
+    @Value("${cache.snapshot.regions:overview,connectorDetails,heatmap,statusDistribution,traces}")
+    private String[] regions;
+
+    @Value("${cache.snapshot.max-age-ms:3600000}")
+    private long maxAgeMs;
+
+    public CacheSnapshotService(CacheManager cacheManager, ObjectMapper objectMapper) {
+        this.cacheManager = cacheManager;
+        // Type de chaque valeur écrit dans le JSON, limité aux classes de l'application et du JDK
+        this.snapshotMapper = objectMapper.copy().activateDefaultTyping(
+                BasicPolymorphicTypeValidator.builder()
+                        .allowIfSubType("com.gutouch.monitoring.")
+                        .allowIfSubType("java.util.")
+                        .allowIfSubType("java.time.")
+                        .build(),
+                ObjectMapper.DefaultTyping.NON_FINAL,
+                JsonTypeInfo.As.PROPERTY);
+    }
+
+    @PostConstruct
+    public void loadSnapshot() {
+        if (snapshotPath == null || snapshotPath.isEmpty()) return;
+
+        Path path = Paths.get(snapshotPath);
+        if (!Files.exists(path)) return;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+                log.warn("Ignoring cache snapshot with unknown format: {}", path);
+                return;
+            }
+            long snapshotAge = System.currentTimeMillis() - buffer.getLong();
+            if (snapshotAge > maxAgeMs || snapshotAge < 0) {
+                log.info("Ignoring cache snapshot written {} s ago: {}", snapshotAge / 1000, path);
+                return;
+            }
+
+            int regionCount = buffer.getInt();
+            int restored = 0;
+            for (int i = 0; i < regionCount; i++) {
+                Cache cache = cacheManager.getCache(readString(buffer));
+                int entryCount = buffer.getInt();
+                for (int j = 0; j < entryCount; j++) {
+                    String key = readString(buffer);
+                    long age = buffer.getLong() + snapshotAge;
+                    byte[] compressed = new byte[buffer.getInt()];
+                    buffer.get(compressed);
+                    if (age > maxAgeMs || !(cache instanceof StaleServingCaffeineCache target)) continue;
+
+                    try {
+                        target.restore(key, snapshotMapper.readValue(inflate(compressed), Object.class), age);
+                        restored++;
+                    } catch (IOException | DataFormatException e) {
+                        // Classe modifiée depuis l'écriture : l'entrée sera recalculée
+                        log.debug("Skipping cache snapshot entry {}", key, e);
+                    }
+                }
+            }
+            log.info("Restored {} cache entries from snapshot {} written {} s ago", restored, path, snapshotAge / 1000);
+        } catch (IOException | RuntimeException e) {
+            log.error("Error loading cache snapshot: {}", path, e);
+        }
+    }
+
+    /**
+     * Écrire le snapshot (périodiquement et à l'arrêt)
+     */
+    @Scheduled(fixedDelayString = "${cache.snapshot.interval-ms:300000}",
+               initialDelayString = "${cache.snapshot.interval-ms:300000}")
+    @PreDestroy
+    public void saveSnapshot() {
+        if (snapshotPath == null || snapshotPath.isEmpty()) return;
+
+        Path path = Paths.get(snapshotPath);
+        Path tmp = Paths.get(snapshotPath + ".tmp");
+        int written = 0;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(regions.length);
+                for (String region : regions) {
+                    writeString(out, region);
+                    Cache cache = cacheManager.getCache(region);
+                    if (!(cache instanceof StaleServingCaffeineCache source)) {
+                        out.writeInt(0);
+                        continue;
+                    }
+
+                    ByteArrayOutputStream entries = new ByteArrayOutputStream();
+                    DataOutputStream entryOut = new DataOutputStream(entries);
+                    int entryCount = 0;
+                    for (StaleServingCaffeineCache.Entry entry : source.entries()) {
+                        if (!(entry.key() instanceof String key) || entry.ageMillis() > maxAgeMs) continue;
+                        byte[] compressed = deflate(snapshotMapper.writerFor(Object.class).writeValueAsBytes(entry.value()));
+                        writeString(entryOut, key);
+                        entryOut.writeLong(entry.ageMillis());
+                        entryOut.writeInt(compressed.length);
+                        entryOut.write(compressed);
+                        entryCount++;
+                    }
+                    out.writeInt(entryCount);
+                    entries.writeTo(out);
+                    written += entryCount;
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Wrote {} cache entries to snapshot {}", written, path);
+        } catch (IOException e) {
+            log.error("Error writing cache snapshot: {}", path, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(chunk);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated snapshot entry");
+                }
+                out.write(chunk, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.config.CacheFreshness;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Exécution concurrente d'un calcul par connector sur un pool borné.
+ *
+ * Le pool est partagé par toutes les requêtes : le nombre d'appels Bigtable simultanés
+ * reste plafonné quel que soit le nombre de connectors ou d'utilisateurs. Un résultat
+ * dégradé ou omis marque le résultat de l'appelant comme dégradé ({@link CacheFreshness}).
+ */
+@Service
+@Slf4j
+public class ConnectorFanOut {
+
+    @Value("${monitoring.fan-out.parallelism:16}")
+    private int parallelism;
+
+    @Value("${monitoring.fan-out.timeout-ms:30000}")
+    private long timeoutMs;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "connector-fan-out-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Appliquer une tâche à chaque connector en parallèle.
+     * Résultats dans l'ordre des connectors ; un connector en échec ou hors délai est omis.
+     */
+    public <T> Map<String, T> map(List<String> connectors, Function<String, T> task) {
+        Map<String, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        AtomicBoolean degraded = new AtomicBoolean();
+        for (String connector : connectors) {
+            futures.put(connector, CompletableFuture.supplyAsync(() -> {
+                boolean previous = CacheFreshness.beginLoad();
+                try {
+                    return task.apply(connector);
+                } finally {
+                    if (CacheFreshness.endLoad(previous)) {
+                        degraded.set(true);
+                    }
+                }
+            }, executor));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        Map<String, T> results = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<T>> entry : futures.entrySet()) {
+            try {
+                long remaining = Math.max(0L, deadline - System.nanoTime());
+                results.put(entry.getKey(), entry.getValue().get(remaining, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                log.warn("Timed out computing connector {}", entry.getKey());
+            } catch (ExecutionException e) {
+                log.error("Error computing connector {}", entry.getKey(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(f -> f.cancel(true));
+                break;
+            }
+        }
+        if (degraded.get() || results.size() < connectors.size()) {
+            CacheFreshness.markDegraded();
+        }
+        return results;
+    }
+}
@@ -0,0 +1,87 @@
+package com.gutouch.monitoring.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Liste des connectors surveillés.
+ *
+ * La liste configurée (monitoring.connectors) fait foi ; sinon les connectors sont
+ * découverts depuis les clés de metrics_log (lecture des clés seules) et gardés en cache
+ * quelques minutes. La première découverte lit toutes les clés ; les suivantes, si les clés
+ * sont horodatées, seulement celles écrites depuis la précédente.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ConnectorRegistry {
+
+    private static final List<String> DEFAULT_CONNECTORS = List.of("pi-gateway", "pi-connector");
+
+    private final BigtableService bigtableService;
+
+    @Value("${monitoring.connectors:}")
+    private String[] configuredConnectors;
+
+    @Value("${monitoring.connector-discovery.ttl-ms:300000}")
+    private long discoveryTtlMs;
+
+    private volatile List<String> discovered;
+    // Connectors vus dans metrics_log (sans la liste par défaut)
+    private Set<String> fromMetrics = new TreeSet<>();
+    private volatile long discoveredAt;
+
+    /**
+     * Connectors connus, par ordre alphabétique
+     */
+    public List<String> getConnectors() {
+        List<String> configured = Arrays.stream(configuredConnectors)
+                .map(String::trim)
+                .filter(c -> !c.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+        if (!configured.isEmpty()) {
+            return configured;
+        }
+
+        List<String> current = discovered;
+        if (current == null || System.currentTimeMillis() - discoveredAt > discoveryTtlMs) {
+            current = discover(current);
+        }
+        return current;
+    }
+
+    private synchronized List<String> discover(List<String> previous) {
+        // Un autre thread a pu rafraîchir pendant l'attente du verrou
+        if (discovered != previous) {
+            return discovered;
+        }
+
+        List<String> connectors;
+        try {
+            // Après la première découverte : clés écrites depuis la précédente, avec une marge d'un TTL
+            Set<String> found = new TreeSet<>(fromMetrics);
+            found.addAll(bigtableService.listMetricsConnectors(
+                    previous != null ? Instant.ofEpochMilli(discoveredAt - discoveryTtlMs) : null));
+            fromMetrics = found;
+            connectors = new ArrayList<>(found);
+            log.info("Discovered {} connectors from metrics: {}", connectors.size(), connectors);
+        } catch (Exception e) {
+            log.error("Error discovering connectors", e);
+            connectors = previous != null ? previous : new ArrayList<>();
+        }
+        if (connectors.isEmpty()) {
+            connectors = DEFAULT_CONNECTORS;
+        }
+
+        discovered = Collections.unmodifiableList(connectors);
+        discoveredAt = System.currentTimeMillis();
+        return discovered;
+    }
+}
@@ -0,0 +1,237 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.aggregate.LogAggregate;
+import com.gutouch.monitoring.aggregate.MetricSource;
+import com.gutouch.monitoring.aggregate.SourcedAggregates;
+import com.gutouch.monitoring.service.MetricSourceRouter.Requirement;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Agrégats journaliers par connector (jour local Europe/Paris).
+ *
+ * Un jour clos ne change plus : il est calculé une seule fois puis gardé en mémoire,
+ * avec un snapshot disque optionnel. Seul le jour en cours est recalculé à chaque appel.
+ * Toute plage (trends, comparaison de périodes) se compose de ces jours en O(jours).
+ * Un jour calculé en partie depuis les jauges metrics_log est conservé avec ses sources et
+ * ne sert que les compteurs ; il est recalculé une fois couvert par les rollups horaires.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DailyAggregateStore {
+
+    private static final ZoneId PARIS_ZONE = ZoneId.of("Europe/Paris");
+    private static final String ALL = "all";
+    private static final int SNAPSHOT_MAGIC = 0x44414731; // "DAG1"
+    private static final int SNAPSHOT_VERSION = 4;
+
+    private final MetricSourceRouter metricSourceRouter;
+    private final HourlyRollupService hourlyRollupService;
+
+    @Value("${analytics.daily-store.retention-days:400}")
+    private int retentionDays;
+
+    @Value("${analytics.daily-store.snapshot-path:}")
+    private String snapshotPath;
+
+    // jour -> agrégats par connector (dont "all") ; approximatifs si lus depuis metrics_log
+    private final ConcurrentSkipListMap<LocalDate, SourcedAggregates> closedDays = new ConcurrentSkipListMap<>();
+
+    /**
+     * Agrégats d'un jour, tous connectors
+     */
+    public SourcedAggregates getDay(LocalDate day, Requirement requirement) {
+        LocalDate today = LocalDate.now(PARIS_ZONE);
+        if (day.isAfter(today)) {
+            return empty();
+        }
+
+        SourcedAggregates aggregates;
+        if (day.isBefore(today)) {
+            aggregates = closedDays.get(day);
+            if (aggregates != null && (aggregates.isExact()
+                    || (requirement == Requirement.COUNTS && !coveredByRollups(day)))) {
+                return aggregates;
+            }
+            SourcedAggregates stored = aggregates;
+            aggregates = computeDay(day, requirement);
+            // Un jour approximatif (compteurs metrics_log) sert les compteurs jusqu'à ce que les
+            // rollups le couvrent ; une valeur exacte remplace toujours une approximative
+            if (aggregates != null && (aggregates.isExact() || stored == null)) {
+                if (stored == null) {
+                    closedDays.putIfAbsent(day, aggregates);
+                } else {
+                    closedDays.replace(day, stored, aggregates);
+                }
+            }
+        } else {
+            aggregates = computeDay(day, requirement);
+        }
+        return aggregates != null ? aggregates : empty();
+    }
+
+    /**
+     * Vrai si les rollups horaires couvrent toutes les heures du jour
+     */
+    private boolean coveredByRollups(LocalDate day) {
+        long start = day.atStartOfDay(PARIS_ZONE).toInstant().toEpochMilli();
+        long end = day.plusDays(1).atStartOfDay(PARIS_ZONE).toInstant().toEpochMilli();
+        long[] span = hourlyRollupService.coveredSpan(start, end);
+        return span != null && span[0] == start && span[1] == end;
+    }
+
+    /**
+     * Agrégats d'une plage quelconque, tous connectors à la fois : jours complets lus
+     * depuis le store, fragments de jour aux bornes calculés directement (au plus deux)
+     */
+    public SourcedAggregates getRange(ZonedDateTime start, ZonedDateTime end, Requirement requirement) {
+        Map<String, LogAggregate> total = new HashMap<>();
+        Set<MetricSource> sources = EnumSet.noneOf(MetricSource.class);
+        ZonedDateTime from = start.withZoneSameInstant(PARIS_ZONE);
+        ZonedDateTime to = end.withZoneSameInstant(PARIS_ZONE);
+
+        for (LocalDate day = from.toLocalDate(); !day.isAfter(to.toLocalDate()); day = day.plusDays(1)) {
+            ZonedDateTime dayStart = day.atStartOfDay(PARIS_ZONE);
+            ZonedDateTime dayEnd = day.plusDays(1).atStartOfDay(PARIS_ZONE);
+            ZonedDateTime fragmentStart = from.isAfter(dayStart) ? from : dayStart;
+            ZonedDateTime fragmentEnd = to.isBefore(dayEnd) ? to : dayEnd;
+            if (!fragmentEnd.isAfter(fragmentStart)) continue;
+
+            SourcedAggregates part = fragmentStart.equals(dayStart) && fragmentEnd.equals(dayEnd)
+                    ? getDay(day, requirement)
+                    : compute(fragmentStart, fragmentEnd, requirement);
+            if (part == null) continue;
+
+            // Copier : les agrégats des jours clos sont partagés
+            part.byConnector().forEach((connector, aggregate) ->
+                    total.computeIfAbsent(connector, c -> new LogAggregate()).merge(aggregate));
+            sources.addAll(part.sources());
+        }
+
+        return new SourcedAggregates(total, sources);
+    }
+
+    /**
+     * Calculer un jour ; null en cas d'échec (rien n'est mémorisé)
+     */
+    private SourcedAggregates computeDay(LocalDate day, Requirement requirement) {
+        return compute(day.atStartOfDay(PARIS_ZONE), day.plusDays(1).atStartOfDay(PARIS_ZONE), requirement);
+    }
+
+    private SourcedAggregates compute(ZonedDateTime start, ZonedDateTime end, Requirement requirement) {
+        SourcedAggregates aggregates;
+        try {
+            aggregates = metricSourceRouter.aggregateByConnector(start.toInstant(), end.toInstant(), requirement);
+        } catch (Exception e) {
+            log.error("Error computing aggregate from {} to {}", start, end, e);
+            return null;
+        }
+
+        log.debug("Computed aggregate from {} to {} ({}): {} requests", start, end,
+                MetricSource.describe(aggregates.sources()), aggregates.get(ALL).getRequests());
+        return aggregates;
+    }
+
+    private static SourcedAggregates empty() {
+        return new SourcedAggregates(new HashMap<>(), EnumSet.noneOf(MetricSource.class));
+    }
+
+    /**
+     * Purger les jours hors rétention et écrire le snapshot
+     */
+    @Scheduled(fixedDelayString = "${analytics.daily-store.snapshot-interval-ms:600000}")
+    public void maintain() {
+        closedDays.headMap(LocalDate.now(PARIS_ZONE).minusDays(retentionDays)).clear();
+        saveSnapshot();
+    }
+
+    @PostConstruct
+    public void loadSnapshot() {
+        if (snapshotPath == null || snapshotPath.isEmpty()) return;
+
+        Path path = Paths.get(snapshotPath);
+        if (!Files.exists(path)) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                log.warn("Ignoring daily aggregate snapshot with unknown format: {}", path);
+                return;
+            }
+            int dayCount = in.readInt();
+            for (int i = 0; i < dayCount; i++) {
+                LocalDate day = LocalDate.ofEpochDay(in.readLong());
+                Set<MetricSource> sources = EnumSet.noneOf(MetricSource.class);
+                int sourceMask = in.readInt();
+                for (MetricSource source : MetricSource.values()) {
+                    if ((sourceMask & (1 << source.ordinal())) != 0) {
+                        sources.add(source);
+                    }
+                }
+                int connectorCount = in.readInt();
+                Map<String, LogAggregate> byConnector = new HashMap<>();
+                for (int j = 0; j < connectorCount; j++) {
+                    byConnector.put(in.readUTF(), LogAggregate.readFrom(in));
+                }
+                closedDays.put(day, new SourcedAggregates(byConnector, sources));
+            }
+            log.info("Loaded {} closed days from snapshot {}", dayCount, path);
+        } catch (IOException e) {
+            log.error("Error loading daily aggregate snapshot: {}", path, e);
+        }
+    }
+
+    @PreDestroy
+    public void saveSnapshot() {
+        if (snapshotPath == null || snapshotPath.isEmpty()) return;
+
+        Path path = Paths.get(snapshotPath);
+        Path tmp = Paths.get(snapshotPath + ".tmp");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                Map<LocalDate, SourcedAggregates> days = new HashMap<>(closedDays);
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(days.size());
+                for (Map.Entry<LocalDate, SourcedAggregates> day : days.entrySet()) {
+                    out.writeLong(day.getKey().toEpochDay());
+                    int sourceMask = 0;
+                    for (MetricSource source : day.getValue().sources()) {
+                        sourceMask |= 1 << source.ordinal();
+                    }
+                    out.writeInt(sourceMask);
+                    out.writeInt(day.getValue().byConnector().size());
+                    for (Map.Entry<String, LogAggregate> connector : day.getValue().byConnector().entrySet()) {
+                        out.writeUTF(connector.getKey());
+                        connector.getValue().writeTo(out);
+                    }
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Error writing daily aggregate snapshot: {}", path, e);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.config.CacheFreshness;
+import com.gutouch.monitoring.dto.DistinctCountsDTO;
+import com.gutouch.monitoring.dto.LogEntry;
+import com.gutouch.monitoring.sketch.HyperLogLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Comptage des clients et endpoints distincts par connector.
+ *
+ * Un sketch HyperLogLog par connector et par heure est calculé une seule fois
+ * quand l'heure est close, puis fusionné à la demande sur n'importe quelle plage.
+ * Les heures encore ouvertes (heure en cours, heure précédente pendant lateness-ms)
+ * sont complétées au fil des appels : seuls les logs depuis la dernière lecture sont
+ * relus, avec un recouvrement de lateness-ms pour les écritures en retard (un
+ * HyperLogLog ignore les doublons). Les heures closes sont gardées dans un snapshot
+ * disque : au démarrage, seules les heures closes absentes du snapshot sont calculées en fond.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DistinctCountService {
+
+    private static final long HOUR_MS = 3_600_000L;
+    private static final int SNAPSHOT_MAGIC = 0x44484c31; // "DHL1"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final SegmentStore segmentStore;
+
+    @Value("${analytics.distinct.lateness-ms:300000}")
+    private long latenessMs;
+
+    @Value("${analytics.distinct.precision:12}")
+    private int precision;
+
+    @Value("${analytics.distinct.retention-days:30}")
+    private int retentionDays;
+
+    // Vide = désactivé
+    @Value("${analytics.distinct.snapshot-path:}")
+    private String snapshotPath;
+
+    // heure (epoch ms) -> connector -> sketches
+    private final ConcurrentSkipListMap<Long, Map<String, HourlySketches>> closedHours = new ConcurrentSkipListMap<>();
+    private final Map<Long, OpenHour> openHours = new ConcurrentHashMap<>();
+
+    private volatile boolean warmedUp;
+    // Heures closes ajoutées depuis le dernier snapshot
+    private volatile boolean dirty;
+    private ExecutorService warmUpExecutor;
+
+    @PostConstruct
+    public void init() {
+        loadSnapshot();
+        warmUpExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "distinct-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        warmUpExecutor.execute(this::warmUp);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        warmUpExecutor.shutdownNow();
+        saveSnapshot();
+    }
+
+    /**
+     * Compter les clients et endpoints distincts d'un connector ("all" pour tous) sur une plage ;
+     * pendant le calcul de démarrage, les heures closes manquantes sont ignorées (partial)
+     */
+    public DistinctCountsDTO countDistinct(String connector, Instant startTime, Instant endTime) {
+        HyperLogLog clients = new HyperLogLog(precision);
+        HyperLogLog endpoints = new HyperLogLog(precision);
+
+        long now = System.currentTimeMillis();
+        long currentHour = hourStart(now);
+        long firstHour = Math.max(hourStart(startTime.toEpochMilli()), retentionStart(currentHour));
+        boolean partial = false;
+
+        for (long hour = firstHour; hour < endTime.toEpochMilli() && hour <= currentHour; hour += HOUR_MS) {
+            if (!isClosed(hour, now)) {
+                mergeOpenHour(hour, now, connector, clients, endpoints);
+                continue;
+            }
+            Map<String, HourlySketches> sketches = closedHours.get(hour);
+            if (sketches == null && !warmedUp) {
+                partial = true;
+                continue;
+            }
+            if (sketches == null) {
+                sketches = closedHours.computeIfAbsent(hour, this::closeHour);
+                dirty = true;
+            }
+            mergeInto(sketches, connector, clients, endpoints);
+        }
+
+        if (partial) {
+            // Ne pas mettre en cache un compte incomplet
+            CacheFreshness.markDegraded();
+        }
+        return DistinctCountsDTO.builder()
+                .connector(connector != null ? connector : "all")
+                .startTime(startTime)
+                .endTime(endTime)
+                .uniqueClients(clients.cardinality())
+                .uniqueEndpoints(endpoints.cardinality())
+                .relativeError(clients.relativeError())
+                .partial(partial)
+                .build();
+    }
+
+    /**
+     * Clore les heures sorties de la fenêtre de retard, purger les heures hors rétention
+     * et écrire le snapshot si des heures ont été closes
+     */
+    @Scheduled(cron = "${analytics.distinct.close-cron:0 */5 * * * *}")
+    public void closeHours() {
+        long now = System.currentTimeMillis();
+        for (Long hour : new ArrayList<>(openHours.keySet())) {
+            if (!isClosed(hour, now)) continue;
+            try {
+                closedHours.computeIfAbsent(hour, this::closeHour);
+                dirty = true;
+            } catch (Exception e) {
+                log.error("Error closing distinct-count sketches for hour {}", Instant.ofEpochMilli(hour), e);
+            }
+        }
+        long retentionStart = retentionStart(hourStart(now));
+        closedHours.headMap(retentionStart).clear();
+        openHours.keySet().removeIf(hour -> hour < retentionStart);
+        if (dirty) {
+            saveSnapshot();
+        }
+    }
+
+    /**
+     * Calcul de démarrage des heures closes de la rétention, plus récentes d'abord
+     */
+    private void warmUp() {
+        long now = System.currentTimeMillis();
+        long retentionStart = retentionStart(hourStart(now));
+        int computed = 0;
+        for (long hour = hourStart(now) - HOUR_MS; hour >= retentionStart; hour -= HOUR_MS) {
+            if (Thread.currentThread().isInterrupted()) return;
+            if (!isClosed(hour, now) || closedHours.containsKey(hour)) continue;
+            try {
+                closedHours.computeIfAbsent(hour, this::computeHour);
+                dirty = true;
+                computed++;
+            } catch (Exception e) {
+                // Calculée à la demande une fois le démarrage terminé
+                log.warn("Error computing distinct-count sketches for hour {}: {}", Instant.ofEpochMilli(hour), e.getMessage());
+            }
+        }
+        warmedUp = true;
+        log.info("Distinct-count sketches ready ({} hours computed)", computed);
+        if (computed > 0) {
+            saveSnapshot();
+        }
+    }
+
+    /**
+     * Relire les heures closes du snapshot (même précision, dans la rétention)
+     */
+    void loadSnapshot() {
+        if (snapshotPath == null || snapshotPath.isEmpty()) return;
+
+        Path path = Paths.get(snapshotPath);
+        if (!Files.exists(path)) return;
+
+        long retentionStart = retentionStart(hourStart(System.currentTimeMillis()));
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION || in.readInt() != precision) {
+                log.warn("Ignoring distinct-count snapshot with unknown format or precision: {}", path);
+                return;
+            }
+            int registers = 1 << precision;
+            int hourCount = in.readInt();
+            Map<Long, Map<String, HourlySketches>> hours = new HashMap<>();
+            for (int i = 0; i < hourCount; i++) {
+                long hour = in.readLong();
+                int connectorCount = in.readInt();
+                Map<String, HourlySketches> byConnector = new HashMap<>();
+                for (int j = 0; j < connectorCount; j++) {
+                    String connector = in.readUTF();
+                    byte[] clients = new byte[registers];
+                    byte[] endpoints = new byte[registers];
+                    in.readFully(clients);
+                    in.readFully(endpoints);
+                    byConnector.put(connector, new HourlySketches(HyperLogLog.fromBytes(clients),
+                            HyperLogLog.fromBytes(endpoints)));
+                }
+                if (hour >= retentionStart) {
+                    hours.put(hour, byConnector);
+                }
+            }
+            // Snapshot lu en entier avant d'être utilisé : un fichier tronqué est ignoré
+            closedHours.putAll(hours);
+            log.info("Loaded {} closed hours of distinct-count sketches from snapshot {}", hours.size(), path);
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Error loading distinct-count snapshot: {}", path, e);
+        }
+    }
+
+    synchronized void saveSnapshot() {
+        if (snapshotPath == null || snapshotPath.isEmpty()) return;
+
+        dirty = false;
+        Path path = Paths.get(snapshotPath);
+        Path tmp = Paths.get(snapshotPath + ".tmp");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                Map<Long, Map<String, HourlySketches>> hours = new HashMap<>(closedHours);
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(precision);
+                out.writeInt(hours.size());
+                for (Map.Entry<Long, Map<String, HourlySketches>> hour : hours.entrySet()) {
+                    out.writeLong(hour.getKey());
+                    out.writeInt(hour.getValue().size());
+                    for (Map.Entry<String, HourlySketches> connector : hour.getValue().entrySet()) {
+                        out.writeUTF(connector.getKey());
+                        out.write(connector.getValue().clients.toBytes());
+                        out.write(connector.getValue().endpoints.toBytes());
+                    }
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            log.error("Error writing distinct-count snapshot: {}", path, e);
+        }
+    }
+
+    /**
+     * Fusionner une heure ouverte après lecture des logs depuis la dernière fois
+     * (recouvrement de lateness-ms)
+     */
+    private void mergeOpenHour(long hour, long now, String connector, HyperLogLog clients, HyperLogLog endpoints) {
+        OpenHour open = openHours.computeIfAbsent(hour, h -> new OpenHour(h));
+        synchronized (open) {
+            refresh(open, now);
+            mergeInto(open.sketches, connector, clients, endpoints);
+        }
+    }
+
+    /**
+     * Sketches définitifs d'une heure close : ceux de l'heure ouverte complétés, sinon un calcul complet
+     */
+    private Map<String, HourlySketches> closeHour(long hour) {
+        OpenHour open = openHours.get(hour);
+        if (open == null) {
+            return computeHour(hour);
+        }
+        synchronized (open) {
+            refresh(open, System.currentTimeMillis());
+            openHours.remove(hour);
+            return open.sketches;
+        }
+    }
+
+    private void refresh(OpenHour open, long now) {
+        long until = Math.min(now, open.hour + HOUR_MS);
+        long from = Math.max(open.hour, open.scannedUntil - latenessMs);
+        if (from < until) {
+            scan(from, until, open.sketches);
+            open.scannedUntil = until;
+        }
+    }
+
+    private boolean isClosed(long hour, long now) {
+        return hour + HOUR_MS + latenessMs <= now;
+    }
+
+    private Map<String, HourlySketches> computeHour(long hour) {
+        Map<String, HourlySketches> byConnector = new HashMap<>();
+        scan(hour, hour + HOUR_MS, byConnector);
+        log.debug("Computed distinct-count sketches for hour {} ({} connectors)", Instant.ofEpochMilli(hour), byConnector.size());
+        return byConnector;
+    }
+
+    private void scan(long start, long end, Map<String, HourlySketches> byConnector) {
+        segmentStore.forEachLog(Instant.ofEpochMilli(start), Instant.ofEpochMilli(end), (LogEntry l) -> {
+            String connector = l.getConnector() != null ? l.getConnector() : "unknown";
+            HourlySketches sketches = byConnector.computeIfAbsent(connector, c -> new HourlySketches(precision));
+            sketches.clients.offer(l.getClientIp());
+            sketches.endpoints.offer((l.getMethod() != null ? l.getMethod() : "GET") + " " +
+                    (l.getPath() != null ? l.getPath() : "/unknown"));
+        });
+    }
+
+    private void mergeInto(Map<String, HourlySketches> sketches, String connector,
+                           HyperLogLog clients, HyperLogLog endpoints) {
+        if (connector == null || connector.equals("all")) {
+            for (HourlySketches s : sketches.values()) {
+                clients.merge(s.clients);
+                endpoints.merge(s.endpoints);
+            }
+        } else {
+            HourlySketches s = sketches.get(connector);
+            if (s != null) {
+                clients.merge(s.clients);
+                endpoints.merge(s.endpoints);
+            }
+        }
+    }
+
+    private long retentionStart(long currentHour) {
+        return currentHour - retentionDays * 24L * HOUR_MS;
+    }
+
+    private static long hourStart(long epochMillis) {
+        return epochMillis - Math.floorMod(epochMillis, HOUR_MS);
+    }
+
+    private static final class OpenHour {
+        final long hour;
+        final Map<String, HourlySketches> sketches = new HashMap<>();
+        long scannedUntil;
+
+        OpenHour(long hour) {
+            this.hour = hour;
+            this.scannedUntil = hour;
+        }
+    }
+
+    private static class HourlySketches {
+        final HyperLogLog clients;
+        final HyperLogLog endpoints;
+
+        HourlySketches(int precision) {
+            this(new HyperLogLog(precision), new HyperLogLog(precision));
+        }
+
+        HourlySketches(HyperLogLog clients, HyperLogLog endpoints) {
+            this.clients = clients;
+            this.endpoints = endpoints;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.aggregate.LogAggregate;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rollups horaires de raw_log par connector / type / path.
+ *
+ * Un job de fond suit raw_log heure close par heure close depuis un watermark persisté
+ * dans la table de rollups, et écrit une ligne par (heure, connector, type, path) par mutations
+ * groupées. Les heures sont relues depuis les segments ou Bigtable, pas depuis le tampon
+ * des logs récents, pour inclure les écritures en retard. La table est créée au démarrage
+ * si besoin (analytics.rollups.create-table). Les lectures passent par {@link MetricSourceRouter}.
+ * Le job tourne sur son propre thread : un backfill de plusieurs heures ne retarde pas les
+ * autres jobs planifiés.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class HourlyRollupService {
+
+    public static final long HOUR_MS = 3_600_000L;
+    private static final String ALL = "all";
+    private static final String WATERMARK_ROW = "_watermark"; // trié après les clés horaires
+    private static final String OTHER_PATH = "_other";
+
+    private final BigtableService bigtableService;
+    private final SegmentStore segmentStore;
+
+    @Value("${analytics.rollups.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.rollups.lateness-ms:300000}")
+    private long latenessMs;
+
+    @Value("${analytics.rollups.backfill-days:35}")
+    private int backfillDays;
+
+    @Value("${analytics.rollups.max-hours-per-run:168}")
+    private int maxHoursPerRun;
+
+    @Value("${analytics.rollups.max-keys-per-hour:5000}")
+    private int maxKeysPerHour;
+
+    @Value("${analytics.rollups.create-table:true}")
+    private boolean createTable;
+
+    @Value("${analytics.rollups.interval-ms:300000}")
+    private long intervalMs;
+
+    @Value("${analytics.rollups.initial-delay-ms:30000}")
+    private long initialDelayMs;
+
+    private ScheduledExecutorService scheduler;
+
+    // Heures couvertes [coveredFrom, coveredUntil), -1 tant que le watermark n'est pas connu
+    private volatile long coveredFrom = -1L;
+    private volatile long coveredUntil = -1L;
+
+    /**
+     * Créer la table si besoin et charger le watermark : les rollups déjà écrits servent
+     * les lectures dès le démarrage, sans attendre le premier passage du job
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+
+        if (createTable) {
+            bigtableService.ensureRollupTable();
+        }
+        try {
+            loadWatermark();
+            log.info("Rollups cover {} to {}", Instant.ofEpochMilli(coveredFrom), Instant.ofEpochMilli(coveredUntil));
+        } catch (Exception e) {
+            // Rechargé au premier passage du job
+            log.error("Error reading rollup watermark", e);
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "hourly-rollup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::rollUp, initialDelayMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Portion [début, fin) d'heures complètes couverte par les rollups, null si aucune
+     */
+    public long[] coveredSpan(long startMillis, long endMillis) {
+        long from = coveredFrom;
+        long until = coveredUntil;
+        if (from < 0) return null;
+
+        long rollupStart = Math.max(ceilHour(startMillis), from);
+        long rollupEnd = Math.min(floorHour(endMillis), until);
+        return rollupStart < rollupEnd ? new long[]{rollupStart, rollupEnd} : null;
+    }
+
+    /**
+     * Lire les rollups des heures [début, fin) ; chaque ligne alimente la cible de son
+     * connector et la cible "all". Les erreurs de lecture sont propagées.
+     */
+    public void readRollups(long startHour, long endHour, MetricSourceRouter.AggregateSink sink) {
+        bigtableService.forEachRollup(startHour, endHour, columns -> {
+            String[] keyParts = columns.getOrDefault("row_key", "").split("#", 4);
+            if (keyParts.length < 2) return;
+
+            long hour = Long.parseLong(keyParts[0]);
+            String type = keyParts.length > 2 && !keyParts[2].isEmpty() ? keyParts[2] : null;
+            addColumns(sink.target(hour, ALL, type), columns);
+            if (!keyParts[1].isEmpty()) {
+                addColumns(sink.target(hour, keyParts[1], type), columns);
+            }
+        });
+    }
+
+    /**
+     * Agréger les heures closes depuis le watermark
+     */
+    public synchronized void rollUp() {
+        if (!enabled) return;
+
+        try {
+            loadWatermark();
+        } catch (Exception e) {
+            log.error("Error reading rollup watermark", e);
+            return;
+        }
+
+        long lastClosedHourEnd = floorHour(System.currentTimeMillis() - latenessMs);
+        int processed = 0;
+        while (coveredUntil < lastClosedHourEnd && processed < maxHoursPerRun) {
+            long hour = coveredUntil;
+            try {
+                writeHour(hour);
+                bigtableService.writeRollupRow(WATERMARK_ROW, Map.of(
+                        "from", String.valueOf(coveredFrom),
+                        "until", String.valueOf(hour + HOUR_MS)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // Réessayer cette heure au prochain passage
+                log.error("Error rolling up hour {}", Instant.ofEpochMilli(hour), e);
+                return;
+            }
+            coveredUntil = hour + HOUR_MS;
+            processed++;
+        }
+
+        if (processed > 0) {
+            log.info("Rolled up {} hours, covered until {}", processed, Instant.ofEpochMilli(coveredUntil));
+        }
+    }
+
+    private void loadWatermark() {
+        Map<String, String> watermark = bigtableService.readRollupRow(WATERMARK_ROW);
+        long from = parseLong(watermark.get("from"), -1L);
+        long until = parseLong(watermark.get("until"), -1L);
+
+        if (from < 0 || until < from) {
+            // Première exécution : démarrer le backfill
+            from = floorHour(System.currentTimeMillis() - backfillDays * 24L * HOUR_MS);
+            until = from;
+        }
+        coveredFrom = from;
+        coveredUntil = Math.max(until, coveredUntil);
+    }
+
+    private void writeHour(long hour) throws InterruptedException {
+        Map<String, LogAggregate> rows = new HashMap<>();
+
+        segmentStore.forEachStoredLog(Instant.ofEpochMilli(hour), Instant.ofEpochMilli(hour + HOUR_MS), l -> {
+            String key = rowKey(hour, l.getConnector(), l.getType(), l.getPath());
+            LogAggregate aggregate = rows.get(key);
+            if (aggregate == null) {
+                // Borner la cardinalité : au-delà, les nouveaux paths sont regroupés
+                if (rows.size() >= maxKeysPerHour) {
+                    key = rowKey(hour, l.getConnector(), l.getType(), OTHER_PATH);
+                }
+                aggregate = rows.computeIfAbsent(key, k -> new LogAggregate());
+            }
+            aggregate.add(l);
+        });
+
+        Map<String, Map<String, String>> columns = new HashMap<>();
+        rows.forEach((key, aggregate) -> columns.put(key, aggregate.toColumns()));
+        bigtableService.writeRollups(columns, hour * 1000L);
+    }
+
+    private static void addColumns(LogAggregate target, Map<String, String> columns) {
+        if (target != null) {
+            target.addColumns(columns);
+        }
+    }
+
+    private static String rowKey(long hour, String connector, String type, String path) {
+        return String.format("%013d#%s#%s#%s", hour,
+                connector != null ? connector : "",
+                type != null ? type : "",
+                path != null ? path : "");
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static long floorHour(long epochMillis) {
+        return epochMillis - Math.floorMod(epochMillis, HOUR_MS);
+    }
+
+    public static long ceilHour(long epochMillis) {
+        long floor = floorHour(epochMillis);
+        return floor == epochMillis ? floor : floor + HOUR_MS;
+    }
+}
@@ -0,0 +1,397 @@
+package com.gutouch.monitoring.service;
+
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Copie locale (RocksDB) des dernières heures de raw_log, mêmes clés que Bigtable.
+ *
+ * Un lecteur de fond suit raw_log depuis la dernière clé copiée ; la progression est
+ * écrite dans la même base, dans le même batch que les lignes : au redémarrage la copie
+ * reprend où elle s'était arrêtée. Les lignes expirent par TTL à la compaction (TtlDB).
+ * {@link BigtableService} y route les lectures de plage et par clé quand elles sont couvertes.
+ *
+ * La couverture suit maintenant - lateness-ms : à chaque passage, la plage devenue définitive
+ * depuis le passage précédent est relue (écritures en retard derrière le lecteur), les lignes
+ * déjà copiées étant simplement réécrites.
+ */
+@Service
+@Slf4j
+public class LocalHotStore {
+
+    private static final long HOUR_MS = 3_600_000L;
+    // Trié après toutes les clés horodatées
+    private static final byte[] META_KEY = "~meta".getBytes(StandardCharsets.UTF_8);
+
+    private final BigtableDataClient bigtableClient;
+
+    @Value("${bigtable.tables.logs}")
+    private String logsTable;
+
+    @Value("${bigtable.column-families.logs}")
+    private String logsCF;
+
+    @Value("${analytics.hot-store.enabled:false}")
+    private boolean enabled;
+
+    @Value("${analytics.hot-store.path:data/hot-store}")
+    private String path;
+
+    @Value("${analytics.hot-store.retention-hours:24}")
+    private int retentionHours;
+
+    @Value("${analytics.hot-store.poll-interval-ms:5000}")
+    private long pollIntervalMs;
+
+    @Value("${analytics.hot-store.read-lag-ms:5000}")
+    private long readLagMs;
+
+    @Value("${analytics.hot-store.lateness-ms:300000}")
+    private long latenessMs;
+
+    @Value("${analytics.hot-store.batch-limit:5000}")
+    private int batchLimit;
+
+    // Lectures et écritures sous verrou partagé, fermeture sous verrou exclusif
+    private final ReentrantReadWriteLock dbLock = new ReentrantReadWriteLock();
+
+    private volatile TtlDB db;
+    private DBOptions dbOptions;
+    private ColumnFamilyOptions columnFamilyOptions;
+    private ColumnFamilyHandle logs;
+    private ScheduledExecutorService scheduler;
+
+    // Lignes de [coveredFrom, coveredUntil) toutes copiées ; routage seulement une fois rattrapé
+    private volatile long coveredFrom = -1L;
+    private volatile long coveredUntil = -1L;
+    private volatile boolean caughtUp;
+    private String lastRowKey;
+
+    public LocalHotStore(BigtableDataClient bigtableClient) {
+        this.bigtableClient = bigtableClient;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+
+        try {
+            RocksDB.loadLibrary();
+            Files.createDirectories(Paths.get(path));
+            dbOptions = new DBOptions().setCreateIfMissing(true);
+            columnFamilyOptions = new ColumnFamilyOptions().setCompressionType(CompressionType.LZ4_COMPRESSION);
+            // Ouverture par column family : TtlDB.open(Options, ...) ne renseigne pas la famille par défaut
+            List<ColumnFamilyHandle> handles = new ArrayList<>();
+            db = TtlDB.open(dbOptions, path,
+                    List.of(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, columnFamilyOptions)),
+                    handles, List.of((int) (retentionHours * HOUR_MS / 1000)), false);
+            logs = handles.get(0);
+            loadProgress();
+        } catch (Exception e) {
+            log.error("Error opening local hot store at {}, reads stay on Bigtable", path, e);
+            close();
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "hot-store-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sync, 0L, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        caughtUp = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        close();
+    }
+
+    /**
+     * Vrai si les lignes à partir de ce timestamp sont copiées (jusqu'à {@link #getCoveredUntil()})
+     */
+    public boolean covers(long startMillis) {
+        long from = Math.max(coveredFrom, System.currentTimeMillis() - retentionHours * HOUR_MS);
+        return db != null && caughtUp && coveredFrom >= 0 && startMillis >= from;
+    }
+
+    public long getCoveredUntil() {
+        return coveredUntil;
+    }
+
+    /**
+     * Parcourir les lignes de clés [début, fin), colonnes et "row_key" comme
+     * BigtableService ; arrêt dès que le consumer renvoie false
+     */
+    public void scan(String startKey, String endKey, Predicate<Map<String, String>> consumer) {
+        byte[] end = endKey.getBytes(StandardCharsets.UTF_8);
+        dbLock.readLock().lock();
+        try {
+            TtlDB current = db;
+            if (current == null) return;
+
+            try (RocksIterator iterator = current.newIterator(logs)) {
+                for (iterator.seek(startKey.getBytes(StandardCharsets.UTF_8)); iterator.isValid(); iterator.next()) {
+                    byte[] key = iterator.key();
+                    if (Arrays.compareUnsigned(key, end) >= 0) break;
+                    if (!consumer.test(decode(key, iterator.value()))) break;
+                }
+            }
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ligne par clé, null si absente de la copie (ou store désactivé)
+     */
+    public Map<String, String> get(String rowKey) {
+        dbLock.readLock().lock();
+        try {
+            TtlDB current = db;
+            if (current == null) return null;
+
+            byte[] key = rowKey.getBytes(StandardCharsets.UTF_8);
+            byte[] value = current.get(logs, key);
+            return value != null ? decode(key, value) : null;
+        } catch (RocksDBException e) {
+            log.warn("Error reading {} from local hot store", rowKey, e);
+            return null;
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    private void sync() {
+        long now = System.currentTimeMillis();
+        long retentionStart = now - retentionHours * HOUR_MS;
+        if (lastRowKey == null || lastRowKey.compareTo(String.format("%013d", retentionStart)) < 0) {
+            // Première copie ou copie trop ancienne : repartir du début de la rétention
+            coveredFrom = retentionStart;
+            coveredUntil = retentionStart;
+            lastRowKey = String.format("%013d", retentionStart);
+            caughtUp = false;
+            log.info("Local hot store copying raw_log from {}", Instant.ofEpochMilli(retentionStart));
+        }
+
+        // Lignes lues à partir de maintenant : complètes jusqu'à maintenant - lateness-ms
+        long settledUntil = now - Math.max(readLagMs, latenessMs);
+        String endKey = String.format("%013d", now - readLagMs);
+        try {
+            resync(Math.max(coveredFrom, coveredUntil), settledUntil);
+
+            Batch batch;
+            long total = 0L;
+            do {
+                batch = copyBatch(ByteStringRange.unbounded().startOpen(lastRowKey).endOpen(endKey), true);
+                total += batch.count();
+            } while (batch.count() >= batchLimit && !Thread.currentThread().isInterrupted());
+            if (batch.count() >= batchLimit) return;
+
+            coveredUntil = Math.max(coveredUntil, settledUntil);
+            writeProgress();
+            if (!caughtUp) {
+                caughtUp = true;
+                log.info("Local hot store caught up ({} rows in last pass)", total);
+            }
+        } catch (Exception e) {
+            // Reprise depuis la dernière clé copiée au prochain passage
+            log.error("Error syncing local hot store after {}", lastRowKey, e);
+        }
+    }
+
+    /**
+     * Recopier [début, fin) jusqu'à la dernière clé copiée : au-delà, la copie qui suit
+     * ne lit que des lignes écrites avant maintenant
+     */
+    private void resync(long fromMillis, long untilMillis) throws RocksDBException, IOException {
+        if (fromMillis >= untilMillis) return;
+
+        String settledKey = String.format("%013d", untilMillis);
+        boolean toLastRow = lastRowKey.compareTo(settledKey) < 0;
+        String after = null;
+        Batch batch;
+        do {
+            ByteStringRange range = after == null
+                    ? ByteStringRange.unbounded().startClosed(String.format("%013d", fromMillis))
+                    : ByteStringRange.unbounded().startOpen(after);
+            batch = copyBatch(toLastRow ? range.endClosed(lastRowKey) : range.endOpen(settledKey), false);
+            after = batch.lastKey();
+        } while (batch.count() >= batchLimit && !Thread.currentThread().isInterrupted());
+    }
+
+    /**
+     * Copier un lot de la plage ; advance : lot à la suite de la dernière clé copiée
+     */
+    private Batch copyBatch(ByteStringRange range, boolean advance) throws RocksDBException, IOException {
+        Query query = Query.create(logsTable)
+                .range(range)
+                .limit(batchLimit);
+
+        int count = 0;
+        String last = null;
+        try (WriteBatch batch = new WriteBatch(); WriteOptions writeOptions = new WriteOptions()) {
+            for (Row row : bigtableClient.readRows(query)) {
+                last = row.getKey().toStringUtf8();
+                batch.put(logs, row.getKey().toByteArray(), encode(row));
+                count++;
+            }
+            if (last == null) return new Batch(0, null);
+
+            // Progression écrite avec les lignes : jamais en avance sur la copie
+            batch.put(logs, META_KEY, progress(coveredFrom, advance ? last : lastRowKey, coveredUntil));
+            write(writeOptions, batch);
+        }
+        if (advance) {
+            lastRowKey = last;
+        }
+        return new Batch(count, last);
+    }
+
+    private record Batch(int count, String lastKey) {
+    }
+
+    private void loadProgress() throws RocksDBException, IOException {
+        byte[] value = db.get(logs, META_KEY);
+        if (value == null) return;
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(value))) {
+            coveredFrom = in.readLong();
+            lastRowKey = in.readUTF();
+            coveredUntil = in.readLong();
+        }
+        log.info("Local hot store resuming after {} (covered from {})", lastRowKey, Instant.ofEpochMilli(coveredFrom));
+    }
+
+    private void writeProgress() throws RocksDBException, IOException {
+        dbLock.readLock().lock();
+        try {
+            if (db == null) throw new RocksDBException("Local hot store closed");
+            db.put(logs, META_KEY, progress(coveredFrom, lastRowKey, coveredUntil));
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    private void write(WriteOptions writeOptions, WriteBatch batch) throws RocksDBException {
+        dbLock.readLock().lock();
+        try {
+            if (db == null) throw new RocksDBException("Local hot store closed");
+            db.write(writeOptions, batch);
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    private static byte[] progress(long from, String lastKey, long until) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(from);
+            out.writeUTF(lastKey);
+            out.writeLong(until);
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] encode(Row row) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            var cells = row.getCells(logsCF);
+            out.writeInt(cells.size());
+            for (RowCell cell : cells) {
+                writeBytes(out, cell.getQualifier().toByteArray());
+                writeBytes(out, cell.getValue().toByteArray());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, String> decode(byte[] key, byte[] value) {
+        Map<String, String> map = new HashMap<>();
+        map.put("row_key", new String(key, StandardCharsets.UTF_8));
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(value))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String column = new String(readBytes(in), StandardCharsets.UTF_8);
+                map.put(column, new String(readBytes(in), StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return map;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private void close() {
+        // Attendre la fin des lectures en cours (itérateurs ouverts) avant de libérer la base
+        dbLock.writeLock().lock();
+        try {
+            closeDb();
+        } finally {
+            dbLock.writeLock().unlock();
+        }
+    }
+
+    private void closeDb() {
+        TtlDB current = db;
+        db = null;
+        if (logs != null) {
+            logs.close();
+            logs = null;
+        }
+        if (current != null) {
+            current.close();
+        }
+        if (columnFamilyOptions != null) {
+            columnFamilyOptions.close();
+            columnFamilyOptions = null;
+        }
+        if (dbOptions != null) {
+            dbOptions.close();
+            dbOptions = null;
+        }
+    }
+}
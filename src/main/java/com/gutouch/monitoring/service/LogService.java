@@ -3,12 +3,18 @@ package com.gutouch.monitoring.service;
 import com.gutouch.monitoring.dto.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,6 +23,15 @@ import java.util.stream.Collectors;
 public class LogService {
 
     private final BigtableService bigtableService;
+    private final RecentLogBuffer recentLogBuffer;
+    private final LogStatisticsCatalog logStatisticsCatalog;
+
+    // Échantillon de la sélectivité des filtres hors catalogue : tranches de la plage et logs lus au total
+    @Value("${analytics.log-search.sample-slices:8}")
+    private int sampleSlices;
+
+    @Value("${analytics.log-search.sample-rows:800}")
+    private int sampleRows;
 
     /**
      * Rechercher des logs avec filtres
@@ -28,19 +43,68 @@ public class LogService {
         Instant endTime = params.getEndTime() != null ? params.getEndTime() : Instant.now();
         Instant startTime = params.getStartTime() != null ? params.getStartTime() : endTime.minus(24, ChronoUnit.HOURS);
         
-        // Récupérer les logs depuis BigTable
-        List<LogEntry> allLogs = bigtableService.searchLogs(
-                params.getConnector(),
-                params.getType(),
-                startTime,
-                endTime,
-                params.getLimit() * 3 // Récupérer plus pour filtrer
-        );
-        
-        // Appliquer les filtres supplémentaires
-        List<LogEntry> filteredLogs = allLogs.stream()
-                .filter(log -> matchesFilters(log, params))
-                .collect(Collectors.toList());
+        if (recentLogBuffer.covers(startTime) && !"latency".equals(params.getSortBy())) {
+            // Plage récente triée par timestamp : index bitmap du tampon, sans matérialiser les logs
+            int offset = (params.getPage() - 1) * params.getLimit();
+            RecentLogBuffer.SearchResult result = recentLogBuffer.search(params, startTime, endTime,
+                    log -> matches(log, params), Math.max(offset, 0), params.getLimit());
+            if (result != null) {
+                return LogSearchResponseDTO.builder()
+                        .total(result.total())
+                        .page(params.getPage())
+                        .limit(params.getLimit())
+                        .pages((int) Math.ceil((double) result.total() / params.getLimit()))
+                        .logs(result.logs())
+                        .summary(calculateSummary(result))
+                        .estimatedTotal(result.total())
+                        .estimated(false)
+                        .build();
+            }
+        }
+
+        long bufferedFrom = recentLogBuffer.getCoveredFrom();
+        if (!recentLogBuffer.covers(startTime) && !"latency".equals(params.getSortBy())
+                && bufferedFrom > startTime.toEpochMilli() && bufferedFrom < endTime.toEpochMilli()) {
+            // Plage commencée avant le tampon : fin de plage par l'index, début depuis Bigtable
+            LogSearchResponseDTO result = searchAcrossBuffer(params, startTime, Instant.ofEpochMilli(bufferedFrom),
+                    endTime);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        List<LogEntry> filteredLogs;
+        // Total de la plage compté par le catalogue quand les logs lus sont tronqués
+        LogStatisticsCatalog.Count matchCount = null;
+        if (recentLogBuffer.covers(startTime)) {
+            // Plage récente : tous les logs correspondants, depuis le tampon
+            List<LogEntry> recentLogs = new ArrayList<>();
+            recentLogBuffer.forEachLog(startTime, endTime, log -> {
+                if (matches(log, params)) {
+                    recentLogs.add(log);
+                }
+            });
+            filteredLogs = recentLogs;
+        } else {
+            // Récupérer les logs depuis BigTable
+            List<LogEntry> allLogs = bigtableService.searchLogs(
+                    params.getConnector(),
+                    params.getType(),
+                    startTime,
+                    endTime,
+                    params.getLimit() * 3 // Récupérer plus pour filtrer
+            );
+
+            // Appliquer les filtres supplémentaires
+            filteredLogs = allLogs.stream()
+                    .filter(log -> matchesFilters(log, params))
+                    .collect(Collectors.toList());
+
+            if (allLogs.size() >= params.getLimit() * 3) {
+                // Lecture tronquée par la limite
+                matchCount = estimateTotal(params, startTime, endTime, filteredLogs.size());
+            }
+        }
         
         // Trier
         if ("latency".equals(params.getSortBy())) {
@@ -71,6 +135,7 @@ public class LogService {
         // Calculer le résumé
         LogSummary summary = calculateSummary(filteredLogs);
         
+        // Pages limitées aux logs lus ; le total de la plage est donné à part
         return LogSearchResponseDTO.builder()
                 .total((long) total)
                 .page(params.getPage())
@@ -78,16 +143,106 @@ public class LogService {
                 .pages((int) Math.ceil((double) total / params.getLimit()))
                 .logs(paginatedLogs)
                 .summary(summary)
+                .estimatedTotal(matchCount != null ? matchCount.count() : total)
+                .estimated(matchCount != null && !matchCount.exact())
+                .build();
+    }
+
+    /**
+     * Recherche triée par timestamp sur une plage commencée avant le tampon récent : la partie
+     * couverte est résolue par l'index bitmap du tampon, le début de plage est lu dans Bigtable
+     * comme une recherche hors tampon (lecture bornée, total estimé par le catalogue si tronquée).
+     * Pages sur la concaténation des deux parties dans l'ordre demandé.
+     *
+     * @return null si le tampon a glissé au-delà de bufferedFrom pendant la recherche
+     */
+    private LogSearchResponseDTO searchAcrossBuffer(LogSearchParams params, Instant startTime, Instant bufferedFrom,
+                                                    Instant endTime) {
+        int readLimit = params.getLimit() * 3;
+        List<LogEntry> read = bigtableService.searchLogs(params.getConnector(), params.getType(),
+                startTime, bufferedFrom, readLimit);
+        List<LogEntry> older = read.stream()
+                .filter(log -> matchesFilters(log, params))
+                .sorted(Comparator.comparing(LogEntry::getTimestamp))
+                .collect(Collectors.toList());
+
+        boolean descending = "desc".equals(params.getSortOrder());
+        int offset = Math.max((params.getPage() - 1) * params.getLimit(), 0);
+        int limit = params.getLimit();
+        List<LogEntry> page = new ArrayList<>();
+        RecentLogBuffer.SearchResult recent;
+        if (descending) {
+            // Plus récents d'abord : tampon puis début de plage
+            Collections.reverse(older);
+            recent = recentLogBuffer.search(params, bufferedFrom, endTime, log -> matches(log, params), offset, limit);
+            if (recent == null) return null;
+            page.addAll(recent.logs());
+            int from = (int) Math.min(Math.max(0L, offset - recent.total()), older.size());
+            page.addAll(older.subList(from, Math.min(from + limit - page.size(), older.size())));
+        } else {
+            int from = Math.min(offset, older.size());
+            page.addAll(older.subList(from, Math.min(from + limit, older.size())));
+            recent = recentLogBuffer.search(params, bufferedFrom, endTime, log -> matches(log, params),
+                    Math.max(0, offset - older.size()), limit - page.size());
+            if (recent == null) return null;
+            page.addAll(recent.logs());
+        }
+
+        long successCount = recent.successCount();
+        long errorCount = recent.errorCount();
+        double latencySum = recent.latencySum();
+        long latencyCount = recent.latencyCount();
+        for (LogEntry log : older) {
+            if (Boolean.TRUE.equals(log.getSuccess())) successCount++;
+            if (Boolean.FALSE.equals(log.getSuccess())) errorCount++;
+            if (log.getResponseTimeMs() != null) {
+                latencySum += log.getResponseTimeMs();
+                latencyCount++;
+            }
+        }
+        long total = recent.total() + older.size();
+        RecentLogBuffer.SearchResult combined = new RecentLogBuffer.SearchResult(total, successCount, errorCount,
+                latencySum, latencyCount, page);
+
+        // Début de plage tronqué par la limite : total compté par le catalogue
+        LogStatisticsCatalog.Count olderCount = read.size() >= readLimit
+                ? estimateTotal(params, startTime, bufferedFrom, older.size())
+                : null;
+        return LogSearchResponseDTO.builder()
+                .total(total)
+                .page(params.getPage())
+                .limit(params.getLimit())
+                .pages((int) Math.ceil((double) total / params.getLimit()))
+                .logs(page)
+                .summary(calculateSummary(combined))
+                .estimatedTotal(olderCount != null ? recent.total() + olderCount.count() : total)
+                .estimated(olderCount != null && !olderCount.exact())
                 .build();
     }
 
     /**
      * Récupérer les logs d'erreur
      */
-    @Cacheable(value = "errorLogs", key = "#connector + '_' + #limit")
     public List<LogEntry> getErrorLogs(String connector, int limit) {
         log.info("Getting error logs for connector: {}, limit: {}", connector, limit);
-        return bigtableService.getErrorLogs(connector, limit);
+        List<LogEntry> recentErrors = recentLogBuffer.getErrorLogs(connector, limit);
+        if (recentErrors == null) {
+            return bigtableService.getErrorLogs(connector, limit);
+        }
+        if (recentErrors.size() >= limit) {
+            return recentErrors;
+        }
+
+        // Fenêtre récente trop courte : compléter depuis Bigtable, sans doublon
+        Set<String> ids = recentErrors.stream().map(LogEntry::getId).collect(Collectors.toSet());
+        List<LogEntry> errors = new ArrayList<>(recentErrors);
+        for (LogEntry entry : bigtableService.getErrorLogs(connector, limit)) {
+            if (errors.size() >= limit) break;
+            if (!ids.contains(entry.getId())) {
+                errors.add(entry);
+            }
+        }
+        return errors;
     }
 
     /**
@@ -126,22 +281,42 @@ public class LogService {
                 .build();
     }
 
+    /**
+     * Vérifier si un log correspond aux filtres, connector et type compris (live tail)
+     */
+    public boolean matches(LogEntry log, LogSearchParams params) {
+        if (params.getConnector() != null && !params.getConnector().equals("all")
+                && !params.getConnector().equals(log.getConnector())) {
+            return false;
+        }
+        if (params.getType() != null && !params.getType().equals("all") && !params.getType().equals(log.getType())) {
+            return false;
+        }
+        return matchesFilters(log, params);
+    }
+
     /**
      * Vérifier si un log correspond aux filtres
      */
     private boolean matchesFilters(LogEntry log, LogSearchParams params) {
-        // Filtre sur le query (recherche dans path, IP, etc.)
+        // Filtre sur le query (recherche dans path, IP, messageId, error, message)
         if (params.getQuery() != null && !params.getQuery().isEmpty()) {
-            String query = params.getQuery().toLowerCase();
+            String query = params.getQuery().toLowerCase(Locale.ROOT);
             boolean matches = false;
             
-            if (log.getPath() != null && log.getPath().toLowerCase().contains(query)) {
+            if (log.getPath() != null && log.getPath().toLowerCase(Locale.ROOT).contains(query)) {
+                matches = true;
+            }
+            if (log.getClientIp() != null && log.getClientIp().toLowerCase(Locale.ROOT).contains(query)) {
                 matches = true;
             }
-            if (log.getClientIp() != null && log.getClientIp().contains(query)) {
+            if (log.getMessageId() != null && log.getMessageId().toLowerCase(Locale.ROOT).contains(query)) {
                 matches = true;
             }
-            if (log.getMessageId() != null && log.getMessageId().contains(query)) {
+            if (log.getError() != null && log.getError().toLowerCase(Locale.ROOT).contains(query)) {
+                matches = true;
+            }
+            if (log.getMessage() != null && log.getMessage().toLowerCase(Locale.ROOT).contains(query)) {
                 matches = true;
             }
             
@@ -173,6 +348,13 @@ public class LogService {
             }
         }
         
+        // Filtre sur timeout
+        if (params.getTimeout() != null) {
+            if (!params.getTimeout().equals(log.getTimeout())) {
+                return false;
+            }
+        }
+        
         // Filtre sur latency
         if (params.getMinLatency() != null || params.getMaxLatency() != null) {
             if (log.getResponseTimeMs() == null) return false;
@@ -197,6 +379,58 @@ public class LogService {
 
     }
 
+    /**
+     * Total d'une recherche dont la lecture Bigtable a été tronquée : comptage du catalogue
+     * de statistiques sur les dimensions qu'il connaît (connector, type, classe de status,
+     * success), ajusté par la sélectivité des autres filtres observée sur un échantillon de
+     * chaque tranche de la plage (la lecture affichée n'en couvre que les premiers logs).
+     * Sans catalogue, le nombre de logs lus correspondants (estimé).
+     */
+    private LogStatisticsCatalog.Count estimateTotal(LogSearchParams params, Instant startTime, Instant endTime,
+                                                     int readMatches) {
+        String status = params.getStatus() != null && !params.getStatus().isEmpty() ? params.getStatus() : null;
+        String statusClass = status != null ? status.substring(0, 1) : null;
+        long startMillis = startTime.toEpochMilli();
+        long endMillis = endTime.toEpochMilli();
+        LogStatisticsCatalog.Count count = logStatisticsCatalog.count(params.getConnector(), params.getType(),
+                statusClass, params.getSuccess(), startMillis, endMillis);
+        if (count == null) {
+            return new LogStatisticsCatalog.Count(readMatches, false);
+        }
+
+        boolean residualFilters = (status != null && !status.endsWith("xx"))
+                || (params.getQuery() != null && !params.getQuery().isEmpty())
+                || params.getMinLatency() != null || params.getMaxLatency() != null
+                || (params.getClientIp() != null && !params.getClientIp().isEmpty())
+                || params.getTimeout() != null;
+        if (!residualFilters) {
+            return new LogStatisticsCatalog.Count(Math.max(count.count(), readMatches), count.exact());
+        }
+
+        // Part retenue par les autres filtres parmi les logs comptés, tranche par tranche
+        Predicate<LogEntry> counted = log -> (statusClass == null
+                || (log.getStatusCode() != null && String.valueOf(log.getStatusCode()).startsWith(statusClass)))
+                && (params.getSuccess() == null || params.getSuccess().equals(log.getSuccess()));
+        int slices = Math.max(1, sampleSlices);
+        long sliceMs = Math.max(1L, (endMillis - startMillis + slices - 1) / slices);
+        int rowsPerSlice = Math.max(1, sampleRows / slices);
+        double estimate = 0.0;
+        for (long from = startMillis; from < endMillis; from += sliceMs) {
+            long to = Math.min(from + sliceMs, endMillis);
+            LogStatisticsCatalog.Count sliceCount = logStatisticsCatalog.count(params.getConnector(), params.getType(),
+                    statusClass, params.getSuccess(), from, to);
+            if (sliceCount == null || sliceCount.count() == 0) continue;
+
+            List<LogEntry> sample = bigtableService.searchLogs(params.getConnector(), params.getType(),
+                    Instant.ofEpochMilli(from), Instant.ofEpochMilli(to), rowsPerSlice);
+            long catalogMatches = sample.stream().filter(counted).count();
+            if (catalogMatches == 0) continue;
+            long sampleMatches = sample.stream().filter(counted.and(log -> matchesFilters(log, params))).count();
+            estimate += (double) sliceCount.count() * sampleMatches / catalogMatches;
+        }
+        return new LogStatisticsCatalog.Count(Math.max(Math.round(estimate), readMatches), false);
+    }
+
     /**
      * Calculer le résumé des logs
      */
@@ -232,6 +466,25 @@ public class LogService {
                 .build();
     }
 
+    /**
+     * Calculer le résumé à partir des comptages de l'index bitmap
+     */
+    private LogSummary calculateSummary(RecentLogBuffer.SearchResult result) {
+        if (result.total() == 0) {
+            return LogSummary.builder()
+                    .successRate(0.0)
+                    .avgLatencyMs(0.0)
+                    .errorCount(0L)
+                    .build();
+        }
+
+        return LogSummary.builder()
+                .successRate((double) result.successCount() / result.total() * 100)
+                .avgLatencyMs(result.latencyCount() > 0 ? result.latencySum() / result.latencyCount() : 0.0)
+                .errorCount(result.errorCount())
+                .build();
+    }
+
     /**
      * Helper parsing methods
      */
@@ -0,0 +1,229 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.dto.LogEntry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Catalogue de statistiques de raw_log : nombre de logs par minute et par
+ * (connector, type, classe de status, success).
+ *
+ * Abonné permanent du curseur définitif du {@link LogTailFollower} (lignes en retard
+ * comprises) ; au démarrage du lecteur, les heures précédentes sont comptées en fond.
+ * Le nombre de logs d'une plage pour ces dimensions
+ * se lit en O(minutes) sans parcourir les lignes : exact pour les minutes entières
+ * couvertes (définitives, retards compris), proratisé pour les minutes de bord et
+ * extrapolé pour les dernières minutes pas encore suivies.
+ */
+@Service
+@Slf4j
+public class LogStatisticsCatalog implements LogTailFollower.Listener {
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final long HOUR_MS = HourlyRollupService.HOUR_MS;
+
+    private final BigtableService bigtableService;
+    private final LogTailFollower logTailFollower;
+
+    @Value("${analytics.log-stats.enabled:true}")
+    private boolean enabled;
+
+    // Un peu plus que la plage par défaut de la recherche (24h)
+    @Value("${analytics.log-stats.retention-hours:25}")
+    private int retentionHours;
+
+    @Value("${analytics.log-stats.backfill-hours:25}")
+    private int backfillHours;
+
+    // minute -> nombre de logs par dimensions
+    private final ConcurrentSkipListMap<Long, Map<Key, AtomicLong>> minutes = new ConcurrentSkipListMap<>();
+    private final Map<Key, Key> keys = new ConcurrentHashMap<>();
+
+    // Minutes entières de [coveredFrom, coveredUntil) toutes comptées, -1 tant que rien n'est suivi
+    private volatile long coveredFrom = -1L;
+    private volatile long coveredUntil = -1L;
+    // Incrémentée à chaque redémarrage du lecteur : un backfill périmé n'écrit plus
+    private volatile int generation;
+    // Vérification de génération et écriture d'un backfill atomiques face au vidage de onStart
+    private final Object backfillLock = new Object();
+    private ExecutorService backfillExecutor;
+
+    public LogStatisticsCatalog(BigtableService bigtableService, LogTailFollower logTailFollower) {
+        this.bigtableService = bigtableService;
+        this.logTailFollower = logTailFollower;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+
+        backfillExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "log-stats-backfill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logTailFollower.addSettledListener(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (backfillExecutor != null) {
+            logTailFollower.removeSettledListener(this);
+            backfillExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void onStart(long fromMillis) {
+        int current;
+        synchronized (backfillLock) {
+            current = ++generation;
+            minutes.clear();
+            coveredUntil = -1L;
+            // Minute en cours incomplète tant que le backfill ne l'a pas comptée
+            coveredFrom = floorMinute(fromMillis) + (fromMillis % MINUTE_MS == 0 ? 0 : MINUTE_MS);
+        }
+
+        int hours = Math.min(backfillHours, retentionHours);
+        if (hours <= 0) return;
+
+        long from = floorMinute(fromMillis) - hours * HOUR_MS;
+        backfillExecutor.execute(() -> {
+            try {
+                bigtableService.forEachLog(Instant.ofEpochMilli(from), Instant.ofEpochMilli(fromMillis), l -> {
+                    synchronized (backfillLock) {
+                        if (generation == current) {
+                            add(l);
+                        }
+                    }
+                });
+            } catch (Exception e) {
+                // Statistiques couvertes au fil du suivi seulement
+                log.error("Error counting logs before {}", Instant.ofEpochMilli(fromMillis), e);
+                return;
+            }
+            synchronized (backfillLock) {
+                if (generation != current) return;
+                coveredFrom = Math.max(from, evictionCutoff());
+            }
+            log.info("Log statistics backfilled from {} ({} minutes)", Instant.ofEpochMilli(from), minutes.size());
+        });
+    }
+
+    @Override
+    public void onLogs(List<LogEntry> logs) {
+        for (LogEntry entry : logs) {
+            add(entry);
+        }
+    }
+
+    @Override
+    public void onCaughtUp(long untilMillis) {
+        coveredUntil = untilMillis;
+        long cutoff = evictionCutoff();
+        minutes.headMap(cutoff).clear();
+        if (coveredFrom < cutoff) {
+            coveredFrom = cutoff;
+        }
+    }
+
+    /**
+     * Nombre de logs de [début, fin) pour ces dimensions (null ou "all" : toutes) ;
+     * null si le début n'est pas couvert par le catalogue
+     */
+    public Count count(String connector, String type, String statusClass, Boolean success,
+                       long startMillis, long endMillis) {
+        long from = coveredFrom;
+        long until = coveredUntil;
+        if (from < 0 || until < 0 || startMillis < from) return null;
+        if (endMillis <= startMillis) return new Count(0L, true);
+
+        long end = Math.min(endMillis, until);
+        double total = 0.0;
+        boolean exact = true;
+        if (startMillis < end) {
+            total = sum(connector, type, statusClass, success, startMillis, end, until);
+            // Minutes de bord proratisées
+            exact = startMillis % MINUTE_MS == 0 && (end % MINUTE_MS == 0 || end == until);
+        }
+        if (endMillis > until) {
+            // Dernières minutes pas encore définitives (lateness-ms) : extrapolées du débit
+            // de la même durée juste avant, dans la limite de la couverture
+            long tail = endMillis - Math.max(startMillis, until);
+            long reference = Math.max(from, until - tail);
+            if (reference < until) {
+                total += sum(connector, type, statusClass, success, reference, until, until) * tail / (until - reference);
+            }
+            exact = false;
+        }
+        return new Count(Math.round(total), exact);
+    }
+
+    public record Count(long count, boolean exact) {
+    }
+
+    /**
+     * Somme des compteurs de [début, fin), minutes de bord proratisées sur leur part couverte
+     */
+    private double sum(String connector, String type, String statusClass, Boolean success,
+                       long startMillis, long endMillis, long until) {
+        double total = 0.0;
+        for (Map.Entry<Long, Map<Key, AtomicLong>> minute
+                : minutes.subMap(floorMinute(startMillis), true, endMillis, false).entrySet()) {
+            long minuteStart = minute.getKey();
+            long covered = Math.min(minuteStart + MINUTE_MS, until) - minuteStart;
+            long overlap = Math.min(endMillis, minuteStart + MINUTE_MS) - Math.max(startMillis, minuteStart);
+            if (covered <= 0 || overlap <= 0) continue;
+
+            long matching = 0L;
+            for (Map.Entry<Key, AtomicLong> counter : minute.getValue().entrySet()) {
+                if (counter.getKey().matches(connector, type, statusClass, success)) {
+                    matching += counter.getValue().get();
+                }
+            }
+            total += overlap >= covered ? matching : (double) matching * overlap / covered;
+        }
+        return total;
+    }
+
+    private void add(LogEntry entry) {
+        if (entry.getTimestamp() == null) return;
+
+        String statusClass = entry.getStatusCode() != null ? String.valueOf(entry.getStatusCode()).substring(0, 1) : null;
+        Key key = keys.computeIfAbsent(new Key(entry.getConnector(), entry.getType(), statusClass, entry.getSuccess()), k -> k);
+        minutes.computeIfAbsent(floorMinute(entry.getTimestamp().toEpochMilli()), m -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> new AtomicLong())
+                .incrementAndGet();
+    }
+
+    private long evictionCutoff() {
+        long until = coveredUntil;
+        return until < 0 ? Long.MIN_VALUE : floorMinute(until - retentionHours * HOUR_MS);
+    }
+
+    private static long floorMinute(long millis) {
+        return Math.floorDiv(millis, MINUTE_MS) * MINUTE_MS;
+    }
+
+    private record Key(String connector, String type, String statusClass, Boolean success) {
+
+        boolean matches(String connectorFilter, String typeFilter, String statusClassFilter, Boolean successFilter) {
+            if (connectorFilter != null && !connectorFilter.equals("all") && !connectorFilter.equals(connector)) return false;
+            if (typeFilter != null && !typeFilter.equals("all") && !typeFilter.equals(type)) return false;
+            if (statusClassFilter != null && !statusClassFilter.equals(statusClass)) return false;
+            return successFilter == null || successFilter.equals(success);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.dto.LogEntry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lecteur incrémental unique de raw_log.
+ *
+ * Suit raw_log depuis la dernière clé lue et distribue chaque lot de nouvelles lignes
+ * aux abonnés ; une seule lecture Bigtable par curseur et par intervalle quel que soit leur
+ * nombre. Curseurs, chacun lu seulement s'il a des abonnés :
+ * - live ({@link #addListener}) : jusqu'à maintenant - read-lag-ms, pour le live tail ;
+ *   une ligne écrite en retard derrière le curseur n'est pas livrée.
+ * - définitif ({@link #addSettledListener}) : jusqu'à maintenant - lateness-ms, au-delà
+ *   duquel aucune écriture en retard n'est attendue ; chaque ligne est livrée une fois, par
+ *   clé croissante, et onCaughtUp garantit que toutes les lignes antérieures ont été livrées
+ *   ({@link LogStatisticsCatalog}).
+ * - à retard choisi ({@link #addSettledListener(Listener, long)}) : mêmes garanties, mais
+ *   seulement pour les écritures arrivées dans ce délai ({@link RecentLogBuffer}).
+ */
+@Service
+@Slf4j
+public class LogTailFollower {
+
+    private final BigtableService bigtableService;
+
+    @Value("${analytics.log-tail.poll-interval-ms:2000}")
+    private long pollIntervalMs;
+
+    @Value("${analytics.log-tail.read-lag-ms:5000}")
+    private long readLagMs;
+
+    @Value("${analytics.log-tail.lateness-ms:300000}")
+    private long latenessMs;
+
+    @Value("${analytics.log-tail.batch-limit:5000}")
+    private int batchLimit;
+
+    private final Cursor live = new Cursor("live");
+    // Curseurs définitifs par retard (ms) ; celui de lateness-ms créé à l'abonnement
+    private final Map<Long, Cursor> settled = new ConcurrentHashMap<>();
+
+    /**
+     * Abonné du lecteur ; toutes les méthodes sont appelées sur le thread du lecteur
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /** Nouveau lot de lignes, par clé croissante */
+        void onLogs(List<LogEntry> logs);
+
+        /** Lecture (re)démarrée : seules les lignes à partir de ce timestamp seront livrées */
+        default void onStart(long fromMillis) {
+        }
+
+        /** Toutes les lignes antérieures à ce timestamp ont été livrées */
+        default void onCaughtUp(long untilMillis) {
+        }
+    }
+
+    private ScheduledExecutorService scheduler;
+
+    public LogTailFollower(BigtableService bigtableService) {
+        this.bigtableService = bigtableService;
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "log-tail-follower");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Recevoir chaque lot de nouvelles lignes dès maintenant - read-lag-ms (live tail)
+     */
+    public void addListener(Listener listener) {
+        live.listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        live.listeners.remove(listener);
+    }
+
+    /**
+     * Recevoir les lignes une fois définitives (maintenant - lateness-ms), sans en manquer
+     */
+    public void addSettledListener(Listener listener) {
+        addSettledListener(listener, latenessMs);
+    }
+
+    /**
+     * Recevoir les lignes jusqu'à maintenant - lateness (au moins read-lag-ms) : une ligne
+     * écrite plus en retard que ce délai derrière le curseur n'est pas livrée
+     */
+    public void addSettledListener(Listener listener, long lateness) {
+        long delay = Math.max(readLagMs, lateness);
+        settled.computeIfAbsent(delay, d -> new Cursor("settled-" + d + "ms")).listeners.add(listener);
+    }
+
+    public void removeSettledListener(Listener listener) {
+        settled.values().forEach(cursor -> cursor.listeners.remove(listener));
+    }
+
+    /**
+     * Délai au-delà duquel les lignes livrées aux abonnés définitifs sont complètes
+     */
+    public long getLatenessMs() {
+        return latenessMs;
+    }
+
+    private void poll() {
+        long now = System.currentTimeMillis();
+        live.poll(Instant.ofEpochMilli(now - readLagMs));
+        settled.forEach((delay, cursor) -> cursor.poll(Instant.ofEpochMilli(now - delay)));
+    }
+
+    /**
+     * Curseur de lecture et ses abonnés
+     */
+    private final class Cursor {
+
+        private final String name;
+        private final Set<Listener> listeners = ConcurrentHashMap.newKeySet();
+        private volatile String lastRowKey;
+
+        Cursor(String name) {
+            this.name = name;
+        }
+
+        void poll(Instant end) {
+            if (listeners.isEmpty()) {
+                // Sans abonné, reprendre au présent au prochain abonnement
+                lastRowKey = null;
+                return;
+            }
+
+            if (lastRowKey == null) {
+                lastRowKey = String.format("%013d", end.toEpochMilli());
+                for (Listener listener : listeners) {
+                    try {
+                        listener.onStart(end.toEpochMilli());
+                    } catch (RuntimeException e) {
+                        log.warn("Log tail listener failed", e);
+                    }
+                }
+                return;
+            }
+
+            try {
+                // Lire par lots jusqu'à rattraper la fin
+                List<LogEntry> logs;
+                do {
+                    logs = bigtableService.readLogsAfter(lastRowKey, end, batchLimit);
+                    if (logs.isEmpty()) break;
+
+                    lastRowKey = logs.get(logs.size() - 1).getId();
+                    for (Listener listener : listeners) {
+                        try {
+                            listener.onLogs(logs);
+                        } catch (RuntimeException e) {
+                            log.warn("Log tail listener failed", e);
+                        }
+                    }
+                } while (logs.size() >= batchLimit);
+
+                for (Listener listener : listeners) {
+                    try {
+                        listener.onCaughtUp(end.toEpochMilli());
+                    } catch (RuntimeException e) {
+                        log.warn("Log tail listener failed", e);
+                    }
+                }
+            } catch (Exception e) {
+                // Reprise depuis la même clé au prochain passage
+                log.error("Error following raw_log ({}) after {}", name, lastRowKey, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.aggregate.LogAggregate;
+import com.gutouch.monitoring.aggregate.MetricSource;
+import com.gutouch.monitoring.aggregate.SourcedAggregates;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Choix de la source la moins coûteuse capable de répondre à une métrique.
+ *
+ * Les heures complètes couvertes par les rollups sont toujours lues depuis les rollups.
+ * Pour le reste de la plage (bords, heures pas encore agrégées) :
+ * - COUNTS (requêtes, erreurs, latence moyenne) : jauges par minute de metrics_log ;
+ * - DISTRIBUTION (percentiles, status codes) : raw_log, seule source exacte.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MetricSourceRouter {
+
+    private static final String ALL = "all";
+
+    private final BigtableService bigtableService;
+    private final HourlyRollupService hourlyRollupService;
+    private final ConnectorRegistry connectorRegistry;
+    private final ConnectorFanOut connectorFanOut;
+    private final SegmentStore segmentStore;
+
+    /**
+     * Précision requise par l'appelant
+     */
+    public enum Requirement {
+        /** Compteurs et moyennes : les jauges metrics_log suffisent */
+        COUNTS,
+        /** Distributions fusionnables : rollups ou raw_log uniquement */
+        DISTRIBUTION
+    }
+
+    /**
+     * Cible d'agrégation choisie par l'appelant pour une heure, un connector et un type
+     * de log (null si la source ne le distingue pas) ; null pour ignorer
+     */
+    @FunctionalInterface
+    public interface AggregateSink {
+        LogAggregate target(long hourStart, String connector, String type);
+    }
+
+    /**
+     * Agréger une plage [début, fin) depuis les sources adaptées ; chaque donnée alimente
+     * la cible de son connector et la cible "all". Le connector (null pour tous) ne sert
+     * qu'à restreindre les lectures metrics_log. Les erreurs de lecture sont propagées.
+     *
+     * @return les sources effectivement lues
+     */
+    public Set<MetricSource> aggregate(Instant start, Instant end, String connector,
+                                       Requirement requirement, AggregateSink sink) {
+        Set<MetricSource> sources = EnumSet.noneOf(MetricSource.class);
+        long startMillis = start.toEpochMilli();
+        long endMillis = end.toEpochMilli();
+        if (endMillis <= startMillis) return sources;
+
+        long[] span = hourlyRollupService.coveredSpan(startMillis, endMillis);
+        if (span == null) {
+            readUncovered(startMillis, endMillis, connector, requirement, sink, sources);
+            return sources;
+        }
+
+        readUncovered(startMillis, span[0], connector, requirement, sink, sources);
+        hourlyRollupService.readRollups(span[0], span[1], sink);
+        sources.add(MetricSource.ROLLUP);
+        readUncovered(span[1], endMillis, connector, requirement, sink, sources);
+        return sources;
+    }
+
+    /**
+     * Agrégats d'une plage par connector (clé "all" incluse)
+     */
+    public SourcedAggregates aggregateByConnector(Instant start, Instant end, Requirement requirement) {
+        Map<String, LogAggregate> byConnector = new HashMap<>();
+        byConnector.put(ALL, new LogAggregate());
+        Set<MetricSource> sources = aggregate(start, end, null, requirement,
+                (hour, c, type) -> byConnector.computeIfAbsent(c, k -> new LogAggregate()));
+        return new SourcedAggregates(byConnector, sources);
+    }
+
+    private void readUncovered(long startMillis, long endMillis, String connector, Requirement requirement,
+                               AggregateSink sink, Set<MetricSource> sources) {
+        if (endMillis <= startMillis) return;
+
+        if (requirement == Requirement.COUNTS) {
+            readMetricsLog(startMillis, endMillis, connector, sink);
+            sources.add(MetricSource.METRICS_LOG);
+        } else {
+            readRawLog(startMillis, endMillis, sink);
+            sources.add(MetricSource.RAW_LOG);
+        }
+    }
+
+    private void readMetricsLog(long startMillis, long endMillis, String connector, AggregateSink sink) {
+        List<String> connectors = connector != null && !connector.isEmpty() && !ALL.equals(connector)
+                ? List.of(connector)
+                : connectorRegistry.getConnectors();
+
+        // Bornes exclusives côté BigtableService : élargir d'1 ms pour lire [début, fin)
+        Instant from = Instant.ofEpochMilli(startMillis - 1);
+        Instant to = Instant.ofEpochMilli(endMillis);
+        Map<String, List<Map<String, String>>> metricsByConnector = connectorFanOut.map(connectors,
+                c -> bigtableService.getConnectorMetrics(c, from, to));
+
+        metricsByConnector.forEach((c, metrics) -> {
+            for (Map<String, String> metric : metrics) {
+                long timestamp = parseLong(metric.get("window_timestamp"));
+                long requests = parseLong(metric.get("requests_per_minute"));
+                if (timestamp < startMillis || timestamp >= endMillis || requests <= 0) continue;
+
+                long hour = HourlyRollupService.floorHour(timestamp);
+                long successes = Math.round(requests * parseDouble(metric.get("success_rate_percentage")) / 100.0);
+                long timeouts = Math.round(requests * parseDouble(metric.get("timeout_rate_percentage")) / 100.0);
+                double latencySum = requests * parseDouble(metric.get("avg_response_time_ms"));
+
+                addCounts(sink.target(hour, ALL, null), requests, successes, timeouts, latencySum);
+                addCounts(sink.target(hour, c, null), requests, successes, timeouts, latencySum);
+            }
+        });
+    }
+
+    private void readRawLog(long startMillis, long endMillis, AggregateSink sink) {
+        // Heures closes depuis les segments (colonnes utiles seulement), bord récent depuis le tampon hors tas
+        segmentStore.aggregate(Instant.ofEpochMilli(startMillis), Instant.ofEpochMilli(endMillis), sink);
+    }
+
+    private static void addCounts(LogAggregate target, long requests, long successes, long timeouts, double latencySum) {
+        if (target != null) {
+            target.addCounts(requests, successes, timeouts, latencySum);
+        }
+    }
+
+    private static long parseLong(String value) {
+        if (value == null || value.isEmpty()) return 0L;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private static double parseDouble(String value) {
+        if (value == null || value.isEmpty()) return 0.0;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+}
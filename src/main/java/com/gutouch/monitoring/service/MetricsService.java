@@ -1,8 +1,21 @@
 package com.gutouch.monitoring.service;
 
+import com.gutouch.monitoring.aggregate.LogAggregate;
+import com.gutouch.monitoring.aggregate.MetricSource;
+import com.gutouch.monitoring.config.CacheFreshness;
 import com.gutouch.monitoring.dto.*;
+import com.gutouch.monitoring.service.MetricSourceRouter.Requirement;
+import com.gutouch.monitoring.sketch.LatencyHistogram;
+import com.gutouch.monitoring.sketch.MaxValueTopK;
+import com.gutouch.monitoring.sketch.SpaceSavingTopK;
+import com.gutouch.monitoring.sketch.StatusCodeHistogram;
+import com.gutouch.monitoring.sketch.TrafficStats;
+import com.gutouch.monitoring.timeseries.Resolution;
+import com.gutouch.monitoring.timeseries.SeriesPoint;
+import com.gutouch.monitoring.util.Lttb;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
@@ -17,44 +30,85 @@ import java.util.stream.Collectors;
 public class MetricsService {
 
     private final BigtableService bigtableService;
+    private final DistinctCountService distinctCountService;
+    private final ConnectorRegistry connectorRegistry;
+    private final ConnectorFanOut connectorFanOut;
+    private final MetricSourceRouter metricSourceRouter;
+    private final TimeSeriesStore timeSeriesStore;
+    private final RecentLogBuffer recentLogBuffer;
+
+    @Value("${analytics.heavy-hitters.capacity:1024}")
+    private int heavyHitterCapacity;
+
+    @Value("${analytics.latency-buckets:10,20,50,100,200}")
+    private double[] latencyBuckets;
 
     /**
      * Récupérer les métriques d'overview
      */
-    @Cacheable(value = "overview", key = "#timeRange")
-    public OverviewMetricsDTO getOverviewMetrics(String timeRange) {
-        log.info("Getting overview metrics for timeRange: {}", timeRange);
+    @Cacheable(value = "overview", key = "#timeRange + '_' + #maxPoints", sync = true)
+    public OverviewMetricsDTO getOverviewMetrics(String timeRange, int maxPoints) {
+        log.info("Getting overview metrics for timeRange: {}, maxPoints: {}", timeRange, maxPoints);
         
         Instant endTime = Instant.now();
         Instant startTime = calculateStartTime(endTime, timeRange);
         
-        // Récupérer les métriques pour chaque connector
-        List<Map<String, String>> gatewayMetrics = bigtableService.getConnectorMetrics("pi-gateway", startTime, endTime);
-        List<Map<String, String>> connectorMetrics = bigtableService.getConnectorMetrics("pi-connector", startTime, endTime);
+        // Résolution la plus grossière donnant encore maxPoints points (la plus fine si maxPoints = 0)
+        long start = startTime.toEpochMilli();
+        long end = endTime.toEpochMilli();
+        Resolution resolution = timeSeriesStore.pickResolution(start, end, maxPoints > 0 ? maxPoints : Integer.MAX_VALUE);
         
-        // Calculer les status des services
-        ServiceStatus gatewayStatus = calculateServiceStatus("pi-gateway", gatewayMetrics);
-        ServiceStatus connectorStatus = calculateServiceStatus("pi-connector", connectorMetrics);
+        // Séries depuis le store multi-résolution ; connectors pas encore chargés lus dans metrics_log
+        List<String> connectors = connectorRegistry.getConnectors();
+        List<String> uncovered = connectors.stream()
+                .filter(c -> !timeSeriesStore.covers(c, start))
+                .collect(Collectors.toList());
+        Map<String, List<Map<String, String>>> metricsByConnector = connectorFanOut.map(uncovered,
+                connector -> bigtableService.getConnectorMetrics(connector, startTime, endTime));
+        
+        Map<String, List<SeriesPoint>> seriesByConnector = new LinkedHashMap<>();
+        Map<String, Map<String, String>> latestByConnector = new LinkedHashMap<>();
+        for (String connector : connectors) {
+            if (metricsByConnector.containsKey(connector)) {
+                List<Map<String, String>> metrics = metricsByConnector.get(connector);
+                seriesByConnector.put(connector, toSeries(metrics, resolution, start, end));
+                latestByConnector.put(connector, metrics.isEmpty() ? null : metrics.get(metrics.size() - 1));
+            } else if (!uncovered.contains(connector)) {
+                seriesByConnector.put(connector, timeSeriesStore.query(connector, resolution, start, end));
+                latestByConnector.put(connector, timeSeriesStore.latest(connector));
+            }
+        }
+        
+        // Calculer les status des services (comptes distincts en parallèle)
+        Map<String, DistinctCountsDTO> distinctByConnector = connectorFanOut.map(connectors,
+                connector -> countDistinct(connector, startTime, endTime));
+        List<ServiceStatus> services = new ArrayList<>();
+        for (String connector : connectors) {
+            ServiceStatus status = calculateServiceStatus(connector, latestByConnector.get(connector));
+            applyDistinctCounts(status, distinctByConnector.get(connector));
+            services.add(status);
+        }
         
         // Calculer les totaux
-        TotalMetrics totals = calculateTotals(gatewayMetrics, connectorMetrics);
+        TotalMetrics totals = calculateTotals(seriesByConnector.values(), latestByConnector.values());
         
         // Construire la timeline
-        List<TimelinePoint> timeline = buildTimeline(gatewayMetrics, connectorMetrics);
+        List<TimelinePoint> timeline = buildTimeline(seriesByConnector, maxPoints);
         
         return OverviewMetricsDTO.builder()
                 .timestamp(Instant.now())
                 .timeRange(timeRange)
-                .services(Arrays.asList(gatewayStatus, connectorStatus))
+                .services(services)
                 .totals(totals)
                 .timeline(timeline)
+                .dataSource(MetricSource.METRICS_LOG.getLabel())
                 .build();
     }
 
     /**
      * Récupérer les détails d'un connector
      */
-    @Cacheable(value = "connectorDetails", key = "#connectorName + '_' + #timeRange")
+    @Cacheable(value = "connectorDetails", key = "#connectorName + '_' + #timeRange", sync = true)
     public ConnectorDetailsDTO getConnectorDetails(String connectorName, String timeRange) {
         log.info("Getting details for connector: {}, timeRange: {}", connectorName, timeRange);
         
@@ -63,8 +117,16 @@ public class MetricsService {
         
         List<Map<String, String>> metrics = bigtableService.getConnectorMetrics(connectorName, startTime, endTime);
         
+        DistinctCountsDTO distinct = countDistinct(connectorName, startTime, endTime);
+        
         if (metrics.isEmpty()) {
-            return buildEmptyConnectorDetails(connectorName);
+            ConnectorDetailsDTO empty = buildEmptyConnectorDetails(connectorName);
+            empty.setDataSource(MetricSource.METRICS_LOG.getLabel());
+            if (distinct != null) {
+                empty.setUniqueClients(distinct.getUniqueClients());
+                empty.setUniqueEndpoints(distinct.getUniqueEndpoints());
+            }
+            return empty;
         }
         
         // Calculer les métriques
@@ -87,11 +149,30 @@ public class MetricsService {
                 .p99(parseDouble(latestMetric.get("latency_p99")))
                 .build();
         
-        // Pour les distributions et tops, on doit analyser les logs bruts
-        List<LogEntry> logs = bigtableService.searchLogs(connectorName, "API_IN", startTime, endTime, 10000);
+        // Distributions exactes : rollups pour les heures closes, raw_log pour les bords
+        Set<MetricSource> sources = EnumSet.of(MetricSource.METRICS_LOG);
+        LogAggregate apiIn = new LogAggregate();
+        Map<String, Long> latencyDistribution = null;
+        Map<String, Long> statusBreakdown = null;
+        try {
+            sources.addAll(metricSourceRouter.aggregate(startTime, endTime, connectorName, Requirement.DISTRIBUTION,
+                    (hour, connector, type) -> connectorName.equals(connector) && "API_IN".equals(type) ? apiIn : null));
+            latencyDistribution = toLatencyDistribution(apiIn);
+            statusBreakdown = apiIn.getStatusCodes().toCodeMap();
+            statusBreakdown.remove("0");
+        } catch (Exception e) {
+            log.error("Error aggregating distributions for {}, falling back to raw sample", connectorName, e);
+            CacheFreshness.markDegraded();
+        }
+        
+        // Les tops d'endpoints (méthode + path) restent calculés sur un échantillon de logs bruts
+        List<LogEntry> logs = recentLogBuffer.searchLogs(connectorName, "API_IN", startTime, endTime, 10000);
+        sources.add(MetricSource.RAW_LOG);
         
-        Map<String, Long> latencyDistribution = calculateLatencyDistribution(logs);
-        Map<String, Long> statusBreakdown = calculateStatusBreakdown(logs);
+        if (latencyDistribution == null) {
+            latencyDistribution = calculateLatencyDistribution(logs);
+            statusBreakdown = calculateStatusBreakdown(logs);
+        }
         List<EndpointMetrics> topSlowEndpoints = calculateTopSlowEndpoints(logs, 10);
         List<EndpointError> topErrorEndpoints = calculateTopErrorEndpoints(logs, 10);
         
@@ -107,14 +188,49 @@ public class MetricsService {
                 .statusBreakdown(statusBreakdown)
                 .topSlowEndpoints(topSlowEndpoints)
                 .topErrorEndpoints(topErrorEndpoints)
+                .uniqueClients(distinct != null ? distinct.getUniqueClients() : null)
+                .uniqueEndpoints(distinct != null ? distinct.getUniqueEndpoints() : null)
+                .dataSource(MetricSource.describe(sources))
                 .build();
     }
 
+    /**
+     * Récupérer les comptes distincts (clients, endpoints) d'un connector
+     */
+    public DistinctCountsDTO getDistinctCounts(String connectorName, String timeRange) {
+        log.info("Getting distinct counts for connector: {}, timeRange: {}", connectorName, timeRange);
+        
+        Instant endTime = Instant.now();
+        Instant startTime = calculateStartTime(endTime, timeRange);
+        
+        return distinctCountService.countDistinct(connectorName, startTime, endTime);
+    }
+
+    /**
+     * Compter les distincts sans faire échouer la vue appelante
+     */
+    private DistinctCountsDTO countDistinct(String connectorName, Instant startTime, Instant endTime) {
+        try {
+            return distinctCountService.countDistinct(connectorName, startTime, endTime);
+        } catch (Exception e) {
+            log.error("Error counting distinct clients/endpoints for {}", connectorName, e);
+            CacheFreshness.markDegraded();
+            return null;
+        }
+    }
+
+    private void applyDistinctCounts(ServiceStatus status, DistinctCountsDTO distinct) {
+        if (distinct != null) {
+            status.setUniqueClients(distinct.getUniqueClients());
+            status.setUniqueEndpoints(distinct.getUniqueEndpoints());
+        }
+    }
+
     /**
      * Calculer le status d'un service
      */
-    private ServiceStatus calculateServiceStatus(String connectorName, List<Map<String, String>> metrics) {
-        if (metrics.isEmpty()) {
+    private ServiceStatus calculateServiceStatus(String connectorName, Map<String, String> latestMetric) {
+        if (latestMetric == null) {
             return ServiceStatus.builder()
                     .name(connectorName)
                     .status("unknown")
@@ -126,8 +242,6 @@ public class MetricsService {
                     .build();
         }
         
-        Map<String, String> latestMetric = metrics.get(metrics.size() - 1);
-        
         Double uptimePercentage = parseDouble(latestMetric.get("uptime_percentage"));
         Integer requestsPerMinute = parseInt(latestMetric.get("requests_per_minute"));
         Double avgLatencyMs = parseDouble(latestMetric.get("avg_response_time_ms"));
@@ -156,14 +270,34 @@ public class MetricsService {
     }
 
     /**
-     * Calculer les totaux
+     * Calculer les totaux (moyennes non pondérées des fenêtres minute, comme metrics_log)
      */
-    private TotalMetrics calculateTotals(List<Map<String, String>> gatewayMetrics, List<Map<String, String>> connectorMetrics) {
-        List<Map<String, String>> allMetrics = new ArrayList<>();
-        allMetrics.addAll(gatewayMetrics);
-        allMetrics.addAll(connectorMetrics);
+    private TotalMetrics calculateTotals(Collection<List<SeriesPoint>> seriesByConnector,
+                                         Collection<Map<String, String>> latestByConnector) {
+        long windows = 0L;
+        long totalRequests = 0L;
+        double successRateSum = 0.0;
+        double errorRateSum = 0.0;
+        double latencySum = 0.0;
+        for (List<SeriesPoint> series : seriesByConnector) {
+            for (SeriesPoint point : series) {
+                windows += point.windows();
+                totalRequests += point.requests();
+                successRateSum += point.successRateSum();
+                errorRateSum += point.errorRateSum();
+                latencySum += point.latencySum();
+            }
+        }
+        
+        // Prendre les derniers percentiles disponibles
+        Map<String, String> latestMetric = null;
+        for (Map<String, String> latest : latestByConnector) {
+            if (latest != null) {
+                latestMetric = latest;
+            }
+        }
         
-        if (allMetrics.isEmpty()) {
+        if (windows == 0 || latestMetric == null) {
             return TotalMetrics.builder()
                     .totalRequests(0L)
                     .successRate(0.0)
@@ -176,33 +310,11 @@ public class MetricsService {
                     .build();
         }
         
-        long totalRequests = allMetrics.stream()
-                .mapToLong(m -> parseLong(m.get("requests_per_minute")))
-                .sum();
-        
-        double avgSuccessRate = allMetrics.stream()
-                .mapToDouble(m -> parseDouble(m.get("success_rate_percentage")))
-                .average()
-                .orElse(0.0);
-        
-        double avgErrorRate = allMetrics.stream()
-                .mapToDouble(m -> parseDouble(m.get("error_rate_percentage")))
-                .average()
-                .orElse(0.0);
-        
-        double avgLatency = allMetrics.stream()
-                .mapToDouble(m -> parseDouble(m.get("avg_response_time_ms")))
-                .average()
-                .orElse(0.0);
-        
-        // Prendre les derniers percentiles disponibles
-        Map<String, String> latestMetric = allMetrics.get(allMetrics.size() - 1);
-        
         return TotalMetrics.builder()
                 .totalRequests(totalRequests)
-                .successRate(avgSuccessRate)
-                .errorRate(avgErrorRate)
-                .avgLatencyMs(avgLatency)
+                .successRate(successRateSum / windows)
+                .errorRate(errorRateSum / windows)
+                .avgLatencyMs(latencySum / windows)
                 .p50LatencyMs(parseDouble(latestMetric.get("latency_p50")))
                 .p95LatencyMs(parseDouble(latestMetric.get("latency_p95")))
                 .p99LatencyMs(parseDouble(latestMetric.get("latency_p99")))
@@ -211,117 +323,202 @@ public class MetricsService {
     }
 
     /**
-     * Construire la timeline
+     * Regrouper des fenêtres metrics_log à la résolution demandée
      */
-    private List<TimelinePoint> buildTimeline(List<Map<String, String>> gatewayMetrics, List<Map<String, String>> connectorMetrics) {
-        Map<Long, TimelinePoint.TimelinePointBuilder> timelineMap = new HashMap<>();
-        
-        // Ajouter les données gateway
-        for (Map<String, String> metric : gatewayMetrics) {
-            Long timestamp = parseLong(metric.get("window_timestamp"));
-            if (timestamp != null) {
-                TimelinePoint.TimelinePointBuilder builder = timelineMap.computeIfAbsent(timestamp, 
-                    t -> TimelinePoint.builder().timestamp(Instant.ofEpochMilli(t)));
-                builder.piGatewayRequests(parseInt(metric.get("requests_per_minute")));
+    private List<SeriesPoint> toSeries(List<Map<String, String>> metrics, Resolution resolution, long start, long end) {
+        long step = resolution.getStepMillis();
+        long firstBucket = Math.floorDiv(start, step);
+        long lastBucket = Math.floorDiv(end - 1, step);
+        List<Map<String, String>> sorted = new ArrayList<>(metrics);
+        sorted.sort(Comparator.comparingLong(m -> parseLong(m.get("window_timestamp"))));
+
+        // Buckets agrégés directement depuis les fenêtres triées
+        List<SeriesPoint> points = new ArrayList<>();
+        long bucket = Long.MIN_VALUE;
+        long windows = 0L;
+        long requests = 0L;
+        long maxRequests = 0L;
+        double successRateSum = 0.0;
+        double errorRateSum = 0.0;
+        double latencySum = 0.0;
+        for (Map<String, String> metric : sorted) {
+            long windowBucket = Math.floorDiv(parseLong(metric.get("window_timestamp")), step);
+            if (windowBucket < firstBucket || windowBucket > lastBucket) continue;
+
+            if (windowBucket != bucket) {
+                if (windows > 0) {
+                    points.add(new SeriesPoint(bucket * step, windows, requests,
+                            successRateSum, errorRateSum, latencySum, maxRequests));
+                }
+                bucket = windowBucket;
+                windows = 0L;
+                requests = 0L;
+                maxRequests = 0L;
+                successRateSum = 0.0;
+                errorRateSum = 0.0;
+                latencySum = 0.0;
             }
+            long windowRequests = parseLong(metric.get("requests_per_minute"));
+            windows++;
+            requests += windowRequests;
+            maxRequests = Math.max(maxRequests, windowRequests);
+            successRateSum += orZero(parseDouble(metric.get("success_rate_percentage")));
+            errorRateSum += orZero(parseDouble(metric.get("error_rate_percentage")));
+            latencySum += orZero(parseDouble(metric.get("avg_response_time_ms")));
         }
+        if (windows > 0) {
+            points.add(new SeriesPoint(bucket * step, windows, requests,
+                    successRateSum, errorRateSum, latencySum, maxRequests));
+        }
+        return points;
+    }
+
+    private static double orZero(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+    /**
+     * Construire la timeline, sous-échantillonnée (LTTB sur le total) à maxPoints points
+     * si maxPoints > 0. Les séries sont alignées dans des tableaux primitifs : seuls les
+     * points retenus deviennent des DTO.
+     */
+    private List<TimelinePoint> buildTimeline(Map<String, List<SeriesPoint>> seriesByConnector, int maxPoints) {
+        List<String> connectors = new ArrayList<>(seriesByConnector.keySet());
         
-        // Ajouter les données connector
-        for (Map<String, String> metric : connectorMetrics) {
-            Long timestamp = parseLong(metric.get("window_timestamp"));
-            if (timestamp != null) {
-                TimelinePoint.TimelinePointBuilder builder = timelineMap.computeIfAbsent(timestamp, 
-                    t -> TimelinePoint.builder().timestamp(Instant.ofEpochMilli(t)));
-                builder.piConnectorRequests(parseInt(metric.get("requests_per_minute")));
+        // Timestamps distincts, triés
+        long[] timestamps = seriesByConnector.values().stream()
+                .flatMap(List::stream)
+                .mapToLong(SeriesPoint::timestamp)
+                .sorted()
+                .distinct()
+                .toArray();
+        
+        // Valeurs par connector alignées sur les timestamps (null = pas de fenêtre), total pour LTTB
+        Integer[][] values = new Integer[connectors.size()][timestamps.length];
+        double[] totals = new double[timestamps.length];
+        for (int c = 0; c < connectors.size(); c++) {
+            for (SeriesPoint point : seriesByConnector.get(connectors.get(c))) {
+                int index = Arrays.binarySearch(timestamps, point.timestamp());
+                int requests = (int) point.requestsPerMinute();
+                values[c][index] = requests;
+                totals[index] += requests;
             }
         }
         
-        return timelineMap.values().stream()
-                .map(TimelinePoint.TimelinePointBuilder::build)
-                .sorted(Comparator.comparing(TimelinePoint::getTimestamp))
-                .collect(Collectors.toList());
+        int[] selected = maxPoints > 0 && timestamps.length > maxPoints
+                ? Lttb.select(timestamps, totals, maxPoints)
+                : null;
+        int pointCount = selected != null ? selected.length : timestamps.length;
+        
+        List<TimelinePoint> timeline = new ArrayList<>(pointCount);
+        int gatewayIndex = connectors.indexOf("pi-gateway");
+        int connectorIndex = connectors.indexOf("pi-connector");
+        for (int p = 0; p < pointCount; p++) {
+            int i = selected != null ? selected[p] : p;
+            Map<String, Integer> requestsByConnector = new LinkedHashMap<>();
+            for (int c = 0; c < connectors.size(); c++) {
+                if (values[c][i] != null) {
+                    requestsByConnector.put(connectors.get(c), values[c][i]);
+                }
+            }
+            timeline.add(TimelinePoint.builder()
+                    .timestamp(Instant.ofEpochMilli(timestamps[i]))
+                    .piGatewayRequests(gatewayIndex >= 0 ? values[gatewayIndex][i] : null)
+                    .piConnectorRequests(connectorIndex >= 0 ? values[connectorIndex][i] : null)
+                    .requestsByConnector(requestsByConnector)
+                    .build());
+        }
+        return timeline;
     }
 
     /**
      * Calculer la distribution de latence
      */
     private Map<String, Long> calculateLatencyDistribution(List<LogEntry> logs) {
-        Map<String, Long> distribution = new LinkedHashMap<>();
-        distribution.put("0-10ms", 0L);
-        distribution.put("10-20ms", 0L);
-        distribution.put("20-50ms", 0L);
-        distribution.put("50-100ms", 0L);
-        distribution.put("100-200ms", 0L);
-        distribution.put(">200ms", 0L);
+        LatencyHistogram histogram = new LatencyHistogram(latencyBuckets);
         
         for (LogEntry log : logs) {
             Double latency = log.getResponseTimeMs();
-            if (latency == null) continue;
-            
-            if (latency < 10) {
-                distribution.merge("0-10ms", 1L, Long::sum);
-            } else if (latency < 20) {
-                distribution.merge("10-20ms", 1L, Long::sum);
-            } else if (latency < 50) {
-                distribution.merge("20-50ms", 1L, Long::sum);
-            } else if (latency < 100) {
-                distribution.merge("50-100ms", 1L, Long::sum);
-            } else if (latency < 200) {
-                distribution.merge("100-200ms", 1L, Long::sum);
-            } else {
-                distribution.merge(">200ms", 1L, Long::sum);
+            if (latency != null) {
+                histogram.record(latency);
             }
         }
         
-        return distribution;
+        return histogram.toLabelledMap();
+    }
+
+    /**
+     * Distribution de latence aux bornes configurées depuis le sketch d'un agrégat
+     */
+    private Map<String, Long> toLatencyDistribution(LogAggregate aggregate) {
+        LatencyHistogram histogram = new LatencyHistogram(latencyBuckets);
+        histogram.mergeRebucketed(aggregate.getLatencyHistogram());
+        return histogram.toLabelledMap();
     }
 
     /**
      * Calculer le breakdown des status codes
      */
     private Map<String, Long> calculateStatusBreakdown(List<LogEntry> logs) {
-        return logs.stream()
-                .filter(log -> log.getStatusCode() != null)
-                .collect(Collectors.groupingBy(
-                        log -> String.valueOf(log.getStatusCode()),
-                        Collectors.counting()
-                ));
+        StatusCodeHistogram histogram = new StatusCodeHistogram();
+        
+        for (LogEntry log : logs) {
+            if (log.getStatusCode() != null) {
+                histogram.record(log.getStatusCode());
+            }
+        }
+        
+        return histogram.toCodeMap();
     }
 
     /**
      * Calculer les top endpoints lents
      */
     private List<EndpointMetrics> calculateTopSlowEndpoints(List<LogEntry> logs, int limit) {
-        Map<String, List<LogEntry>> byEndpoint = logs.stream()
-                .filter(log -> log.getPath() != null && log.getResponseTimeMs() != null)
-                .collect(Collectors.groupingBy(LogEntry::getPath));
-        
-        return byEndpoint.entrySet().stream()
-                .map(entry -> {
-                    String path = entry.getKey();
-                    List<LogEntry> endpointLogs = entry.getValue();
-                    
-                    double avgLatency = endpointLogs.stream()
-                            .mapToDouble(LogEntry::getResponseTimeMs)
-                            .average()
-                            .orElse(0.0);
-                    
-                    double p95Latency = calculatePercentile(
-                            endpointLogs.stream()
-                                    .map(LogEntry::getResponseTimeMs)
-                                    .collect(Collectors.toList()),
-                            0.95
-                    );
-                    
-                    return EndpointMetrics.builder()
-                            .path(path)
-                            .avgLatencyMs(avgLatency)
-                            .p95LatencyMs(p95Latency)
-                            .count((long) endpointLogs.size())
-                            .build();
-                })
-                .sorted(Comparator.comparing(EndpointMetrics::getAvgLatencyMs).reversed())
+        // Candidats par latence maximale (jamais inférieure à la moyenne), pas par fréquence
+        MaxValueTopK<String> tracker = new MaxValueTopK<>(heavyHitterCapacity);
+        for (LogEntry log : logs) {
+            if (log.getPath() != null && log.getResponseTimeMs() != null) {
+                tracker.offer(log.getPath(), log.getResponseTimeMs());
+            }
+        }
+        
+        // Moyennes exactes des candidats, latences conservées pour les seuls endpoints retenus (p95)
+        Map<String, TrafficStats> statsByPath = new HashMap<>();
+        tracker.keys().forEach(path -> statsByPath.put(path, new TrafficStats()));
+        for (LogEntry log : logs) {
+            if (log.getPath() != null && log.getResponseTimeMs() != null) {
+                TrafficStats stats = statsByPath.get(log.getPath());
+                if (stats != null) {
+                    stats.record(log);
+                }
+            }
+        }
+        List<String> slowest = statsByPath.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<String, TrafficStats> e) -> e.getValue().getAvgLatencyMs())
+                        .reversed())
                 .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        
+        Map<String, List<Double>> latenciesByPath = new HashMap<>();
+        slowest.forEach(path -> latenciesByPath.put(path, new ArrayList<>()));
+        for (LogEntry log : logs) {
+            if (log.getPath() != null && log.getResponseTimeMs() != null) {
+                List<Double> latencies = latenciesByPath.get(log.getPath());
+                if (latencies != null) {
+                    latencies.add(log.getResponseTimeMs());
+                }
+            }
+        }
+        
+        return slowest.stream()
+                .map(path -> EndpointMetrics.builder()
+                        .path(path)
+                        .avgLatencyMs(statsByPath.get(path).getAvgLatencyMs())
+                        .p95LatencyMs(calculatePercentile(latenciesByPath.get(path), 0.95))
+                        .count(statsByPath.get(path).getRequests())
+                        .build())
                 .collect(Collectors.toList());
     }
 
@@ -329,38 +526,44 @@ public class MetricsService {
      * Calculer les top endpoints avec erreurs
      */
     private List<EndpointError> calculateTopErrorEndpoints(List<LogEntry> logs, int limit) {
-        Map<String, List<LogEntry>> errorsByEndpoint = logs.stream()
-                .filter(log -> Boolean.FALSE.equals(log.getSuccess()) && log.getPath() != null)
-                .collect(Collectors.groupingBy(LogEntry::getPath));
-        
-        return errorsByEndpoint.entrySet().stream()
-                .map(entry -> {
-                    String path = entry.getKey();
-                    List<LogEntry> errors = entry.getValue();
-                    
-                    // Prendre le status le plus fréquent
-                    Integer mostCommonStatus = errors.stream()
-                            .filter(log -> log.getStatusCode() != null)
-                            .collect(Collectors.groupingBy(LogEntry::getStatusCode, Collectors.counting()))
-                            .entrySet().stream()
-                            .max(Map.Entry.comparingByValue())
-                            .map(Map.Entry::getKey)
-                            .orElse(500);
+        SpaceSavingTopK<String, Void> tracker =
+                new SpaceSavingTopK<>(heavyHitterCapacity, () -> null, (a, b) -> { });
+        for (LogEntry log : logs) {
+            if (Boolean.FALSE.equals(log.getSuccess()) && log.getPath() != null) {
+                tracker.offer(log.getPath());
+            }
+        }
+        
+        // Second passage limité aux candidats : comptes, status et dernière occurrence exacts
+        Map<String, TrafficStats> statsByPath = new HashMap<>();
+        tracker.candidates(limit).forEach(entry -> statsByPath.put(entry.key(), new TrafficStats()));
+        for (LogEntry log : logs) {
+            if (Boolean.FALSE.equals(log.getSuccess()) && log.getPath() != null) {
+                TrafficStats stats = statsByPath.get(log.getPath());
+                if (stats != null) {
+                    stats.recordWithStatus(log);
+                }
+            }
+        }
+        
+        return statsByPath.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, TrafficStats> e) -> e.getValue().getRequests())
+                        .reversed())
+                .limit(limit)
+                .map(e -> {
+                    TrafficStats stats = e.getValue();
                     
-                    Instant lastSeen = errors.stream()
-                            .map(LogEntry::getTimestamp)
-                            .max(Instant::compareTo)
-                            .orElse(Instant.now());
+                    Instant lastSeen = stats.getLastSeenMillis() != Long.MIN_VALUE
+                            ? Instant.ofEpochMilli(stats.getLastSeenMillis())
+                            : Instant.now();
                     
                     return EndpointError.builder()
-                            .path(path)
-                            .status(mostCommonStatus)
-                            .count((long) errors.size())
+                            .path(e.getKey())
+                            .status(stats.getMostCommonStatus(500))
+                            .count(stats.getRequests())
                             .lastSeen(lastSeen)
                             .build();
                 })
-                .sorted(Comparator.comparing(EndpointError::getCount).reversed())
-                .limit(limit)
                 .collect(Collectors.toList());
     }
 
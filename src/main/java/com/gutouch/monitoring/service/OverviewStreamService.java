@@ -0,0 +1,232 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.dto.OverviewMetricsDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diffusion SSE de l'overview.
+ *
+ * Un seul calcul par (timeRange, maxPoints) et par intervalle, quel que soit le nombre
+ * d'abonnés : le résultat est poussé à tous les abonnés de la clé, et seulement s'il a
+ * changé (sinon un commentaire keep-alive). Les clés sans abonné ne sont pas calculées.
+ *
+ * Les envois partent sur un pool dédié, au plus un à la fois par abonné : un abonné encore
+ * occupé saute l'intervalle et reçoit la dernière valeur au suivant ; un envoi bloqué au-delà
+ * de send-timeout-ms fait abandonner l'abonné.
+ */
+@Service
+@Slf4j
+public class OverviewStreamService {
+
+    private final MetricsService metricsService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${analytics.overview-stream.interval-ms:10000}")
+    private long intervalMs;
+
+    // 0 = pas de timeout côté serveur
+    @Value("${analytics.overview-stream.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${analytics.overview-stream.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    @Value("${analytics.overview-stream.send-threads:4}")
+    private int sendThreads;
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService sender;
+    private Timer pushTimer;
+    private Counter computations;
+    private Counter dropped;
+
+    public OverviewStreamService(MetricsService metricsService, MeterRegistry meterRegistry) {
+        this.metricsService = metricsService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        meterRegistry.gauge("overview.stream.connections", connections);
+        pushTimer = Timer.builder("overview.stream.push")
+                .description("Durée d'un calcul et de sa diffusion à tous les abonnés d'une clé")
+                .register(meterRegistry);
+        computations = Counter.builder("overview.stream.computations").register(meterRegistry);
+        dropped = Counter.builder("overview.stream.dropped")
+                .description("Abonnés abandonnés sur un envoi bloqué au-delà du délai")
+                .register(meterRegistry);
+
+        // Ordonnanceur dédié : la cadence des abonnés ne dépend pas des jobs de fond
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "overview-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadCount = new AtomicInteger();
+        sender = Executors.newFixedThreadPool(sendThreads, r -> {
+            Thread thread = new Thread(r, "overview-stream-send-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::pushAll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        sender.shutdownNow();
+        channels.values().forEach(channel -> channel.subscribers.values().forEach(s -> s.emitter.complete()));
+    }
+
+    /**
+     * Abonner un client ; il reçoit immédiatement la dernière valeur connue de sa clé
+     */
+    public SseEmitter subscribe(String timeRange, int maxPoints) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(emitter);
+        // Atomique avec la suppression des canaux vides dans pushAll
+        Channel channel = channels.compute(timeRange + "_" + maxPoints, (k, existing) -> {
+            Channel c = existing != null ? existing : new Channel(timeRange, maxPoints);
+            c.subscribers.put(emitter, subscriber);
+            return c;
+        });
+        connections.incrementAndGet();
+
+        Runnable remove = () -> remove(channel, subscriber);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        OverviewMetricsDTO last = channel.last;
+        if (last != null) {
+            send(channel, subscriber, last);
+        } else {
+            // Premier abonné de la clé : calcul immédiat plutôt qu'au prochain intervalle
+            scheduler.execute(() -> push(channel));
+        }
+        return emitter;
+    }
+
+    private void pushAll() {
+        for (String key : channels.keySet()) {
+            Channel channel = channels.computeIfPresent(key, (k, c) -> c.subscribers.isEmpty() ? null : c);
+            if (channel != null) {
+                push(channel);
+            }
+        }
+    }
+
+    private void push(Channel channel) {
+        if (channel.subscribers.isEmpty()) return;
+
+        pushTimer.record(() -> {
+            OverviewMetricsDTO metrics;
+            try {
+                metrics = metricsService.getOverviewMetrics(channel.timeRange, channel.maxPoints);
+                computations.increment();
+            } catch (Exception e) {
+                log.error("Error computing streamed overview for {}", channel.timeRange, e);
+                return;
+            }
+
+            channel.last = metrics;
+            for (Subscriber subscriber : channel.subscribers.values()) {
+                send(channel, subscriber, metrics);
+            }
+        });
+    }
+
+    /**
+     * Envoyer la valeur à un abonné, ou un keep-alive s'il l'a déjà reçue (même instance :
+     * valeur en cache inchangée) ; sans attendre la fin de l'envoi
+     */
+    private void send(Channel channel, Subscriber subscriber, OverviewMetricsDTO metrics) {
+        long now = System.currentTimeMillis();
+        long since = subscriber.sendingSince.get();
+        if (since != 0 || !subscriber.sendingSince.compareAndSet(0, now)) {
+            // Envoi précédent en cours : la dernière valeur partira au prochain intervalle
+            if (since != 0 && now - since > sendTimeoutMs) {
+                log.warn("Dropping overview stream subscriber blocked for {} ms", now - since);
+                dropped.increment();
+                remove(channel, subscriber);
+                subscriber.emitter.completeWithError(new TimeoutException("SSE send timed out"));
+            }
+            return;
+        }
+
+        try {
+            sender.execute(() -> {
+                try {
+                    if (metrics != subscriber.sent) {
+                        subscriber.emitter.send(SseEmitter.event().name("overview").data(metrics, MediaType.APPLICATION_JSON));
+                        subscriber.sent = metrics;
+                    } else {
+                        subscriber.emitter.send(SseEmitter.event().comment("keep-alive"));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // Client parti : retiré par le callback d'erreur ou ici
+                    remove(channel, subscriber);
+                } finally {
+                    subscriber.sendingSince.set(0);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Arrêt en cours
+            subscriber.sendingSince.set(0);
+        }
+    }
+
+    private void remove(Channel channel, Subscriber subscriber) {
+        if (channel.subscribers.remove(subscriber.emitter, subscriber)) {
+            connections.decrementAndGet();
+        }
+    }
+
+    /**
+     * Abonnés d'une clé et dernière valeur diffusée
+     */
+    private static final class Channel {
+
+        private final String timeRange;
+        private final int maxPoints;
+        private final Map<SseEmitter, Subscriber> subscribers = new ConcurrentHashMap<>();
+        private volatile OverviewMetricsDTO last;
+
+        Channel(String timeRange, int maxPoints) {
+            this.timeRange = timeRange;
+            this.maxPoints = maxPoints;
+        }
+    }
+
+    /**
+     * Abonné : dernière valeur reçue et début de l'envoi en cours (0 = aucun)
+     */
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final AtomicLong sendingSince = new AtomicLong();
+        private volatile OverviewMetricsDTO sent;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.buffer.LogBitmapIndex;
+import com.gutouch.monitoring.buffer.LogTrigramIndex;
+import com.gutouch.monitoring.buffer.OffHeapLogRing;
+import com.gutouch.monitoring.dto.LogEntry;
+import com.gutouch.monitoring.dto.LogSearchParams;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Fenêtre récente de raw_log gardée hors tas.
+ *
+ * Abonné permanent d'un curseur du {@link LogTailFollower} à retard court
+ * (analytics.recent-logs.lateness-ms) : au démarrage du lecteur, la fenêtre précédente est
+ * chargée en une lecture, puis chaque lot y est ajouté. Les requêtes sur les dernières minutes
+ * (recherche, erreurs récentes, analytics) sont servies depuis le tampon ; seules les bornes
+ * hors fenêtre et les dernières lateness-ms sont lues dans Bigtable. Le tampon étant ordonné
+ * par timestamp, une ligne écrite plus en retard que ce délai n'y entre pas : elle manque aux
+ * lectures servies par le tampon jusqu'à sa sortie de la fenêtre.
+ *
+ * Un index bitmap ({@link LogBitmapIndex}) sur les ordinaux du tampon résout les filtres
+ * catégoriels de la recherche et ses comptages sans décoder les logs ; un index de
+ * trigrammes ({@link LogTrigramIndex}) élague les candidats de la recherche texte.
+ */
+@Service
+@Slf4j
+public class RecentLogBuffer implements LogTailFollower.Listener {
+
+    // Ordinaux indexés sur 32 bits non signés
+    private static final long MAX_ORDINAL = 0xFFFF_FFFFL;
+    // Les ordinaux évincés restent hors des plages recherchées : purge par blocs
+    private static final long PRUNE_STEP = 1L << 16;
+    // Logs décodés par prise du verrou dans forEachLog
+    private static final int FOR_EACH_CHUNK = 1024;
+
+    private final BigtableService bigtableService;
+    private final LogTailFollower logTailFollower;
+
+    @Value("${analytics.recent-logs.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.recent-logs.window-ms:900000}")
+    private long windowMs;
+
+    @Value("${analytics.recent-logs.capacity-mb:64}")
+    private int capacityMb;
+
+    @Value("${analytics.recent-logs.lateness-ms:30000}")
+    private long latenessMs;
+
+    @Value("${analytics.recent-logs.text-index:true}")
+    private boolean textIndexEnabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private OffHeapLogRing ring;
+    private final LogBitmapIndex index = new LogBitmapIndex();
+    private final LogTrigramIndex textIndex = new LogTrigramIndex();
+    // Ordinaux du tampon indexés à partir de celui-ci
+    private long indexedFrom;
+    // Incrémentée quand les ordinaux repartent de zéro : un parcours en cours ne les suit plus
+    private long ordinalGeneration;
+
+    // Logs de [coveredFrom, coveredUntil) tous présents dans le tampon, -1 tant qu'il n'est pas chargé
+    private volatile long coveredFrom = -1L;
+    private volatile long coveredUntil = -1L;
+
+    public RecentLogBuffer(BigtableService bigtableService, LogTailFollower logTailFollower) {
+        this.bigtableService = bigtableService;
+        this.logTailFollower = logTailFollower;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+
+        ring = new OffHeapLogRing(capacityMb * 1024 * 1024);
+        logTailFollower.addSettledListener(this, latenessMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ring != null) {
+            logTailFollower.removeSettledListener(this);
+        }
+    }
+
+    @Override
+    public void onStart(long fromMillis) {
+        lock.writeLock().lock();
+        try {
+            ring.clear();
+            ring.rebase();
+            index.clear();
+            textIndex.clear();
+            indexedFrom = 0L;
+            ordinalGeneration++;
+            coveredFrom = -1L;
+            coveredUntil = -1L;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // Hors verrou : tant que coveredFrom vaut -1, aucun lecteur ne parcourt le tampon
+        long from = fromMillis - windowMs;
+        try {
+            bigtableService.forEachLog(Instant.ofEpochMilli(from), Instant.ofEpochMilli(fromMillis), this::append);
+        } catch (Exception e) {
+            // Fenêtre couverte au fil du suivi seulement
+            log.error("Error loading recent logs before {}", Instant.ofEpochMilli(fromMillis), e);
+            ring.clear();
+            from = fromMillis;
+        }
+
+        lock.writeLock().lock();
+        try {
+            pruneIndex();
+            coveredFrom = from;
+            coveredUntil = fromMillis;
+            updateCoverage();
+            log.info("Loaded {} recent logs ({} KB off-heap, {} trigrams)", ring.size(), ring.usedBytes() / 1024,
+                    textIndex.trigramCount());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onLogs(List<LogEntry> logs) {
+        lock.writeLock().lock();
+        try {
+            for (LogEntry entry : logs) {
+                if (ring.nextOrdinal() >= MAX_ORDINAL) {
+                    rebase();
+                }
+                append(entry);
+            }
+            pruneIndex();
+            updateCoverage();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onCaughtUp(long untilMillis) {
+        lock.writeLock().lock();
+        try {
+            ring.evictBefore(untilMillis - windowMs);
+            pruneIndex();
+            coveredUntil = untilMillis;
+            updateCoverage();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Vrai si tous les logs à partir de ce timestamp sont dans le tampon
+     */
+    public boolean covers(Instant start) {
+        long from = coveredFrom;
+        return from >= 0 && start.toEpochMilli() >= from;
+    }
+
+    /**
+     * Début de la plage couverte par le tampon, -1 tant qu'il n'est pas chargé
+     */
+    public long getCoveredFrom() {
+        return coveredFrom;
+    }
+
+    /**
+     * Parcourir les logs bruts de [début, fin) : la partie couverte depuis le tampon, le
+     * reste depuis Bigtable. L'ordre n'est pas garanti ; les erreurs de lecture sont propagées.
+     * Le consommateur est appelé hors verrou : le tampon est décodé par blocs.
+     */
+    public void forEachLog(Instant startTime, Instant endTime, Consumer<LogEntry> consumer) {
+        long start = startTime.toEpochMilli();
+        long end = endTime.toEpochMilli();
+        long from;
+        long until;
+        long generation;
+        long ordinal;
+
+        lock.readLock().lock();
+        try {
+            from = coveredFrom;
+            until = coveredUntil;
+            generation = ordinalGeneration;
+            ordinal = from < 0 || end <= from || start >= until ? -1L : ring.lowerBound(Math.max(start, from));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (ordinal < 0) {
+            bigtableService.forEachLog(startTime, endTime, consumer);
+            return;
+        }
+        if (start < from) {
+            bigtableService.forEachLog(startTime, Instant.ofEpochMilli(from), consumer);
+        }
+
+        long bufferedUntil = Math.min(end, until);
+        List<LogEntry> chunk = new ArrayList<>(FOR_EACH_CHUNK);
+        LogEntry last = null;
+        while (true) {
+            chunk.clear();
+            boolean overtaken;
+            lock.readLock().lock();
+            try {
+                // Ordinaux évincés ou réinitialisés depuis le bloc précédent
+                overtaken = generation != ordinalGeneration || ordinal < ring.firstOrdinal();
+                if (!overtaken) {
+                    for (; ordinal < ring.nextOrdinal() && chunk.size() < FOR_EACH_CHUNK; ordinal++) {
+                        if (ring.timestamp(ordinal) >= bufferedUntil) break;
+                        chunk.add(ring.get(ordinal));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            if (overtaken) {
+                // Reste de la plage depuis Bigtable, après la dernière clé livrée (clés croissantes)
+                long resumeFrom = last != null ? last.getTimestamp().toEpochMilli() : Math.max(start, from);
+                String lastId = last != null ? last.getId() : null;
+                bigtableService.forEachLog(Instant.ofEpochMilli(resumeFrom), Instant.ofEpochMilli(bufferedUntil), l -> {
+                    if (lastId == null || l.getId() == null || l.getId().compareTo(lastId) > 0) {
+                        consumer.accept(l);
+                    }
+                });
+                break;
+            }
+            chunk.forEach(consumer);
+            if (chunk.size() < FOR_EACH_CHUNK) break;
+            last = chunk.get(chunk.size() - 1);
+        }
+
+        // Dernières minutes pas encore définitives (lateness-ms)
+        if (end > until) {
+            bigtableService.forEachLog(Instant.ofEpochMilli(Math.max(start, until)), endTime, consumer);
+        }
+    }
+
+    /**
+     * Équivalent de {@link BigtableService#searchLogs} servi depuis le tampon quand la plage
+     * y tient : premiers logs de la plage pour le connector et le type donnés
+     */
+    public List<LogEntry> searchLogs(String connector, String type, Instant startTime, Instant endTime, int limit) {
+        if (!covers(startTime)) {
+            return bigtableService.searchLogs(connector, type, startTime, endTime, limit);
+        }
+
+        List<LogEntry> logs = new ArrayList<>();
+        try {
+            forEachLog(startTime, endTime, l -> {
+                if (connector != null && !connector.equals("all") && !connector.equals(l.getConnector())) return;
+                if (type != null && !type.equals("all") && !type.equals(l.getType())) return;
+                logs.add(l);
+            });
+        } catch (Exception e) {
+            log.error("Error searching recent logs", e);
+        }
+
+        logs.sort(Comparator.comparing(LogEntry::getId));
+        return logs.size() > limit ? new ArrayList<>(logs.subList(0, limit)) : logs;
+    }
+
+    /**
+     * Recherche paginée servie par l'index bitmap : filtres catégoriels (connector, type,
+     * status, success, timeout, IP) par AND de bitmaps, total et comptages success/erreur par
+     * cardinalité. Seuls la recherche texte (candidats élagués par trigrammes puis décodés) et
+     * la latence (lue sur place) touchent les lignes ; les dernières minutes pas encore définitives
+     * viennent de Bigtable, filtrées par le prédicat complet. Tri par timestamp (sortOrder des paramètres).
+     *
+     * @return null si la plage n'est pas couverte par le tampon
+     */
+    public SearchResult search(LogSearchParams params, Instant startTime, Instant endTime,
+                               Predicate<LogEntry> filter, int offset, int limit) {
+        long start = startTime.toEpochMilli();
+        long end = endTime.toEpochMilli();
+        long until = coveredUntil;
+        if (!covers(startTime) || until < 0) return null;
+
+        // Hors verrou : dernières minutes pas encore définitives (lateness-ms)
+        List<LogEntry> recent = new ArrayList<>();
+        if (end > until) {
+            bigtableService.forEachLog(Instant.ofEpochMilli(Math.max(start, until)), endTime, l -> {
+                if (filter.test(l)) {
+                    recent.add(l);
+                }
+            });
+            recent.sort(Comparator.comparing(LogEntry::getTimestamp));
+        }
+
+        boolean text = params.getQuery() != null && !params.getQuery().isEmpty();
+        boolean latency = params.getMinLatency() != null || params.getMaxLatency() != null;
+        boolean descending = "desc".equals(params.getSortOrder());
+
+        lock.readLock().lock();
+        try {
+            // Fenêtre évincée ou rechargée pendant la lecture Bigtable
+            if (coveredFrom < 0 || start < coveredFrom) return null;
+
+            RoaringBitmap selection = index.select(ring.lowerBound(start), ring.lowerBound(Math.min(end, until)),
+                    params.getConnector(), params.getType(), params.getStatus(),
+                    params.getSuccess(), params.getTimeout(), params.getClientIp());
+            if (text && textIndexEnabled) {
+                RoaringBitmap candidates = textIndex.candidates(params.getQuery());
+                if (candidates != null) {
+                    // Ordinaux évincés encore listés par l'index : hors de la sélection
+                    selection.and(candidates);
+                }
+            }
+            if (text || latency) {
+                RoaringBitmap kept = new RoaringBitmap();
+                selection.forEach((int bit) -> {
+                    long ordinal = Integer.toUnsignedLong(bit);
+                    boolean matches = text
+                            ? filter.test(ring.get(ordinal))
+                            : matchesLatency(ring.latency(ordinal), params);
+                    if (matches) {
+                        kept.add(bit);
+                    }
+                });
+                selection = kept;
+            }
+
+            long buffered = selection.getLongCardinality();
+            long successCount = index.countSuccess(selection, true);
+            long errorCount = index.countSuccess(selection, false);
+            double[] latencySum = {0.0};
+            long[] latencyCount = {0L};
+            selection.forEach((int bit) -> {
+                Double value = ring.latency(Integer.toUnsignedLong(bit));
+                if (value != null) {
+                    latencySum[0] += value;
+                    latencyCount[0]++;
+                }
+            });
+            for (LogEntry l : recent) {
+                if (Boolean.TRUE.equals(l.getSuccess())) successCount++;
+                if (Boolean.FALSE.equals(l.getSuccess())) errorCount++;
+                if (l.getResponseTimeMs() != null) {
+                    latencySum[0] += l.getResponseTimeMs();
+                    latencyCount[0]++;
+                }
+            }
+
+            // Page : logs du tampon puis dernières minutes, par timestamp croissant
+            long total = buffered + recent.size();
+            List<LogEntry> page = new ArrayList<>();
+            for (long i = offset; i < Math.min(total, (long) offset + limit); i++) {
+                long position = descending ? total - 1 - i : i;
+                page.add(position < buffered
+                        ? ring.get(Integer.toUnsignedLong(selection.select((int) position)))
+                        : recent.get((int) (position - buffered)));
+            }
+
+            return new SearchResult(total, successCount, errorCount, latencySum[0], latencyCount[0], page);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public record SearchResult(long total, long successCount, long errorCount,
+                               double latencySum, long latencyCount, List<LogEntry> logs) {
+    }
+
+    /**
+     * Derniers logs en erreur de la fenêtre, du plus récent au plus ancien ; les dernières
+     * minutes pas encore définitives sont lues dans Bigtable. Moins de limit logs si la fenêtre
+     * n'en contient pas assez ; null si le tampon n'est pas chargé
+     */
+    public List<LogEntry> getErrorLogs(String connector, int limit) {
+        long until = coveredUntil;
+        if (coveredFrom < 0 || until < 0) return null;
+
+        // Hors verrou : dernières minutes pas encore définitives, les plus récentes en tête
+        Deque<LogEntry> errors = new ArrayDeque<>();
+        bigtableService.forEachLog(Instant.ofEpochMilli(until), Instant.now(), l -> {
+            if (!Boolean.FALSE.equals(l.getSuccess())) return;
+            if (connector != null && !connector.equals("all") && !connector.equals(l.getConnector())) return;
+            errors.addFirst(l);
+            if (errors.size() > limit) {
+                errors.removeLast();
+            }
+        });
+
+        List<LogEntry> result = new ArrayList<>(errors);
+        lock.readLock().lock();
+        try {
+            if (coveredFrom < 0) return null;
+
+            // Erreurs du tampon par l'index, en partant de l'ordinal le plus récent
+            RoaringBitmap selection = index.select(ring.firstOrdinal(), ring.lowerBound(until),
+                    connector, null, null, false, null, null);
+            IntIterator ordinals = selection.getReverseIntIterator();
+            while (result.size() < limit && ordinals.hasNext()) {
+                result.add(ring.get(Integer.toUnsignedLong(ordinals.next())));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    private void append(LogEntry entry) {
+        long ordinal = ring.append(entry);
+        if (ordinal >= 0) {
+            index.add(ordinal, entry);
+            if (textIndexEnabled) {
+                textIndex.add(ordinal, entry);
+            }
+        }
+    }
+
+    /**
+     * Retirer de l'index les ordinaux évincés du tampon
+     */
+    private void pruneIndex() {
+        if (ring.firstOrdinal() - indexedFrom >= PRUNE_STEP) {
+            index.removeBefore(ring.firstOrdinal());
+            textIndex.removeBefore(ring.firstOrdinal());
+            indexedFrom = ring.firstOrdinal();
+        }
+    }
+
+    /**
+     * Ordinaux épuisés : la fenêtre repart vide à partir du suivi
+     */
+    private void rebase() {
+        ring.clear();
+        ring.rebase();
+        index.clear();
+        textIndex.clear();
+        indexedFrom = 0L;
+        ordinalGeneration++;
+        coveredFrom = coveredUntil;
+        log.info("Recent log ordinals exhausted, window restarted at {}", Instant.ofEpochMilli(coveredUntil));
+    }
+
+    private static boolean matchesLatency(Double latency, LogSearchParams params) {
+        if (latency == null) return false;
+        if (params.getMinLatency() != null && latency < params.getMinLatency()) return false;
+        return params.getMaxLatency() == null || latency <= params.getMaxLatency();
+    }
+
+    private void updateCoverage() {
+        long evictedUntil = ring.getEvictedUntil();
+        if (coveredFrom >= 0 && evictedUntil != Long.MIN_VALUE && evictedUntil >= coveredFrom) {
+            coveredFrom = evictedUntil + 1;
+        }
+    }
+}
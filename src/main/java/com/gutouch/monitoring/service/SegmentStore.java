@@ -0,0 +1,342 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.aggregate.LogAggregate;
+import com.gutouch.monitoring.dto.LogEntry;
+import com.gutouch.monitoring.segment.LogSegment;
+import com.gutouch.monitoring.segment.LogSegmentWriter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Segments colonne locaux des heures closes de raw_log.
+ *
+ * Un job de fond écrit une fois chaque heure close (plus récentes d'abord) dans un fichier
+ * immuable, lu ensuite par mmap (cf. {@link LogSegment}). Les lectures de plage servent les
+ * heures segmentées depuis le disque et le reste (heure en cours, heures pas encore écrites)
+ * via {@link RecentLogBuffer}, donc Bigtable ou le store local.
+ */
+@Service
+@Slf4j
+public class SegmentStore {
+
+    private static final long HOUR_MS = HourlyRollupService.HOUR_MS;
+    private static final String SUFFIX = ".seg";
+    private static final String ALL = "all";
+
+    private final BigtableService bigtableService;
+    private final RecentLogBuffer recentLogBuffer;
+
+    // Vide = désactivé
+    @Value("${analytics.segments.path:}")
+    private String path;
+
+    @Value("${analytics.segments.retention-days:7}")
+    private int retentionDays;
+
+    @Value("${analytics.segments.lateness-ms:300000}")
+    private long latenessMs;
+
+    @Value("${analytics.segments.interval-ms:300000}")
+    private long intervalMs;
+
+    @Value("${analytics.segments.max-hours-per-run:24}")
+    private int maxHoursPerRun;
+
+    // heure -> segment mappé
+    private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private ScheduledExecutorService scheduler;
+
+    public SegmentStore(BigtableService bigtableService, RecentLogBuffer recentLogBuffer) {
+        this.bigtableService = bigtableService;
+        this.recentLogBuffer = recentLogBuffer;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (path == null || path.isEmpty()) return;
+
+        Path directory = Paths.get(path);
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+                for (Path file : files) {
+                    openSegment(file);
+                }
+            }
+            log.info("Opened {} log segments from {}", segments.size(), directory);
+        } catch (IOException e) {
+            log.error("Error opening log segments in {}", directory, e);
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "segment-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::writeClosedHours, 60_000L, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Parcourir les logs bruts de [début, fin) : heures segmentées depuis le disque, le reste
+     * par {@link RecentLogBuffer#forEachLog}. Les erreurs de lecture sont propagées.
+     */
+    public void forEachLog(Instant startTime, Instant endTime, Consumer<LogEntry> consumer) {
+        forEachSpan(startTime.toEpochMilli(), endTime.toEpochMilli(),
+                (segment, start, end) -> segment.forEach(start, end, null, l -> {
+                    consumer.accept(l);
+                    return true;
+                }),
+                (start, end) -> {
+                    recentLogBuffer.forEachLog(Instant.ofEpochMilli(start), Instant.ofEpochMilli(end), consumer);
+                    return true;
+                });
+    }
+
+    /**
+     * Comme {@link #forEachLog(Instant, Instant, Consumer)}, sans le tampon des logs récents :
+     * le reste est relu dans Bigtable (ou le store local), écritures en retard comprises.
+     * Pour les agrégats d'heures closes : sur les heures segmentées, les chaînes variables
+     * (id, messageId, endToEndId, message) ne sont pas lues.
+     */
+    public void forEachStoredLog(Instant startTime, Instant endTime, Consumer<LogEntry> consumer) {
+        forEachSpan(startTime.toEpochMilli(), endTime.toEpochMilli(),
+                (segment, start, end) -> segment.forEachProjected(start, end, null, l -> {
+                    consumer.accept(l);
+                    return true;
+                }),
+                (start, end) -> {
+                    bigtableService.forEachLog(Instant.ofEpochMilli(start), Instant.ofEpochMilli(end), consumer);
+                    return true;
+                });
+    }
+
+    /**
+     * Parcourir les logs bruts de [début, fin) d'un connector ("all" pour tous) ; sur les
+     * heures segmentées, le filtre se fait sur les codes du dictionnaire
+     */
+    public void forEachLog(String connector, Instant startTime, Instant endTime, Consumer<LogEntry> consumer) {
+        String filter = connector != null && !connector.equals("all") ? connector : null;
+        forEachSpan(startTime.toEpochMilli(), endTime.toEpochMilli(),
+                (segment, start, end) -> segment.forEach(start, end, filter, l -> {
+                    consumer.accept(l);
+                    return true;
+                }),
+                (start, end) -> {
+                    recentLogBuffer.forEachLog(Instant.ofEpochMilli(start), Instant.ofEpochMilli(end), l -> {
+                        if (filter == null || filter.equals(l.getConnector())) {
+                            consumer.accept(l);
+                        }
+                    });
+                    return true;
+                });
+    }
+
+    /**
+     * Agréger [début, fin) par heure, connector et type : chaque ligne alimente la cible de son
+     * connector et la cible "all". Les heures segmentées sont lues colonne par colonne (flags,
+     * latences, status), sans décoder les lignes ; le reste par {@link RecentLogBuffer#forEachLog}.
+     */
+    public void aggregate(Instant startTime, Instant endTime, MetricSourceRouter.AggregateSink sink) {
+        forEachSpan(startTime.toEpochMilli(), endTime.toEpochMilli(),
+                (segment, start, end) -> {
+                    aggregateSegment(segment, start, end, sink);
+                    return true;
+                },
+                (start, end) -> {
+                    recentLogBuffer.forEachLog(Instant.ofEpochMilli(start), Instant.ofEpochMilli(end),
+                            l -> aggregateLog(l, sink));
+                    return true;
+                });
+    }
+
+    /**
+     * Premiers logs de [début, fin) d'un connector ("all" pour tous), limite comprise, comme
+     * {@link BigtableService#searchLogs} ; les heures segmentées sont lues depuis le disque
+     */
+    public List<LogEntry> searchLogs(String connector, Instant startTime, Instant endTime, int limit) {
+        String filter = connector != null && !connector.equals("all") ? connector : null;
+        List<LogEntry> logs = new ArrayList<>();
+
+        forEachSpan(startTime.toEpochMilli(), endTime.toEpochMilli(),
+                (segment, start, end) -> segment.forEach(start, end, filter, l -> {
+                    logs.add(l);
+                    return logs.size() < limit;
+                }),
+                (start, end) -> {
+                    logs.addAll(recentLogBuffer.searchLogs(connector, "all",
+                            Instant.ofEpochMilli(start), Instant.ofEpochMilli(end), limit - logs.size()));
+                    return logs.size() < limit;
+                });
+        return logs;
+    }
+
+    private void aggregateSegment(LogSegment segment, long start, long end, MetricSourceRouter.AggregateSink sink) {
+        Map<String, Map<String, LogSegment.Counts>> groups = new HashMap<>();
+        long grouped = 0L;
+        for (String type : segment.types()) {
+            for (String connector : segment.connectors()) {
+                LogSegment.Counts counts = segment.count(start, end, connector, type);
+                if (counts.rows() == 0) continue;
+                groups.computeIfAbsent(type, t -> new HashMap<>()).put(connector, counts);
+                grouped += counts.rows();
+            }
+        }
+        if (grouped < segment.count(start, end, null, null).rows()) {
+            // Lignes sans type ou sans connector : agrégées ligne par ligne
+            segment.forEachProjected(start, end, null, l -> {
+                aggregateLog(l, sink);
+                return true;
+            });
+            return;
+        }
+
+        long hour = segment.getHourStart();
+        groups.forEach((type, byConnector) -> byConnector.forEach((connector, counts) -> {
+            LogAggregate group = new LogAggregate();
+            group.addRows(counts.rows(), counts.successes(), counts.timeouts());
+            segment.forEachLatency(start, end, connector, type, group::addLatency);
+            segment.forEachStatus(start, end, connector, type, group::addStatusCode);
+
+            LogAggregate all = sink.target(hour, ALL, type);
+            if (all != null) {
+                all.merge(group);
+            }
+            LogAggregate target = sink.target(hour, connector, type);
+            if (target != null) {
+                target.merge(group);
+            }
+        }));
+    }
+
+    private static void aggregateLog(LogEntry l, MetricSourceRouter.AggregateSink sink) {
+        long hour = HourlyRollupService.floorHour(l.getTimestamp().toEpochMilli());
+        LogAggregate all = sink.target(hour, ALL, l.getType());
+        if (all != null) {
+            all.add(l);
+        }
+        if (l.getConnector() != null) {
+            LogAggregate target = sink.target(hour, l.getConnector(), l.getType());
+            if (target != null) {
+                target.add(l);
+            }
+        }
+    }
+
+    /**
+     * Découper [début, fin) en portions segmentées et non segmentées, dans l'ordre ;
+     * arrêt dès qu'une lecture renvoie false
+     */
+    private void forEachSpan(long start, long end, SegmentReader segmentReader, SpanReader fallback) {
+        long uncoveredFrom = start;
+        for (long hour = HourlyRollupService.floorHour(start); hour < end; hour += HOUR_MS) {
+            LogSegment segment = segments.get(hour);
+            if (segment == null) continue;
+
+            long from = Math.max(start, hour);
+            if (uncoveredFrom < from && !fallback.read(uncoveredFrom, from)) return;
+            long to = Math.min(end, hour + HOUR_MS);
+            if (!segmentReader.read(segment, from, to)) return;
+            uncoveredFrom = to;
+        }
+        if (uncoveredFrom < end) {
+            fallback.read(uncoveredFrom, end);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SegmentReader {
+        boolean read(LogSegment segment, long start, long end);
+    }
+
+    @FunctionalInterface
+    private interface SpanReader {
+        boolean read(long start, long end);
+    }
+
+    /**
+     * Écrire les heures closes manquantes (plus récentes d'abord) et purger la rétention
+     */
+    private void writeClosedHours() {
+        long lastClosedHour = HourlyRollupService.floorHour(System.currentTimeMillis() - latenessMs) - HOUR_MS;
+        long retentionStart = lastClosedHour - retentionDays * 24L * HOUR_MS;
+
+        int written = 0;
+        for (long hour = lastClosedHour; hour > retentionStart && written < maxHoursPerRun; hour -= HOUR_MS) {
+            if (Thread.currentThread().isInterrupted()) return;
+            if (segments.containsKey(hour)) continue;
+
+            try {
+                writeHour(hour);
+                written++;
+            } catch (Exception e) {
+                // Réessayer cette heure au prochain passage
+                log.error("Error writing log segment for hour {}", Instant.ofEpochMilli(hour), e);
+                return;
+            }
+        }
+
+        for (Long hour : new ArrayList<>(segments.headMap(retentionStart, true).keySet())) {
+            segments.remove(hour);
+            try {
+                Files.deleteIfExists(segmentPath(hour));
+            } catch (IOException e) {
+                log.warn("Error deleting log segment for hour {}", Instant.ofEpochMilli(hour), e);
+            }
+        }
+    }
+
+    private void writeHour(long hour) throws IOException {
+        LogSegmentWriter writer = new LogSegmentWriter(hour);
+        bigtableService.forEachLog(Instant.ofEpochMilli(hour), Instant.ofEpochMilli(hour + HOUR_MS), writer::add);
+
+        Path file = segmentPath(hour);
+        writer.writeTo(file);
+        LogSegment segment = openSegment(file);
+        if (segment != null) {
+            log.info("Wrote log segment for {}: {} rows, {} KB", Instant.ofEpochMilli(hour),
+                    segment.size(), segment.sizeInBytes() / 1024);
+        }
+    }
+
+    private LogSegment openSegment(Path file) {
+        try {
+            LogSegment segment = LogSegment.open(file);
+            segments.put(segment.getHourStart(), segment);
+            return segment;
+        } catch (IOException e) {
+            // Fichier incomplet ou d'un autre format : réécrit au prochain passage
+            log.warn("Ignoring unreadable log segment {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private Path segmentPath(long hour) {
+        return Paths.get(path, String.format("%013d", hour) + SUFFIX);
+    }
+}
@@ -0,0 +1,325 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.timeseries.CompressedSeries;
+import com.gutouch.monitoring.timeseries.Resolution;
+import com.gutouch.monitoring.timeseries.SeriesPoint;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Séries metrics_log par connector en plusieurs résolutions (1m, 5m, 1h, 1d).
+ *
+ * Chaque fenêtre minute lue est ajoutée à toutes les résolutions ; chaque résolution
+ * a sa propre rétention, les plus fines expirant les premières. Une requête lit la
+ * résolution la plus grossière qui donne encore le nombre de points demandé : un
+ * graphe sur 30 jours lit autant de buckets qu'un graphe sur une heure.
+ *
+ * Les séries sont compressées en mémoire (delta-of-delta + XOR, cf. {@link CompressedSeries})
+ * et décompressées à la lecture : 30 jours de minutes tiennent en quelques centaines de Ko
+ * par connector. Un snapshot disque optionnel évite le backfill au redémarrage.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TimeSeriesStore {
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final int SNAPSHOT_MAGIC = 0x54535331; // "TSS1"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int MAX_SNAPSHOT_CONNECTORS = 10_000;
+    private static final int MAX_SNAPSHOT_COLUMNS = 1_000;
+
+    private final BigtableService bigtableService;
+    private final ConnectorRegistry connectorRegistry;
+    private final ConnectorFanOut connectorFanOut;
+
+    @Value("${analytics.timeseries.enabled:true}")
+    private boolean enabled;
+
+    // Rétention (jours) des résolutions 1m, 5m, 1h, 1d
+    @Value("${analytics.timeseries.retention-days:30,35,90,400}")
+    private int[] retentionDays;
+
+    @Value("${analytics.timeseries.backfill-days:30}")
+    private int backfillDays;
+
+    @Value("${analytics.timeseries.snapshot-path:}")
+    private String snapshotPath;
+
+    // Au-delà, le rattrapage depuis la dernière fenêtre dépasserait une lecture : backfill complet
+    @Value("${analytics.timeseries.snapshot-max-age-ms:86400000}")
+    private long snapshotMaxAgeMs;
+
+    private final Map<String, ConnectorSeries> seriesByConnector = new ConcurrentHashMap<>();
+
+    /**
+     * Résolution la plus grossière couvrant [début, fin) avec au moins targetPoints buckets ;
+     * à défaut la plus fine qui couvre la plage, ou la plus grossière si aucune ne la couvre
+     */
+    public Resolution pickResolution(long startMillis, long endMillis, int targetPoints) {
+        long now = System.currentTimeMillis();
+        Resolution best = null;
+        for (Resolution resolution : Resolution.values()) {
+            if (now - retentionMillis(resolution) > startMillis) continue;
+
+            long points = (endMillis - startMillis) / resolution.getStepMillis();
+            if (best == null || points >= targetPoints) {
+                best = resolution;
+            }
+        }
+        return best != null ? best : Resolution.DAY;
+    }
+
+    /**
+     * Vrai si la série du connector est chargée depuis au moins ce timestamp
+     */
+    public boolean covers(String connector, long startMillis) {
+        ConnectorSeries series = seriesByConnector.get(connector);
+        return series != null && series.coveredFrom <= startMillis;
+    }
+
+    /**
+     * Buckets d'un connector sur [début, fin) à la résolution donnée
+     */
+    public List<SeriesPoint> query(String connector, Resolution resolution, long startMillis, long endMillis) {
+        ConnectorSeries series = seriesByConnector.get(connector);
+        if (series == null) {
+            return Collections.emptyList();
+        }
+        return series.tiers.get(resolution).query(startMillis, endMillis);
+    }
+
+    /**
+     * Dernière fenêtre metrics_log lue pour un connector (jauges courantes), null si aucune
+     */
+    public Map<String, String> latest(String connector) {
+        ConnectorSeries series = seriesByConnector.get(connector);
+        return series != null ? series.latest : null;
+    }
+
+    /**
+     * Lire les nouvelles fenêtres de chaque connector ; backfill au premier passage
+     */
+    @Scheduled(fixedDelayString = "${analytics.timeseries.poll-interval-ms:60000}")
+    public void poll() {
+        if (!enabled) return;
+
+        connectorFanOut.map(connectorRegistry.getConnectors(), connector -> {
+            ingest(connector);
+            return Boolean.TRUE;
+        });
+    }
+
+    private void ingest(String connector) {
+        long now = System.currentTimeMillis();
+        ConnectorSeries series = seriesByConnector.get(connector);
+        boolean backfill = series == null;
+        long from = backfill ? now - backfillDays * DAY_MS : series.lastWindow;
+
+        // Plage complète depuis la dernière fenêtre lue (ou le début du backfill), sans plafond
+        List<Map<String, String>> metrics = bigtableService.scanConnectorMetrics(
+                connector, Instant.ofEpochMilli(from), Instant.ofEpochMilli(now));
+        metrics.sort(Comparator.comparingLong(m -> parseLong(m.get("window_timestamp"))));
+
+        if (backfill) {
+            series = new ConnectorSeries(from);
+        }
+        for (Map<String, String> metric : metrics) {
+            series.add(metric);
+        }
+        if (backfill) {
+            seriesByConnector.put(connector, series);
+            log.info("Loaded {} metric windows for {} over {} days ({} KB compressed)",
+                    metrics.size(), connector, backfillDays, series.compressedBytes() / 1024);
+        }
+    }
+
+    @PostConstruct
+    public void loadSnapshot() {
+        if (snapshotPath == null || snapshotPath.isEmpty()) return;
+
+        Path path = Paths.get(snapshotPath);
+        if (!Files.exists(path)) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                log.warn("Ignoring time series snapshot with unknown format: {}", path);
+                return;
+            }
+            long writtenAt = in.readLong();
+            if (System.currentTimeMillis() - writtenAt > snapshotMaxAgeMs) {
+                log.info("Ignoring time series snapshot written at {}: {}", Instant.ofEpochMilli(writtenAt), path);
+                return;
+            }
+            int connectorCount = in.readInt();
+            if (connectorCount < 0 || connectorCount > MAX_SNAPSHOT_CONNECTORS) {
+                throw new IOException("Invalid connector count " + connectorCount);
+            }
+            for (int i = 0; i < connectorCount; i++) {
+                String connector = in.readUTF();
+                seriesByConnector.put(connector, ConnectorSeries.readFrom(this, in));
+            }
+            log.info("Loaded time series of {} connectors from snapshot {}", connectorCount, path);
+        } catch (IOException | RuntimeException e) {
+            // Snapshot incomplet ou corrompu : backfill complet
+            seriesByConnector.clear();
+            log.error("Error loading time series snapshot: {}", path, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.timeseries.snapshot-interval-ms:600000}",
+               initialDelayString = "${analytics.timeseries.snapshot-interval-ms:600000}")
+    @PreDestroy
+    public void saveSnapshot() {
+        if (snapshotPath == null || snapshotPath.isEmpty()) return;
+
+        Path path = Paths.get(snapshotPath);
+        Path tmp = Paths.get(snapshotPath + ".tmp");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                Map<String, ConnectorSeries> series = new HashMap<>(seriesByConnector);
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(series.size());
+                for (Map.Entry<String, ConnectorSeries> entry : series.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    entry.getValue().writeTo(out);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Error writing time series snapshot: {}", path, e);
+        }
+    }
+
+    private long retentionMillis(Resolution resolution) {
+        int index = resolution.ordinal();
+        return (index < retentionDays.length ? retentionDays[index] : 1) * DAY_MS;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null || value.isEmpty()) return 0L;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private static double parseDouble(String value) {
+        if (value == null || value.isEmpty()) return 0.0;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    /**
+     * Séries d'un connector, une par résolution
+     */
+    private final class ConnectorSeries {
+
+        private final EnumMap<Resolution, CompressedSeries> tiers = new EnumMap<>(Resolution.class);
+        private final long coveredFrom;
+        private volatile long lastWindow;
+        private volatile Map<String, String> latest;
+
+        ConnectorSeries(long coveredFrom) {
+            this.coveredFrom = coveredFrom;
+            this.lastWindow = coveredFrom;
+            for (Resolution resolution : Resolution.values()) {
+                tiers.put(resolution, new CompressedSeries(resolution, retentionMillis(resolution)));
+            }
+        }
+
+        private ConnectorSeries(long coveredFrom, long lastWindow, Map<String, String> latest) {
+            this.coveredFrom = coveredFrom;
+            this.lastWindow = lastWindow;
+            this.latest = latest;
+        }
+
+        static ConnectorSeries readFrom(TimeSeriesStore store, DataInput in) throws IOException {
+            long coveredFrom = in.readLong();
+            long lastWindow = in.readLong();
+            Map<String, String> latest = null;
+            int latestSize = in.readInt();
+            if (latestSize < -1 || latestSize > MAX_SNAPSHOT_COLUMNS || lastWindow < coveredFrom) {
+                throw new IOException("Invalid connector series header");
+            }
+            if (latestSize >= 0) {
+                latest = new HashMap<>();
+                for (int i = 0; i < latestSize; i++) {
+                    latest.put(in.readUTF(), in.readUTF());
+                }
+            }
+            ConnectorSeries series = store.new ConnectorSeries(coveredFrom, lastWindow, latest);
+            for (Resolution resolution : Resolution.values()) {
+                series.tiers.put(resolution, CompressedSeries.readFrom(resolution, store.retentionMillis(resolution), in));
+            }
+            return series;
+        }
+
+        synchronized void writeTo(DataOutput out) throws IOException {
+            Map<String, String> metric = latest;
+            out.writeLong(coveredFrom);
+            out.writeLong(lastWindow);
+            if (metric == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(metric.size());
+                for (Map.Entry<String, String> entry : metric.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue() != null ? entry.getValue() : "");
+                }
+            }
+            for (Resolution resolution : Resolution.values()) {
+                tiers.get(resolution).writeTo(out);
+            }
+        }
+
+        // Synchronisé avec writeTo : un snapshot ne contient jamais une fenêtre au-delà de lastWindow
+        synchronized void add(Map<String, String> metric) {
+            long timestamp = parseLong(metric.get("window_timestamp"));
+            // Fenêtres déjà lues ignorées
+            if (timestamp <= lastWindow) return;
+
+            long requests = parseLong(metric.get("requests_per_minute"));
+            double successRate = parseDouble(metric.get("success_rate_percentage"));
+            double errorRate = parseDouble(metric.get("error_rate_percentage"));
+            double latency = parseDouble(metric.get("avg_response_time_ms"));
+            for (CompressedSeries tier : tiers.values()) {
+                tier.add(timestamp, requests, successRate, errorRate, latency);
+            }
+
+            lastWindow = timestamp;
+            latest = metric;
+        }
+
+        long compressedBytes() {
+            long bytes = 0L;
+            for (CompressedSeries tier : tiers.values()) {
+                bytes += tier.compressedBytes();
+            }
+            return bytes;
+        }
+    }
+}
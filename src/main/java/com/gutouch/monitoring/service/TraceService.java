@@ -20,7 +20,7 @@ public class TraceService {
     /**
      * Tracer une transaction par messageId
      */
-    @Cacheable(value = "traces", key = "'msg_' + #messageId")
+    @Cacheable(value = "traces", key = "'msg_' + #messageId", sync = true)
     public TraceDTO traceByMessageId(String messageId) {
         log.info("Tracing transaction by messageId: {}", messageId);
         
@@ -36,7 +36,7 @@ public class TraceService {
     /**
      * Tracer une transaction par endToEndId
      */
-    @Cacheable(value = "traces", key = "'e2e_' + #endToEndId")
+    @Cacheable(value = "traces", key = "'e2e_' + #endToEndId", sync = true)
     public TraceDTO traceByEndToEndId(String endToEndId) {
         log.info("Tracing transaction by endToEndId: {}", endToEndId);
         
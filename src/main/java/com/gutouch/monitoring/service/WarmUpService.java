@@ -0,0 +1,282 @@
+package com.gutouch.monitoring.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Préchauffage des vues standard du dashboard.
+ *
+ * Le plan combine les requêtes configurées et les requêtes GET les plus fréquentes
+ * relevées sur le trafic réel (persistées entre deux démarrages). Il est rejoué en local
+ * au démarrage puis périodiquement ; l'instance n'est prête (readiness) qu'une fois le
+ * premier passage terminé, ou à l'expiration du délai de readiness.
+ *
+ * Les passages tournent sur un thread dédié (jamais sur le scheduler partagé) et ne se
+ * chevauchent pas ; les compteurs de requêtes sont divisés par deux à chaque intervalle.
+ */
+@Service
+@Slf4j
+public class WarmUpService {
+
+    public static final String WARM_UP_HEADER = "X-Warm-Up";
+    private static final int MAX_TRACKED_QUERIES = 1000;
+
+    private final Environment environment;
+
+    @Value("${analytics.warm-up.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.warm-up.plan:}")
+    private String[] configuredPlan;
+
+    // Préfixes des requêtes relevées sur le trafic
+    @Value("${analytics.warm-up.record-prefixes:/api/metrics/,/api/analytics/}")
+    private String[] recordPrefixes;
+
+    @Value("${analytics.warm-up.max-recorded:20}")
+    private int maxRecorded;
+
+    @Value("${analytics.warm-up.min-hits:3}")
+    private int minHits;
+
+    @Value("${analytics.warm-up.recorded-plan-path:}")
+    private String recordedPlanPath;
+
+    @Value("${analytics.warm-up.parallelism:4}")
+    private int parallelism;
+
+    @Value("${analytics.warm-up.request-timeout-ms:120000}")
+    private int requestTimeoutMs;
+
+    @Value("${analytics.warm-up.readiness-timeout-ms:300000}")
+    private long readinessTimeoutMs;
+
+    // Compteurs décroissants : divisés par deux à chaque intervalle, supprimés à zéro
+    private final Map<String, AtomicLong> hits = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile List<String> recordedPlan = Collections.emptyList();
+    private volatile boolean completed;
+    private final long startedAt = System.currentTimeMillis();
+
+    private ExecutorService executor;
+    private ExecutorService planRunner;
+    private RestClient restClient;
+
+    public WarmUpService(Environment environment) {
+        this.environment = environment;
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "warm-up-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        planRunner = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "warm-up-plan");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(5000);
+        requestFactory.setReadTimeout(requestTimeoutMs);
+        restClient = RestClient.builder().requestFactory(requestFactory).build();
+
+        loadRecordedPlan();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        saveRecordedPlan();
+        planRunner.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Vrai une fois le premier passage terminé (ou le préchauffage désactivé / hors délai)
+     */
+    public boolean isReady() {
+        return !enabled || completed || System.currentTimeMillis() - startedAt > readinessTimeoutMs;
+    }
+
+    /**
+     * Relever une requête servie avec succès (chemin et query string)
+     */
+    public void record(String pathAndQuery) {
+        if (!enabled || Arrays.stream(recordPrefixes).noneMatch(pathAndQuery::startsWith)) return;
+
+        AtomicLong counter = hits.get(pathAndQuery);
+        if (counter == null) {
+            // Borner le nombre de requêtes suivies (query strings arbitraires)
+            if (hits.size() >= MAX_TRACKED_QUERIES) return;
+            counter = hits.computeIfAbsent(pathAndQuery, k -> new AtomicLong());
+        }
+        counter.incrementAndGet();
+    }
+
+    /**
+     * Plan courant : requêtes configurées puis requêtes relevées
+     */
+    public List<String> plan() {
+        Set<String> plan = new LinkedHashSet<>();
+        for (String query : configuredPlan) {
+            if (!query.isBlank()) {
+                plan.add(query.trim());
+            }
+        }
+        plan.addAll(recordedPlan);
+        return new ArrayList<>(plan);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) return;
+
+        running.set(true);
+        planRunner.execute(() -> {
+            try {
+                runPlan();
+            } finally {
+                completed = true;
+                running.set(false);
+            }
+        });
+    }
+
+    /**
+     * Rejouer le plan périodiquement et mettre à jour les requêtes relevées ; le passage
+     * tourne sur le thread du plan, un passage encore en cours fait sauter l'intervalle
+     */
+    @Scheduled(fixedDelayString = "${analytics.warm-up.interval-ms:300000}",
+               initialDelayString = "${analytics.warm-up.interval-ms:300000}")
+    public void refresh() {
+        if (!enabled) return;
+
+        updateRecordedPlan();
+        decayHits();
+        saveRecordedPlan();
+
+        if (!running.compareAndSet(false, true)) {
+            log.debug("Warm-up plan still running, skipping this interval");
+            return;
+        }
+        planRunner.execute(() -> {
+            try {
+                runPlan();
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    private void runPlan() {
+        String port = environment.getProperty("local.server.port", environment.getProperty("server.port", "8080"));
+        String baseUrl = "http://localhost:" + port + environment.getProperty("server.servlet.context-path", "");
+        List<String> plan = plan();
+        long start = System.currentTimeMillis();
+
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        for (String query : plan) {
+            futures.put(query, executor.submit(() -> restClient.get()
+                    .uri(baseUrl + query)
+                    .header(WARM_UP_HEADER, "true")
+                    .retrieve()
+                    .toBodilessEntity()));
+        }
+
+        int failed = 0;
+        for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+            try {
+                entry.getValue().get();
+            } catch (ExecutionException e) {
+                failed++;
+                log.warn("Warm-up query failed: {} ({})", entry.getKey(), e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        log.info("Warm-up plan of {} queries ran in {} ms ({} failed)", plan.size(), System.currentTimeMillis() - start, failed);
+    }
+
+    private void updateRecordedPlan() {
+        List<String> top = hits.entrySet().stream()
+                .filter(e -> e.getValue().get() >= minHits)
+                .sorted((a, b) -> Long.compare(b.getValue().get(), a.getValue().get()))
+                .limit(maxRecorded)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        // Sans trafic suffisant, garder le plan relevé précédemment
+        if (!top.isEmpty()) {
+            recordedPlan = top;
+        }
+    }
+
+    /**
+     * Diviser les compteurs par deux : une requête qui n'est plus servie sort du plan
+     * et libère sa place parmi les requêtes suivies
+     */
+    void decayHits() {
+        hits.values().forEach(counter -> counter.updateAndGet(count -> count / 2));
+        hits.entrySet().removeIf(e -> e.getValue().get() == 0);
+    }
+
+    private void loadRecordedPlan() {
+        if (recordedPlanPath == null || recordedPlanPath.isEmpty()) return;
+
+        Path path = Paths.get(recordedPlanPath);
+        if (!Files.exists(path)) return;
+
+        try {
+            recordedPlan = Files.readAllLines(path, StandardCharsets.UTF_8).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty())
+                    .limit(maxRecorded)
+                    .collect(Collectors.toList());
+            log.info("Loaded {} recorded warm-up queries from {}", recordedPlan.size(), path);
+        } catch (IOException e) {
+            log.error("Error loading recorded warm-up plan: {}", path, e);
+        }
+    }
+
+    private void saveRecordedPlan() {
+        if (recordedPlanPath == null || recordedPlanPath.isEmpty()) return;
+
+        Path path = Paths.get(recordedPlanPath);
+        Path tmp = Paths.get(recordedPlanPath + ".tmp");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.write(tmp, recordedPlan, StandardCharsets.UTF_8);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Error writing recorded warm-up plan: {}", path, e);
+        }
+    }
+}
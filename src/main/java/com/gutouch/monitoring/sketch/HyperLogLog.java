@@ -0,0 +1,128 @@
+package com.gutouch.monitoring.sketch;
+
+import java.util.Arrays;
+
+/**
+ * Comptage approximatif de valeurs distinctes (HyperLogLog).
+ *
+ * Occupe 2^precision octets quel que soit le trafic (4 Ko en précision 12,
+ * erreur relative typique 1.04 / sqrt(2^precision) ≈ 1.6%). Deux sketches
+ * de même précision se fusionnent sans perte.
+ */
+public class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("precision must be between 4 and 18");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    /**
+     * Ajouter une valeur
+     */
+    public void offer(String value) {
+        if (value != null) {
+            offerHash(Hashing.murmur64(value));
+        }
+    }
+
+    /**
+     * Ajouter une valeur déjà hachée sur 64 bits
+     */
+    public void offerHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Rang du premier bit à 1 dans les bits restants (borné par la taille du reste)
+        long remaining = hash << precision;
+        int rank = remaining == 0 ? (64 - precision + 1) : Long.numberOfLeadingZeros(remaining) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Fusionner un autre sketch dans celui-ci
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches with different precisions");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Estimer le nombre de valeurs distinctes
+     */
+    public long cardinality() {
+        int m = registers.length;
+        double sum = 0.0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+
+        double estimate = alpha(m) * m * m / sum;
+
+        // Petites cardinalités : linear counting
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+
+        return Math.round(estimate);
+    }
+
+    /**
+     * Erreur relative standard attendue pour cette précision
+     */
+    public double relativeError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(precision, Arrays.copyOf(registers, registers.length));
+    }
+
+    /**
+     * Registres bruts (sérialisation)
+     */
+    public byte[] toBytes() {
+        return Arrays.copyOf(registers, registers.length);
+    }
+
+    public static HyperLogLog fromBytes(byte[] registers) {
+        int precision = Integer.numberOfTrailingZeros(registers.length);
+        if (registers.length != 1 << precision) {
+            throw new IllegalArgumentException("Register count must be a power of two");
+        }
+        return new HyperLogLog(precision, Arrays.copyOf(registers, registers.length));
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16: return 0.673;
+            case 32: return 0.697;
+            case 64: return 0.709;
+            default: return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.gutouch.monitoring.sketch;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Histogramme de latences à bornes configurables, stocké dans un long[].
+ *
+ * Avec les bornes {10, 20, 50} : [0, 10[, [10, 20[, [20, 50[ et [50, +inf[.
+ * Le bucket d'une valeur est trouvé par recherche dichotomique ; les libellés
+ * ne sont produits qu'au rendu.
+ */
+public class LatencyHistogram {
+
+    private final double[] bounds;
+    private final long[] counts;
+    private long total;
+
+    public LatencyHistogram(double[] bounds) {
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Bucket bounds must be strictly increasing");
+            }
+        }
+        this.bounds = bounds;
+        this.counts = new long[bounds.length + 1];
+    }
+
+    /**
+     * Enregistrer une latence (ms)
+     */
+    public void record(double latencyMs) {
+        counts[bucketIndex(latencyMs)]++;
+        total++;
+    }
+
+    /**
+     * Enregistrer plusieurs occurrences dans un bucket donné
+     */
+    public void addToBucket(int bucket, long count) {
+        counts[bucket] += count;
+        total += count;
+    }
+
+    /**
+     * Index du bucket : nombre de bornes inférieures ou égales à la valeur
+     */
+    public int bucketIndex(double latencyMs) {
+        int low = 0;
+        int high = bounds.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (bounds[mid] <= latencyMs) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Fusionner un histogramme de mêmes bornes
+     */
+    public void merge(LatencyHistogram other) {
+        if (!Arrays.equals(bounds, other.bounds)) {
+            throw new IllegalArgumentException("Cannot merge histograms with different bounds");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * Ajouter un histogramme de bornes différentes : chaque bucket source va dans le bucket
+     * de sa borne inférieure (exact si nos bornes sont un sous-ensemble des bornes sources)
+     */
+    public void mergeRebucketed(LatencyHistogram other) {
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] > 0) {
+                addToBucket(bucketIndex(i == 0 ? 0.0 : other.bounds[i - 1]), other.counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Estimer un percentile (0-100) par interpolation linéaire dans le bucket.
+     * Le dernier bucket, non borné, retourne sa borne inférieure.
+     */
+    public double percentile(double percentile) {
+        if (total == 0) return 0.0;
+
+        double rank = percentile / 100.0 * total;
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) continue;
+            if (cumulative + counts[i] >= rank) {
+                double lower = i == 0 ? 0.0 : bounds[i - 1];
+                if (i == bounds.length) {
+                    return lower;
+                }
+                double fraction = (rank - cumulative) / counts[i];
+                return lower + (bounds[i] - lower) * fraction;
+            }
+            cumulative += counts[i];
+        }
+        return bounds.length > 0 ? bounds[bounds.length - 1] : 0.0;
+    }
+
+    /**
+     * Rendu en map ordonnée libellé -> compte ("0-10ms", "10-20ms", ..., ">200ms")
+     */
+    public Map<String, Long> toLabelledMap() {
+        Map<String, Long> distribution = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            distribution.put(label(i), counts[i]);
+        }
+        return distribution;
+    }
+
+    public String label(int bucket) {
+        if (bounds.length == 0) return "all";
+        if (bucket == 0) return "0-" + format(bounds[0]) + "ms";
+        if (bucket == bounds.length) return ">" + format(bounds[bounds.length - 1]) + "ms";
+        return format(bounds[bucket - 1]) + "-" + format(bounds[bucket]) + "ms";
+    }
+
+    public long getCount(int bucket) {
+        return counts[bucket];
+    }
+
+    public int getBucketCount() {
+        return counts.length;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public double[] getBounds() {
+        return bounds;
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+}
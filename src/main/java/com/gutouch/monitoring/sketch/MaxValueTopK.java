@@ -0,0 +1,114 @@
+package com.gutouch.monitoring.sketch;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Clés de plus forte valeur maximale observée, en mémoire bornée.
+ *
+ * Complément de {@link SpaceSavingTopK} pour les classements par latence : un endpoint rare
+ * mais lent n'est jamais parmi les plus fréquents, mais sa latence maximale le garde en lice.
+ * Heuristique : un endpoint lent en moyenne peut être évincé par {@code capacity} clés de
+ * plus fort maximum ponctuel ; sans éviction (clés distinctes sous la capacité), le suivi
+ * est complet. Une clé évincée qui réapparaît repart de sa nouvelle valeur.
+ *
+ * {@link #missed()} borne le nombre d'observations qu'une clé suivie a pu manquer
+ * (offres rejetées et observations des clés évincées).
+ */
+public class MaxValueTopK<K> {
+
+    private final int capacity;
+    private final Map<K, Slot<K>> slots = new HashMap<>();
+    private final TreeSet<Slot<K>> byValue = new TreeSet<>(
+            Comparator.comparingDouble((Slot<K> s) -> s.value).thenComparingLong(s -> s.sequence));
+    private final Consumer<K> evictionListener;
+    private long sequence;
+    private long missed;
+
+    public MaxValueTopK(int capacity) {
+        this(capacity, key -> { });
+    }
+
+    /**
+     * Avec un listener appelé pour chaque clé évincée (agrégats tenus à côté du suivi)
+     */
+    public MaxValueTopK(int capacity, Consumer<K> evictionListener) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.capacity = capacity;
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * Observer une valeur pour la clé ; true si la clé est suivie ensuite
+     */
+    public boolean offer(K key, double value) {
+        Slot<K> slot = slots.get(key);
+        if (slot != null) {
+            slot.offers++;
+            if (value > slot.value) {
+                byValue.remove(slot);
+                slot.value = value;
+                byValue.add(slot);
+            }
+            return true;
+        }
+
+        if (slots.size() >= capacity) {
+            Slot<K> lowest = byValue.first();
+            if (value <= lowest.value) {
+                missed++;
+                return false;
+            }
+            byValue.pollFirst();
+            slots.remove(lowest.key);
+            missed += lowest.offers;
+            evictionListener.accept(lowest.key);
+        }
+        slot = new Slot<>(key, value, sequence++);
+        slots.put(key, slot);
+        byValue.add(slot);
+        return true;
+    }
+
+    /**
+     * Clés suivies, sans ordre particulier
+     */
+    public Set<K> keys() {
+        return Collections.unmodifiableSet(slots.keySet());
+    }
+
+    /**
+     * Maximum observé pour une clé suivie, NaN sinon
+     */
+    public double max(K key) {
+        Slot<K> slot = slots.get(key);
+        return slot != null ? slot.value : Double.NaN;
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Observations non comptées dans le suivi en cours d'une clé : 0 tant que rien n'a été
+     * rejeté ni évincé
+     */
+    public long missed() {
+        return missed;
+    }
+
+    private static final class Slot<K> {
+        final K key;
+        double value;
+        final long sequence;
+        long offers = 1;
+
+        Slot(K key, double value, long sequence) {
+            this.key = key;
+            this.value = value;
+            this.sequence = sequence;
+        }
+    }
+}
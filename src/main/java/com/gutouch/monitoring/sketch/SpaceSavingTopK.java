@@ -0,0 +1,276 @@
+package com.gutouch.monitoring.sketch;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Suivi des heavy hitters en mémoire bornée (algorithme Space-Saving).
+ *
+ * Au plus {@code capacity} compteurs sont conservés. Pour chaque clé suivie,
+ * la fréquence réelle est comprise entre {@code count - error} et {@code count},
+ * et {@code error} ne dépasse jamais {@code totalWeight / capacity}.
+ * Tant que le nombre de clés distinctes reste sous la capacité, les comptes sont exacts.
+ *
+ * Chaque compteur porte un agrégat libre (erreurs, latences, ...) remis à zéro
+ * quand la clé prend la place d'un compteur évincé.
+ */
+public class SpaceSavingTopK<K, A> {
+
+    private final int capacity;
+    private final Supplier<A> aggregateFactory;
+    private final BiConsumer<A, A> aggregateMerger;
+
+    private final Map<K, Counter<K, A>> counters;
+    private Counter<K, A>[] heap;
+    private int size;
+    private long totalWeight;
+
+    public SpaceSavingTopK(int capacity, Supplier<A> aggregateFactory, BiConsumer<A, A> aggregateMerger) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.capacity = capacity;
+        this.aggregateFactory = aggregateFactory;
+        this.aggregateMerger = aggregateMerger;
+        this.counters = new HashMap<>(Math.min(capacity, 1 << 16) * 2);
+        this.heap = newHeap(capacity);
+    }
+
+    /**
+     * Compter une occurrence de la clé et retourner son agrégat
+     */
+    public A offer(K key) {
+        return offer(key, 1L);
+    }
+
+    /**
+     * Compter une occurrence pondérée de la clé et retourner son agrégat
+     */
+    public A offer(K key, long weight) {
+        totalWeight += weight;
+
+        Counter<K, A> counter = counters.get(key);
+        if (counter != null) {
+            counter.count += weight;
+            siftDown(counter.heapIndex);
+            return counter.aggregate;
+        }
+
+        if (size < capacity) {
+            counter = new Counter<>(key, weight, 0L, aggregateFactory.get());
+            counters.put(key, counter);
+            counter.heapIndex = size;
+            heap[size++] = counter;
+            siftUp(counter.heapIndex);
+            return counter.aggregate;
+        }
+
+        // Remplacer le plus petit compteur : la nouvelle clé hérite de son compte comme marge d'erreur
+        counter = heap[0];
+        counters.remove(counter.key);
+        counter.key = key;
+        counter.error = counter.count;
+        counter.count += weight;
+        counter.aggregate = aggregateFactory.get();
+        counters.put(key, counter);
+        siftDown(0);
+        return counter.aggregate;
+    }
+
+    /**
+     * Agrégat de la clé si elle est suivie, null sinon ; sans compter d'occurrence
+     */
+    public A aggregate(K key) {
+        Counter<K, A> counter = counters.get(key);
+        return counter != null ? counter.aggregate : null;
+    }
+
+    /**
+     * Fusionner un autre résumé (segment de temps différent) dans celui-ci.
+     * Une clé absente d'un résumé plein y a une fréquence au plus égale à son minimum,
+     * qui est donc ajouté à la fois au compte et à la marge d'erreur.
+     */
+    public void merge(SpaceSavingTopK<K, A> other) {
+        long thisMin = minCount();
+        long otherMin = other.minCount();
+
+        List<Counter<K, A>> merged = new ArrayList<>(size + other.size);
+
+        for (int i = 0; i < size; i++) {
+            Counter<K, A> mine = heap[i];
+            Counter<K, A> theirs = other.counters.get(mine.key);
+            if (theirs != null) {
+                mine.count += theirs.count;
+                mine.error += theirs.error;
+                aggregateMerger.accept(mine.aggregate, theirs.aggregate);
+            } else {
+                mine.count += otherMin;
+                mine.error += otherMin;
+            }
+            merged.add(mine);
+        }
+
+        for (int i = 0; i < other.size; i++) {
+            Counter<K, A> theirs = other.heap[i];
+            if (!counters.containsKey(theirs.key)) {
+                A aggregate = aggregateFactory.get();
+                aggregateMerger.accept(aggregate, theirs.aggregate);
+                merged.add(new Counter<>(theirs.key, theirs.count + thisMin, theirs.error + thisMin, aggregate));
+            }
+        }
+
+        merged.sort(Comparator.comparingLong((Counter<K, A> c) -> c.count).reversed());
+
+        counters.clear();
+        heap = newHeap(capacity);
+        size = 0;
+        for (Counter<K, A> counter : merged) {
+            if (size == capacity) break;
+            counters.put(counter.key, counter);
+            counter.heapIndex = size;
+            heap[size++] = counter;
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+
+        totalWeight += other.totalWeight;
+    }
+
+    /**
+     * Retourner les k clés les plus fréquentes, par compte décroissant
+     */
+    public List<Entry<K, A>> top(int k) {
+        return entries().stream()
+                .sorted(Comparator.comparingLong((Entry<K, A> e) -> e.count).reversed())
+                .limit(k)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Clés pouvant appartenir au vrai top k : compte estimé au moins égal à la k-ième
+     * fréquence garantie. Leur compte exact se recalcule ensuite par un second passage.
+     */
+    public List<Entry<K, A>> candidates(int k) {
+        List<Entry<K, A>> entries = entries();
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        if (entries.size() <= k) {
+            return entries;
+        }
+        long threshold = entries.stream()
+                .map(Entry::guaranteedCount)
+                .sorted(Comparator.reverseOrder())
+                .skip(k - 1L)
+                .findFirst()
+                .orElse(0L);
+        return entries.stream()
+                .filter(e -> e.count >= threshold)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Retourner tous les compteurs suivis, sans ordre particulier
+     */
+    public List<Entry<K, A>> entries() {
+        List<Entry<K, A>> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Counter<K, A> c = heap[i];
+            entries.add(new Entry<>(c.key, c.count, c.error, c.aggregate));
+        }
+        return entries;
+    }
+
+    /**
+     * Plus petit compte suivi quand le résumé est plein, 0 sinon
+     */
+    public long minCount() {
+        return size < capacity ? 0L : heap[0].count;
+    }
+
+    /**
+     * Borne garantie sur la marge d'erreur de n'importe quel compteur
+     */
+    public long maxError() {
+        return minCount();
+    }
+
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void siftUp(int index) {
+        Counter<K, A> counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) break;
+            heap[index] = heap[parent];
+            heap[index].heapIndex = index;
+            index = parent;
+        }
+        heap[index] = counter;
+        counter.heapIndex = index;
+    }
+
+    private void siftDown(int index) {
+        Counter<K, A> counter = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && heap[right].count < heap[child].count) {
+                child = right;
+            }
+            if (counter.count <= heap[child].count) break;
+            heap[index] = heap[child];
+            heap[index].heapIndex = index;
+            index = child;
+        }
+        heap[index] = counter;
+        counter.heapIndex = index;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, A> Counter<K, A>[] newHeap(int capacity) {
+        return (Counter<K, A>[]) new Counter[capacity];
+    }
+
+    private static final class Counter<K, A> {
+        K key;
+        long count;
+        long error;
+        A aggregate;
+        int heapIndex;
+
+        Counter(K key, long count, long error, A aggregate) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.aggregate = aggregate;
+        }
+    }
+
+    /**
+     * Compteur exposé : compte estimé, marge d'erreur et agrégat associé
+     */
+    public record Entry<K, A>(K key, long count, long error, A aggregate) {
+
+        /**
+         * Fréquence minimale garantie pour cette clé
+         */
+        public long guaranteedCount() {
+            return count - error;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.gutouch.monitoring.sketch;
+
+import java.util.*;
+
+/**
+ * Comptage des status codes HTTP dans un long[] indexé directement (100-599).
+ * Les codes hors plage (0 pour un status absent, ...) vont dans une petite map annexe.
+ */
+public class StatusCodeHistogram {
+
+    private static final int MIN_CODE = 100;
+    private static final int MAX_CODE = 599;
+
+    private final long[] counts = new long[MAX_CODE - MIN_CODE + 1];
+    private Map<Integer, Long> outOfRange;
+    private long total;
+
+    /**
+     * Enregistrer un status code
+     */
+    public void record(int statusCode) {
+        record(statusCode, 1L);
+    }
+
+    public void record(int statusCode, long count) {
+        if (statusCode >= MIN_CODE && statusCode <= MAX_CODE) {
+            counts[statusCode - MIN_CODE] += count;
+        } else {
+            if (outOfRange == null) {
+                outOfRange = new HashMap<>();
+            }
+            outOfRange.merge(statusCode, count, Long::sum);
+        }
+        total += count;
+    }
+
+    /**
+     * Fusionner un autre histogramme
+     */
+    public void merge(StatusCodeHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        if (other.outOfRange != null) {
+            if (outOfRange == null) {
+                outOfRange = new HashMap<>();
+            }
+            other.outOfRange.forEach((code, count) -> outOfRange.merge(code, count, Long::sum));
+        }
+        total += other.total;
+    }
+
+    public long getCount(int statusCode) {
+        if (statusCode >= MIN_CODE && statusCode <= MAX_CODE) {
+            return counts[statusCode - MIN_CODE];
+        }
+        return outOfRange != null ? outOfRange.getOrDefault(statusCode, 0L) : 0L;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Parcourir les codes présents (compte > 0), par code croissant pour la plage directe
+     */
+    public void forEach(CodeConsumer consumer) {
+        if (outOfRange != null) {
+            outOfRange.forEach((code, count) -> consumer.accept(code, count));
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                consumer.accept(i + MIN_CODE, counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Rendu en map code -> compte, codes présents uniquement
+     */
+    public Map<String, Long> toCodeMap() {
+        Map<String, Long> map = new HashMap<>();
+        forEach((code, count) -> map.put(String.valueOf(code), count));
+        return map;
+    }
+
+    /**
+     * Rendu en map catégorie ("2xx", ...) -> compte, avec les catégories toujours présentes
+     */
+    public Map<String, Long> toCategoryMap(String... alwaysPresent) {
+        Map<String, Long> map = new HashMap<>();
+        for (String category : alwaysPresent) {
+            map.put(category, 0L);
+        }
+        forEach((code, count) -> map.merge((code / 100) + "xx", count, Long::sum));
+        return map;
+    }
+
+    /**
+     * Les n codes les plus fréquents, par compte décroissant
+     */
+    public int[] topCodes(int n) {
+        List<long[]> present = new ArrayList<>();
+        forEach((code, count) -> present.add(new long[]{code, count}));
+        present.sort((a, b) -> Long.compare(b[1], a[1]));
+
+        int[] top = new int[Math.min(n, present.size())];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = (int) present.get(i)[0];
+        }
+        return top;
+    }
+
+    @FunctionalInterface
+    public interface CodeConsumer {
+        void accept(int statusCode, long count);
+    }
+}
@@ -0,0 +1,131 @@
+package com.gutouch.monitoring.sketch;
+
+import com.gutouch.monitoring.dto.LogEntry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Agrégat de trafic d'une clé (client, endpoint, ...), tenu pour les clés suivies
+ * par un {@link SpaceSavingTopK} ou un {@link MaxValueTopK}.
+ */
+public class TrafficStats {
+
+    // Bornes (ms) de la distribution des latences, mêmes buckets que les agrégats de logs
+    private static final double[] LATENCY_BOUNDS = {
+            1, 2, 5, 10, 15, 20, 30, 50, 75, 100, 150, 200, 300, 500, 750, 1000, 2000, 5000, 10000, 30000
+    };
+
+    private long requests;
+    private long errors;
+    private double latencySum;
+    private long lastSeenMillis = Long.MIN_VALUE;
+    private Map<Integer, Long> statusCounts;
+    private LatencyHistogram latencies;
+
+    /**
+     * Enregistrer une ligne de log
+     */
+    public void record(LogEntry log) {
+        requests++;
+        if (!Boolean.TRUE.equals(log.getSuccess())) {
+            errors++;
+        }
+        if (log.getResponseTimeMs() != null) {
+            latencySum += log.getResponseTimeMs();
+        }
+        if (log.getTimestamp() != null) {
+            lastSeenMillis = Math.max(lastSeenMillis, log.getTimestamp().toEpochMilli());
+        }
+    }
+
+    /**
+     * Enregistrer une ligne de log en conservant la répartition des status codes
+     */
+    public void recordWithStatus(LogEntry log) {
+        record(log);
+        if (log.getStatusCode() != null) {
+            if (statusCounts == null) {
+                statusCounts = new HashMap<>();
+            }
+            statusCounts.merge(log.getStatusCode(), 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Enregistrer une ligne de log en conservant la distribution des latences (percentiles),
+     * les lignes sans latence comptant pour 0 comme dans la moyenne
+     */
+    public void recordWithLatency(LogEntry log) {
+        record(log);
+        if (latencies == null) {
+            latencies = new LatencyHistogram(LATENCY_BOUNDS);
+        }
+        latencies.record(log.getResponseTimeMs() != null ? log.getResponseTimeMs() : 0.0);
+    }
+
+    /**
+     * Fusionner un autre agrégat dans celui-ci
+     */
+    public void merge(TrafficStats other) {
+        requests += other.requests;
+        errors += other.errors;
+        latencySum += other.latencySum;
+        lastSeenMillis = Math.max(lastSeenMillis, other.lastSeenMillis);
+        if (other.statusCounts != null) {
+            if (statusCounts == null) {
+                statusCounts = new HashMap<>();
+            }
+            other.statusCounts.forEach((status, count) -> statusCounts.merge(status, count, Long::sum));
+        }
+        if (other.latencies != null) {
+            if (latencies == null) {
+                latencies = new LatencyHistogram(LATENCY_BOUNDS);
+            }
+            latencies.merge(other.latencies);
+        }
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public double getErrorRate() {
+        return requests > 0 ? (errors * 100.0 / requests) : 0.0;
+    }
+
+    /**
+     * Latence moyenne, les lignes sans latence comptant pour 0
+     */
+    public double getAvgLatencyMs() {
+        return requests > 0 ? latencySum / requests : 0.0;
+    }
+
+    /**
+     * Percentile (0-100) estimé sur la distribution des latences, 0 sans distribution
+     */
+    public double getLatencyPercentile(double percentile) {
+        return latencies != null ? latencies.percentile(percentile) : 0.0;
+    }
+
+    public long getLastSeenMillis() {
+        return lastSeenMillis;
+    }
+
+    /**
+     * Status code le plus fréquent, ou la valeur par défaut si aucun
+     */
+    public int getMostCommonStatus(int defaultStatus) {
+        if (statusCounts == null || statusCounts.isEmpty()) {
+            return defaultStatus;
+        }
+        return statusCounts.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(defaultStatus);
+    }
+}
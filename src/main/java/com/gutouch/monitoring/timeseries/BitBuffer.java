@@ -0,0 +1,113 @@
+package com.gutouch.monitoring.timeseries;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Flux de bits en écriture seule, stocké dans un long[] (bits de poids fort d'abord)
+ */
+final class BitBuffer {
+
+    // Garde-fou à la relecture d'un snapshot (un bloc plein en fait quelques Ko)
+    private static final int MAX_BITS = 1 << 26;
+
+    private long[] words = new long[4];
+    private int size;
+
+    /**
+     * Écrire les n bits de poids faible d'une valeur (1 à 64)
+     */
+    void write(long value, int bits) {
+        value &= mask(bits);
+        ensureCapacity(size + bits);
+
+        int wordIndex = size >>> 6;
+        int free = 64 - (size & 63);
+        if (bits <= free) {
+            words[wordIndex] |= value << (free - bits);
+        } else {
+            int overflow = bits - free;
+            words[wordIndex] |= value >>> overflow;
+            words[wordIndex + 1] |= value << (64 - overflow);
+        }
+        size += bits;
+    }
+
+    /**
+     * Libérer la capacité inutilisée (bloc scellé)
+     */
+    void trim() {
+        words = Arrays.copyOf(words, (size + 63) >>> 6);
+    }
+
+    int sizeInBytes() {
+        return words.length * Long.BYTES;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        int wordCount = (size + 63) >>> 6;
+        out.writeInt(size);
+        for (int i = 0; i < wordCount; i++) {
+            out.writeLong(words[i]);
+        }
+    }
+
+    static BitBuffer readFrom(DataInput in) throws IOException {
+        BitBuffer buffer = new BitBuffer();
+        buffer.size = in.readInt();
+        if (buffer.size < 0 || buffer.size > MAX_BITS) {
+            throw new IOException("Invalid bit buffer size " + buffer.size);
+        }
+        buffer.words = new long[(buffer.size + 63) >>> 6];
+        for (int i = 0; i < buffer.words.length; i++) {
+            buffer.words[i] = in.readLong();
+        }
+        return buffer;
+    }
+
+    Reader reader() {
+        return new Reader();
+    }
+
+    private void ensureCapacity(int bits) {
+        int needed = (bits + 63) >>> 6;
+        if (needed > words.length) {
+            words = Arrays.copyOf(words, Math.max(needed, words.length * 2));
+        }
+    }
+
+    private static long mask(int bits) {
+        return bits == 64 ? -1L : (1L << bits) - 1;
+    }
+
+    /**
+     * Lecture séquentielle depuis le début du flux
+     */
+    final class Reader {
+
+        private int position;
+
+        long read(int bits) {
+            if (bits < 1 || bits > 64 || position + bits > size) {
+                throw new IllegalStateException("Read past end of bit buffer");
+            }
+            int wordIndex = position >>> 6;
+            int free = 64 - (position & 63);
+            long result;
+            if (bits <= free) {
+                result = (words[wordIndex] >>> (free - bits)) & mask(bits);
+            } else {
+                int overflow = bits - free;
+                result = ((words[wordIndex] & mask(free)) << overflow) | (words[wordIndex + 1] >>> (64 - overflow));
+            }
+            position += bits;
+            return result;
+        }
+
+        boolean readBit() {
+            return read(1) == 1L;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.gutouch.monitoring.timeseries;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Série de buckets à pas fixe compressée à la Gorilla.
+ *
+ * Le bucket en cours reste non compressé ; à sa clôture il est ajouté au dernier bloc :
+ * index de bucket en delta-of-delta (1 bit pour une série régulière), chaque colonne
+ * en XOR avec la valeur précédente (1 bit si inchangée). Les blocs pleins sont scellés,
+ * et supprimés en entier quand ils sortent de la rétention.
+ */
+public class CompressedSeries {
+
+    private static final int COLUMNS = 6; // windows, requests, successRateSum, errorRateSum, latencySum, maxRequests
+    private static final int POINTS_PER_BLOCK = 256;
+
+    private final Resolution resolution;
+    private final long retentionBuckets;
+    private final Deque<Block> blocks = new ArrayDeque<>();
+
+    // Bucket ouvert, non compressé
+    private long openBucket = Long.MIN_VALUE;
+    private long openWindows;
+    private long openRequests;
+    private double openSuccessRateSum;
+    private double openErrorRateSum;
+    private double openLatencySum;
+    private long openMaxRequests;
+
+    public CompressedSeries(Resolution resolution, long retentionMillis) {
+        this.resolution = resolution;
+        this.retentionBuckets = Math.max(1L, retentionMillis / resolution.getStepMillis());
+    }
+
+    /**
+     * Ajouter une fenêtre minute ; les fenêtres d'un bucket déjà clos sont ignorées
+     */
+    public synchronized void add(long timestamp, long requests, double successRate, double errorRate, double latencyMs) {
+        long bucket = Math.floorDiv(timestamp, resolution.getStepMillis());
+        if (bucket < openBucket) return;
+
+        if (bucket > openBucket) {
+            flushOpenBucket();
+            openBucket = bucket;
+        }
+        openWindows++;
+        openRequests += requests;
+        openSuccessRateSum += successRate;
+        openErrorRateSum += errorRate;
+        openLatencySum += latencyMs;
+        openMaxRequests = Math.max(openMaxRequests, requests);
+    }
+
+    /**
+     * Buckets non vides de [début, fin), par timestamp croissant (décompression à la lecture)
+     */
+    public synchronized List<SeriesPoint> query(long startMillis, long endMillis) {
+        long step = resolution.getStepMillis();
+        long firstBucket = Math.floorDiv(startMillis, step);
+        long lastBucket = Math.floorDiv(endMillis - 1, step);
+
+        List<SeriesPoint> points = new ArrayList<>();
+        for (Block block : blocks) {
+            if (block.lastBucket < firstBucket || block.firstBucket > lastBucket) continue;
+            block.decode((bucket, values) -> {
+                if (bucket >= firstBucket && bucket <= lastBucket) {
+                    points.add(toPoint(bucket, values));
+                }
+            });
+        }
+        if (openWindows > 0 && openBucket >= firstBucket && openBucket <= lastBucket) {
+            points.add(new SeriesPoint(openBucket * step, openWindows, openRequests,
+                    openSuccessRateSum, openErrorRateSum, openLatencySum, openMaxRequests));
+        }
+        return points;
+    }
+
+    /**
+     * Taille mémoire des blocs compressés
+     */
+    public synchronized long compressedBytes() {
+        long bytes = 0L;
+        for (Block block : blocks) {
+            bytes += block.bits.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    public Resolution getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Sérialiser les blocs et le bucket ouvert (snapshot)
+     */
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeLong(openBucket);
+        out.writeLong(openWindows);
+        out.writeLong(openRequests);
+        out.writeDouble(openSuccessRateSum);
+        out.writeDouble(openErrorRateSum);
+        out.writeDouble(openLatencySum);
+        out.writeLong(openMaxRequests);
+        out.writeInt(blocks.size());
+        for (Block block : blocks) {
+            out.writeLong(block.firstBucket);
+            out.writeLong(block.lastBucket);
+            out.writeInt(block.count);
+            block.bits.writeTo(out);
+        }
+    }
+
+    /**
+     * Relire une série écrite par {@link #writeTo} ; les blocs relus sont scellés et décodés
+     * une fois pour validation (IOException si le flux est incohérent)
+     */
+    public static CompressedSeries readFrom(Resolution resolution, long retentionMillis, DataInput in) throws IOException {
+        CompressedSeries series = new CompressedSeries(resolution, retentionMillis);
+        series.openBucket = in.readLong();
+        series.openWindows = in.readLong();
+        series.openRequests = in.readLong();
+        series.openSuccessRateSum = in.readDouble();
+        series.openErrorRateSum = in.readDouble();
+        series.openLatencySum = in.readDouble();
+        series.openMaxRequests = in.readLong();
+        if (series.openWindows < 0) {
+            throw new IOException("Invalid open bucket window count " + series.openWindows);
+        }
+        int blockCount = in.readInt();
+        if (blockCount < 0 || blockCount > series.retentionBuckets + 1) {
+            throw new IOException("Invalid block count " + blockCount);
+        }
+        for (int i = 0; i < blockCount; i++) {
+            long firstBucket = in.readLong();
+            long lastBucket = in.readLong();
+            int count = in.readInt();
+            if (count < 1 || count > POINTS_PER_BLOCK || lastBucket < firstBucket) {
+                throw new IOException("Invalid block header");
+            }
+            Block block = new Block(firstBucket, lastBucket, count, BitBuffer.readFrom(in));
+            try {
+                long[] decoded = {Long.MIN_VALUE, 0L};
+                block.decode((bucket, values) -> {
+                    decoded[0] = bucket;
+                    decoded[1]++;
+                });
+                if (decoded[0] != lastBucket || decoded[1] != count) {
+                    throw new IOException("Block does not match its header");
+                }
+            } catch (IllegalStateException e) {
+                throw new IOException("Corrupted block: " + e.getMessage());
+            }
+            series.blocks.addLast(block);
+        }
+        return series;
+    }
+
+    private void flushOpenBucket() {
+        if (openWindows == 0) return;
+
+        Block block = blocks.peekLast();
+        if (block == null || block.isSealed() || block.count >= POINTS_PER_BLOCK) {
+            if (block != null && !block.isSealed()) {
+                block.seal();
+            }
+            block = new Block();
+            blocks.addLast(block);
+        }
+        block.append(openBucket, new long[]{
+                openWindows,
+                openRequests,
+                Double.doubleToRawLongBits(openSuccessRateSum),
+                Double.doubleToRawLongBits(openErrorRateSum),
+                Double.doubleToRawLongBits(openLatencySum),
+                openMaxRequests
+        });
+
+        // Rétention par blocs entiers, relative au dernier bucket reçu
+        while (blocks.size() > 1 && blocks.peekFirst().lastBucket < openBucket - retentionBuckets) {
+            blocks.removeFirst();
+        }
+
+        openWindows = 0L;
+        openRequests = 0L;
+        openSuccessRateSum = 0.0;
+        openErrorRateSum = 0.0;
+        openLatencySum = 0.0;
+        openMaxRequests = 0L;
+    }
+
+    private SeriesPoint toPoint(long bucket, long[] values) {
+        return new SeriesPoint(bucket * resolution.getStepMillis(), values[0], values[1],
+                Double.longBitsToDouble(values[2]), Double.longBitsToDouble(values[3]),
+                Double.longBitsToDouble(values[4]), values[5]);
+    }
+
+    @FunctionalInterface
+    private interface PointConsumer {
+        void accept(long bucket, long[] values);
+    }
+
+    /**
+     * Bloc de points encodés dans un même flux de bits
+     */
+    private static final class Block {
+
+        private final BitBuffer bits;
+        private long firstBucket;
+        private long lastBucket;
+        private int count;
+
+        // État d'écriture, libéré au scellement
+        private long previousDelta;
+        private long[] previousValues = new long[COLUMNS];
+        private int[] previousLeading = new int[COLUMNS];
+        private int[] previousTrailing = new int[COLUMNS];
+
+        Block() {
+            this.bits = new BitBuffer();
+        }
+
+        // Bloc relu d'un snapshot : lecture seule
+        Block(long firstBucket, long lastBucket, int count, BitBuffer bits) {
+            this.bits = bits;
+            this.firstBucket = firstBucket;
+            this.lastBucket = lastBucket;
+            this.count = count;
+            seal();
+        }
+
+        boolean isSealed() {
+            return previousValues == null;
+        }
+
+        void append(long bucket, long[] values) {
+            if (count == 0) {
+                firstBucket = bucket;
+                bits.write(bucket, 64);
+                for (int c = 0; c < COLUMNS; c++) {
+                    bits.write(values[c], 64);
+                    previousValues[c] = values[c];
+                    previousLeading[c] = -1;
+                }
+                previousDelta = 1L;
+            } else {
+                long delta = bucket - lastBucket;
+                writeDeltaOfDelta(delta - previousDelta);
+                previousDelta = delta;
+                for (int c = 0; c < COLUMNS; c++) {
+                    writeXor(c, values[c]);
+                }
+            }
+            lastBucket = bucket;
+            count++;
+        }
+
+        void seal() {
+            bits.trim();
+            previousValues = null;
+            previousLeading = null;
+            previousTrailing = null;
+        }
+
+        private void writeDeltaOfDelta(long dod) {
+            if (dod == 0) {
+                bits.write(0b0, 1);
+            } else if (dod >= -64 && dod <= 63) {
+                bits.write(0b10, 2);
+                bits.write(dod, 7);
+            } else if (dod >= -256 && dod <= 255) {
+                bits.write(0b110, 3);
+                bits.write(dod, 9);
+            } else if (dod >= -2048 && dod <= 2047) {
+                bits.write(0b1110, 4);
+                bits.write(dod, 12);
+            } else {
+                bits.write(0b1111, 4);
+                bits.write(dod, 64);
+            }
+        }
+
+        private void writeXor(int column, long value) {
+            long xor = value ^ previousValues[column];
+            previousValues[column] = value;
+            if (xor == 0) {
+                bits.write(0b0, 1);
+                return;
+            }
+
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading[column] >= 0 && leading >= previousLeading[column] && trailing >= previousTrailing[column]) {
+                // Bits significatifs dans la fenêtre précédente
+                bits.write(0b10, 2);
+                bits.write(xor >>> previousTrailing[column], 64 - previousLeading[column] - previousTrailing[column]);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                bits.write(0b11, 2);
+                bits.write(leading, 5);
+                bits.write(meaningful - 1, 6);
+                bits.write(xor >>> trailing, meaningful);
+                previousLeading[column] = leading;
+                previousTrailing[column] = trailing;
+            }
+        }
+
+        void decode(PointConsumer consumer) {
+            BitBuffer.Reader reader = bits.reader();
+            long[] values = new long[COLUMNS];
+            int[] leading = new int[COLUMNS];
+            int[] trailing = new int[COLUMNS];
+
+            long bucket = reader.read(64);
+            for (int c = 0; c < COLUMNS; c++) {
+                values[c] = reader.read(64);
+            }
+            consumer.accept(bucket, values);
+
+            long delta = 1L;
+            for (int i = 1; i < count; i++) {
+                delta += readDeltaOfDelta(reader);
+                bucket += delta;
+                for (int c = 0; c < COLUMNS; c++) {
+                    if (!reader.readBit()) continue;
+                    if (reader.readBit()) {
+                        leading[c] = (int) reader.read(5);
+                        trailing[c] = 64 - leading[c] - ((int) reader.read(6) + 1);
+                    }
+                    int meaningful = 64 - leading[c] - trailing[c];
+                    values[c] ^= reader.read(meaningful) << trailing[c];
+                }
+                consumer.accept(bucket, values);
+            }
+        }
+
+        private static long readDeltaOfDelta(BitBuffer.Reader reader) {
+            if (!reader.readBit()) return 0L;
+            if (!reader.readBit()) return signExtend(reader.read(7), 7);
+            if (!reader.readBit()) return signExtend(reader.read(9), 9);
+            if (!reader.readBit()) return signExtend(reader.read(12), 12);
+            return reader.read(64);
+        }
+
+        private static long signExtend(long value, int bits) {
+            return (value << (64 - bits)) >> (64 - bits);
+        }
+    }
+}
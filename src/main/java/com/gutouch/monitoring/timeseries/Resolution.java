@@ -0,0 +1,35 @@
+package com.gutouch.monitoring.timeseries;
+
+/**
+ * Résolutions du store de séries, de la plus fine à la plus grossière
+ */
+public enum Resolution {
+
+    MINUTE(60_000L, "1m"),
+    FIVE_MINUTES(300_000L, "5m"),
+    HOUR(3_600_000L, "1h"),
+    DAY(86_400_000L, "1d");
+
+    private final long stepMillis;
+    private final String label;
+
+    Resolution(long stepMillis, String label) {
+        this.stepMillis = stepMillis;
+        this.label = label;
+    }
+
+    public long getStepMillis() {
+        return stepMillis;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Début du bucket contenant un timestamp
+     */
+    public long bucketStart(long epochMillis) {
+        return epochMillis - Math.floorMod(epochMillis, stepMillis);
+    }
+}
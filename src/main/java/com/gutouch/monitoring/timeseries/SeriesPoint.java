@@ -0,0 +1,16 @@
+package com.gutouch.monitoring.timeseries;
+
+/**
+ * Bucket d'une série de connector : sommes des fenêtres minute qu'il contient.
+ * Les taux et latences sont les moyennes non pondérées des fenêtres, comme sur metrics_log.
+ */
+public record SeriesPoint(long timestamp, long windows, long requests,
+                          double successRateSum, double errorRateSum, double latencySum, long maxRequests) {
+
+    /**
+     * Requêtes par minute moyennes sur le bucket
+     */
+    public long requestsPerMinute() {
+        return windows > 0 ? Math.round((double) requests / windows) : 0L;
+    }
+}
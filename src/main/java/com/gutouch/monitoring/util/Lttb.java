@@ -0,0 +1,77 @@
+package com.gutouch.monitoring.util;
+
+/**
+ * Sous-échantillonnage Largest-Triangle-Three-Buckets d'une série (x croissants).
+ *
+ * Garde le premier et le dernier point ; chaque bucket intermédiaire conserve le point
+ * formant le plus grand triangle avec le point retenu précédemment et la moyenne du
+ * bucket suivant, ce qui préserve les pics. Un seul passage, sans allocation par point.
+ */
+public final class Lttb {
+
+    private Lttb() {
+    }
+
+    /**
+     * Indices des points à conserver (croissants), tous si la série tient déjà dans le seuil
+     */
+    public static int[] select(long[] x, double[] y, int threshold) {
+        int length = x.length;
+        // Premier et dernier points toujours conservés : au moins 3 points pour sous-échantillonner
+        threshold = Math.max(threshold, 3);
+        if (threshold >= length) {
+            int[] all = new int[length];
+            for (int i = 0; i < length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int[] selected = new int[threshold];
+        selected[0] = 0;
+        selected[threshold - 1] = length - 1;
+
+        // Points intermédiaires répartis sur threshold - 2 buckets
+        double bucketSize = (double) (length - 2) / (threshold - 2);
+        int previous = 0;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+
+            // Moyenne du bucket suivant (dernier point pour le dernier bucket)
+            int nextStart = end;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, length);
+            double avgX = 0.0;
+            double avgY = 0.0;
+            if (nextStart >= length - 1 || nextStart >= nextEnd) {
+                avgX = x[length - 1];
+                avgY = y[length - 1];
+            } else {
+                for (int i = nextStart; i < nextEnd; i++) {
+                    avgX += x[i];
+                    avgY += y[i];
+                }
+                avgX /= (nextEnd - nextStart);
+                avgY /= (nextEnd - nextStart);
+            }
+
+            double pointX = x[previous];
+            double pointY = y[previous];
+            double maxArea = -1.0;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((pointX - avgX) * (y[i] - pointY) - (pointX - x[i]) * (avgY - pointY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+
+            selected[bucket + 1] = chosen;
+            previous = chosen;
+        }
+
+        return selected;
+    }
+}
@@ -0,0 +1,117 @@
+package com.gutouch.monitoring.util;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.temporal.Temporal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimation grossière de l'empreinte mémoire d'un graphe d'objets (pesée des caches).
+ *
+ * Les collections, maps et tableaux sont estimés sur un échantillon de leurs premiers
+ * éléments puis extrapolés : peser une liste de 100k lignes coûte autant qu'en peser 16.
+ * Les champs des classes JDK non ouvertes à la réflexion comptent pour un objet vide.
+ */
+public final class SizeEstimator {
+
+    private static final int SAMPLE = 16;
+    private static final int MAX_DEPTH = 8;
+    private static final long OBJECT_HEADER = 16L;
+    private static final long REFERENCE = 8L;
+
+    private static final Map<Class<?>, Field[]> FIELDS = new ConcurrentHashMap<>();
+
+    private SizeEstimator() {
+    }
+
+    /**
+     * Taille estimée en octets
+     */
+    public static long estimate(Object value) {
+        return estimate(value, 0);
+    }
+
+    private static long estimate(Object value, int depth) {
+        if (value == null) return 0L;
+        if (value instanceof String s) return OBJECT_HEADER + 24L + s.length();
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character
+                || value instanceof Enum<?>) return OBJECT_HEADER + 8L;
+        if (value instanceof Temporal) return OBJECT_HEADER + 16L;
+        if (depth >= MAX_DEPTH) return OBJECT_HEADER;
+
+        if (value instanceof Collection<?> collection) {
+            return OBJECT_HEADER + 16L + REFERENCE * collection.size()
+                    + sampled(collection, collection.size(), depth);
+        }
+        if (value instanceof Map<?, ?> map) {
+            List<Object> sample = new ArrayList<>(SAMPLE * 2);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (sample.size() >= SAMPLE * 2) break;
+                sample.add(entry.getKey());
+                sample.add(entry.getValue());
+            }
+            return OBJECT_HEADER + 32L + 32L * map.size() + sampled(sample, map.size() * 2, depth);
+        }
+        if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            Class<?> component = value.getClass().getComponentType();
+            if (component.isPrimitive()) {
+                return OBJECT_HEADER + (long) length * primitiveSize(component);
+            }
+            return OBJECT_HEADER + REFERENCE * length + sampled(Arrays.asList((Object[]) value), length, depth);
+        }
+
+        long size = OBJECT_HEADER;
+        for (Field field : fields(value.getClass())) {
+            if (field.getType().isPrimitive()) {
+                size += primitiveSize(field.getType());
+                continue;
+            }
+            size += REFERENCE;
+            try {
+                size += estimate(field.get(value), depth + 1);
+            } catch (IllegalAccessException e) {
+                // Champ inaccessible : compté comme une référence
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Taille moyenne des premiers éléments, extrapolée à count éléments
+     */
+    private static long sampled(Iterable<?> elements, int count, int depth) {
+        long sampleSize = 0L;
+        int sampled = 0;
+        for (Object element : elements) {
+            if (sampled >= SAMPLE) break;
+            sampleSize += estimate(element, depth + 1);
+            sampled++;
+        }
+        return sampled == 0 ? 0L : sampleSize * count / sampled;
+    }
+
+    private static Field[] fields(Class<?> type) {
+        return FIELDS.computeIfAbsent(type, t -> {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = t; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) continue;
+                    // Classes JDK fermées à la réflexion : seul l'en-tête est compté
+                    if (!field.trySetAccessible()) continue;
+                    fields.add(field);
+                }
+            }
+            return fields.toArray(new Field[0]);
+        });
+    }
+
+    private static long primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) return 8L;
+        if (type == int.class || type == float.class) return 4L;
+        if (type == short.class || type == char.class) return 2L;
+        return 1L;
+    }
+}
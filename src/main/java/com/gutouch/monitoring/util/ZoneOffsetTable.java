@@ -0,0 +1,75 @@
+package com.gutouch.monitoring.util;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Table précalculée des décalages UTC d'un fuseau sur une plage donnée.
+ *
+ * Permet de passer d'un epoch millis au jour / à l'heure locale (changements
+ * d'heure compris) avec une recherche dichotomique sur quelques transitions,
+ * sans créer de ZonedDateTime par ligne.
+ */
+public final class ZoneOffsetTable {
+
+    public static final long HOUR_MS = 3_600_000L;
+    public static final long DAY_MS = 24 * HOUR_MS;
+
+    // transitions[i] = instant à partir duquel offsets[i + 1] s'applique
+    private final long[] transitions;
+    private final long[] offsets;
+
+    public ZoneOffsetTable(ZoneId zone, Instant from, Instant to) {
+        ZoneRules rules = zone.getRules();
+        List<ZoneOffsetTransition> found = new ArrayList<>();
+
+        ZoneOffsetTransition next = rules.nextTransition(from);
+        while (next != null && !next.getInstant().isAfter(to)) {
+            found.add(next);
+            next = rules.nextTransition(next.getInstant());
+        }
+
+        this.transitions = new long[found.size()];
+        this.offsets = new long[found.size() + 1];
+        this.offsets[0] = rules.getOffset(from).getTotalSeconds() * 1000L;
+        for (int i = 0; i < found.size(); i++) {
+            transitions[i] = found.get(i).getInstant().toEpochMilli();
+            offsets[i + 1] = found.get(i).getOffsetAfter().getTotalSeconds() * 1000L;
+        }
+    }
+
+    /**
+     * Décalage UTC (ms) en vigueur à cet instant
+     */
+    public long offsetMillis(long epochMillis) {
+        int low = 0;
+        int high = transitions.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (transitions[mid] <= epochMillis) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return offsets[low];
+    }
+
+    /**
+     * Jour local (nombre de jours depuis 1970-01-01, comme LocalDate.toEpochDay)
+     */
+    public long localEpochDay(long epochMillis) {
+        return Math.floorDiv(epochMillis + offsetMillis(epochMillis), DAY_MS);
+    }
+
+    /**
+     * Heure locale (0-23)
+     */
+    public int localHour(long epochMillis) {
+        return (int) (Math.floorMod(epochMillis + offsetMillis(epochMillis), DAY_MS) / HOUR_MS);
+    }
+}
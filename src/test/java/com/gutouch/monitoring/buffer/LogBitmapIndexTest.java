@@ -0,0 +1,103 @@
+package com.gutouch.monitoring.buffer;
+
+import com.gutouch.monitoring.dto.LogEntry;
+import com.gutouch.monitoring.dto.LogSearchParams;
+import com.gutouch.monitoring.service.LogService;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogBitmapIndexTest {
+
+    private static final String[] CONNECTORS = {"pi-gateway", "pi-connector", "bank-api"};
+    private static final String[] TYPES = {"request", "response"};
+    private static final Integer[] STATUSES = {null, 200, 201, 404, 500, 502};
+    private static final String[] IPS = {null, "10.0.0.1", "10.0.0.2"};
+    private static final Boolean[] FLAGS = {null, true, false};
+
+    private final LogService logService = new LogService(null, null, null);
+
+    @Test
+    void selectionMatchesSearchFilters() {
+        List<LogEntry> entries = entries(3_000);
+        LogBitmapIndex index = new LogBitmapIndex();
+        for (int i = 0; i < entries.size(); i++) {
+            index.add(i, entries.get(i));
+        }
+
+        Random random = new Random(5);
+        for (int round = 0; round < 200; round++) {
+            LogSearchParams params = randomParams(random);
+            RoaringBitmap selection = index.select(0L, entries.size(), params.getConnector(), params.getType(),
+                    params.getStatus(), params.getSuccess(), params.getTimeout(), params.getClientIp());
+
+            RoaringBitmap expected = new RoaringBitmap();
+            long successes = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                if (logService.matches(entries.get(i), params)) {
+                    expected.add(i);
+                    if (Boolean.TRUE.equals(entries.get(i).getSuccess())) successes++;
+                }
+            }
+            assertThat(selection).as(params.toString()).isEqualTo(expected);
+            assertThat(index.countSuccess(selection, true)).isEqualTo(successes);
+        }
+    }
+
+    @Test
+    void evictedOrdinalsAreNotSelected() {
+        List<LogEntry> entries = entries(3_000);
+        LogBitmapIndex index = new LogBitmapIndex();
+        for (int i = 0; i < entries.size(); i++) {
+            index.add(i, entries.get(i));
+        }
+
+        index.removeBefore(2_000L);
+
+        RoaringBitmap selection = index.select(0L, entries.size(), "bank-api", null, "5xx", null, null, null);
+        assertThat(selection.isEmpty() || selection.first() >= 2_000).isTrue();
+        assertThat(index.select(0L, 2_000L, null, null, null, true, null, null).isEmpty()).isTrue();
+    }
+
+    private static LogSearchParams randomParams(Random random) {
+        String status = switch (random.nextInt(5)) {
+            case 0 -> "2xx";
+            case 1 -> "5xx";
+            case 2 -> "404";
+            default -> null;
+        };
+        return LogSearchParams.builder()
+                .connector(random.nextInt(3) == 0 ? "all" : pick(random, CONNECTORS))
+                .type(random.nextBoolean() ? null : pick(random, TYPES))
+                .status(status)
+                .success(pick(random, FLAGS))
+                .timeout(random.nextInt(3) == 0 ? pick(random, FLAGS) : null)
+                .clientIp(random.nextInt(4) == 0 ? "10.0.0.1" : null)
+                .build();
+    }
+
+    private static List<LogEntry> entries(int count) {
+        Random random = new Random(3);
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(LogEntry.builder()
+                    .connector(pick(random, CONNECTORS))
+                    .type(pick(random, TYPES))
+                    .statusCode(pick(random, STATUSES))
+                    .success(pick(random, FLAGS))
+                    .timeout(pick(random, FLAGS))
+                    .clientIp(pick(random, IPS))
+                    .build());
+        }
+        return entries;
+    }
+
+    private static <T> T pick(Random random, T[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
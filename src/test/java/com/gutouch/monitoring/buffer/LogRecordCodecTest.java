@@ -0,0 +1,78 @@
+package com.gutouch.monitoring.buffer;
+
+import com.gutouch.monitoring.dto.LogEntry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogRecordCodecTest {
+
+    private static final long TIMESTAMP = 1_700_000_000_123L;
+
+    @Test
+    void roundTripsAllFields() {
+        LogEntry entry = LogEntry.builder()
+                .id(String.format("%013d#response#pi-gateway#abc-123", TIMESTAMP))
+                .timestamp(Instant.ofEpochMilli(TIMESTAMP))
+                .type("response")
+                .connector("pi-gateway")
+                .method("POST")
+                .path("/api/transfer")
+                .statusCode(502)
+                .responseTimeMs(123.5)
+                .success(false)
+                .timeout(true)
+                .clientIp("10.0.0.1")
+                .serviceStatus("DOWN")
+                .error("Bad gateway")
+                .messageId("MSG-1")
+                .endToEndId("E2E-1")
+                .service("transfer")
+                .message("Réponse invalide")
+                .build();
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+        int length = LogRecordCodec.encode(entry, buffer);
+
+        assertThat(LogRecordCodec.length(buffer, 0)).isEqualTo(length);
+        assertThat(LogRecordCodec.timestamp(buffer, 0)).isEqualTo(TIMESTAMP);
+        assertThat(LogRecordCodec.latency(buffer, 0)).isEqualTo(123.5);
+        assertThat(LogRecordCodec.decode(buffer, 0)).isEqualTo(entry);
+    }
+
+    @Test
+    void roundTripsAbsentFieldsAndForeignId() {
+        LogEntry entry = LogEntry.builder()
+                .id("legacy-id")
+                .timestamp(Instant.ofEpochMilli(TIMESTAMP))
+                .build();
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+        LogRecordCodec.encode(entry, buffer);
+
+        assertThat(LogRecordCodec.latency(buffer, 0)).isNull();
+        assertThat(LogRecordCodec.decode(buffer, 0)).isEqualTo(entry);
+    }
+
+    @Test
+    void truncatesOversizedStringOnCharacterBoundary() {
+        // 'é' sur deux octets : la borne de 65534 octets tombe au milieu d'un caractère
+        String message = "a" + "é".repeat(40_000);
+        LogEntry entry = LogEntry.builder()
+                .timestamp(Instant.ofEpochMilli(TIMESTAMP))
+                .message(message)
+                .build();
+        ByteBuffer buffer = ByteBuffer.allocate(128 * 1024);
+
+        LogRecordCodec.encode(entry, buffer);
+        String decoded = LogRecordCodec.decode(buffer, 0).getMessage();
+
+        assertThat(decoded).doesNotContain("�");
+        assertThat(decoded.getBytes(StandardCharsets.UTF_8).length).isEqualTo(65_533);
+        assertThat(message).startsWith(decoded);
+    }
+}
@@ -0,0 +1,103 @@
+package com.gutouch.monitoring.buffer;
+
+import com.gutouch.monitoring.dto.LogEntry;
+import com.gutouch.monitoring.dto.LogSearchParams;
+import com.gutouch.monitoring.service.LogService;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogTrigramIndexTest {
+
+    private static final int STEP = 37;
+    private static final String[] QUERIES = {"api", "/API/V1", "transfer", "10.0.0.1", "msg-00", "MSG-12",
+            "timeout", "réponse", "RÉPONSE", "zzz", "ab", "e2e"};
+
+    private final LogService logService = new LogService(null, null, null);
+
+    @Test
+    void candidatesCoverEveryMatchingLog() {
+        List<LogEntry> entries = entries(6_000);
+        LogTrigramIndex index = new LogTrigramIndex();
+        for (int i = 0; i < entries.size(); i++) {
+            index.add((long) i * STEP, entries.get(i));
+        }
+
+        for (String query : QUERIES) {
+            RoaringBitmap candidates = index.candidates(query);
+            RoaringBitmap matching = matching(entries, query, 0);
+            if (query.length() < 3) {
+                assertThat(candidates).isNull();
+                continue;
+            }
+            assertThat(RoaringBitmap.andNot(matching, candidates).isEmpty()).as(query).isTrue();
+        }
+        assertThat(index.candidates("zzz").isEmpty()).isTrue();
+    }
+
+    @Test
+    void evictionKeepsCandidatesOfRemainingLogs() {
+        List<LogEntry> entries = entries(6_000);
+        LogTrigramIndex index = new LogTrigramIndex();
+        for (int i = 0; i < entries.size(); i++) {
+            index.add((long) i * STEP, entries.get(i));
+        }
+        int before = index.trigramCount();
+
+        int firstKept = 3_000;
+        index.removeBefore((long) firstKept * STEP);
+
+        assertThat(index.trigramCount()).isLessThan(before);
+        for (String query : QUERIES) {
+            if (query.length() < 3) continue;
+            RoaringBitmap candidates = index.candidates(query);
+            RoaringBitmap matching = matching(entries, query, firstKept);
+            assertThat(RoaringBitmap.andNot(matching, candidates).isEmpty()).as(query).isTrue();
+        }
+    }
+
+    @Test
+    void longFieldsStayCandidates() {
+        LogTrigramIndex index = new LogTrigramIndex();
+        index.add(0L, LogEntry.builder().path("/short").build());
+        index.add(1L, LogEntry.builder().message("x".repeat(300) + "needle").build());
+
+        RoaringBitmap candidates = index.candidates("needle");
+
+        assertThat(candidates.contains(1)).isTrue();
+        assertThat(candidates.contains(0)).isFalse();
+    }
+
+    private RoaringBitmap matching(List<LogEntry> entries, String query, int from) {
+        LogSearchParams params = LogSearchParams.builder().query(query).build();
+        RoaringBitmap matching = new RoaringBitmap();
+        for (int i = from; i < entries.size(); i++) {
+            if (logService.matches(entries.get(i), params)) {
+                matching.add(i * STEP);
+            }
+        }
+        return matching;
+    }
+
+    private static List<LogEntry> entries(int count) {
+        Random random = new Random(11);
+        String[] paths = {"/api/v1/transfer", "/API/V1/Status", "/health", "/api/v2/Réponse"};
+        String[] errors = {null, "Timeout from bank", "Réponse invalide", "connection reset"};
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(LogEntry.builder()
+                    .path(paths[random.nextInt(paths.length)])
+                    .clientIp("10.0.0." + random.nextInt(20))
+                    .messageId(random.nextBoolean() ? "MSG-" + random.nextInt(200) : "msg-" + random.nextInt(200))
+                    .error(errors[random.nextInt(errors.length)])
+                    .message(random.nextInt(3) == 0 ? "E2E transfer " + i : null)
+                    .build());
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,115 @@
+package com.gutouch.monitoring.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StaleServingCaffeineCacheTest {
+
+    private final AtomicLong ticker = new AtomicLong();
+
+    @AfterEach
+    void resetFreshness() {
+        CacheFreshness.reset();
+    }
+
+    @Test
+    void degradedLoadIsReturnedButNotStored() {
+        StaleServingCaffeineCache cache = build("maximumSize=100,expireAfterWrite=5m");
+
+        String value = cache.get("key", () -> {
+            CacheFreshness.markDegraded();
+            return "partial";
+        });
+
+        assertThat(value).isEqualTo("partial");
+        assertThat(cache.get("key")).isNull();
+    }
+
+    @Test
+    void degradedRefreshKeepsLastGoodValueQuietlyAndBacksOff() {
+        StaleServingCaffeineCache cache = build("maximumSize=100,refreshAfterWrite=1m,expireAfterWrite=10m");
+        List<LogRecord> warnings = captureCaffeineWarnings();
+        AtomicInteger refreshes = new AtomicInteger();
+
+        assertThat(cache.get("key", () -> "good")).isEqualTo("good");
+
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        for (int i = 0; i < 5; i++) {
+            String value = cache.get("key", () -> {
+                refreshes.incrementAndGet();
+                CacheFreshness.markDegraded();
+                return "partial";
+            });
+            assertThat(value).isEqualTo("good");
+            ticker.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        }
+
+        // Un seul recalcul pendant l'intervalle de refresh, sans avertissement de Caffeine
+        assertThat(refreshes).hasValue(1);
+        assertThat(warnings).isEmpty();
+    }
+
+    @Test
+    void restoredEntryKeepsItsAgeForRefreshAndExpiry() {
+        StaleServingCaffeineCache cache = build("maximumSize=100,refreshAfterWrite=1m,expireAfterWrite=10m");
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.restore("expired", "old", TimeUnit.MINUTES.toMillis(11));
+        assertThat(cache.get("expired")).isNull();
+
+        // Restaurée à 5 min : déjà à rafraîchir, servie puis recalculée
+        cache.restore("stale", "restored", TimeUnit.MINUTES.toMillis(5));
+        assertThat(cache.get("stale", () -> {
+            loads.incrementAndGet();
+            return "fresh";
+        })).isEqualTo("restored");
+        assertThat(loads).hasValue(1);
+        assertThat(cache.get("stale", () -> "unused")).isEqualTo("fresh");
+
+        // Restaurée à 9 min : expire 1 min plus tard, pas 10
+        cache.restore("aging", "restored", TimeUnit.MINUTES.toMillis(9));
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        assertThat(cache.get("aging")).isNull();
+    }
+
+    private StaleServingCaffeineCache build(String spec) {
+        Caffeine<Object, Object> builder = Caffeine.from(spec)
+                .ticker(ticker::get)
+                .executor(Runnable::run);
+        return StaleServingCaffeineCache.build("test", builder, spec.contains("refreshAfterWrite"));
+    }
+
+    private static List<LogRecord> captureCaffeineWarnings() {
+        List<LogRecord> records = new ArrayList<>();
+        Logger.getLogger("com.github.benmanes.caffeine.cache.BoundedLocalCache").addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getLevel().intValue() >= Level.WARNING.intValue()) {
+                    records.add(record);
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        return records;
+    }
+}
@@ -0,0 +1,44 @@
+package com.gutouch.monitoring.config;
+
+import com.gutouch.monitoring.service.WarmUpService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class WarmUpRecordingFilterTest {
+
+    private final WarmUpService warmUpService = mock(WarmUpService.class);
+    private final WarmUpRecordingFilter filter = new WarmUpRecordingFilter(warmUpService);
+
+    @Test
+    void recordsCachedResponsesWithoutContextPath() throws Exception {
+        MockHttpServletRequest request = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setHeader(HttpHeaders.AGE, "12");
+
+        filter.doFilter(request, response, new MockFilterChain());
+
+        verify(warmUpService).record("/api/metrics/summary?timeRange=24h");
+    }
+
+    @Test
+    void ignoresResponsesNotServedFromCache() throws Exception {
+        filter.doFilter(request(), new MockHttpServletResponse(), new MockFilterChain());
+
+        verifyNoInteractions(warmUpService);
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/monitoring/api/metrics/summary");
+        request.setContextPath("/monitoring");
+        request.setServletPath("/api/metrics/summary");
+        request.setQueryString("timeRange=24h");
+        return request;
+    }
+}
@@ -0,0 +1,145 @@
+package com.gutouch.monitoring.segment;
+
+import com.gutouch.monitoring.dto.LogEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogSegmentTest {
+
+    private static final long HOUR = 1_699_999_200_000L;
+    private static final String[] CONNECTORS = {"pi-gateway", "pi-connector", "bank-api"};
+    private static final String[] TYPES = {"request", "response"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsRowsInKeyOrder() throws IOException {
+        List<LogEntry> entries = entries(2_000);
+        LogSegment segment = write(entries);
+
+        List<LogEntry> read = new ArrayList<>();
+        segment.forEach(Long.MIN_VALUE, Long.MAX_VALUE, null, read::add);
+
+        assertThat(segment.size()).isEqualTo(entries.size());
+        assertThat(read).containsExactlyElementsOf(entries);
+    }
+
+    @Test
+    void filtersByRangeAndConnector() throws IOException {
+        List<LogEntry> entries = entries(2_000);
+        LogSegment segment = write(entries);
+        long start = HOUR + 600_000L;
+        long end = HOUR + 1_800_000L;
+
+        List<LogEntry> read = new ArrayList<>();
+        segment.forEach(start, end, "bank-api", read::add);
+        List<LogEntry> projected = new ArrayList<>();
+        segment.forEachProjected(start, end, "bank-api", projected::add);
+
+        List<LogEntry> expected = entries.stream()
+                .filter(l -> inRange(l, start, end) && l.getConnector().equals("bank-api"))
+                .collect(Collectors.toList());
+        assertThat(read).containsExactlyElementsOf(expected);
+        assertThat(projected).hasSameSizeAs(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            LogEntry e = expected.get(i);
+            LogEntry p = projected.get(i);
+            assertThat(p.getId()).isNull();
+            assertThat(p.getMessage()).isNull();
+            assertThat(p.getPath()).isEqualTo(e.getPath());
+            assertThat(p.getStatusCode()).isEqualTo(e.getStatusCode());
+            assertThat(p.getResponseTimeMs()).isEqualTo(e.getResponseTimeMs());
+            assertThat(p.getSuccess()).isEqualTo(e.getSuccess());
+        }
+        assertThat(segment.forEach(start, end, "unknown", l -> true)).isTrue();
+    }
+
+    @Test
+    void columnReadsMatchRowReads() throws IOException {
+        List<LogEntry> entries = entries(2_000);
+        LogSegment segment = write(entries);
+        long start = HOUR + 300_000L;
+        long end = HOUR + 3_000_000L;
+
+        assertThat(segment.connectors()).containsExactlyInAnyOrder(CONNECTORS);
+        assertThat(segment.types()).containsExactlyInAnyOrder(TYPES);
+        for (String connector : new String[]{null, "pi-gateway"}) {
+            for (String type : new String[]{null, "response"}) {
+                List<LogEntry> expected = entries.stream()
+                        .filter(l -> inRange(l, start, end))
+                        .filter(l -> connector == null || connector.equals(l.getConnector()))
+                        .filter(l -> type == null || type.equals(l.getType()))
+                        .collect(Collectors.toList());
+
+                LogSegment.Counts counts = segment.count(start, end, connector, type);
+                assertThat(counts.rows()).isEqualTo(expected.size());
+                assertThat(counts.successes()).isEqualTo(expected.stream().filter(l -> Boolean.TRUE.equals(l.getSuccess())).count());
+                assertThat(counts.timeouts()).isEqualTo(expected.stream().filter(l -> Boolean.TRUE.equals(l.getTimeout())).count());
+
+                List<Double> latencies = new ArrayList<>();
+                segment.forEachLatency(start, end, connector, type, latencies::add);
+                assertThat(latencies).containsExactlyElementsOf(expected.stream()
+                        .filter(l -> l.getResponseTimeMs() != null)
+                        .map(LogEntry::getResponseTimeMs)
+                        .collect(Collectors.toList()));
+
+                List<Integer> statuses = new ArrayList<>();
+                segment.forEachStatus(start, end, connector, type, statuses::add);
+                assertThat(statuses).containsExactlyElementsOf(expected.stream()
+                        .map(l -> l.getStatusCode() != null ? l.getStatusCode() : 0)
+                        .collect(Collectors.toList()));
+            }
+        }
+    }
+
+    private LogSegment write(List<LogEntry> entries) throws IOException {
+        LogSegmentWriter writer = new LogSegmentWriter(HOUR);
+        entries.forEach(writer::add);
+        Path file = directory.resolve(HOUR + ".seg");
+        writer.writeTo(file);
+        return LogSegment.open(file);
+    }
+
+    private static boolean inRange(LogEntry l, long start, long end) {
+        long timestamp = l.getTimestamp().toEpochMilli();
+        return timestamp >= start && timestamp < end;
+    }
+
+    private static List<LogEntry> entries(int count) {
+        Random random = new Random(7);
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long timestamp = HOUR + (long) i * (LogSegment.HOUR_MS / count);
+            String type = TYPES[random.nextInt(TYPES.length)];
+            String connector = CONNECTORS[random.nextInt(CONNECTORS.length)];
+            boolean withStatus = random.nextInt(10) > 0;
+            entries.add(LogEntry.builder()
+                    .id(LogSegment.keyPrefix(timestamp, type, connector) + "uuid-" + i)
+                    .timestamp(Instant.ofEpochMilli(timestamp))
+                    .type(type)
+                    .connector(connector)
+                    .method(random.nextBoolean() ? "GET" : "POST")
+                    .path("/api/v1/resource/" + random.nextInt(20))
+                    .clientIp("10.0.0." + random.nextInt(50))
+                    .statusCode(withStatus ? (random.nextInt(5) == 0 ? 500 : 200) : null)
+                    .responseTimeMs(random.nextInt(8) > 0 ? random.nextDouble() * 1_000 : null)
+                    .success(withStatus ? random.nextInt(5) > 0 : null)
+                    .timeout(random.nextInt(20) == 0)
+                    .messageId(random.nextBoolean() ? "MSG-" + i : null)
+                    .message(random.nextInt(4) == 0 ? "Message é " + i : null)
+                    .build());
+        }
+        return entries;
+    }
+}
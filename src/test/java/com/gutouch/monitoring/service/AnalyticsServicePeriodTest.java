@@ -0,0 +1,40 @@
+package com.gutouch.monitoring.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AnalyticsServicePeriodTest {
+
+    private final AnalyticsService service = service();
+
+    @Test
+    void acceptsNamedAndCustomPeriods() {
+        assertThatCode(() -> service.validatePeriod("lastWeek")).doesNotThrowAnyException();
+        assertThatCode(() -> service.validatePeriod("2025-10-01/2025-10-15")).doesNotThrowAnyException();
+        assertThatCode(() -> service.validatePeriod("2025-10-01T00:00:00Z/2025-10-01T12:00:00Z"))
+                .doesNotThrowAnyException();
+        // Un seul jour : fin incluse
+        assertThatCode(() -> service.validatePeriod("2025-10-01/2025-10-01")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void rejectsMalformedReversedAndOversizedPeriods() {
+        assertThatThrownBy(() -> service.validatePeriod("2025-13-01/2025-10-15"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.validatePeriod("yesterday/today"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.validatePeriod("2025-10-15/2025-10-01"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.validatePeriod("2015-01-01/2025-12-31"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static AnalyticsService service() {
+        AnalyticsService service = new AnalyticsService(null, null, null, null, null, null);
+        ReflectionTestUtils.setField(service, "maxPeriodDays", 400);
+        return service;
+    }
+}
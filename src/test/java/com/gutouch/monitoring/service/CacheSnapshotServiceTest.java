@@ -0,0 +1,75 @@
+package com.gutouch.monitoring.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gutouch.monitoring.config.StaleServingCaffeineCache;
+import com.gutouch.monitoring.dto.DistinctCountsDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheSnapshotServiceTest {
+
+    @Test
+    void snapshotRoundTripsEntries(@TempDir Path directory) throws Exception {
+        Path snapshot = directory.resolve("cache.bin");
+        DistinctCountsDTO value = DistinctCountsDTO.builder()
+                .connector("pi-gateway")
+                .startTime(Instant.parse("2024-05-01T00:00:00Z"))
+                .endTime(Instant.parse("2024-05-02T00:00:00Z"))
+                .uniqueClients(42L)
+                .uniqueEndpoints(7L)
+                .relativeError(0.016)
+                .partial(false)
+                .build();
+
+        SimpleCacheManager source = cacheManager();
+        source.getCache("overview").put("24h_0", value);
+        snapshotService(source, snapshot).saveSnapshot();
+        assertThat(Files.size(snapshot)).isPositive();
+
+        SimpleCacheManager target = cacheManager();
+        snapshotService(target, snapshot).loadSnapshot();
+
+        assertThat(target.getCache("overview").get("24h_0", DistinctCountsDTO.class)).isEqualTo(value);
+    }
+
+    @Test
+    void corruptedSnapshotIsIgnored(@TempDir Path directory) throws Exception {
+        Path snapshot = directory.resolve("cache.bin");
+        SimpleCacheManager source = cacheManager();
+        source.getCache("overview").put("24h_0", "value");
+        snapshotService(source, snapshot).saveSnapshot();
+
+        byte[] bytes = Files.readAllBytes(snapshot);
+        Files.write(snapshot, java.util.Arrays.copyOf(bytes, bytes.length - 3));
+
+        SimpleCacheManager target = cacheManager();
+        snapshotService(target, snapshot).loadSnapshot();
+        assertThat(target.getCache("overview").get("24h_0")).isNull();
+    }
+
+    private static SimpleCacheManager cacheManager() {
+        SimpleCacheManager manager = new SimpleCacheManager();
+        manager.setCaches(List.of(StaleServingCaffeineCache.build("overview",
+                Caffeine.from("maximumSize=100,expireAfterWrite=1h"), false)));
+        manager.afterPropertiesSet();
+        return manager;
+    }
+
+    private static CacheSnapshotService snapshotService(SimpleCacheManager manager, Path snapshot) {
+        CacheSnapshotService service = new CacheSnapshotService(manager, new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(service, "snapshotPath", snapshot.toString());
+        ReflectionTestUtils.setField(service, "regions", new String[]{"overview"});
+        ReflectionTestUtils.setField(service, "maxAgeMs", 3_600_000L);
+        return service;
+    }
+}
@@ -0,0 +1,75 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.aggregate.LogAggregate;
+import com.gutouch.monitoring.aggregate.MetricSource;
+import com.gutouch.monitoring.aggregate.SourcedAggregates;
+import com.gutouch.monitoring.service.MetricSourceRouter.Requirement;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DailyAggregateStoreTest {
+
+    private static final ZoneId PARIS_ZONE = ZoneId.of("Europe/Paris");
+
+    private final MetricSourceRouter router = mock(MetricSourceRouter.class);
+    private final HourlyRollupService rollups = mock(HourlyRollupService.class);
+    private final DailyAggregateStore store = new DailyAggregateStore(router, rollups);
+    private final LocalDate day = LocalDate.now(PARIS_ZONE).minusDays(60);
+
+    @Test
+    void approximateDayServesCountsUntilRollupsCoverIt() {
+        when(router.aggregateByConnector(any(Instant.class), any(Instant.class), eq(Requirement.COUNTS)))
+                .thenReturn(aggregates(100L, MetricSource.METRICS_LOG))
+                .thenReturn(aggregates(120L, MetricSource.ROLLUP));
+
+        assertThat(store.getDay(day, Requirement.COUNTS).get("all").getRequests()).isEqualTo(100L);
+        assertThat(store.getDay(day, Requirement.COUNTS).get("all").getRequests()).isEqualTo(100L);
+        verify(router, times(1)).aggregateByConnector(any(Instant.class), any(Instant.class), eq(Requirement.COUNTS));
+
+        long start = day.atStartOfDay(PARIS_ZONE).toInstant().toEpochMilli();
+        long end = day.plusDays(1).atStartOfDay(PARIS_ZONE).toInstant().toEpochMilli();
+        when(rollups.coveredSpan(anyLong(), anyLong())).thenReturn(new long[]{start, end});
+
+        assertThat(store.getDay(day, Requirement.COUNTS).get("all").getRequests()).isEqualTo(120L);
+        assertThat(store.getDay(day, Requirement.COUNTS).isExact()).isTrue();
+        verify(router, times(2)).aggregateByConnector(any(Instant.class), any(Instant.class), eq(Requirement.COUNTS));
+    }
+
+    @Test
+    void approximateDayIsNotUsedForDistributions() {
+        when(router.aggregateByConnector(any(Instant.class), any(Instant.class), eq(Requirement.COUNTS)))
+                .thenReturn(aggregates(100L, MetricSource.METRICS_LOG));
+        when(router.aggregateByConnector(any(Instant.class), any(Instant.class), eq(Requirement.DISTRIBUTION)))
+                .thenReturn(aggregates(110L, MetricSource.RAW_LOG));
+
+        store.getDay(day, Requirement.COUNTS);
+        SourcedAggregates distribution = store.getDay(day, Requirement.DISTRIBUTION);
+
+        assertThat(distribution.get("all").getRequests()).isEqualTo(110L);
+        // La valeur exacte remplace l'approximative pour les compteurs aussi
+        assertThat(store.getDay(day, Requirement.COUNTS).get("all").getRequests()).isEqualTo(110L);
+    }
+
+    private static SourcedAggregates aggregates(long requests, MetricSource source) {
+        LogAggregate aggregate = new LogAggregate();
+        aggregate.addCounts(requests, requests, 0L, requests * 10.0);
+        Map<String, LogAggregate> byConnector = new HashMap<>();
+        byConnector.put("all", aggregate);
+        return new SourcedAggregates(byConnector, EnumSet.of(source));
+    }
+}
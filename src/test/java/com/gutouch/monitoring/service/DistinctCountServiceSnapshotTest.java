@@ -0,0 +1,95 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.dto.DistinctCountsDTO;
+import com.gutouch.monitoring.dto.LogEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class DistinctCountServiceSnapshotTest {
+
+    private static final long HOUR_MS = 3_600_000L;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void closedHoursSurviveRestart(@TempDir Path directory) {
+        Path snapshot = directory.resolve("distinct.bin");
+        long hour = System.currentTimeMillis() / HOUR_MS * HOUR_MS - 3 * HOUR_MS;
+        Instant start = Instant.ofEpochMilli(hour);
+        Instant end = Instant.ofEpochMilli(hour + HOUR_MS);
+
+        SegmentStore segmentStore = mock(SegmentStore.class);
+        doAnswer(invocation -> {
+            Consumer<LogEntry> consumer = invocation.getArgument(2);
+            for (int i = 0; i < 1_000; i++) {
+                consumer.accept(LogEntry.builder()
+                        .connector("pi-gateway")
+                        .clientIp("10.0.0." + (i % 100))
+                        .method("GET")
+                        .path("/api/" + (i % 10))
+                        .build());
+            }
+            return null;
+        }).when(segmentStore).forEachLog(any(Instant.class), any(Instant.class), any(Consumer.class));
+        DistinctCountService first = service(segmentStore, snapshot);
+        ReflectionTestUtils.setField(first, "warmedUp", true);
+        first.countDistinct("pi-gateway", start, end);
+        first.saveSnapshot();
+
+        // Sans lecture de logs : les sketches viennent du snapshot
+        SegmentStore empty = mock(SegmentStore.class);
+        DistinctCountService second = service(empty, snapshot);
+        second.loadSnapshot();
+        DistinctCountsDTO counts = second.countDistinct("pi-gateway", start, end);
+
+        assertThat(counts.getUniqueClients()).isBetween(95L, 105L);
+        assertThat(counts.getUniqueEndpoints()).isEqualTo(10L);
+        assertThat(counts.getPartial()).isFalse();
+        verifyNoInteractions(empty);
+    }
+
+    @Test
+    void snapshotWithOtherPrecisionIsIgnored(@TempDir Path directory) throws IOException {
+        Path snapshot = directory.resolve("distinct.bin");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(snapshot))) {
+            out.writeInt(0x44484c31);
+            out.writeInt(1);
+            out.writeInt(14);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+
+        DistinctCountService service = service(mock(SegmentStore.class), snapshot);
+        service.loadSnapshot();
+
+        assertThat(closedHours(service)).isEmpty();
+    }
+
+    private static DistinctCountService service(SegmentStore segmentStore, Path snapshot) {
+        DistinctCountService service = new DistinctCountService(segmentStore);
+        ReflectionTestUtils.setField(service, "snapshotPath", snapshot.toString());
+        ReflectionTestUtils.setField(service, "precision", 12);
+        ReflectionTestUtils.setField(service, "retentionDays", 30);
+        ReflectionTestUtils.setField(service, "latenessMs", 300_000L);
+        return service;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Long, Object> closedHours(DistinctCountService service) {
+        return (ConcurrentSkipListMap<Long, Object>) ReflectionTestUtils.getField(service, "closedHours");
+    }
+}
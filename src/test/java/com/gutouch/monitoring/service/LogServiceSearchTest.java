@@ -0,0 +1,53 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.dto.LogEntry;
+import com.gutouch.monitoring.dto.LogSearchParams;
+import com.gutouch.monitoring.dto.LogSearchResponseDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LogServiceSearchTest {
+
+    private static final Instant END = Instant.parse("2026-01-01T12:00:00Z");
+    private static final Instant START = END.minusSeconds(24 * 3600);
+    private static final Instant BUFFERED_FROM = END.minusSeconds(900);
+
+    private final BigtableService bigtableService = mock(BigtableService.class);
+    private final RecentLogBuffer recentLogBuffer = mock(RecentLogBuffer.class);
+    private final LogService service = new LogService(bigtableService, recentLogBuffer, mock(LogStatisticsCatalog.class));
+
+    @Test
+    void answersCoveredSuffixFromTheBufferAndOlderLogsFromBigtable() {
+        when(recentLogBuffer.covers(START)).thenReturn(false);
+        when(recentLogBuffer.getCoveredFrom()).thenReturn(BUFFERED_FROM.toEpochMilli());
+        when(bigtableService.searchLogs(any(), any(), eq(START), eq(BUFFERED_FROM), anyInt()))
+                .thenReturn(List.of(log("a", START.plusSeconds(10), false), log("b", START.plusSeconds(20), true)));
+        when(recentLogBuffer.search(any(), eq(BUFFERED_FROM), eq(END), any(), eq(0), eq(3)))
+                .thenReturn(new RecentLogBuffer.SearchResult(2, 2, 0, 20.0, 2,
+                        List.of(log("d", END.minusSeconds(10), true), log("c", END.minusSeconds(20), true))));
+
+        LogSearchParams params = new LogSearchParams();
+        params.setStartTime(START);
+        params.setEndTime(END);
+        params.setLimit(3);
+        LogSearchResponseDTO response = service.searchLogs(params);
+
+        assertThat(response.getLogs()).extracting(LogEntry::getId).containsExactly("d", "c", "b");
+        assertThat(response.getTotal()).isEqualTo(4L);
+        assertThat(response.getSummary().getErrorCount()).isEqualTo(1L);
+        assertThat(response.getEstimated()).isFalse();
+    }
+
+    private static LogEntry log(String id, Instant timestamp, boolean success) {
+        return LogEntry.builder().id(id).timestamp(timestamp).success(success).responseTimeMs(10.0).build();
+    }
+}
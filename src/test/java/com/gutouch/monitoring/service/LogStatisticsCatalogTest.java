@@ -0,0 +1,70 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.dto.LogEntry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogStatisticsCatalogTest {
+
+    private static final long START = 1_700_000_040_000L; // début de minute
+    private static final long MINUTE = 60_000L;
+
+    @Test
+    void countsCoveredMinutesExactlyAndExtrapolatesTheTail() {
+        LogStatisticsCatalog catalog = new LogStatisticsCatalog(null, null);
+        ReflectionTestUtils.setField(catalog, "retentionHours", 25);
+        catalog.onStart(START);
+
+        // 10 minutes suivies, 6 logs par minute dont 2 en erreur
+        List<LogEntry> logs = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            logs.add(LogEntry.builder()
+                    .timestamp(Instant.ofEpochMilli(START + i * 10_000L))
+                    .connector("pi-gateway")
+                    .type("response")
+                    .statusCode(i % 3 == 0 ? 500 : 200)
+                    .success(i % 3 != 0)
+                    .build());
+        }
+        catalog.onLogs(logs);
+        long until = START + 10 * MINUTE;
+        catalog.onCaughtUp(until);
+
+        assertThat(catalog.count("all", "all", null, null, START, until))
+                .isEqualTo(new LogStatisticsCatalog.Count(60L, true));
+        assertThat(catalog.count("pi-gateway", "response", "5", false, START, until))
+                .isEqualTo(new LogStatisticsCatalog.Count(20L, true));
+        assertThat(catalog.count("bank-api", null, null, null, START, until))
+                .isEqualTo(new LogStatisticsCatalog.Count(0L, true));
+
+        // Deux minutes pas encore suivies : au débit des deux précédentes
+        assertThat(catalog.count(null, null, null, null, START, until + 2 * MINUTE))
+                .isEqualTo(new LogStatisticsCatalog.Count(72L, false));
+        // Minute de bord proratisée
+        assertThat(catalog.count(null, null, null, null, START + MINUTE / 2, until))
+                .isEqualTo(new LogStatisticsCatalog.Count(57L, false));
+        assertThat(catalog.count(null, null, null, null, START - MINUTE, until)).isNull();
+    }
+
+    @Test
+    void restartDropsCounts() {
+        LogStatisticsCatalog catalog = new LogStatisticsCatalog(null, null);
+        ReflectionTestUtils.setField(catalog, "retentionHours", 25);
+        catalog.onStart(START);
+        catalog.onLogs(List.of(LogEntry.builder().timestamp(Instant.ofEpochMilli(START)).build()));
+        catalog.onCaughtUp(START + MINUTE);
+
+        catalog.onStart(START + MINUTE);
+
+        assertThat(catalog.count(null, null, null, null, START + MINUTE, START + 2 * MINUTE)).isNull();
+        catalog.onCaughtUp(START + 2 * MINUTE);
+        assertThat(catalog.count(null, null, null, null, START + MINUTE, START + 2 * MINUTE))
+                .isEqualTo(new LogStatisticsCatalog.Count(0L, true));
+    }
+}
@@ -0,0 +1,49 @@
+package com.gutouch.monitoring.service;
+
+import com.gutouch.monitoring.dto.LogEntry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class LogTailFollowerTest {
+
+    @Test
+    void settledListenersFollowTheirOwnLateness() {
+        LogTailFollower follower = new LogTailFollower(mock(BigtableService.class));
+        ReflectionTestUtils.setField(follower, "readLagMs", 5_000L);
+        ReflectionTestUtils.setField(follower, "latenessMs", 300_000L);
+
+        List<Long> catalogStart = new ArrayList<>();
+        List<Long> bufferStart = new ArrayList<>();
+        LogTailFollower.Listener catalog = new StartRecorder(catalogStart);
+        LogTailFollower.Listener buffer = new StartRecorder(bufferStart);
+        follower.addSettledListener(catalog);
+        follower.addSettledListener(buffer, 30_000L);
+
+        long before = System.currentTimeMillis();
+        ReflectionTestUtils.invokeMethod(follower, "poll");
+        long after = System.currentTimeMillis();
+
+        assertThat(catalogStart).singleElement().satisfies(from ->
+                assertThat(from).isBetween(before - 300_000L, after - 300_000L));
+        assertThat(bufferStart).singleElement().satisfies(from ->
+                assertThat(from).isBetween(before - 30_000L, after - 30_000L));
+    }
+
+    private record StartRecorder(List<Long> starts) implements LogTailFollower.Listener {
+
+        @Override
+        public void onLogs(List<LogEntry> logs) {
+        }
+
+        @Override
+        public void onStart(long fromMillis) {
+            starts.add(fromMillis);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.gutouch.monitoring.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeSeriesStoreSnapshotTest {
+
+    @Test
+    void corruptedSnapshotIsIgnored(@TempDir Path directory) throws IOException {
+        Path snapshot = directory.resolve("series.bin");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(snapshot))) {
+            out.writeInt(0x54535331);
+            out.writeInt(1);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(1);
+            out.writeUTF("pi-gateway");
+            out.writeLong(0L);
+            out.writeLong(0L);
+            out.writeInt(Integer.MAX_VALUE); // taille de jauges aberrante
+        }
+
+        TimeSeriesStore store = new TimeSeriesStore(null, null, null);
+        ReflectionTestUtils.setField(store, "snapshotPath", snapshot.toString());
+        ReflectionTestUtils.setField(store, "snapshotMaxAgeMs", 86_400_000L);
+        ReflectionTestUtils.setField(store, "retentionDays", new int[]{30, 35, 90, 400});
+
+        store.loadSnapshot();
+
+        assertThat(store.covers("pi-gateway", Long.MAX_VALUE)).isFalse();
+        assertThat(store.latest("pi-gateway")).isNull();
+    }
+}
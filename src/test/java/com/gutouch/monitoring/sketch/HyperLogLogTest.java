@@ -0,0 +1,49 @@
+package com.gutouch.monitoring.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimateStaysWithinStandardError() {
+        HyperLogLog hll = new HyperLogLog(12);
+        for (int i = 0; i < 100_000; i++) {
+            hll.offer("client-" + i);
+        }
+
+        double error = Math.abs(hll.cardinality() - 100_000) / 100_000.0;
+        assertThat(error).isLessThan(4 * hll.relativeError());
+    }
+
+    @Test
+    void repeatedOffersAreIgnored() {
+        HyperLogLog hll = new HyperLogLog(12);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 1_000; i++) {
+                hll.offer("client-" + i);
+            }
+        }
+
+        assertThat((double) hll.cardinality()).isCloseTo(1_000.0, within(50.0));
+    }
+
+    @Test
+    void mergeEqualsUnionAndBytesRoundTrip() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        HyperLogLog union = new HyperLogLog(12);
+        for (int i = 0; i < 20_000; i++) {
+            String value = "endpoint-" + i;
+            (i % 2 == 0 ? first : second).offer(value);
+            if (i % 3 == 0) first.offer(value);
+            union.offer(value);
+        }
+
+        first.merge(second);
+        assertThat(first.cardinality()).isEqualTo(union.cardinality());
+        assertThat(HyperLogLog.fromBytes(first.toBytes()).cardinality()).isEqualTo(first.cardinality());
+    }
+}
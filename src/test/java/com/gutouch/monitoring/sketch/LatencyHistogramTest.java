@@ -0,0 +1,64 @@
+package com.gutouch.monitoring.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+class LatencyHistogramTest {
+
+    private static final double[] BOUNDS = {10, 20, 50};
+
+    @Test
+    void bucketsByLowerInclusiveBounds() {
+        LatencyHistogram histogram = new LatencyHistogram(BOUNDS);
+
+        for (double latency : new double[]{0, 9.9, 10, 19.9, 20, 49, 50, 1_000}) {
+            histogram.record(latency);
+        }
+
+        assertThat(histogram.toLabelledMap()).containsExactly(
+                entry("0-10ms", 2L),
+                entry("10-20ms", 2L),
+                entry("20-50ms", 2L),
+                entry(">50ms", 2L));
+        assertThat(histogram.getTotal()).isEqualTo(8L);
+    }
+
+    @Test
+    void interpolatesPercentilesWithinBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram(BOUNDS);
+        histogram.addToBucket(0, 50);
+        histogram.addToBucket(1, 50);
+
+        assertThat(histogram.percentile(25)).isEqualTo(5.0);
+        assertThat(histogram.percentile(75)).isEqualTo(15.0);
+        assertThat(new LatencyHistogram(BOUNDS).percentile(99)).isZero();
+
+        histogram.addToBucket(3, 100);
+        assertThat(histogram.percentile(99)).isEqualTo(50.0);
+    }
+
+    @Test
+    void mergesSameBoundsAndRebucketsCoarserOnes() {
+        LatencyHistogram fine = new LatencyHistogram(new double[]{5, 10, 20, 50, 100});
+        for (double latency : new double[]{1, 7, 12, 30, 70, 150}) {
+            fine.record(latency);
+        }
+        LatencyHistogram coarse = new LatencyHistogram(BOUNDS);
+        coarse.mergeRebucketed(fine);
+
+        assertThat(coarse.getCount(0)).isEqualTo(2L);
+        assertThat(coarse.getCount(1)).isEqualTo(1L);
+        assertThat(coarse.getCount(2)).isEqualTo(1L);
+        assertThat(coarse.getCount(3)).isEqualTo(2L);
+
+        LatencyHistogram other = new LatencyHistogram(BOUNDS);
+        other.record(15);
+        coarse.merge(other);
+        assertThat(coarse.getCount(1)).isEqualTo(2L);
+        assertThat(coarse.getTotal()).isEqualTo(7L);
+        assertThatThrownBy(() -> coarse.merge(fine)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
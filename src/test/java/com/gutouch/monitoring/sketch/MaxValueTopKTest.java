@@ -0,0 +1,58 @@
+package com.gutouch.monitoring.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MaxValueTopKTest {
+
+    @Test
+    void keepsRareSlowKeyAmongFrequentFastOnes() {
+        MaxValueTopK<String> tracker = new MaxValueTopK<>(3);
+        for (int i = 0; i < 10_000; i++) {
+            tracker.offer("/fast-" + (i % 50), 10.0 + (i % 7));
+        }
+        tracker.offer("/rare-slow", 30_000.0);
+        for (int i = 0; i < 10_000; i++) {
+            tracker.offer("/fast-" + (i % 50), 10.0 + (i % 7));
+        }
+
+        assertThat(tracker.keys()).contains("/rare-slow").hasSize(3);
+        assertThat(tracker.max("/rare-slow")).isEqualTo(30_000.0);
+    }
+
+    @Test
+    void evictsLowestMaximum() {
+        MaxValueTopK<String> tracker = new MaxValueTopK<>(2);
+        tracker.offer("a", 1.0);
+        tracker.offer("b", 5.0);
+        tracker.offer("a", 3.0);
+        tracker.offer("c", 4.0);
+
+        assertThat(tracker.keys()).containsExactlyInAnyOrder("b", "c");
+        assertThat(tracker.max("a")).isNaN();
+
+        // Valeur trop faible : ignorée
+        tracker.offer("d", 2.0);
+        assertThat(tracker.keys()).containsExactlyInAnyOrder("b", "c");
+    }
+
+    @Test
+    void reportsEvictionsAndMissedObservations() {
+        List<String> evicted = new ArrayList<>();
+        MaxValueTopK<String> tracker = new MaxValueTopK<>(2, evicted::add);
+
+        assertThat(tracker.offer("a", 1.0)).isTrue();
+        assertThat(tracker.offer("a", 0.5)).isTrue();
+        assertThat(tracker.offer("b", 5.0)).isTrue();
+        assertThat(tracker.missed()).isZero();
+
+        assertThat(tracker.offer("c", 4.0)).isTrue();
+        assertThat(evicted).containsExactly("a");
+        assertThat(tracker.offer("d", 2.0)).isFalse();
+        assertThat(tracker.missed()).isEqualTo(3L);
+    }
+}
@@ -0,0 +1,74 @@
+package com.gutouch.monitoring.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpaceSavingTopKTest {
+
+    @Test
+    void countsAreExactBelowCapacity() {
+        SpaceSavingTopK<String, Void> tracker = new SpaceSavingTopK<>(10, () -> null, (a, b) -> { });
+        for (int i = 0; i < 5; i++) tracker.offer("a");
+        for (int i = 0; i < 3; i++) tracker.offer("b");
+        tracker.offer("c");
+
+        List<SpaceSavingTopK.Entry<String, Void>> top = tracker.top(2);
+        assertThat(top).extracting(SpaceSavingTopK.Entry::key).containsExactly("a", "b");
+        assertThat(top).extracting(SpaceSavingTopK.Entry::count).containsExactly(5L, 3L);
+        assertThat(top).extracting(SpaceSavingTopK.Entry::error).containsOnly(0L);
+        assertThat(tracker.getTotalWeight()).isEqualTo(9L);
+    }
+
+    @Test
+    void boundsContainTrueCountAndCandidatesContainTrueTopK() {
+        SpaceSavingTopK<Integer, Void> tracker = new SpaceSavingTopK<>(50, () -> null, (a, b) -> { });
+        Map<Integer, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // Distribution à longue traîne : quelques clés dominantes, beaucoup de clés rares
+            int key = random.nextDouble() < 0.5 ? random.nextInt(5) : random.nextInt(5_000);
+            tracker.offer(key);
+            exact.merge(key, 1L, Long::sum);
+        }
+
+        for (SpaceSavingTopK.Entry<Integer, Void> entry : tracker.entries()) {
+            long trueCount = exact.getOrDefault(entry.key(), 0L);
+            assertThat(trueCount).isBetween(entry.guaranteedCount(), entry.count());
+            assertThat(entry.error()).isLessThanOrEqualTo(tracker.getTotalWeight() / 50);
+        }
+
+        Set<Integer> trueTop = exact.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Long>comparingByValue().reversed())
+                .limit(5)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        Set<Integer> candidates = tracker.candidates(5).stream()
+                .map(SpaceSavingTopK.Entry::key)
+                .collect(Collectors.toSet());
+        assertThat(candidates).containsAll(trueTop);
+    }
+
+    @Test
+    void mergeKeepsBounds() {
+        SpaceSavingTopK<String, Void> first = new SpaceSavingTopK<>(3, () -> null, (a, b) -> { });
+        SpaceSavingTopK<String, Void> second = new SpaceSavingTopK<>(3, () -> null, (a, b) -> { });
+        for (int i = 0; i < 10; i++) first.offer("a");
+        for (int i = 0; i < 8; i++) second.offer("a");
+        for (int i = 0; i < 4; i++) second.offer("b");
+
+        first.merge(second);
+
+        SpaceSavingTopK.Entry<String, Void> top = first.top(1).get(0);
+        assertThat(top.key()).isEqualTo("a");
+        assertThat(top.count()).isEqualTo(18L);
+        assertThat(first.getTotalWeight()).isEqualTo(22L);
+    }
+}
@@ -0,0 +1,47 @@
+package com.gutouch.monitoring.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatusCodeHistogramTest {
+
+    @Test
+    void countsDirectAndOutOfRangeCodes() {
+        StatusCodeHistogram histogram = new StatusCodeHistogram();
+        histogram.record(200, 5);
+        histogram.record(404);
+        histogram.record(500, 2);
+        histogram.record(0);
+        histogram.record(999);
+
+        assertThat(histogram.getTotal()).isEqualTo(10L);
+        assertThat(histogram.getCount(200)).isEqualTo(5L);
+        assertThat(histogram.getCount(0)).isEqualTo(1L);
+        assertThat(histogram.getCount(302)).isZero();
+        assertThat(histogram.toCodeMap()).isEqualTo(Map.of("200", 5L, "404", 1L, "500", 2L, "0", 1L, "999", 1L));
+        assertThat(histogram.toCategoryMap("2xx", "3xx"))
+                .containsEntry("2xx", 5L)
+                .containsEntry("3xx", 0L)
+                .containsEntry("5xx", 2L)
+                .containsEntry("0xx", 1L);
+        assertThat(histogram.topCodes(2)).containsExactly(200, 500);
+    }
+
+    @Test
+    void mergeAddsCounts() {
+        StatusCodeHistogram first = new StatusCodeHistogram();
+        first.record(200, 3);
+        StatusCodeHistogram second = new StatusCodeHistogram();
+        second.record(200);
+        second.record(0, 2);
+
+        first.merge(second);
+
+        assertThat(first.getCount(200)).isEqualTo(4L);
+        assertThat(first.getCount(0)).isEqualTo(2L);
+        assertThat(first.getTotal()).isEqualTo(6L);
+    }
+}
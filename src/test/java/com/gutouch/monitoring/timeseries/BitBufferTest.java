@@ -0,0 +1,44 @@
+package com.gutouch.monitoring.timeseries;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BitBufferTest {
+
+    @Test
+    void readsBackValuesOfEveryWidthAcrossWords() throws IOException {
+        Random random = new Random(1);
+        int[] widths = new int[5_000];
+        long[] values = new long[widths.length];
+        BitBuffer buffer = new BitBuffer();
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = 1 + random.nextInt(64);
+            values[i] = random.nextLong() & (widths[i] == 64 ? -1L : (1L << widths[i]) - 1);
+            buffer.write(values[i], widths[i]);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        buffer.writeTo(new DataOutputStream(bytes));
+        BitBuffer copy = BitBuffer.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        BitBuffer.Reader reader = buffer.reader();
+        BitBuffer.Reader copyReader = copy.reader();
+        for (int i = 0; i < widths.length; i++) {
+            assertThat(reader.read(widths[i])).isEqualTo(values[i]);
+            assertThat(copyReader.read(widths[i])).isEqualTo(values[i]);
+        }
+        assertThatThrownBy(() -> reader.read(1)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void rejectsInvalidSize() {
+        byte[] bytes = {(byte) 0x80, 0, 0, 0};
+        assertThatThrownBy(() -> BitBuffer.readFrom(new DataInputStream(new ByteArrayInputStream(bytes))))
+                .isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,71 @@
+package com.gutouch.monitoring.timeseries;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+class CompressedSeriesTest {
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final long START = 1_699_999_200_000L; // début d'heure
+
+    @Test
+    void queryReturnsAggregatedBucketsAfterCompression() {
+        CompressedSeries series = new CompressedSeries(Resolution.FIVE_MINUTES, 30 * DAY_MS);
+        int minutes = 3_000; // plusieurs blocs scellés
+        long[] requests = new long[minutes];
+        double[] latencies = new double[minutes];
+        Random random = new Random(3);
+        for (int i = 0; i < minutes; i++) {
+            if (i % 97 == 0) continue; // trous irréguliers
+            requests[i] = 100 + random.nextInt(50);
+            latencies[i] = 20.0 + random.nextInt(500) / 10.0;
+            series.add(START + i * 60_000L, requests[i], 99.5, 0.5, latencies[i]);
+        }
+
+        List<SeriesPoint> points = series.query(START, START + minutes * 60_000L);
+
+        long totalRequests = points.stream().mapToLong(SeriesPoint::requests).sum();
+        double totalLatency = points.stream().mapToDouble(SeriesPoint::latencySum).sum();
+        long expectedRequests = 0L;
+        double expectedLatency = 0.0;
+        for (int i = 0; i < minutes; i++) {
+            expectedRequests += requests[i];
+            expectedLatency += latencies[i];
+        }
+        assertThat(points).hasSize(minutes / 5);
+        assertThat(totalRequests).isEqualTo(expectedRequests);
+        assertThat(totalLatency).isCloseTo(expectedLatency, offset(1e-6));
+        assertThat(points.get(1).timestamp() - points.get(0).timestamp()).isEqualTo(300_000L);
+    }
+
+    @Test
+    void snapshotRoundTripsAndRejectsCorruption() throws IOException {
+        CompressedSeries series = new CompressedSeries(Resolution.MINUTE, DAY_MS);
+        for (int i = 0; i < 1_000; i++) {
+            series.add(START + i * 60_000L, i, 100.0, 0.0, i * 1.5);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        series.writeTo(new DataOutputStream(bytes));
+        byte[] snapshot = bytes.toByteArray();
+
+        CompressedSeries copy = CompressedSeries.readFrom(Resolution.MINUTE, DAY_MS,
+                new DataInputStream(new ByteArrayInputStream(snapshot)));
+        assertThat(copy.query(START, START + DAY_MS)).isEqualTo(series.query(START, START + DAY_MS));
+
+        // Bits d'un bloc altérés : détecté à la relecture, pas à la première requête
+        byte[] corrupted = snapshot.clone();
+        for (int i = 120; i < 200; i++) {
+            corrupted[i] = (byte) 0xFF;
+        }
+        assertThatThrownBy(() -> CompressedSeries.readFrom(Resolution.MINUTE, DAY_MS,
+                new DataInputStream(new ByteArrayInputStream(corrupted))))
+                .isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,48 @@
+package com.gutouch.monitoring.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LttbTest {
+
+    @Test
+    void keepsEverythingUnderThreshold() {
+        long[] x = {0, 1, 2, 3};
+        double[] y = {1, 2, 3, 4};
+
+        assertThat(Lttb.select(x, y, 10)).containsExactly(0, 1, 2, 3);
+        assertThat(Lttb.select(new long[0], new double[0], 10)).isEmpty();
+    }
+
+    @Test
+    void keepsEndpointsAndSpikes() {
+        int length = 1_000;
+        long[] x = new long[length];
+        double[] y = new double[length];
+        for (int i = 0; i < length; i++) {
+            x[i] = i * 1_000L;
+            y[i] = 10.0;
+        }
+        y[317] = 500.0;
+        y[742] = -200.0;
+
+        int[] selected = Lttb.select(x, y, 50);
+
+        assertThat(selected).hasSize(50);
+        assertThat(selected[0]).isZero();
+        assertThat(selected[49]).isEqualTo(length - 1);
+        assertThat(selected).contains(317, 742);
+        for (int i = 1; i < selected.length; i++) {
+            assertThat(selected[i]).isGreaterThan(selected[i - 1]);
+        }
+    }
+
+    @Test
+    void raisesTooSmallThresholdToThreePoints() {
+        long[] x = {0, 1, 2, 3, 4};
+        double[] y = {0, 0, 9, 0, 0};
+
+        assertThat(Lttb.select(x, y, 1)).containsExactly(0, 2, 4);
+    }
+}
@@ -0,0 +1,50 @@
+package com.gutouch.monitoring.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ZoneOffsetTableTest {
+
+    private static final ZoneId PARIS_ZONE = ZoneId.of("Europe/Paris");
+
+    @Test
+    void matchesZonedDateTimeAcrossDstChanges() {
+        Instant from = Instant.parse("2023-01-01T00:00:00Z");
+        Instant to = Instant.parse("2025-01-01T00:00:00Z");
+        ZoneOffsetTable table = new ZoneOffsetTable(PARIS_ZONE, from, to);
+
+        Random random = new Random(7);
+        long span = to.toEpochMilli() - from.toEpochMilli();
+        for (int i = 0; i < 200_000; i++) {
+            long epochMillis = from.toEpochMilli() + (long) (random.nextDouble() * span);
+            ZonedDateTime expected = Instant.ofEpochMilli(epochMillis).atZone(PARIS_ZONE);
+
+            assertThat(table.localEpochDay(epochMillis)).isEqualTo(expected.toLocalDate().toEpochDay());
+            assertThat(table.localHour(epochMillis)).isEqualTo(expected.getHour());
+        }
+    }
+
+    @Test
+    void switchesOffsetExactlyAtTransitions() {
+        ZoneOffsetTable table = new ZoneOffsetTable(PARIS_ZONE,
+                Instant.parse("2024-01-01T00:00:00Z"), Instant.parse("2024-12-31T00:00:00Z"));
+
+        // Passage à l'heure d'été : 31 mars 2024, 01:00 UTC (02:00 -> 03:00 locale)
+        long spring = Instant.parse("2024-03-31T01:00:00Z").toEpochMilli();
+        assertThat(table.localHour(spring - 1)).isEqualTo(1);
+        assertThat(table.localHour(spring)).isEqualTo(3);
+
+        // Retour à l'heure d'hiver : 27 octobre 2024, 01:00 UTC (03:00 -> 02:00 locale)
+        long autumn = Instant.parse("2024-10-27T01:00:00Z").toEpochMilli();
+        assertThat(table.offsetMillis(autumn - 1)).isEqualTo(2 * ZoneOffsetTable.HOUR_MS);
+        assertThat(table.offsetMillis(autumn)).isEqualTo(ZoneOffsetTable.HOUR_MS);
+        assertThat(table.localHour(autumn - 1)).isEqualTo(2);
+        assertThat(table.localHour(autumn)).isEqualTo(2);
+    }
+}